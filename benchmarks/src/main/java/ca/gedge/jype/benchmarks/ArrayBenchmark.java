@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.lang.reflect.Array;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gedge.jype.ArrayType;
+import ca.gedge.jype.TypeDescriptor;
+import ca.gedge.jype.TypeFactory;
+
+/**
+ * Benchmarks conversions between array types and array classes, and
+ * assignability of arrays to arrays of fewer dimensions, at several numbers
+ * of dimensions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArrayBenchmark {
+	/** Number of dimensions */
+	@Param({"1", "4", "8"})
+	public int dims;
+	
+	/** A primitive array class */
+	private Class<?> arrayClass;
+	
+	/** The descriptor of the array class */
+	private ArrayType arrayType;
+	
+	/** A one-dimensional Object array */
+	private TypeDescriptor objects;
+	
+	@Setup
+	public void setup() {
+		arrayClass = Array.newInstance(int.class, new int[dims]).getClass();
+		arrayType = (ArrayType)TypeFactory.fromType(arrayClass);
+		objects = TypeFactory.intern(new ArrayType(Object.class));
+	}
+	
+	@Benchmark
+	public TypeDescriptor fromArrayClass() {
+		return TypeFactory.fromType(arrayClass);
+	}
+	
+	@Benchmark
+	public Class<?> toArrayClass() {
+		return arrayType.getArrayClass();
+	}
+	
+	@Benchmark
+	public boolean objectArrayFromArray() {
+		return objects.isAssignableFrom(arrayType);
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gedge.jype.ArrayType;
+import ca.gedge.jype.AssignabilityCache;
+import ca.gedge.jype.GenericType;
+import ca.gedge.jype.SimpleType;
+import ca.gedge.jype.TypeDescriptor;
+import ca.gedge.jype.TypeFactory;
+import ca.gedge.jype.WildcardType;
+
+/**
+ * Benchmarks {@link TypeDescriptor#isAssignableFrom(TypeDescriptor)} on
+ * descriptors of each kind, both directly and through an
+ * {@link AssignabilityCache}. Each case checks an assignable pair and a
+ * non-assignable pair. The wildcard kinds check containment in an upper
+ * (<code>List&lt;? extends ...&gt;</code>) or lower
+ * (<code>List&lt;? super ...&gt;</code>) bounded wildcard parameter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AssignabilityBenchmark {
+	/** The kind of descriptor */
+	@Param({"simple", "generic", "array", "extends", "super"})
+	public String kind;
+	
+	/** Nesting depth, or number of dimensions */
+	@Param({"1", "4", "8"})
+	public int depth;
+	
+	/** Target of the assignment */
+	private TypeDescriptor target;
+	
+	/** A descriptor assignable to the target */
+	private TypeDescriptor assignable;
+	
+	/** A descriptor not assignable to the target */
+	private TypeDescriptor unassignable;
+	
+	/** Cache used by the cached variants */
+	private AssignabilityCache cache;
+	
+	@Setup
+	public void setup() {
+		if("simple".equals(kind)) {
+			target = Shapes.nested(List.class, 0, Number.class);
+			assignable = Shapes.nested(List.class, 0, Integer.class);
+			unassignable = Shapes.nested(List.class, 0, String.class);
+		} else if("generic".equals(kind)) {
+			// Parameters are invariant, so only the outermost class differs
+			target = Shapes.nested(List.class, depth, Number.class);
+			assignable = new GenericType(ArrayList.class, Shapes.nested(List.class, depth - 1, Number.class));
+			unassignable = Shapes.nested(ArrayList.class, depth, String.class);
+		} else if("array".equals(kind)) {
+			target = new ArrayType(Number.class, depth);
+			assignable = new ArrayType(Integer.class, depth);
+			unassignable = new ArrayType(String.class, depth);
+		} else if("extends".equals(kind)) {
+			// The wildcard contains a subtype of its bound, whose own parameters
+			// must match exactly
+			target = new GenericType(List.class, WildcardType.withUpperBound(Shapes.nested(List.class, depth - 1, Number.class)));
+			assignable = new GenericType(ArrayList.class, depth == 1
+				? new SimpleType(Integer.class)
+				: new GenericType(ArrayList.class, Shapes.nested(List.class, depth - 2, Number.class)));
+			unassignable = Shapes.nested(ArrayList.class, depth, String.class);
+		} else if("super".equals(kind)) {
+			target = new GenericType(List.class, WildcardType.withLowerBound(Shapes.nested(List.class, depth - 1, Integer.class)));
+			assignable = new GenericType(ArrayList.class, depth == 1
+				? new SimpleType(Number.class)
+				: new GenericType(Collection.class, Shapes.nested(List.class, depth - 2, Integer.class)));
+			unassignable = new GenericType(ArrayList.class, depth == 1
+				? new SimpleType(Long.class)
+				: Shapes.nested(ArrayList.class, depth - 1, Integer.class));
+		} else {
+			throw new IllegalArgumentException("Unknown kind: " + kind);
+		}
+		
+		target = TypeFactory.intern(target);
+		assignable = TypeFactory.intern(assignable);
+		unassignable = TypeFactory.intern(unassignable);
+		cache = new AssignabilityCache();
+	}
+	
+	@Benchmark
+	public boolean assignable() {
+		return target.isAssignableFrom(assignable);
+	}
+	
+	@Benchmark
+	public boolean unassignable() {
+		return target.isAssignableFrom(unassignable);
+	}
+	
+	@Benchmark
+	public boolean assignableCached() {
+		return cache.isAssignableFrom(target, assignable);
+	}
+	
+	@Benchmark
+	public boolean unassignableCached() {
+		return cache.isAssignableFrom(target, unassignable);
+	}
+}
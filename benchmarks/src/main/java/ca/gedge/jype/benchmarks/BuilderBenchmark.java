@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gedge.jype.GenericType;
+import ca.gedge.jype.SimpleType;
+import ca.gedge.jype.TypeBuilder;
+import ca.gedge.jype.TypeDescriptor;
+import ca.gedge.jype.TypeFactory;
+
+/**
+ * Compares building interned descriptors for
+ * <code>Map&lt;String, List&lt;...List&lt;Integer&gt;...&gt;&gt;</code> with
+ * nested constructors against a reused {@link TypeBuilder}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuilderBenchmark {
+	/** Number of nested lists */
+	@Param({"1", "4", "8"})
+	public int depth;
+	
+	/** The reused builder */
+	private final TypeBuilder builder = new TypeBuilder();
+	
+	@Benchmark
+	public TypeDescriptor constructors() {
+		TypeDescriptor value = new SimpleType(Integer.class);
+		for(int index = 0; index < depth; ++index)
+			value = new GenericType(List.class, value);
+		return TypeFactory.intern(new GenericType(Map.class, new SimpleType(String.class), value));
+	}
+	
+	@Benchmark
+	public TypeDescriptor builder() {
+		builder.beginGeneric(Map.class).add(String.class);
+		for(int index = 0; index < depth; ++index)
+			builder.beginGeneric(List.class);
+		builder.add(Integer.class);
+		for(int index = 0; index <= depth; ++index)
+			builder.end();
+		return builder.build();
+	}
+}
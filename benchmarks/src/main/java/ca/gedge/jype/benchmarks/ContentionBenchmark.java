@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gedge.jype.AssignabilityCache;
+import ca.gedge.jype.TypeDescriptor;
+import ca.gedge.jype.TypeFactory;
+
+/**
+ * Runs the shared-state paths of Jype from several threads at once, to
+ * expose contention on the intern pool and caches. Compare against the
+ * single-threaded results of the other benchmarks, or rerun with
+ * <code>-t</code> to vary the thread count.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ContentionBenchmark {
+	/** Type string parsed by every thread */
+	private String typeString;
+	
+	/** Class list converted by every thread */
+	private Class<?> [] classes;
+	
+	/** Target of the assignability checks */
+	private TypeDescriptor target;
+	
+	/** Source of the assignability checks */
+	private TypeDescriptor source;
+	
+	/** Cache shared by every thread */
+	private AssignabilityCache cache;
+	
+	@Setup
+	public void setup() throws ClassNotFoundException {
+		typeString = "java.util.Map<java.lang.String,java.util.List<java.lang.Integer>>";
+		classes = new Class<?>[] { Map.class, String.class, List.class, Integer.class };
+		target = TypeFactory.parse(Shapes.nestedString(List.class, 4, Number.class));
+		source = TypeFactory.parse(Shapes.nestedString(ArrayList.class, 4, Integer.class));
+		cache = new AssignabilityCache();
+	}
+	
+	@Benchmark
+	public TypeDescriptor parse() throws ClassNotFoundException {
+		return TypeFactory.parse(typeString);
+	}
+	
+	@Benchmark
+	public TypeDescriptor fromList() {
+		return TypeFactory.fromList(classes);
+	}
+	
+	@Benchmark
+	public boolean isAssignableFrom() {
+		return target.isAssignableFrom(source);
+	}
+	
+	@Benchmark
+	public boolean isAssignableFromCached() {
+		return cache.isAssignableFrom(target, source);
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gedge.jype.ArrayType;
+import ca.gedge.jype.TypeDescriptor;
+
+/**
+ * Benchmarks {@link Object#hashCode()}, {@link Object#toString()} and the
+ * structural metadata queries on descriptors of each kind. The depth is the generic nesting depth for
+ * generic types, and the number of dimensions for array types.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DescriptorBenchmark {
+	/** The kind of descriptor */
+	@Param({"simple", "generic", "array"})
+	public String kind;
+	
+	/** Nesting depth, or number of dimensions */
+	@Param({"1", "4", "8"})
+	public int depth;
+	
+	/** The descriptor under test */
+	private TypeDescriptor type;
+	
+	@Setup
+	public void setup() {
+		if("simple".equals(kind))
+			type = Shapes.nested(List.class, 0, String.class);
+		else if("generic".equals(kind))
+			type = Shapes.nested(List.class, depth, String.class);
+		else if("array".equals(kind))
+			type = new ArrayType(String.class, depth);
+		else
+			throw new IllegalArgumentException("Unknown kind: " + kind);
+	}
+	
+	@Benchmark
+	public int hashCodeOf() {
+		return type.hashCode();
+	}
+	
+	@Benchmark
+	public String toStringOf() {
+		return type.toString();
+	}
+	
+	@Benchmark
+	public int depthOf() {
+		return type.getDepth();
+	}
+	
+	@Benchmark
+	public Set<Class<?>> referencedClassesOf() {
+		return type.getReferencedClasses();
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gedge.jype.ArrayType;
+import ca.gedge.jype.GenericType;
+import ca.gedge.jype.SimpleType;
+import ca.gedge.jype.TypeDescriptor;
+import ca.gedge.jype.TypeDispatchTable;
+import ca.gedge.jype.TypeFactory;
+import ca.gedge.jype.WildcardType;
+
+/**
+ * Compares {@link TypeDispatchTable} lookups against a linear scan of the
+ * registered descriptors, with a growing number of unrelated handlers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+	/** Classes used to build unrelated handler descriptors */
+	private static final Class<?> [] FILLER = new Class<?>[] {
+		String.class, Integer.class, Long.class, Double.class, Character.class,
+		Byte.class, Short.class, Float.class, Boolean.class, StringBuilder.class
+	};
+	
+	/** Number of handlers registered */
+	@Param({"10", "100", "1000"})
+	public int handlers;
+	
+	/** The dispatch table */
+	private TypeDispatchTable<Integer> table;
+	
+	/** The same handlers, as a list */
+	private List<TypeDescriptor> registered;
+	
+	/** The query descriptor */
+	private TypeDescriptor query;
+	
+	@Setup
+	public void setup() {
+		table = new TypeDispatchTable<Integer>();
+		registered = new ArrayList<TypeDescriptor>();
+		
+		register(new SimpleType(Object.class));
+		register(new GenericType(List.class, WildcardType.withUpperBound(new SimpleType(Number.class))));
+		for(int index = 0; registered.size() < handlers; ++index) {
+			final Class<?> a = FILLER[index % FILLER.length];
+			final Class<?> b = FILLER[(index / FILLER.length) % FILLER.length];
+			switch(index % 3) {
+			case 0: register(new GenericType(Map.class, a, b)); break;
+			case 1: register(new ArrayType(a, 1 + index / 30)); break;
+			default: register(new GenericType(HashMap.class, new SimpleType(a), new GenericType(List.class, b))); break;
+			}
+		}
+		
+		query = TypeFactory.intern(new GenericType(ArrayList.class, Integer.class));
+	}
+	
+	private void register(TypeDescriptor type) {
+		if(table.register(type, registered.size()) == null)
+			registered.add(type);
+	}
+	
+	@Benchmark
+	public Integer table() {
+		return table.lookup(query);
+	}
+	
+	@Benchmark
+	public int linearScan() {
+		// First match only, which is cheaper than what the table computes
+		for(int index = registered.size() - 1; index >= 0; --index) {
+			if(registered.get(index).isAssignableFrom(query))
+				return index;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gedge.jype.TypeDecoder;
+import ca.gedge.jype.TypeDescriptor;
+import ca.gedge.jype.TypeEncoder;
+import ca.gedge.jype.TypeFactory;
+
+/**
+ * Compares shipping descriptors in the binary encoding against shipping
+ * their string form. The warm cases model a long-lived connection, where
+ * every class is already in the shared string table.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncodingBenchmark {
+	/** Shape of the descriptor */
+	@Param({"simple", "shallow", "deep", "wide"})
+	public String shape;
+	
+	/** The descriptor being shipped */
+	private TypeDescriptor type;
+	
+	/** String form of the descriptor */
+	private String typeString;
+	
+	/** Encoding with class names inline */
+	private ByteBuffer coldBytes;
+	
+	/** Encoding with class ids only */
+	private ByteBuffer warmBytes;
+	
+	/** Encoder whose string table holds every class */
+	private TypeEncoder warmEncoder;
+	
+	/** Decoder whose string table holds every class */
+	private TypeDecoder warmDecoder;
+	
+	/** Scratch space for encoding */
+	private ByteBuffer scratch;
+	
+	@Setup
+	public void setup() throws ClassNotFoundException {
+		if("simple".equals(shape))
+			typeString = "java.lang.Integer";
+		else if("shallow".equals(shape))
+			typeString = "java.util.Map<java.lang.String,java.lang.Integer>";
+		else if("deep".equals(shape))
+			typeString = Shapes.nestedString(List.class, 8, String.class);
+		else if("wide".equals(shape))
+			typeString = Shapes.nestedMapString(8);
+		else
+			throw new IllegalArgumentException("Unknown shape: " + shape);
+		
+		type = TypeFactory.parse(typeString);
+		scratch = ByteBuffer.allocate(4096);
+		
+		warmEncoder = new TypeEncoder();
+		warmEncoder.encode(type, scratch);
+		scratch.flip();
+		coldBytes = ByteBuffer.allocate(scratch.remaining());
+		coldBytes.put(scratch).flip();
+		
+		scratch.clear();
+		warmEncoder.encode(type, scratch);
+		scratch.flip();
+		warmBytes = ByteBuffer.allocate(scratch.remaining());
+		warmBytes.put(scratch).flip();
+		
+		warmDecoder = new TypeDecoder();
+		warmDecoder.decode(coldBytes.duplicate());
+	}
+	
+	@Benchmark
+	public TypeDescriptor parse() throws ClassNotFoundException {
+		return TypeFactory.parse(typeString);
+	}
+	
+	@Benchmark
+	public TypeDescriptor decodeCold() throws ClassNotFoundException {
+		return new TypeDecoder().decode(coldBytes.duplicate());
+	}
+	
+	@Benchmark
+	public TypeDescriptor decodeWarm() throws ClassNotFoundException {
+		return warmDecoder.decode(warmBytes.duplicate());
+	}
+	
+	@Benchmark
+	public String format() {
+		return type.toString();
+	}
+	
+	@Benchmark
+	public ByteBuffer encodeWarm() {
+		scratch.clear();
+		warmEncoder.encode(type, scratch);
+		return scratch;
+	}
+}
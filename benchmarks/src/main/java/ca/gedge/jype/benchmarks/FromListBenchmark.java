@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gedge.jype.ClassRegistry;
+import ca.gedge.jype.TypeDescriptor;
+import ca.gedge.jype.TypeFactory;
+
+/**
+ * Benchmarks {@link TypeFactory#fromList(Class...)} and its range and class
+ * id variants at several nesting depths. Run with <code>-prof gc</code> to
+ * check that repeated conversions do not allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FromListBenchmark {
+	/** Number of nested generic types */
+	@Param({"0", "1", "4", "8"})
+	public int depth;
+	
+	/** Nested lists of strings */
+	private Class<?> [] lists;
+	
+	/** A map with a nested list value */
+	private Class<?> [] map;
+	
+	/** The map, embedded in a larger buffer */
+	private Class<?> [] buffer;
+	
+	/** Registry for class ids */
+	private ClassRegistry registry;
+	
+	/** The map as class ids, embedded in a larger buffer */
+	private int [] ids;
+	
+	@Setup
+	public void setup() {
+		lists = Shapes.nestedList(List.class, depth, String.class);
+		
+		final Class<?> [] values = Shapes.nestedList(List.class, depth, Integer.class);
+		map = new Class<?>[values.length + 2];
+		map[0] = Map.class;
+		map[1] = String.class;
+		System.arraycopy(values, 0, map, 2, values.length);
+		
+		buffer = new Class<?>[map.length + 2];
+		buffer[0] = buffer[buffer.length - 1] = Object.class;
+		System.arraycopy(map, 0, buffer, 1, map.length);
+		
+		registry = new ClassRegistry();
+		ids = new int[buffer.length];
+		for(int index = 0; index < buffer.length; ++index)
+			ids[index] = registry.register(buffer[index]);
+	}
+	
+	@Benchmark
+	public TypeDescriptor nestedLists() {
+		return TypeFactory.fromList(lists);
+	}
+	
+	@Benchmark
+	public TypeDescriptor mapOfNestedLists() {
+		return TypeFactory.fromList(map);
+	}
+	
+	@Benchmark
+	public TypeDescriptor mapOfNestedListsRange() {
+		return TypeFactory.fromList(buffer, 1, map.length);
+	}
+	
+	@Benchmark
+	public TypeDescriptor mapOfNestedListsIds() {
+		return TypeFactory.fromList(registry, ids, 1, map.length);
+	}
+}
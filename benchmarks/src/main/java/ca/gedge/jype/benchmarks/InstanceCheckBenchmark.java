@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gedge.jype.InstanceChecker;
+import ca.gedge.jype.TypeDescriptor;
+import ca.gedge.jype.TypeFactory;
+
+/**
+ * Benchmarks {@link InstanceChecker} in each mode on a
+ * <code>Map&lt;String, List&lt;Integer&gt;&gt;</code>, with and without
+ * generated checks, against equivalent hand-written <code>instanceof</code>
+ * checks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstanceCheckBenchmark {
+	/** Number of map entries */
+	@Param({"10", "1000"})
+	public int size;
+	
+	/** Number of elements in each list */
+	private static final int LIST_SIZE = 10;
+	
+	/** Number of elements the sampling checker checks */
+	private static final int SAMPLE_SIZE = 4;
+	
+	/** The object to check */
+	private Object map;
+	
+	private InstanceChecker shallow;
+	private InstanceChecker sampling;
+	private InstanceChecker full;
+	private InstanceChecker compiledSampling;
+	private InstanceChecker compiledFull;
+	
+	@Setup
+	public void setup() throws ClassNotFoundException {
+		final Map<String, List<Integer>> map = new HashMap<String, List<Integer>>();
+		for(int index = 0; index < size; ++index) {
+			final List<Integer> list = new ArrayList<Integer>();
+			for(int element = 0; element < LIST_SIZE; ++element)
+				list.add(index * element);
+			map.put("key" + index, list);
+		}
+		this.map = map;
+		
+		final TypeDescriptor type = TypeFactory.parse("java.util.Map<String, java.util.List<Integer>>");
+		shallow = InstanceChecker.shallow(type);
+		sampling = InstanceChecker.sampling(type, SAMPLE_SIZE);
+		full = InstanceChecker.full(type);
+		compiledSampling = sampling.compile();
+		compiledFull = full.compile();
+	}
+	
+	@Benchmark
+	public boolean shallow() {
+		return shallow.isInstance(map);
+	}
+	
+	@Benchmark
+	public boolean sampling() {
+		return sampling.isInstance(map);
+	}
+	
+	@Benchmark
+	public boolean full() {
+		return full.isInstance(map);
+	}
+	
+	@Benchmark
+	public boolean compiledSampling() {
+		return compiledSampling.isInstance(map);
+	}
+	
+	@Benchmark
+	public boolean compiledFull() {
+		return compiledFull.isInstance(map);
+	}
+	
+	@Benchmark
+	public boolean handWritten() {
+		if(!(map instanceof Map))
+			return false;
+		
+		for(Map.Entry<?, ?> entry : ((Map<?, ?>)map).entrySet()) {
+			if(!(entry.getKey() instanceof String) || !(entry.getValue() instanceof List))
+				return false;
+			for(Object element : (List<?>)entry.getValue()) {
+				if(!(element instanceof Integer))
+					return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gedge.jype.GenericType;
+import ca.gedge.jype.TypeDescriptor;
+import ca.gedge.jype.TypeFactory;
+import ca.gedge.jype.TypeLattice;
+
+/**
+ * Computes the least upper bound of a wide set of list types with numeric
+ * elements, such as <code>ArrayList&lt;Integer&gt;</code> and
+ * <code>Vector&lt;BigDecimal&gt;</code>, by folding pairwise bounds, by
+ * {@link TypeLattice#lub(Iterable)}, and by collecting sequential and
+ * parallel streams.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LatticeBenchmark {
+	/** Number of descriptors */
+	@Param({"100", "1000", "10000"})
+	public int size;
+	
+	/** The descriptors */
+	private List<TypeDescriptor> types;
+	
+	@Setup
+	public void setup() {
+		final Class<?> [] lists = { ArrayList.class, LinkedList.class, CopyOnWriteArrayList.class, Vector.class, Stack.class };
+		final Class<?> [] elements = { Integer.class, Long.class, Short.class, Double.class, Byte.class, BigDecimal.class };
+		final Random random = new Random(42);
+		
+		types = new ArrayList<TypeDescriptor>(size);
+		for(int index = 0; index < size; ++index) {
+			final Class<?> list = lists[random.nextInt(lists.length)];
+			final Class<?> element = elements[random.nextInt(elements.length)];
+			types.add(TypeFactory.intern(new GenericType(list, element)));
+		}
+	}
+	
+	@Benchmark
+	public TypeDescriptor pairwise() {
+		TypeDescriptor lub = types.get(0);
+		for(int index = 1; index < types.size(); ++index)
+			lub = TypeLattice.lub(lub, types.get(index));
+		return lub;
+	}
+	
+	@Benchmark
+	public TypeDescriptor iterable() {
+		return TypeLattice.lub(types);
+	}
+	
+	@Benchmark
+	public TypeDescriptor sequential() {
+		return types.stream().collect(TypeLattice.toLub());
+	}
+	
+	@Benchmark
+	public TypeDescriptor parallel() {
+		return types.parallelStream().collect(TypeLattice.toLub());
+	}
+}
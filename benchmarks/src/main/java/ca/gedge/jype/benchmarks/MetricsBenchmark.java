@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gedge.jype.InMemoryTypeMetrics;
+import ca.gedge.jype.TypeDescriptor;
+import ca.gedge.jype.TypeFactory;
+
+/**
+ * Benchmarks the overhead of {@link ca.gedge.jype.TypeMetrics} on the
+ * measured operations, with metrics disabled and with
+ * {@link InMemoryTypeMetrics} installed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+	/** Whether or not metrics are installed */
+	@Param({"false", "true"})
+	public boolean enabled;
+	
+	/** Classes converted by fromList */
+	private static final Class<?> [] CLASSES = new Class<?>[] { Map.class, String.class, List.class, Integer.class };
+	
+	/** String parsed */
+	private static final String TYPE_STRING = "java.util.Map<String, java.util.List<Integer>>";
+	
+	/** Descriptor checked against itself */
+	private TypeDescriptor type;
+	
+	@Setup
+	public void setup() {
+		type = TypeFactory.fromList(CLASSES);
+		TypeFactory.setMetrics(enabled ? new InMemoryTypeMetrics() : null);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		TypeFactory.setMetrics(null);
+	}
+	
+	@Benchmark
+	public TypeDescriptor parse() throws ClassNotFoundException {
+		return TypeFactory.parse(TYPE_STRING);
+	}
+	
+	@Benchmark
+	public TypeDescriptor fromList() {
+		return TypeFactory.fromList(CLASSES);
+	}
+	
+	@Benchmark
+	public boolean isAssignableFrom() {
+		return type.isAssignableFrom(type);
+	}
+}
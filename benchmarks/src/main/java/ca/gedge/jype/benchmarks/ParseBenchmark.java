@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gedge.jype.ParseCache;
+import ca.gedge.jype.TypeDescriptor;
+import ca.gedge.jype.TypeFactory;
+
+/**
+ * Benchmarks {@link TypeFactory#parse(String)} on a variety of inputs, with
+ * and without a {@link ParseCache}, and compares it against the original
+ * regular expression implementation on the inputs both can parse. The regular
+ * expression implementation cannot parse nested commas, so its deep case
+ * nests single-parameter types. {@link TypeFactory#parseLazily(String)} is
+ * measured without resolving, which is what it costs for a declared type
+ * that is never used.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+	/**
+	 * Gets the type string for a named shape.
+	 */
+	static String typeString(String shape) {
+		if("simple".equals(shape))
+			return "java.lang.Integer";
+		else if("array".equals(shape))
+			return "int[][]";
+		else if("shallow".equals(shape))
+			return "java.util.Map<java.lang.String, java.lang.Integer>";
+		else if("deep".equals(shape))
+			return Shapes.nestedString(List.class, 8, String.class);
+		else if("wide".equals(shape))
+			return Shapes.nestedMapString(8);
+		else if("spaced".equals(shape))
+			return " java.util.Map < String , java.util.List < java.lang.Integer [ ] > > ";
+		else if("mixed".equals(shape))
+			return "java.util.Map<java.lang.String,java.util.List<java.util.Map<java.lang.Integer,"
+			       + ArrayList.class.getName() + "<java.lang.Long>>>>";
+		throw new IllegalArgumentException("Unknown shape: " + shape);
+	}
+	
+	/**
+	 * Inputs for the new parser.
+	 */
+	@State(Scope.Benchmark)
+	public static class Input {
+		/** Shape of the type string to parse */
+		@Param({"simple", "array", "shallow", "deep", "wide", "spaced", "mixed"})
+		public String shape;
+		
+		/** The type string to parse */
+		String typeString;
+		
+		/** Cache for the cached variant */
+		ParseCache cache;
+		
+		@Setup
+		public void setup() {
+			typeString = typeString(shape);
+			cache = new ParseCache();
+		}
+	}
+	
+	/**
+	 * Inputs the regular expression parser can handle.
+	 */
+	@State(Scope.Benchmark)
+	public static class RegexInput {
+		/** Shape of the type string to parse */
+		@Param({"simple", "array", "shallow", "deep"})
+		public String shape;
+		
+		/** The type string to parse */
+		String typeString;
+		
+		@Setup
+		public void setup() {
+			typeString = typeString(shape);
+		}
+	}
+
+	@Benchmark
+	public TypeDescriptor parse(Input input) throws ClassNotFoundException {
+		return TypeFactory.parse(input.typeString);
+	}
+
+	@Benchmark
+	public TypeDescriptor parseCached(Input input) throws ClassNotFoundException {
+		return input.cache.parse(input.typeString);
+	}
+
+	@Benchmark
+	public TypeDescriptor parseLazily(Input input) {
+		return TypeFactory.parseLazily(input.typeString);
+	}
+
+	@Benchmark
+	public TypeDescriptor parseRegex(RegexInput input) throws ClassNotFoundException {
+		return RegexTypeParser.parse(input.typeString);
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.util.Hashtable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ca.gedge.jype.ArrayType;
+import ca.gedge.jype.GenericType;
+import ca.gedge.jype.SimpleType;
+import ca.gedge.jype.TypeDescriptor;
+
+/**
+ * The original regular expression based implementation of
+ * {@link ca.gedge.jype.TypeFactory#parse(String)}, kept as a baseline for
+ * comparison. Note that it cannot parse generic parameters which themselves
+ * contain commas, such as <code>Map&lt;String, Map&lt;String, Integer&gt;&gt;</code>.
+ */
+public final class RegexTypeParser {
+	/** Non qualified types we will allow in {@link #parse(String)} */
+	private final static Hashtable<String, Class<?>> nonQualifiedTypes;
+	static {
+		nonQualifiedTypes = new Hashtable<String, Class<?>>();
+		nonQualifiedTypes.put("char", char.class);
+		nonQualifiedTypes.put("byte", byte.class);
+		nonQualifiedTypes.put("short", short.class);
+		nonQualifiedTypes.put("int", int.class);
+		nonQualifiedTypes.put("long", long.class);
+		nonQualifiedTypes.put("float", float.class);
+		nonQualifiedTypes.put("double", double.class);
+		nonQualifiedTypes.put("boolean", boolean.class);
+		nonQualifiedTypes.put("void", void.class);
+		nonQualifiedTypes.put("String", String.class);
+		nonQualifiedTypes.put("Object", Object.class);
+	}
+	
+	/** Pattern to match stringified types */
+	private static final Pattern p = Pattern.compile("([a-zA-Z][a-zA-Z0-9.]+)(?:(?:<(.+)>)|((?:\\[\\])+))?");
+
+	private RegexTypeParser() { }
+
+	/**
+	 * Parse a {@link String} representation of a type.
+	 * 
+	 * @param typeString  string specification of a type to parse
+	 * 
+	 * @returns an applicable type descriptor
+	 * 
+	 * @throws IllegalArgumentException  if the given string is formatted incorrectly
+	 * @throws ClassNotFoundException  if any class in the given string is unknown
+	 */
+	public static TypeDescriptor parse(String typeString) throws ClassNotFoundException {
+		Matcher m = p.matcher(typeString.replaceAll("\\s", ""));
+		if(m.matches()) {
+			// Get the base type
+			Class<?> clazz = null;
+			if(nonQualifiedTypes.containsKey(m.group(1))) {
+				clazz = nonQualifiedTypes.get(m.group(1));
+			} else {
+				clazz = Class.forName(m.group(1));
+			}
+
+			// Parse based on whether or not this is an array, generic type, or neither 
+			if(m.group(2) != null) {
+				final String [] paramStrings = m.group(2).split(",");
+				final TypeDescriptor [] params = new TypeDescriptor[paramStrings.length]; 
+				for(int index = 0; index < params.length; ++index)
+					params[index] = parse(paramStrings[index]);
+				
+				return new GenericType(clazz, params);
+			} else if(m.group(3) != null) {
+				return new ArrayType(clazz, m.group(3).length() / 2);
+			} else {
+				return new SimpleType(clazz);
+			}
+		}
+
+		throw new IllegalArgumentException("Type string was in an illegal format: " + typeString);
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import ca.gedge.jype.GenericType;
+import ca.gedge.jype.SimpleType;
+import ca.gedge.jype.TypeDescriptor;
+
+/**
+ * Builders for the type shapes used across benchmarks.
+ */
+final class Shapes {
+	private Shapes() { }
+	
+	/**
+	 * Builds the string for a single-parameter generic class nested the given
+	 * number of times around a leaf, e.g. <code>List&lt;List&lt;String&gt;&gt;</code>.
+	 * 
+	 * @param outer  the generic class
+	 * @param depth  the number of times to nest the generic class
+	 * @param leaf  the innermost class
+	 */
+	static String nestedString(Class<?> outer, int depth, Class<?> leaf) {
+		final StringBuilder sb = new StringBuilder();
+		for(int index = 0; index < depth; ++index)
+			sb.append(outer.getName()).append('<');
+		sb.append(leaf.getName());
+		for(int index = 0; index < depth; ++index)
+			sb.append('>');
+		return sb.toString();
+	}
+	
+	/**
+	 * Builds a map type whose values are maps, nested the given number of
+	 * times, e.g. <code>Map&lt;String,Map&lt;String,Integer&gt;&gt;</code>.
+	 * 
+	 * @param depth  the number of maps
+	 */
+	static String nestedMapString(int depth) {
+		final StringBuilder sb = new StringBuilder();
+		for(int index = 0; index < depth; ++index)
+			sb.append("java.util.Map<java.lang.String,");
+		sb.append("java.lang.Integer");
+		for(int index = 0; index < depth; ++index)
+			sb.append('>');
+		return sb.toString();
+	}
+	
+	/**
+	 * Builds the flat class list for a nested single-parameter generic type,
+	 * as accepted by {@link ca.gedge.jype.TypeFactory#fromList(Class...)}.
+	 * 
+	 * @param outer  the generic class
+	 * @param depth  the number of times to nest the generic class
+	 * @param leaf  the innermost class
+	 */
+	static Class<?>[] nestedList(Class<?> outer, int depth, Class<?> leaf) {
+		final Class<?> [] classes = new Class<?>[depth + 1];
+		for(int index = 0; index < depth; ++index)
+			classes[index] = outer;
+		classes[depth] = leaf;
+		return classes;
+	}
+	
+	/**
+	 * Builds a (non-interned) descriptor for a nested single-parameter generic
+	 * type. A depth of zero gives a simple type for the leaf.
+	 * 
+	 * @param outer  the generic class
+	 * @param depth  the number of times to nest the generic class
+	 * @param leaf  the innermost class
+	 */
+	static TypeDescriptor nested(Class<?> outer, int depth, Class<?> leaf) {
+		TypeDescriptor type = new SimpleType(leaf);
+		for(int index = 0; index < depth; ++index)
+			type = new GenericType(outer, type);
+		return type;
+	}
+}
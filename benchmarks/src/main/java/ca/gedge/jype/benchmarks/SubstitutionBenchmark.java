@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ca.gedge.jype.ArrayType;
+import ca.gedge.jype.GenericType;
+import ca.gedge.jype.TypeBindings;
+import ca.gedge.jype.TypeDescriptor;
+import ca.gedge.jype.TypeFactory;
+import ca.gedge.jype.TypeVariableDescriptor;
+import ca.gedge.jype.WildcardType;
+
+/**
+ * Resolves the return types of all public methods of a parameterized
+ * collection type. {@link TypeBindings} substitution, which shares untouched
+ * subtrees and memoizes results, is compared against converting and copying
+ * every template on each call, and against the erased (unresolved) types.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SubstitutionBenchmark {
+	@Param({
+		"java.util.ArrayList<java.util.Map<String, Integer>>",
+		"java.util.HashMap<String, java.util.List<Integer>>",
+		"java.util.concurrent.ConcurrentHashMap<String, java.util.Map<String, Integer>[]>"
+	})
+	public String type;
+	
+	/** Public methods of the type's class */
+	private Method [] methods;
+	
+	/** Bindings for the type */
+	private TypeBindings bindings;
+	
+	@Setup
+	public void setup() throws ClassNotFoundException {
+		final GenericType generic = (GenericType)TypeFactory.parse(type);
+		methods = generic.getRawClass().getMethods();
+		bindings = TypeBindings.forType(generic);
+	}
+	
+	@Benchmark
+	public void erased(Blackhole bh) {
+		for(Method method : methods)
+			bh.consume(TypeFactory.fromReturnType(method));
+	}
+	
+	@Benchmark
+	public void memoized(Blackhole bh) {
+		for(Method method : methods)
+			bh.consume(bindings.resolveReturnType(method));
+	}
+	
+	@Benchmark
+	public void copying(Blackhole bh) {
+		for(Method method : methods) {
+			final TypeBindings declared = bindings.forSupertype(method.getDeclaringClass());
+			final TypeDescriptor template = TypeFactory.templateOf(method.getGenericReturnType());
+			bh.consume(TypeFactory.intern(copy(template, declared)));
+		}
+	}
+	
+	/**
+	 * Substitutes into a template by copying every node.
+	 */
+	private static TypeDescriptor copy(TypeDescriptor template, TypeBindings bindings) {
+		if(template instanceof TypeVariableDescriptor) {
+			final TypeDescriptor bound = bindings.get((TypeVariableDescriptor)template);
+			return (bound == null ? template : bound);
+		} else if(template instanceof WildcardType) {
+			final WildcardType wildcard = (WildcardType)template;
+			if(wildcard.getLowerBound() != null)
+				return WildcardType.withLowerBound(copy(wildcard.getLowerBound(), bindings));
+			return WildcardType.withUpperBound(copy(wildcard.getUpperBound(), bindings));
+		} else if(template instanceof ArrayType) {
+			final ArrayType array = (ArrayType)template;
+			TypeDescriptor element = copy(array.getElementType(), bindings);
+			if(element instanceof WildcardType)
+				element = ((WildcardType)element).getUpperBound();
+			return new ArrayType(element, array.getNumDimensions());
+		} else if(template instanceof GenericType) {
+			final GenericType generic = (GenericType)template;
+			final List<TypeDescriptor> params = new ArrayList<TypeDescriptor>();
+			for(TypeDescriptor param : generic.getParameters())
+				params.add(copy(param, bindings));
+			return new GenericType(generic.getRawClass(), params.toArray(new TypeDescriptor[params.size()]));
+		}
+		return template;
+	}
+}
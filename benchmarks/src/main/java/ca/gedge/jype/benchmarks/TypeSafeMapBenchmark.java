@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.gedge.jype.ConcurrentTypeSafeMap;
+import ca.gedge.jype.GenericType;
+import ca.gedge.jype.TypeDescriptor;
+import ca.gedge.jype.TypeSafeMap;
+import ca.gedge.jype.TypeSafeMap.Key;
+
+/**
+ * Compares lookups of attributes keyed by generic types: a {@link HashMap}
+ * keyed by the descriptors' strings, a {@link HashMap} keyed by descriptors,
+ * and {@link TypeSafeMap} and {@link ConcurrentTypeSafeMap} with typed keys.
+ * Each invocation looks up every key once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TypeSafeMapBenchmark {
+	/** Classes used as type arguments */
+	private static final Class<?> [] ARGUMENTS = new Class<?>[] {
+		String.class, Integer.class, Long.class, Double.class, Character.class,
+		Byte.class, Short.class, Float.class
+	};
+	
+	/** Number of attributes in the map */
+	@Param({"4", "32"})
+	public int entries;
+	
+	/** Typed keys */
+	private List<Key<Object>> keys;
+	
+	/** Equal descriptors that are not interned */
+	private TypeDescriptor [] uninterned;
+	
+	private Map<String, Object> byString;
+	private Map<TypeDescriptor, Object> byDescriptor;
+	private TypeSafeMap map;
+	private ConcurrentTypeSafeMap concurrent;
+	
+	@Setup
+	public void setup() {
+		keys = new ArrayList<Key<Object>>();
+		uninterned = new TypeDescriptor[entries];
+		byString = new HashMap<String, Object>();
+		byDescriptor = new HashMap<TypeDescriptor, Object>();
+		map = new TypeSafeMap();
+		concurrent = new ConcurrentTypeSafeMap();
+		
+		for(int index = 0; index < entries; ++index) {
+			final Class<?> a = ARGUMENTS[index % ARGUMENTS.length];
+			final Class<?> b = ARGUMENTS[index / ARGUMENTS.length];
+			uninterned[index] = new GenericType(Map.class, new GenericType(List.class, a), new GenericType(List.class, b));
+			
+			final Key<Object> key = Key.of(uninterned[index]);
+			final Object value = new HashMap<Object, Object>();
+			keys.add(key);
+			byString.put(key.getType().toString(), value);
+			byDescriptor.put(key.getType(), value);
+			map.put(key, value);
+			concurrent.put(key, value);
+		}
+	}
+	
+	@Benchmark
+	public int stringKeys() {
+		int found = 0;
+		for(Key<Object> key : keys)
+			found += (byString.get(key.getType().toString()) != null ? 1 : 0);
+		return found;
+	}
+	
+	@Benchmark
+	public int descriptorKeys() {
+		int found = 0;
+		for(Key<Object> key : keys)
+			found += (byDescriptor.get(key.getType()) != null ? 1 : 0);
+		return found;
+	}
+	
+	@Benchmark
+	public int typeSafeMap() {
+		int found = 0;
+		for(Key<Object> key : keys)
+			found += (map.get(key) != null ? 1 : 0);
+		return found;
+	}
+	
+	@Benchmark
+	public int typeSafeMapUninterned() {
+		int found = 0;
+		for(TypeDescriptor type : uninterned)
+			found += (map.get(type) != null ? 1 : 0);
+		return found;
+	}
+	
+	@Benchmark
+	public int concurrentTypeSafeMap() {
+		int found = 0;
+		for(Key<Object> key : keys)
+			found += (concurrent.get(key) != null ? 1 : 0);
+		return found;
+	}
+}
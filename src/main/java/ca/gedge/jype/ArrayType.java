@@ -21,17 +21,45 @@
  */
 package ca.gedge.jype;
 
+import java.io.Serializable;
 import java.lang.reflect.Array;
+import java.util.Set;
 
 /**
- * A descriptor for an array type.
+ * A descriptor for an array type. The elements of an array type are
+ * described by a non-array descriptor, either a {@link SimpleType}, a
+ * {@link GenericType} or a {@link TypeVariableDescriptor}, so
+ * <code>List&lt;String&gt;[][]</code> is a two-dimensional array of
+ * <code>List&lt;String&gt;</code>. Instances are immutable.
  */
-public class ArrayType implements TypeDescriptor {
-	/** The array's type */
-	private Class<?> clazz;
+public final class ArrayType implements TypeDescriptor {
+	/** Interned array types of array classes, mapped from the classes */
+	private static final ClassCache<ArrayType> byClass = new ClassCache<ArrayType>() {
+		@Override
+		protected ArrayType computeValue(Class<?> clazz) {
+			final ArrayType type = (ArrayType)InternPool.intern(new ArrayType(clazz.getComponentType(), 1));
+			type.arrayClass = clazz;
+			return type;
+		}
+	};
+	
+	/** The type of the array's elements */
+	private final TypeDescriptor element;
+	
+	/** The raw class of the array's elements */
+	private final Class<?> clazz;
 
 	/** The number of dimensions */
-	private int numDims;
+	private final int numDims;
+	
+	/** Hash code, computed at construction */
+	private final int hash;
+
+	/** String representation, computed on first use */
+	private String name;
+	
+	/** The array class this type erases to, computed on first use */
+	private Class<?> arrayClass;
 
 	/**
 	 * Constructs a single dimension array type from a given {@link Class}.
@@ -39,6 +67,7 @@ public class ArrayType implements TypeDescriptor {
 	 * @param clazz  the array's type
 	 * 
 	 * @throws NullPointerException  if the class is <code>null</code>
+	 * @throws IllegalArgumentException  if the class is void
 	 */
 	public ArrayType(Class<?> clazz) {
 		this(clazz, 1);
@@ -46,46 +75,282 @@ public class ArrayType implements TypeDescriptor {
 	
 	/**
 	 * Constructs an array type from a given {@link Class} with a specified
-	 * number of dimensions.
+	 * number of dimensions. If the class is itself an array class, its
+	 * dimensions are added to the given number.
 	 * 
 	 * @param clazz  the array's type
 	 * @param numDims  the number of dimensions
 	 * 
 	 * @throws NullPointerException  if the class is <code>null</code>
-	 * @throws IllegalArgumentException  if numDims is non-positive
+	 * @throws IllegalArgumentException  if numDims is non-positive, or the
+	 *                                   class is void
 	 */
 	public ArrayType(Class<?> clazz, int numDims) {
-		if(clazz == null)
-			throw new NullPointerException("Class cannot be null");
-
+		this(new SimpleType(clazz), numDims);
+	}
+	
+	/**
+	 * Constructs an array type with elements of a given type and a specified
+	 * number of dimensions. If the element type is itself an array type, its
+	 * dimensions are added to the given number.
+	 * 
+	 * @param elementType  the type of the array's elements
+	 * @param numDims  the number of dimensions
+	 * 
+	 * @throws NullPointerException  if the element type is <code>null</code>
+	 * @throws IllegalArgumentException  if numDims is non-positive, or the
+	 *                                   element type is a wildcard or void
+	 */
+	public ArrayType(TypeDescriptor elementType, int numDims) {
+		if(elementType == null)
+			throw new NullPointerException("Element type cannot be null");
 		if(numDims < 1)
 			throw new IllegalArgumentException("Number of array dimensions must be at least 1");
-
-		this.clazz = clazz;
+		
+		// Flatten arrays of arrays, including lazy ones
+		elementType = LazyType.unwrap(elementType);
+		if(elementType instanceof ArrayType) {
+			numDims += ((ArrayType)elementType).numDims;
+			elementType = ((ArrayType)elementType).element;
+		} else if(elementType instanceof SimpleType) {
+			Class<?> elementClass = ((SimpleType)elementType).getRawClass();
+			if(elementClass.isArray()) {
+				while(elementClass.isArray()) {
+					++numDims;
+					elementClass = elementClass.getComponentType();
+				}
+				elementType = new SimpleType(elementClass);
+			}
+		}
+		
+		if(elementType instanceof SimpleType)
+			clazz = ((SimpleType)elementType).getRawClass();
+		else if(elementType instanceof GenericType)
+			clazz = ((GenericType)elementType).getRawClass();
+		else if(elementType instanceof TypeVariableDescriptor)
+			clazz = ((TypeVariableDescriptor)elementType).getErasure();
+		else
+			throw new IllegalArgumentException("Unsupported array element type: " + elementType);
+		
+		if(clazz == void.class)
+			throw new IllegalArgumentException("Array elements cannot be void");
+		
+		this.element = elementType;
 		this.numDims = numDims;
+		this.hash = 31*elementType.hashCode() + numDims;
+		Metrics.created(ArrayType.class);
+	}
+
+	/**
+	 * Constructs a single dimension array of a given component type.
+	 * 
+	 * @param component  the component type
+	 * 
+	 * @return an array type with the given component type
+	 * 
+	 * @throws IllegalArgumentException  if the component type is of an
+	 *                                   unsupported kind
+	 */
+	static ArrayType arrayOf(TypeDescriptor component) {
+		return new ArrayType(component, 1);
+	}
+	
+	/**
+	 * Gets the interned array type describing an array class. Results are
+	 * cached for each class.
+	 * 
+	 * @param arrayClass  the array class
+	 * 
+	 * @return the array type describing the given class
+	 * 
+	 * @throws IllegalArgumentException  if the class is not an array class
+	 */
+	static ArrayType forClass(Class<?> arrayClass) {
+		if(!arrayClass.isArray())
+			throw new IllegalArgumentException("Class is not an array class: " + arrayClass.getName());
+		return byClass.get(arrayClass);
 	}
 
+	/**
+	 * @return the (non-array) type of the array's elements
+	 */
+	public TypeDescriptor getElementType() {
+		return element;
+	}
+	
+	/**
+	 * @return the raw (non-array) class of the array's elements
+	 */
+	Class<?> getElementClass() {
+		return clazz;
+	}
+	
+	/**
+	 * @return the number of dimensions
+	 */
+	public int getNumDimensions() {
+		return numDims;
+	}
+	
+	@Override
+	public int getDepth() {
+		return element.getDepth() + 1;
+	}
+	
+	@Override
+	public int getNodeCount() {
+		return element.getNodeCount() + 1;
+	}
+	
+	@Override
+	public Set<Class<?>> getReferencedClasses() {
+		return element.getReferencedClasses();
+	}
+	
+	@Override
+	public boolean hasPrimitive() {
+		return element.hasPrimitive();
+	}
+	
+	/**
+	 * Gets an array type with the same number of dimensions as this one, but
+	 * a different element type. A wildcard element is replaced by its upper
+	 * bound.
+	 * 
+	 * @param elementType  the element type
+	 * 
+	 * @return this type if the element type is unchanged, otherwise a new
+	 *         array type
+	 */
+	ArrayType withElementType(TypeDescriptor elementType) {
+		if(elementType == element)
+			return this;
+		if(elementType instanceof WildcardType)
+			elementType = ((WildcardType)elementType).getUpperBound();
+		return new ArrayType(elementType, numDims);
+	}
+	
+	/**
+	 * Gets the array class this type erases to, such as
+	 * <code>int[][].class</code> for <code>int[][]</code> or
+	 * <code>List[].class</code> for <code>List&lt;String&gt;[]</code>. The
+	 * class is computed once per instance.
+	 * 
+	 * @return the array class
+	 */
+	public Class<?> getArrayClass() {
+		// Racy single-check; all threads compute the same class
+		Class<?> c = arrayClass;
+		if(c == null)
+			arrayClass = c = Array.newInstance(clazz, new int[numDims]).getClass();
+		return c;
+	}
+	
+	/**
+	 * Gets a descriptor equal to this one whose element type has been
+	 * interned.
+	 * 
+	 * @return this type if its element type was already interned, otherwise
+	 *         a new type with an interned element type
+	 */
+	ArrayType withInternedElementType() {
+		return withElementType(InternPool.intern(element));
+	}
+	
 	@Override
 	public int hashCode() {
-		return clazz.hashCode() + numDims;
+		return hash;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+		if(obj instanceof LazyType)
+			obj = ((LazyType)obj).resolveQuietly();
+		
+		return (obj instanceof ArrayType
+		        && hash == ((ArrayType)obj).hash
+		        && numDims == ((ArrayType)obj).numDims
+		        && element.equals(((ArrayType)obj).element));
 	}
 	
 	@Override
 	public String toString() {
-		if(numDims == 1)
-			return clazz.getName() + "[]";
-
-		final StringBuilder sb = new StringBuilder(clazz.getName());
-		for(int index = 0; index < numDims; ++index)
-			sb.append("[]");
-		return sb.toString();
+		// Racy single-check, as in GenericType
+		String s = name;
+		if(s == null) {
+			final StringBuilder sb = new StringBuilder(element.toString());
+			for(int index = 0; index < numDims; ++index)
+				sb.append("[]");
+			name = s = sb.toString();
+		}
+		return s;
 	}
 
+	/**
+	 * Tests whether or not a given descriptor can be assigned to this descriptor.
+	 * As in Java, arrays are covariant: an array with the same number of
+	 * dimensions is assignable if its element type is assignable to this
+	 * type's element type (primitive element types must match exactly). An
+	 * array with more dimensions is assignable if this type's element type
+	 * is Object, Cloneable or Serializable, since those are the supertypes
+	 * of every array. Array classes described by a {@link SimpleType}, and
+	 * wildcards or type variables whose upper bound is an array, are also
+	 * assignable.
+	 * 
+	 * @param type  the type descriptor
+	 * 
+	 * @return <code>true</code> if the given descriptor can be assigned to
+	 *         this one, <code>false</code> otherwise
+	 */
 	@Override
 	public boolean isAssignableFrom(TypeDescriptor type) {
-		return (type != null
-		        && type instanceof ArrayType
-		        && clazz.isAssignableFrom( ((ArrayType)type).clazz )
-		        && (numDims == ((ArrayType)type).numDims) );
+		type = LazyType.unwrap(type);
+		final TypeMetrics metrics = Metrics.current;
+		if(metrics == null)
+			return assignableFrom(type);
+		
+		final long start = System.nanoTime();
+		final boolean assignable = assignableFrom(type);
+		metrics.recordSuccess(TypeMetrics.Operation.IS_ASSIGNABLE_FROM, System.nanoTime() - start);
+		return assignable;
+	}
+	
+	/**
+	 * Implements {@link #isAssignableFrom(TypeDescriptor)} without recording
+	 * metrics.
+	 */
+	boolean assignableFrom(TypeDescriptor type) {
+		if(type instanceof WildcardType)
+			type = ((WildcardType)type).getUpperBound();
+		if(type instanceof TypeVariableDescriptor)
+			type = ((TypeVariableDescriptor)type).getUpperBound();
+		
+		final ArrayType other;
+		if(type instanceof ArrayType) {
+			other = (ArrayType)type;
+		} else if(type instanceof SimpleType && ((SimpleType)type).getRawClass().isArray()) {
+			other = forClass(((SimpleType)type).getRawClass());
+		} else {
+			return false;
+		}
+		
+		if(other.numDims == numDims)
+			return Metrics.isAssignable(element, other.element);
+		
+		// The other array's elements at our depth are themselves arrays
+		return (other.numDims > numDims && isArraySupertype(element));
+	}
+	
+	/**
+	 * Tests whether or not a descriptor is a supertype of all arrays.
+	 */
+	static boolean isArraySupertype(TypeDescriptor type) {
+		if(!(type instanceof SimpleType))
+			return false;
+		
+		final Class<?> c = ((SimpleType)type).getRawClass();
+		return (c == Object.class || c == Cloneable.class || c == Serializable.class);
 	}
 }
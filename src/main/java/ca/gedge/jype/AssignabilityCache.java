@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache of {@link TypeDescriptor#isAssignableFrom(TypeDescriptor)}
+ * results. Entries are keyed by the identities of the target and source
+ * descriptors, so the cache is most effective with interned descriptors
+ * (see {@link TypeFactory#intern(TypeDescriptor)}).
+ * 
+ * Cached results are read without locking. When full, an entry that has
+ * not been used recently is evicted, using the second-chance (clock)
+ * approximation of least recently used. Descriptors are only weakly
+ * referenced by the cache, so cached entries never keep a descriptor (or
+ * the classes it refers to) alive.
+ */
+public class AssignabilityCache {
+	/** Default maximum number of entries */
+	public static final int DEFAULT_MAXIMUM_SIZE = 4096;
+	
+	/**
+	 * Computes the hash of a (target, source) identity pair.
+	 */
+	private static int hash(TypeDescriptor target, TypeDescriptor source) {
+		return 31*System.identityHashCode(target) + System.identityHashCode(source);
+	}
+	
+	/**
+	 * A cache entry, which is also its own key. The target descriptor is the
+	 * referent of the key itself, while the source descriptor is held by a
+	 * separate weak reference. Either being cleared enqueues the key for
+	 * removal.
+	 */
+	private static final class Key extends WeakReference<TypeDescriptor> {
+		/** The source descriptor */
+		final SourceReference source;
+		
+		/** Identity hash of the pair, computed while both were reachable */
+		final int hash;
+		
+		/** The cached result */
+		final boolean result;
+		
+		/**
+		 * Whether or not this entry has been used since the clock hand last
+		 * passed it. Racy, since a lost update only affects which entry is
+		 * evicted.
+		 */
+		boolean referenced;
+		
+		Key(TypeDescriptor target, TypeDescriptor source, boolean result, ReferenceQueue<TypeDescriptor> queue) {
+			super(target, queue);
+			this.source = new SourceReference(source, this, queue);
+			this.hash = hash(target, source);
+			this.result = result;
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj)
+				return true;
+			
+			// Cleared keys are only equal to themselves
+			final TypeDescriptor target = get();
+			if(target == null)
+				return false;
+			
+			if(obj instanceof Key) {
+				final Key key = (Key)obj;
+				return (target == key.get() && source.get() == key.source.get());
+			} else if(obj instanceof Probe) {
+				final Probe probe = (Probe)obj;
+				return (target == probe.target && source.get() == probe.source);
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * Weak reference to the source descriptor of a key.
+	 */
+	private static final class SourceReference extends WeakReference<TypeDescriptor> {
+		/** The key this reference belongs to */
+		final Key key;
+		
+		SourceReference(TypeDescriptor source, Key key, ReferenceQueue<TypeDescriptor> queue) {
+			super(source, queue);
+			this.key = key;
+		}
+	}
+	
+	/**
+	 * A strongly referencing key used for lookups. Each thread reuses one
+	 * probe, so lookups don't allocate.
+	 */
+	private static final class Probe {
+		TypeDescriptor target;
+		TypeDescriptor source;
+		int hash;
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(obj instanceof Key) {
+				final Key key = (Key)obj;
+				return (target == key.get() && source == key.source.get());
+			}
+			return false;
+		}
+	}
+	
+	/** The probe of each thread */
+	private static final ThreadLocal<Probe> PROBES = ThreadLocal.withInitial(Probe::new);
+	
+	/** Maximum number of entries */
+	private final int maximumSize;
+	
+	/** Cached entries, each mapped to itself */
+	private final ConcurrentHashMap<Object, Key> entries = new ConcurrentHashMap<Object, Key>();
+	
+	/**
+	 * Entries in the order the clock hand visits them, and possibly some
+	 * removed ones, guarded by this queue. Changes to the entries map are
+	 * also made holding this lock.
+	 */
+	private final ArrayDeque<Key> clock = new ArrayDeque<Key>();
+	
+	/** Number of entries, guarded by the clock queue */
+	private int size;
+	
+	/** Queue of keys whose descriptors have been collected */
+	private final ReferenceQueue<TypeDescriptor> queue = new ReferenceQueue<TypeDescriptor>();
+	
+	/** Statistics */
+	private final LongAdder hitCount = new LongAdder(), missCount = new LongAdder(),
+	                        evictionCount = new LongAdder(), totalLoadTime = new LongAdder();
+	
+	/**
+	 * Constructs a cache with the default maximum size.
+	 */
+	public AssignabilityCache() {
+		this(DEFAULT_MAXIMUM_SIZE);
+	}
+	
+	/**
+	 * Constructs a cache holding at most the given number of entries.
+	 * 
+	 * @param maximumSize  the maximum number of entries
+	 * 
+	 * @throws IllegalArgumentException  if maximumSize is non-positive
+	 */
+	public AssignabilityCache(int maximumSize) {
+		if(maximumSize < 1)
+			throw new IllegalArgumentException("Maximum size must be at least 1");
+		this.maximumSize = maximumSize;
+	}
+	
+	/**
+	 * Tests whether or not the source descriptor can be assigned to the
+	 * target descriptor, computing and caching the result if it is not
+	 * already known.
+	 * 
+	 * @param target  the descriptor being assigned to
+	 * @param source  the descriptor being assigned from
+	 * 
+	 * @return <code>target.isAssignableFrom(source)</code>
+	 * 
+	 * @throws NullPointerException  if target is <code>null</code>
+	 */
+	public boolean isAssignableFrom(TypeDescriptor target, TypeDescriptor source) {
+		if(target == null)
+			throw new NullPointerException("Target descriptor cannot be null");
+		
+		// null is never assignable, and isn't worth an entry
+		if(source == null)
+			return false;
+		
+		final Probe probe = PROBES.get();
+		probe.target = target;
+		probe.source = source;
+		probe.hash = hash(target, source);
+		final Key cached = entries.get(probe);
+		probe.target = probe.source = null;
+		
+		if(cached != null) {
+			if(!cached.referenced)
+				cached.referenced = true;
+			hitCount.increment();
+			return cached.result;
+		}
+		
+		// Compute outside the lock. Racing threads may compute the same result,
+		// which is harmless since it is deterministic.
+		final long start = System.nanoTime();
+		final boolean result = target.isAssignableFrom(source);
+		missCount.increment();
+		totalLoadTime.add(System.nanoTime() - start);
+		
+		final Key key = new Key(target, source, result, queue);
+		synchronized(clock) {
+			expungeStaleEntries();
+			// Evict before adding, so the new entry is not the victim
+			if(!entries.containsKey(key)) {
+				while(size >= maximumSize)
+					evict();
+				entries.put(key, key);
+				clock.addLast(key);
+				++size;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Evicts the first entry from the clock queue that has not been used
+	 * since it was last visited, giving used entries a second chance. Must be
+	 * called while holding the lock on the clock queue.
+	 */
+	private void evict() {
+		while(true) {
+			final Key key = clock.pollFirst();
+			if(key.referenced) {
+				key.referenced = false;
+				clock.addLast(key);
+			} else if(entries.remove(key) != null) {
+				--size;
+				evictionCount.increment();
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Removes entries whose descriptors have been garbage collected. Must be
+	 * called while holding the lock on the clock queue.
+	 */
+	private void expungeStaleEntries() {
+		Reference<? extends TypeDescriptor> ref;
+		while((ref = queue.poll()) != null) {
+			final Key key = (ref instanceof SourceReference ? ((SourceReference)ref).key : (Key)ref);
+			
+			// Both references of a key may be enqueued
+			if(entries.remove(key) != null)
+				--size;
+		}
+		
+		// Removed keys are skipped by the clock hand, but are dropped here if
+		// they pile up faster than the hand moves
+		if(clock.size() > 2*size + 16)
+			clock.removeIf(key -> entries.get(key) != key);
+	}
+	
+	/**
+	 * @return the maximum number of entries this cache will hold
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+	
+	/**
+	 * @return the number of entries currently in the cache
+	 */
+	public int size() {
+		synchronized(clock) {
+			expungeStaleEntries();
+			return size;
+		}
+	}
+	
+	/**
+	 * Removes all entries from the cache. Statistics are not reset.
+	 */
+	public void clear() {
+		synchronized(clock) {
+			entries.clear();
+			clock.clear();
+			size = 0;
+			while(queue.poll() != null)
+				;
+		}
+	}
+	
+	/**
+	 * Gets a snapshot of this cache's statistics. Counters are read one at a
+	 * time, so the snapshot may not reflect a single instant under
+	 * concurrent use.
+	 * 
+	 * @return the cache statistics
+	 */
+	public CacheStatistics getStatistics() {
+		return new CacheStatistics(hitCount.sum(), missCount.sum(), evictionCount.sum(), totalLoadTime.sum());
+	}
+}
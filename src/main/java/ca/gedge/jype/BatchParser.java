@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Parses large batches of type strings. Each distinct string is parsed only
+ * once, class names are resolved through a single shared
+ * {@link ClassResolver}, and the work is spread over a given
+ * {@link ExecutorService}, or otherwise over the common
+ * {@link ForkJoinPool}. A failure to parse one string is reported in its
+ * {@link ParseResult} rather than aborting the batch.
+ */
+public class BatchParser {
+	/** Minimum number of distinct strings handed to each task */
+	private static final int MIN_CHUNK_SIZE = 64;
+	
+	/** Number of tasks to create per available processor */
+	private static final int TASKS_PER_PROCESSOR = 4;
+	
+	/** Resolver for class names */
+	private final ClassResolver resolver;
+	
+	/** Executor to parse on, or <code>null</code> to parse on the common pool */
+	private final ExecutorService executor;
+	
+	/**
+	 * Splits a range of distinct type strings in half until it is small
+	 * enough to parse directly.
+	 */
+	private final class ParseTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		final List<String> distinct;
+		final TypeDescriptor [] types;
+		final Throwable [] errors;
+		final int from, to, chunkSize;
+		
+		ParseTask(List<String> distinct, TypeDescriptor [] types, Throwable [] errors, int from, int to, int chunkSize) {
+			this.distinct = distinct;
+			this.types = types;
+			this.errors = errors;
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to - from <= chunkSize) {
+				parseRange(distinct, from, to, types, errors);
+			} else {
+				final int mid = (from + to) >>> 1;
+				invokeAll(new ParseTask(distinct, types, errors, from, mid, chunkSize),
+				          new ParseTask(distinct, types, errors, mid, to, chunkSize));
+			}
+		}
+	}
+	
+	/**
+	 * Constructs a batch parser that parses on the common
+	 * {@link ForkJoinPool}, resolving class names in the same way as
+	 * {@link TypeFactory#parse(String)}.
+	 */
+	public BatchParser() {
+		this(TypeFactory.getDefaultClassResolver(), null);
+	}
+	
+	/**
+	 * Constructs a batch parser.
+	 * 
+	 * @param resolver  the resolver for class names, which must be thread-safe
+	 * @param executor  the executor to parse on, or <code>null</code> to parse
+	 *                  on the common {@link ForkJoinPool}
+	 * 
+	 * @throws NullPointerException  if the resolver is <code>null</code>
+	 */
+	public BatchParser(ClassResolver resolver, ExecutorService executor) {
+		if(resolver == null)
+			throw new NullPointerException("Class resolver cannot be null");
+		
+		this.resolver = resolver;
+		this.executor = executor;
+	}
+	
+	/**
+	 * Parses a collection of type strings.
+	 * 
+	 * @param typeStrings  the type strings to parse
+	 * 
+	 * @return a result for each type string, in iteration order
+	 * 
+	 * @throws InterruptedException  if interrupted while waiting for the executor
+	 * @throws NullPointerException  if any type string is <code>null</code>
+	 */
+	public List<ParseResult> parseAll(Collection<String> typeStrings) throws InterruptedException {
+		final List<String> list = new ArrayList<String>(typeStrings);
+		return parseAll(list, identityIndices(list.size()));
+	}
+	
+	/**
+	 * Parses a stream of type strings. The stream is consumed.
+	 * 
+	 * @param typeStrings  the type strings to parse
+	 * 
+	 * @return a result for each type string, in encounter order
+	 * 
+	 * @throws InterruptedException  if interrupted while waiting for the executor
+	 * @throws NullPointerException  if any type string is <code>null</code>
+	 */
+	public List<ParseResult> parseAll(Stream<String> typeStrings) throws InterruptedException {
+		final List<String> list = typeStrings.collect(Collectors.toList());
+		return parseAll(list, identityIndices(list.size()));
+	}
+	
+	/**
+	 * @return the indices from zero up to (but excluding) the given count
+	 */
+	private static int [] identityIndices(int count) {
+		final int [] indices = new int[count];
+		for(int index = 0; index < count; ++index)
+			indices[index] = index;
+		return indices;
+	}
+	
+	/**
+	 * Parses newline-separated type strings. Leading and trailing whitespace
+	 * on each line is ignored, and blank lines are skipped. The reader is not
+	 * closed.
+	 * 
+	 * @param reader  the reader to read type strings from
+	 * 
+	 * @return a result for each non-blank line, in order, indexed by line
+	 *         number (starting from zero)
+	 * 
+	 * @throws IOException  if reading fails
+	 * @throws InterruptedException  if interrupted while waiting for the executor
+	 */
+	public List<ParseResult> parseAll(Reader reader) throws IOException, InterruptedException {
+		final BufferedReader lines = (reader instanceof BufferedReader ? (BufferedReader)reader : new BufferedReader(reader));
+		final List<String> typeStrings = new ArrayList<String>();
+		int [] indices = new int[64];
+		
+		String line;
+		for(int lineNumber = 0; (line = lines.readLine()) != null; ++lineNumber) {
+			line = line.trim();
+			if(line.length() == 0)
+				continue;
+			
+			if(typeStrings.size() == indices.length)
+				indices = Arrays.copyOf(indices, indices.length * 2);
+			indices[typeStrings.size()] = lineNumber;
+			typeStrings.add(line);
+		}
+		return parseAll(typeStrings, indices);
+	}
+	
+	/**
+	 * Parses type strings, deduplicating them first.
+	 * 
+	 * @param typeStrings  the type strings to parse
+	 * @param indices  the index to report for each type string
+	 */
+	private List<ParseResult> parseAll(List<String> typeStrings, int [] indices) throws InterruptedException {
+		// Assign each distinct string a slot
+		final Map<String, Integer> slots = new HashMap<String, Integer>();
+		final List<String> distinct = new ArrayList<String>();
+		final int [] slotOf = new int[typeStrings.size()];
+		for(int index = 0; index < slotOf.length; ++index) {
+			final String typeString = typeStrings.get(index);
+			if(typeString == null)
+				throw new NullPointerException("Type string cannot be null");
+			
+			Integer slot = slots.get(typeString);
+			if(slot == null) {
+				slot = Integer.valueOf(distinct.size());
+				slots.put(typeString, slot);
+				distinct.add(typeString);
+			}
+			slotOf[index] = slot.intValue();
+		}
+		
+		final TypeDescriptor [] types = new TypeDescriptor[distinct.size()];
+		final Throwable [] errors = new Throwable[distinct.size()];
+		parseDistinct(distinct, types, errors);
+		
+		final List<ParseResult> results = new ArrayList<ParseResult>(slotOf.length);
+		for(int index = 0; index < slotOf.length; ++index) {
+			final int slot = slotOf[index];
+			results.add(new ParseResult(indices[index], distinct.get(slot), types[slot], errors[slot]));
+		}
+		return results;
+	}
+	
+	/**
+	 * Parses distinct type strings, in chunks spread over the executor, or
+	 * over the common pool if there is no executor.
+	 */
+	private void parseDistinct(final List<String> distinct, final TypeDescriptor [] types, final Throwable [] errors) throws InterruptedException {
+		final int numTasks = Math.min(
+			Runtime.getRuntime().availableProcessors() * TASKS_PER_PROCESSOR,
+			(distinct.size() + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE
+		);
+		
+		if(numTasks <= 1) {
+			parseRange(distinct, 0, distinct.size(), types, errors);
+			return;
+		}
+		
+		final int chunkSize = (distinct.size() + numTasks - 1) / numTasks;
+		if(executor == null) {
+			// Parse failures are caught per item, so only an Error can escape
+			ForkJoinPool.commonPool().invoke(new ParseTask(distinct, types, errors, 0, distinct.size(), chunkSize));
+			return;
+		}
+		
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(numTasks);
+		for(int start = 0; start < distinct.size(); start += chunkSize) {
+			final int from = start;
+			final int to = Math.min(start + chunkSize, distinct.size());
+			tasks.add(() -> {
+				parseRange(distinct, from, to, types, errors);
+				return null;
+			});
+		}
+		
+		// Parse failures are caught per item, so a failed task is a bug or an
+		// Error, which we propagate
+		for(Future<Void> future : executor.invokeAll(tasks)) {
+			try {
+				future.get();
+			} catch(ExecutionException exc) {
+				final Throwable cause = exc.getCause();
+				if(cause instanceof Error)
+					throw (Error)cause;
+				throw new IllegalStateException("Batch parsing task failed", cause);
+			}
+		}
+	}
+	
+	/**
+	 * Parses a range of distinct type strings.
+	 */
+	private void parseRange(List<String> distinct, int from, int to, TypeDescriptor [] types, Throwable [] errors) {
+		for(int index = from; index < to; ++index) {
+			try {
+				types[index] = TypeFactory.parse(distinct.get(index), resolver);
+			} catch(Exception exc) {
+				errors[index] = exc;
+			} catch(LinkageError err) {
+				// Loading or initializing a class failed
+				errors[index] = err;
+			}
+		}
+	}
+}
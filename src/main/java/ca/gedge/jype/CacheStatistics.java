@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+/**
+ * An immutable snapshot of the statistics for one of Jype's caches.
+ */
+public final class CacheStatistics {
+	/** Number of lookups answered from the cache */
+	private final long hitCount;
+	
+	/** Number of lookups that had to compute their result */
+	private final long missCount;
+	
+	/** Number of entries removed to keep the cache within its bounds */
+	private final long evictionCount;
+	
+	/** Total time spent computing results on misses, in nanoseconds */
+	private final long totalLoadTime;
+	
+	/**
+	 * Constructs a statistics snapshot.
+	 * 
+	 * @param hitCount  number of lookups answered from the cache
+	 * @param missCount  number of lookups that had to compute their result
+	 * @param evictionCount  number of entries evicted
+	 * @param totalLoadTime  total time spent computing results, in nanoseconds
+	 */
+	public CacheStatistics(long hitCount, long missCount, long evictionCount, long totalLoadTime) {
+		this.hitCount = hitCount;
+		this.missCount = missCount;
+		this.evictionCount = evictionCount;
+		this.totalLoadTime = totalLoadTime;
+	}
+	
+	/**
+	 * @return the number of lookups answered from the cache
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+	
+	/**
+	 * @return the number of lookups that had to compute their result
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+	
+	/**
+	 * @return the total number of lookups
+	 */
+	public long getRequestCount() {
+		return hitCount + missCount;
+	}
+	
+	/**
+	 * @return the fraction of lookups answered from the cache, or 1 if there
+	 *         have been no lookups
+	 */
+	public double getHitRate() {
+		final long requests = getRequestCount();
+		return (requests == 0 ? 1.0 : (double)hitCount / requests);
+	}
+	
+	/**
+	 * @return the number of entries evicted to keep the cache within its bounds
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+	
+	/**
+	 * @return the total time spent computing results on misses, in nanoseconds
+	 */
+	public long getTotalLoadTime() {
+		return totalLoadTime;
+	}
+	
+	/**
+	 * @return the average time spent computing a result on a miss, in
+	 *         nanoseconds, or 0 if there have been no misses
+	 */
+	public double getAverageLoadPenalty() {
+		return (missCount == 0 ? 0.0 : (double)totalLoadTime / missCount);
+	}
+	
+	@Override
+	public String toString() {
+		return "CacheStatistics[hits=" + hitCount
+		       + ",misses=" + missCount
+		       + ",evictions=" + evictionCount
+		       + ",loadTime=" + totalLoadTime + "ns]";
+	}
+}
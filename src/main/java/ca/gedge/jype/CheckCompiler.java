@@ -0,0 +1,404 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import static ca.gedge.jype.ClassFileWriter.*;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ca.gedge.jype.ClassFileWriter.Code;
+import ca.gedge.jype.ClassFileWriter.Label;
+import ca.gedge.jype.InstanceChecker.ArrayCheck;
+import ca.gedge.jype.InstanceChecker.Check;
+import ca.gedge.jype.InstanceChecker.ClassCheck;
+import ca.gedge.jype.InstanceChecker.Generated;
+import ca.gedge.jype.InstanceChecker.IterableCheck;
+import ca.gedge.jype.InstanceChecker.MapCheck;
+
+/**
+ * Generates bytecode for a tree of {@link InstanceChecker} checks. The
+ * generated class extends {@link Generated}, and its check method inlines
+ * the whole tree: class checks become <code>instanceof</code> instructions
+ * and container checks become nested loops.
+ * 
+ * When Jype's class loader resolves every class referenced by the checks
+ * to the class in the tree, the generated class is defined as a hidden
+ * class alongside Jype's, so it can be unloaded as soon as its check is
+ * unreachable. Otherwise it is defined by its own class loader, which
+ * resolves the referenced classes to exactly the classes in the tree,
+ * whichever loaders defined them. The generated constructor resolves every
+ * referenced class, so a class that the generated code cannot access makes
+ * construction fail rather than a later check.
+ * 
+ * Only instance checks are generated. Checking one descriptor against
+ * another already takes about as long as an {@link AssignabilityCache}
+ * lookup, since interned descriptors let most comparisons stop at an
+ * identity check, so generated assignability checks would gain little over
+ * the cache.
+ */
+final class CheckCompiler {
+	/** Internal name of the generated classes' superclass */
+	private static final String SUPER_NAME = Generated.class.getName().replace('.', '/');
+	
+	/** Internal name prefix of generated classes */
+	private static final String NAME_PREFIX = "ca/gedge/jype/GeneratedCheck$";
+	
+	/** Counter for naming generated classes */
+	private static final AtomicInteger COUNTER = new AtomicInteger();
+	
+	/**
+	 * A class loader for a single generated class.
+	 */
+	private static final class Loader extends ClassLoader {
+		/** Classes referenced by the generated class, by name */
+		private final Map<String, Class<?>> classes;
+		
+		Loader(Map<String, Class<?>> classes) {
+			super(CheckCompiler.class.getClassLoader());
+			this.classes = classes;
+		}
+		
+		@Override
+		protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			final Class<?> clazz = classes.get(name);
+			return (clazz != null ? clazz : super.loadClass(name, resolve));
+		}
+		
+		Class<?> define(String name, byte [] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+	
+	/** The class being written */
+	private final ClassFileWriter writer;
+	
+	/** Code of the check method */
+	private final Code code;
+	
+	/** Classes referenced by the checks, by name */
+	private final Map<String, Class<?>> classes = new HashMap<String, Class<?>>();
+	
+	/** Internal names of the classes referenced by the checks */
+	private final List<String> classNames = new ArrayList<String>();
+	
+	/** Index of the next unused local variable */
+	private int nextLocal = 2;
+	
+	private CheckCompiler(String name) {
+		this.writer = new ClassFileWriter(name, SUPER_NAME);
+		this.code = writer.method(ACC_PUBLIC, "check", "(Ljava/lang/Object;)Z");
+		classes.put(Generated.class.getName(), Generated.class);
+	}
+	
+	/**
+	 * Generates a check.
+	 * 
+	 * @param root  the root of the tree of checks
+	 * 
+	 * @return the generated check
+	 * 
+	 * @throws IllegalArgumentException  if the tree is too large, or refers
+	 *                                   to distinct classes with the same name
+	 * @throws LinkageError  if the generated class cannot be loaded, or
+	 *                       refers to classes it cannot access
+	 * @throws SecurityException  if class loaders cannot be created
+	 */
+	static Generated compile(Check root) {
+		final String name = NAME_PREFIX + COUNTER.incrementAndGet();
+		final CheckCompiler compiler = new CheckCompiler(name);
+		final byte [] bytes = compiler.generate(root);
+		
+		try {
+			final Class<?> clazz;
+			if(compiler.isVisible())
+				clazz = MethodHandles.lookup().defineHiddenClass(bytes, true).lookupClass();
+			else
+				clazz = new Loader(compiler.classes).define(name.replace('/', '.'), bytes);
+			return (Generated)clazz.getConstructor().newInstance();
+		} catch(InvocationTargetException exc) {
+			// The constructor only fails to resolve a referenced class
+			if(exc.getCause() instanceof Error)
+				throw (Error)exc.getCause();
+			throw new IllegalStateException(exc.getCause());
+		} catch(ReflectiveOperationException exc) {
+			throw new IllegalStateException(exc);
+		}
+	}
+	
+	/**
+	 * Tests whether or not Jype's class loader resolves every class
+	 * referenced by the checks to the class in the tree.
+	 */
+	private boolean isVisible() {
+		final ClassLoader loader = CheckCompiler.class.getClassLoader();
+		for(Class<?> clazz : classes.values()) {
+			try {
+				if(Class.forName(clazz.getName(), false, loader) != clazz)
+					return false;
+			} catch(ClassNotFoundException exc) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Generates the class for a tree of checks.
+	 */
+	private byte [] generate(Check root) {
+		// boolean check(Object obj) { <checks>; return true; fail: return false; }
+		final Label fail = new Label();
+		emit(root, 1, fail);
+		code.op(ICONST_1);
+		code.op(IRETURN);
+		code.mark(fail);
+		code.op(ICONST_0);
+		code.op(IRETURN);
+		code.finish(4, nextLocal);
+		
+		// The constructor resolves the referenced classes up front
+		final Code init = writer.method(ACC_PUBLIC, "<init>", "()V");
+		init.local(ALOAD, 0);
+		init.invoke(INVOKESPECIAL, SUPER_NAME, "<init>", "()V");
+		for(String className : classNames) {
+			init.ldc(className);
+			init.op(POP);
+		}
+		init.op(RETURN);
+		init.finish(1, 1);
+		
+		return writer.toByteArray();
+	}
+	
+	/**
+	 * Emits the code for a check, jumping to a label if it fails and falling
+	 * through otherwise.
+	 * 
+	 * @param check  the check
+	 * @param local  the local variable holding the object to check
+	 * @param fail  the label to jump to on failure
+	 */
+	private void emit(Check check, int local, Label fail) {
+		if(check == InstanceChecker.ANY)
+			return;
+		
+		final Label done = new Label();
+		if(check instanceof ClassCheck) {
+			final ClassCheck classCheck = (ClassCheck)check;
+			code.local(ALOAD, local);
+			code.jump(IFNULL, classCheck.nullable ? done : fail);
+			emitInstanceOf(classCheck.clazz, local, fail);
+		} else if(check instanceof IterableCheck) {
+			final IterableCheck iterableCheck = (IterableCheck)check;
+			code.local(ALOAD, local);
+			code.jump(IFNULL, done);
+			emitInstanceOf(iterableCheck.clazz, local, fail);
+			
+			// Index random access lists rather than allocating an iterator
+			final Label iterate = new Label();
+			code.local(ALOAD, local);
+			code.type(INSTANCEOF, "java/util/RandomAccess");
+			code.jump(IFEQ, iterate);
+			code.local(ALOAD, local);
+			code.type(INSTANCEOF, "java/util/List");
+			code.jump(IFEQ, iterate);
+			
+			final int list = newLocal();
+			final int index = newLocal();
+			final int element = newLocal();
+			code.local(ALOAD, local);
+			code.type(CHECKCAST, "java/util/List");
+			code.local(ASTORE, list);
+			code.local(ALOAD, list);
+			code.invokeInterface("java/util/List", "size", "()I", 0);
+			final Label indexLoop = emitIndexLoop(index, iterableCheck.limit, done);
+			code.local(ALOAD, list);
+			code.local(ILOAD, index);
+			code.invokeInterface("java/util/List", "get", "(I)Ljava/lang/Object;", 1);
+			code.local(ASTORE, element);
+			emit(iterableCheck.element, element, fail);
+			code.iinc(index, 1);
+			code.jump(GOTO, indexLoop);
+			
+			code.mark(iterate);
+			final int iter = newLocal();
+			code.local(ALOAD, local);
+			code.type(CHECKCAST, "java/lang/Iterable");
+			code.invokeInterface("java/lang/Iterable", "iterator", "()Ljava/util/Iterator;", 0);
+			code.local(ASTORE, iter);
+			final Label loop = emitIteratorLoop(iter, iterableCheck.limit, done);
+			code.local(ASTORE, element);
+			emit(iterableCheck.element, element, fail);
+			code.jump(GOTO, loop);
+		} else if(check instanceof MapCheck) {
+			final MapCheck mapCheck = (MapCheck)check;
+			code.local(ALOAD, local);
+			code.jump(IFNULL, done);
+			emitInstanceOf(mapCheck.clazz, local, fail);
+			
+			final int iter = newLocal();
+			final int entry = newLocal();
+			final int key = newLocal();
+			final int value = newLocal();
+			code.local(ALOAD, local);
+			code.type(CHECKCAST, "java/util/Map");
+			code.invokeInterface("java/util/Map", "entrySet", "()Ljava/util/Set;", 0);
+			code.invokeInterface("java/util/Set", "iterator", "()Ljava/util/Iterator;", 0);
+			code.local(ASTORE, iter);
+			final Label loop = emitIteratorLoop(iter, mapCheck.limit, done);
+			code.type(CHECKCAST, "java/util/Map$Entry");
+			code.local(ASTORE, entry);
+			code.local(ALOAD, entry);
+			code.invokeInterface("java/util/Map$Entry", "getKey", "()Ljava/lang/Object;", 0);
+			code.local(ASTORE, key);
+			emit(mapCheck.key, key, fail);
+			code.local(ALOAD, entry);
+			code.invokeInterface("java/util/Map$Entry", "getValue", "()Ljava/lang/Object;", 0);
+			code.local(ASTORE, value);
+			emit(mapCheck.value, value, fail);
+			code.jump(GOTO, loop);
+		} else if(check instanceof ArrayCheck) {
+			final ArrayCheck arrayCheck = (ArrayCheck)check;
+			code.local(ALOAD, local);
+			code.jump(IFNULL, done);
+			emitInstanceOf(arrayCheck.clazz, local, fail);
+			
+			final int array = newLocal();
+			final int index = newLocal();
+			final int component = newLocal();
+			code.local(ALOAD, local);
+			code.type(CHECKCAST, "[Ljava/lang/Object;");
+			code.local(ASTORE, array);
+			code.local(ALOAD, array);
+			code.op(ARRAYLENGTH);
+			final Label loop = emitIndexLoop(index, arrayCheck.limit, done);
+			code.local(ALOAD, array);
+			code.local(ILOAD, index);
+			code.op(AALOAD);
+			code.local(ASTORE, component);
+			emit(arrayCheck.component, component, fail);
+			code.iinc(index, 1);
+			code.jump(GOTO, loop);
+		} else {
+			throw new IllegalArgumentException("Cannot generate check: " + check.getClass().getName());
+		}
+		code.mark(done);
+	}
+	
+	/**
+	 * Emits the start of a loop over indices up to the length on top of the
+	 * stack, capped at a limit. The loop body must end by incrementing the
+	 * index and jumping back to the returned label.
+	 */
+	private Label emitIndexLoop(int index, int limit, Label done) {
+		final int length = newLocal();
+		code.local(ISTORE, length);
+		if(limit != Integer.MAX_VALUE) {
+			final Label capped = new Label();
+			code.local(ILOAD, length);
+			code.ldc(limit);
+			code.jump(IF_ICMPLE, capped);
+			code.ldc(limit);
+			code.local(ISTORE, length);
+			code.mark(capped);
+		}
+		code.op(ICONST_0);
+		code.local(ISTORE, index);
+		
+		final Label loop = new Label();
+		code.mark(loop);
+		code.local(ILOAD, index);
+		code.local(ILOAD, length);
+		code.jump(IF_ICMPGE, done);
+		return loop;
+	}
+	
+	/**
+	 * Emits the start of a loop over an iterator, capped at a limit. The
+	 * loop body starts with the next element on top of the stack, and must
+	 * end by jumping back to the returned label.
+	 */
+	private Label emitIteratorLoop(int iter, int limit, Label done) {
+		final int count = (limit != Integer.MAX_VALUE ? newLocal() : -1);
+		if(count >= 0) {
+			code.ldc(limit);
+			code.local(ISTORE, count);
+		}
+		
+		final Label loop = new Label();
+		code.mark(loop);
+		if(count >= 0) {
+			code.local(ILOAD, count);
+			code.jump(IFLE, done);
+			code.iinc(count, -1);
+		}
+		code.local(ALOAD, iter);
+		code.invokeInterface("java/util/Iterator", "hasNext", "()Z", 0);
+		code.jump(IFEQ, done);
+		code.local(ALOAD, iter);
+		code.invokeInterface("java/util/Iterator", "next", "()Ljava/lang/Object;", 0);
+		return loop;
+	}
+	
+	/**
+	 * Emits a class check of a non-<code>null</code> object.
+	 */
+	private void emitInstanceOf(Class<?> clazz, int local, Label fail) {
+		code.local(ALOAD, local);
+		code.type(INSTANCEOF, reference(clazz));
+		code.jump(IFEQ, fail);
+	}
+	
+	/**
+	 * Records a class referenced by the generated code.
+	 * 
+	 * @return the internal name of the class
+	 */
+	private String reference(Class<?> clazz) {
+		Class<?> base = clazz;
+		while(base.isArray())
+			base = base.getComponentType();
+		
+		final String internalName = clazz.getName().replace('.', '/');
+		if(!base.isPrimitive()) {
+			final Class<?> previous = classes.put(base.getName(), base);
+			if(previous == null)
+				classNames.add(internalName);
+			else if(previous != base)
+				throw new IllegalArgumentException("Distinct classes with the same name: " + base.getName());
+		}
+		return internalName;
+	}
+	
+	/**
+	 * @return a new local variable
+	 */
+	private int newLocal() {
+		return nextLocal++;
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.lang.ref.SoftReference;
+
+/**
+ * Lazily computed values associated with classes, backed by a
+ * {@link ClassValue}, so lookups take no locks.
+ * 
+ * Values are softly referenced, since a value for one class commonly
+ * refers to others: a value stored for a system class must not keep an
+ * application's classes, and so its class loader, alive forever. A class
+ * loader can therefore be unloaded once the values referring to its
+ * classes are cleared, at the latest when memory runs low; a cleared value
+ * is simply recomputed on next use.
+ * 
+ * @param <V>  the type of value
+ */
+abstract class ClassCache<V> {
+	/** Computed values */
+	private final ClassValue<SoftReference<V>> values = new ClassValue<SoftReference<V>>() {
+		@Override
+		protected SoftReference<V> computeValue(Class<?> clazz) {
+			return new SoftReference<V>(ClassCache.this.computeValue(clazz));
+		}
+	};
+	
+	/**
+	 * Computes the value for a class. This may be called more than once for
+	 * the same class when threads race, but only one result is ever returned
+	 * from {@link #get(Class)}.
+	 * 
+	 * @param clazz  the class
+	 * 
+	 * @return the value for the given class
+	 */
+	protected abstract V computeValue(Class<?> clazz);
+	
+	/**
+	 * Gets the value for a class, computing it if necessary.
+	 * 
+	 * @param clazz  the class
+	 * 
+	 * @return the value for the given class
+	 */
+	V get(Class<?> clazz) {
+		while(true) {
+			final V value = values.get(clazz).get();
+			if(value != null)
+				return value;
+			
+			// Cleared; discard the reference so that it is recomputed
+			values.remove(clazz);
+		}
+	}
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal writer for class files, sufficient for the classes
+ * generated by {@link CheckCompiler}: public final classes without fields
+ * or interfaces. Classes are written in version 49 (Java 5) format, so
+ * methods need no stack map frames.
+ */
+final class ClassFileWriter {
+	// Opcodes used by generated code
+	static final int ICONST_0 = 0x03;
+	static final int ICONST_1 = 0x04;
+	static final int LDC_W = 0x13;
+	static final int ILOAD = 0x15;
+	static final int ALOAD = 0x19;
+	static final int AALOAD = 0x32;
+	static final int POP = 0x57;
+	static final int ISTORE = 0x36;
+	static final int ASTORE = 0x3A;
+	static final int IINC = 0x84;
+	static final int IFEQ = 0x99;
+	static final int IFLE = 0x9E;
+	static final int IF_ICMPGE = 0xA2;
+	static final int IF_ICMPLE = 0xA4;
+	static final int GOTO = 0xA7;
+	static final int IRETURN = 0xAC;
+	static final int RETURN = 0xB1;
+	static final int INVOKESPECIAL = 0xB7;
+	static final int INVOKEINTERFACE = 0xB9;
+	static final int ARRAYLENGTH = 0xBE;
+	static final int CHECKCAST = 0xC0;
+	static final int INSTANCEOF = 0xC1;
+	static final int IFNULL = 0xC6;
+	
+	// Access flags
+	static final int ACC_PUBLIC = 0x0001;
+	static final int ACC_FINAL = 0x0010;
+	static final int ACC_SUPER = 0x0020;
+	
+	// Constant pool tags
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_INTERFACE_METHODREF = 11;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+	
+	/** Maximum length of a method's code */
+	private static final int MAX_CODE_LENGTH = 65535;
+	
+	/**
+	 * A position in a method's code, which may be jumped to before it is
+	 * marked.
+	 */
+	static final class Label {
+		/** Position in the code, or -1 if not yet marked */
+		int position = -1;
+		
+		/** Positions of the jump instructions and their offsets that refer to this label */
+		final List<int[]> references = new ArrayList<int[]>();
+	}
+	
+	/**
+	 * Code for a single method.
+	 */
+	final class Code {
+		private final int access;
+		private final int nameIndex;
+		private final int descIndex;
+		private byte [] code = new byte[64];
+		private int length;
+		
+		Code(int access, String name, String desc) {
+			this.access = access;
+			this.nameIndex = utf8(name);
+			this.descIndex = utf8(desc);
+		}
+		
+		private void put(int b) {
+			if(length == code.length) {
+				final byte [] grown = new byte[code.length * 2];
+				System.arraycopy(code, 0, grown, 0, length);
+				code = grown;
+			}
+			code[length++] = (byte)b;
+		}
+		
+		private void put2(int value) {
+			put(value >>> 8);
+			put(value);
+		}
+		
+		/** Emits an instruction without operands. */
+		void op(int opcode) {
+			put(opcode);
+		}
+		
+		/** Emits a load or store of a local variable. */
+		void local(int opcode, int index) {
+			if(index > 255)
+				throw new IllegalArgumentException("Too many local variables");
+			put(opcode);
+			put(index);
+		}
+		
+		/** Emits an increment of an int local variable. */
+		void iinc(int index, int delta) {
+			if(index > 255 || delta < -128 || delta > 127)
+				throw new IllegalArgumentException("Increment out of range");
+			put(IINC);
+			put(index);
+			put(delta);
+		}
+		
+		/** Emits a load of an int constant. */
+		void ldc(int value) {
+			put(LDC_W);
+			put2(integer(value));
+		}
+		
+		/** Emits a load of a class constant. */
+		void ldc(String internalName) {
+			put(LDC_W);
+			put2(classRef(internalName));
+		}
+		
+		/** Emits an instruction referring to a class. */
+		void type(int opcode, String internalName) {
+			put(opcode);
+			put2(classRef(internalName));
+		}
+		
+		/** Emits an invocation of a class' method. */
+		void invoke(int opcode, String owner, String name, String desc) {
+			put(opcode);
+			put2(memberRef(CONSTANT_METHODREF, owner, name, desc));
+		}
+		
+		/** Emits an invocation of an interface method. */
+		void invokeInterface(String owner, String name, String desc, int numArgs) {
+			put(INVOKEINTERFACE);
+			put2(memberRef(CONSTANT_INTERFACE_METHODREF, owner, name, desc));
+			put(numArgs + 1);
+			put(0);
+		}
+		
+		/** Emits a jump to a label. */
+		void jump(int opcode, Label label) {
+			final int position = length;
+			put(opcode);
+			if(label.position >= 0) {
+				put2(label.position - position);
+			} else {
+				label.references.add(new int[] { position, length });
+				put2(0);
+			}
+		}
+		
+		/** Marks the current position with a label. */
+		void mark(Label label) {
+			label.position = length;
+			for(int [] reference : label.references) {
+				final int offset = length - reference[0];
+				code[reference[1]] = (byte)(offset >>> 8);
+				code[reference[1] + 1] = (byte)offset;
+			}
+			label.references.clear();
+		}
+		
+		/**
+		 * Finishes the method, adding it to the class.
+		 * 
+		 * @throws IllegalArgumentException  if the code is too large
+		 */
+		void finish(int maxStack, int maxLocals) {
+			// Offsets are signed 16-bit, so keep well clear of the limit
+			if(length > MAX_CODE_LENGTH / 2)
+				throw new IllegalArgumentException("Method too large");
+			
+			try {
+				methods.writeShort(access);
+				methods.writeShort(nameIndex);
+				methods.writeShort(descIndex);
+				methods.writeShort(1); // attributes
+				methods.writeShort(utf8("Code"));
+				methods.writeInt(12 + length);
+				methods.writeShort(maxStack);
+				methods.writeShort(maxLocals);
+				methods.writeInt(length);
+				methods.write(code, 0, length);
+				methods.writeShort(0); // exception table
+				methods.writeShort(0); // attributes
+			} catch(IOException exc) {
+				throw new IllegalStateException(exc);
+			}
+			++numMethods;
+		}
+	}
+	
+	/** Indices of constants already in the pool */
+	private final Map<String, Integer> constants = new HashMap<String, Integer>();
+	
+	/** The constant pool */
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream pool = new DataOutputStream(poolBytes);
+	private int poolCount = 1;
+	
+	/** Methods */
+	private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+	private final DataOutputStream methods = new DataOutputStream(methodBytes);
+	private int numMethods;
+	
+	/** Index of this class and its superclass */
+	private final int thisIndex;
+	private final int superIndex;
+	
+	/**
+	 * Constructs a writer for a class.
+	 * 
+	 * @param name  the internal name of the class
+	 * @param superName  the internal name of the superclass
+	 */
+	ClassFileWriter(String name, String superName) {
+		this.thisIndex = classRef(name);
+		this.superIndex = classRef(superName);
+	}
+	
+	/**
+	 * Starts a method. The method is added when its code is finished.
+	 */
+	Code method(int access, String name, String desc) {
+		return new Code(access, name, desc);
+	}
+	
+	/**
+	 * @return the class file
+	 */
+	byte [] toByteArray() {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);  // minor version
+			out.writeShort(49); // major version
+			out.writeShort(poolCount);
+			poolBytes.writeTo(out);
+			out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+			out.writeShort(thisIndex);
+			out.writeShort(superIndex);
+			out.writeShort(0); // interfaces
+			out.writeShort(0); // fields
+			out.writeShort(numMethods);
+			methodBytes.writeTo(out);
+			out.writeShort(0); // attributes
+		} catch(IOException exc) {
+			throw new IllegalStateException(exc);
+		}
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Gets the pool index of a UTF-8 constant, adding it if necessary.
+	 */
+	int utf8(String value) {
+		final String key = "U" + value;
+		Integer index = constants.get(key);
+		if(index == null) {
+			try {
+				pool.writeByte(CONSTANT_UTF8);
+				pool.writeUTF(value);
+			} catch(IOException exc) {
+				throw new IllegalStateException(exc);
+			}
+			index = add(key);
+		}
+		return index.intValue();
+	}
+	
+	/**
+	 * Gets the pool index of an integer constant, adding it if necessary.
+	 */
+	int integer(int value) {
+		final String key = "I" + value;
+		Integer index = constants.get(key);
+		if(index == null) {
+			try {
+				pool.writeByte(CONSTANT_INTEGER);
+				pool.writeInt(value);
+			} catch(IOException exc) {
+				throw new IllegalStateException(exc);
+			}
+			index = add(key);
+		}
+		return index.intValue();
+	}
+	
+	/**
+	 * Gets the pool index of a class constant, adding it if necessary.
+	 */
+	int classRef(String internalName) {
+		final String key = "C" + internalName;
+		Integer index = constants.get(key);
+		if(index == null) {
+			final int name = utf8(internalName);
+			try {
+				pool.writeByte(CONSTANT_CLASS);
+				pool.writeShort(name);
+			} catch(IOException exc) {
+				throw new IllegalStateException(exc);
+			}
+			index = add(key);
+		}
+		return index.intValue();
+	}
+	
+	/**
+	 * Gets the pool index of a field or method reference, adding it if
+	 * necessary.
+	 */
+	private int memberRef(int tag, String owner, String name, String desc) {
+		final String key = tag + owner + "." + name + ":" + desc;
+		Integer index = constants.get(key);
+		if(index == null) {
+			final int ownerIndex = classRef(owner);
+			final int nameIndex = utf8(name);
+			final int descIndex = utf8(desc);
+			
+			final String natKey = "N" + name + ":" + desc;
+			Integer nat = constants.get(natKey);
+			try {
+				if(nat == null) {
+					pool.writeByte(CONSTANT_NAME_AND_TYPE);
+					pool.writeShort(nameIndex);
+					pool.writeShort(descIndex);
+					nat = add(natKey);
+				}
+				pool.writeByte(tag);
+				pool.writeShort(ownerIndex);
+				pool.writeShort(nat.intValue());
+			} catch(IOException exc) {
+				throw new IllegalStateException(exc);
+			}
+			index = add(key);
+		}
+		return index.intValue();
+	}
+	
+	/**
+	 * Records a constant just written to the pool.
+	 */
+	private Integer add(String key) {
+		final Integer index = Integer.valueOf(poolCount);
+		++poolCount;
+		if(poolCount > 0xFFFF)
+			throw new IllegalArgumentException("Constant pool too large");
+		constants.put(key, index);
+		return index;
+	}
+}
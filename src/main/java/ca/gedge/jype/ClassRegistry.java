@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A registry assigning dense integer ids to classes, so that flattened types
+ * can be exchanged as <code>int</code> arrays and converted with
+ * {@link TypeFactory#fromList(ClassRegistry, int[], int, int)}. Ids are
+ * assigned in registration order, starting from zero, and are never reused.
+ * 
+ * Registered classes are strongly referenced for the lifetime of the
+ * registry.
+ */
+public final class ClassRegistry {
+	/** Ids of registered classes (guarded by this) */
+	private final Map<Class<?>, Integer> ids = new HashMap<Class<?>, Integer>();
+	
+	/**
+	 * Registered classes, indexed by id. Slots past the number of registered
+	 * classes are <code>null</code>. The array is only replaced when it grows.
+	 */
+	private volatile Class<?> [] classes = new Class<?>[16];
+	
+	/**
+	 * Registers a class, assigning it the next id if it is not yet registered.
+	 * 
+	 * @param clazz  the class
+	 * 
+	 * @return the id of the class
+	 * 
+	 * @throws NullPointerException  if the class is <code>null</code>
+	 */
+	public synchronized int register(Class<?> clazz) {
+		if(clazz == null)
+			throw new NullPointerException("Class cannot be null");
+		
+		final Integer existing = ids.get(clazz);
+		if(existing != null)
+			return existing.intValue();
+		
+		final int id = ids.size();
+		Class<?> [] table = classes;
+		if(id == table.length)
+			table = Arrays.copyOf(table, table.length * 2);
+		
+		table[id] = clazz;
+		ids.put(clazz, Integer.valueOf(id));
+		classes = table; // publish
+		return id;
+	}
+	
+	/**
+	 * Gets the id of a class.
+	 * 
+	 * @param clazz  the class
+	 * 
+	 * @return the id of the class, or -1 if it is not registered
+	 */
+	public synchronized int getId(Class<?> clazz) {
+		final Integer id = ids.get(clazz);
+		return (id == null ? -1 : id.intValue());
+	}
+	
+	/**
+	 * Gets the class registered with an id.
+	 * 
+	 * @param id  the id
+	 * 
+	 * @return the class with the given id, or <code>null</code> if no class
+	 *         is registered with it
+	 */
+	public Class<?> getRegisteredClass(int id) {
+		final Class<?> [] table = classes;
+		return (id >= 0 && id < table.length ? table[id] : null);
+	}
+	
+	/**
+	 * @return the number of registered classes
+	 */
+	public synchronized int size() {
+		return ids.size();
+	}
+	
+	/**
+	 * Gets the registered classes, indexed by id. The returned array must not
+	 * be modified, and is <code>null</code> past the registered classes.
+	 * 
+	 * @return the registered classes
+	 */
+	Class<?> [] classes() {
+		return classes;
+	}
+}
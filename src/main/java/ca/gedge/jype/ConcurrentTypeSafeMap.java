@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import ca.gedge.jype.TypeSafeMap.Key;
+
+/**
+ * A thread-safe {@link TypeSafeMap}. Lookups never block: they read the
+ * current table through a single volatile reference and probe it exactly as
+ * {@link TypeSafeMap} does. Updates are serialized and copy the table, as
+ * registrations do in {@link TypeDispatchTable}, so they are relatively
+ * expensive. This suits maps that are read far more often than written,
+ * such as attributes shared by many threads.
+ */
+public final class ConcurrentTypeSafeMap {
+	/** The current table, never modified once published */
+	private volatile Object [] table = new Object[2*TypeSafeMap.INITIAL_CAPACITY];
+	
+	/** The number of entries, guarded by this map for writes */
+	private volatile int size;
+	
+	/**
+	 * Gets the value stored under a key.
+	 * 
+	 * @param key  the key
+	 * 
+	 * @return the value, or <code>null</code> if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(Key<T> key) {
+		return (T)TypeSafeMap.lookup(table, key.type, key.hash);
+	}
+	
+	/**
+	 * Gets the value stored under a descriptor.
+	 * 
+	 * @param type  the descriptor
+	 * 
+	 * @return the value, or <code>null</code> if there is none
+	 */
+	public Object get(TypeDescriptor type) {
+		return (type == null ? null : TypeSafeMap.lookup(table, type, TypeSafeMap.spread(type.hashCode())));
+	}
+	
+	/**
+	 * Tests whether or not a value is stored under a descriptor.
+	 * 
+	 * @param type  the descriptor
+	 * 
+	 * @return <code>true</code> if there is a value, <code>false</code> otherwise
+	 */
+	public boolean containsKey(TypeDescriptor type) {
+		return (get(type) != null);
+	}
+	
+	/**
+	 * Stores a value under a key, replacing any value already stored under
+	 * its descriptor.
+	 * 
+	 * @param key  the key
+	 * @param value  the value
+	 * 
+	 * @return the previous value, or <code>null</code> if there was none
+	 * 
+	 * @throws NullPointerException  if the value is <code>null</code>
+	 * @throws ClassCastException  if the value is not an instance of the
+	 *                             erasure of the key's descriptor
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T put(Key<T> key, T value) {
+		key.check(value);
+		return (T)store(key, value, false);
+	}
+	
+	/**
+	 * Atomically stores a value under a key if no value is stored under its
+	 * descriptor.
+	 * 
+	 * @param key  the key
+	 * @param value  the value
+	 * 
+	 * @return the existing value, or <code>null</code> if the given value
+	 *         was stored
+	 * 
+	 * @throws NullPointerException  if the value is <code>null</code>
+	 * @throws ClassCastException  if the value is not an instance of the
+	 *                             erasure of the key's descriptor
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T putIfAbsent(Key<T> key, T value) {
+		key.check(value);
+		
+		// Avoid locking when there is already a value
+		final Object existing = TypeSafeMap.lookup(table, key.type, key.hash);
+		if(existing != null)
+			return (T)existing;
+		return (T)store(key, value, true);
+	}
+	
+	/**
+	 * Stores a value in a copy of the table.
+	 */
+	private synchronized Object store(Key<?> key, Object value, boolean onlyIfAbsent) {
+		final Object [] current = table;
+		final int index = TypeSafeMap.indexOf(current, key.type, key.hash);
+		if(index >= 0) {
+			final Object previous = current[index + 1];
+			if(!onlyIfAbsent) {
+				final Object [] copy = current.clone();
+				copy[index + 1] = value;
+				table = copy;
+			}
+			return previous;
+		}
+		
+		final Object [] copy;
+		if(2*(size + 1) > current.length/2) {
+			copy = TypeSafeMap.resize(current, 2*current.length);
+			TypeSafeMap.insert(copy, key.type, key.hash, value);
+		} else {
+			copy = current.clone();
+			copy[-index - 1] = key.type;
+			copy[-index] = value;
+		}
+		table = copy;
+		++size;
+		return null;
+	}
+	
+	/**
+	 * Removes the value stored under a descriptor.
+	 * 
+	 * @param type  the descriptor
+	 * 
+	 * @return the removed value, or <code>null</code> if there was none
+	 */
+	public synchronized Object remove(TypeDescriptor type) {
+		if(type == null)
+			return null;
+		
+		final Object [] current = table;
+		final int index = TypeSafeMap.indexOf(current, type, TypeSafeMap.spread(type.hashCode()));
+		if(index < 0)
+			return null;
+		
+		final Object previous = current[index + 1];
+		final Object [] copy = current.clone();
+		TypeSafeMap.delete(copy, index);
+		table = copy;
+		--size;
+		return previous;
+	}
+	
+	/**
+	 * Removes the value stored under a key.
+	 * 
+	 * @param key  the key
+	 * 
+	 * @return the removed value, or <code>null</code> if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T remove(Key<T> key) {
+		return (T)remove(key.type);
+	}
+	
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return <code>true</code> if there are no entries, <code>false</code> otherwise
+	 */
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+	
+	/**
+	 * Removes all entries.
+	 */
+	public synchronized void clear() {
+		table = new Object[2*TypeSafeMap.INITIAL_CAPACITY];
+		size = 0;
+	}
+	
+	@Override
+	public String toString() {
+		return TypeSafeMap.toString(table);
+	}
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A caching {@link ClassResolver} that loads classes from a single
+ * {@link ClassLoader}. Names are resolved in the following order:
+ * <ol>
+ *   <li>aliases, which include the primitive types and <code>void</code>,</li>
+ *   <li>the name as given, loaded from the class loader, and</li>
+ *   <li>for names without a package, each imported package in the order
+ *       they were imported (<code>java.lang</code> is always imported).</li>
+ * </ol>
+ * 
+ * Both successful and failed resolutions are cached, so each name is looked
+ * up in the class loader at most once, and lookups of cached names never
+ * block. A cached failure throws a new exception without asking the class
+ * loader again. Adding an alias or import clears cached failures, but never
+ * changes a name that has already been resolved successfully.
+ */
+public class DefaultClassResolver implements ClassResolver {
+	/** Maximum number of cached failures before the failure cache is reset */
+	private static final int MAX_CACHED_FAILURES = 4096;
+	
+	/** The class loader to load classes from */
+	private final ClassLoader loader;
+	
+	/** Resolved names, including aliases */
+	private final ConcurrentMap<String, Class<?>> resolved = new ConcurrentHashMap<String, Class<?>>();
+	
+	/** Names that could not be resolved */
+	private final Set<String> failures = ConcurrentHashMap.newKeySet();
+	
+	/** Imported packages, each with a trailing '.' */
+	private final List<String> imports = new CopyOnWriteArrayList<String>();
+	
+	/**
+	 * Constructs a resolver that loads classes in the same way as
+	 * {@link Class#forName(String)} would from within Jype.
+	 */
+	public DefaultClassResolver() {
+		this(TypeFactory.class.getClassLoader());
+	}
+	
+	/**
+	 * Constructs a resolver that loads classes from the given class loader.
+	 * 
+	 * @param loader  the class loader to load classes from, or <code>null</code>
+	 *                for the bootstrap class loader
+	 */
+	public DefaultClassResolver(ClassLoader loader) {
+		this.loader = loader;
+		
+		resolved.put("char", char.class);
+		resolved.put("byte", byte.class);
+		resolved.put("short", short.class);
+		resolved.put("int", int.class);
+		resolved.put("long", long.class);
+		resolved.put("float", float.class);
+		resolved.put("double", double.class);
+		resolved.put("boolean", boolean.class);
+		resolved.put("void", void.class);
+		imports.add("java.lang.");
+	}
+	
+	/**
+	 * Adds an alias, so that the given name resolves to the given class.
+	 * 
+	 * @param name  the alias
+	 * @param clazz  the class the alias refers to
+	 * 
+	 * @return this resolver
+	 * 
+	 * @throws NullPointerException  if either argument is <code>null</code>
+	 * @throws IllegalStateException  if the name already resolves to a
+	 *                                different class
+	 */
+	public DefaultClassResolver addAlias(String name, Class<?> clazz) {
+		if(name == null)
+			throw new NullPointerException("Alias cannot be null");
+		if(clazz == null)
+			throw new NullPointerException("Class cannot be null");
+		
+		final Class<?> previous = resolved.putIfAbsent(name, clazz);
+		if(previous != null && previous != clazz)
+			throw new IllegalStateException("Name already resolves to " + previous.getName() + ": " + name);
+		
+		failures.remove(name);
+		return this;
+	}
+	
+	/**
+	 * Imports all classes in a package, so that they can be referred to by
+	 * their simple names.
+	 * 
+	 * @param packageName  the package name, such as <code>java.util</code>
+	 * 
+	 * @return this resolver
+	 * 
+	 * @throws NullPointerException  if the package name is <code>null</code>
+	 */
+	public DefaultClassResolver importPackage(String packageName) {
+		if(packageName == null)
+			throw new NullPointerException("Package name cannot be null");
+		
+		final String prefix = packageName + '.';
+		if(!imports.contains(prefix))
+			imports.add(prefix);
+		
+		failures.clear();
+		return this;
+	}
+	
+	/**
+	 * @return the class loader this resolver loads classes from
+	 */
+	public ClassLoader getClassLoader() {
+		return loader;
+	}
+	
+	@Override
+	public Class<?> resolve(String name) throws ClassNotFoundException {
+		final Class<?> cached = resolved.get(name);
+		if(cached != null)
+			return cached;
+		
+		// Exceptions are mutable, so each caller gets its own
+		if(failures.contains(name))
+			throw new ClassNotFoundException(name);
+		
+		final Class<?> clazz = load(name);
+		if(clazz == null) {
+			if(failures.size() >= MAX_CACHED_FAILURES)
+				failures.clear();
+			failures.add(name);
+			throw new ClassNotFoundException(name);
+		}
+		
+		final Class<?> previous = resolved.putIfAbsent(name, clazz);
+		return (previous == null ? clazz : previous);
+	}
+	
+	/**
+	 * Loads a class by name or through the imported packages.
+	 * 
+	 * @param name  the class name
+	 * 
+	 * @return the class, or <code>null</code> if no class could be found
+	 */
+	private Class<?> load(String name) {
+		final Class<?> clazz = loadFromLoader(name);
+		if(clazz != null || name.indexOf('.') >= 0)
+			return clazz;
+		
+		for(String prefix : imports) {
+			final Class<?> imported = loadFromLoader(prefix + name);
+			if(imported != null)
+				return imported;
+		}
+		return null;
+	}
+	
+	/**
+	 * Loads a fully qualified class from the class loader.
+	 */
+	private Class<?> loadFromLoader(String name) {
+		try {
+			return Class.forName(name, true, loader);
+		} catch(ClassNotFoundException exc) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+/**
+ * A table from flattened class lists (see {@link TypeFactory#fromList(Class...)})
+ * to the interned descriptors they describe, so that converting a list seen
+ * before is a hash probe that allocates nothing.
+ * 
+ * There is one table per class at the head of the list, held in a
+ * {@link ClassCache}, so tables go away with the classes they start with.
+ * Reads take no lock: entries are immutable, and a reader racing with a
+ * writer at worst misses an entry that is being added.
+ */
+final class FlatTypeTable {
+	/** Tables, by the class at the head of their lists */
+	private static final ClassCache<FlatTypeTable> tables = new ClassCache<FlatTypeTable>() {
+		@Override
+		protected FlatTypeTable computeValue(Class<?> clazz) {
+			return new FlatTypeTable();
+		}
+	};
+	
+	/** Maximum number of entries per table before it is cleared */
+	private static final int MAXIMUM_SIZE = 1024;
+	
+	/** Initial capacity of the entry array */
+	private static final int INITIAL_CAPACITY = 8;
+	
+	/**
+	 * An immutable table entry.
+	 */
+	private static final class Entry {
+		/** The flattened class list */
+		final Class<?> [] classes;
+		
+		/** Hash of the class list */
+		final int hash;
+		
+		/** The interned descriptor */
+		final TypeDescriptor type;
+		
+		Entry(Class<?> [] classes, int hash, TypeDescriptor type) {
+			this.classes = classes;
+			this.hash = hash;
+			this.type = type;
+		}
+	}
+	
+	/**
+	 * Open-addressed entries with linear probing, at most half full. Slots
+	 * are only ever filled in place; clearing or growing replaces the array.
+	 */
+	private volatile Entry [] entries = new Entry[INITIAL_CAPACITY];
+	
+	/** Number of entries (guarded by this) */
+	private int size;
+	
+	/**
+	 * Gets the table for lists starting with the given class.
+	 * 
+	 * @param clazz  the class at the head of the list
+	 * 
+	 * @return the table for the given class
+	 */
+	static FlatTypeTable forClass(Class<?> clazz) {
+		return tables.get(clazz);
+	}
+	
+	/**
+	 * Hashes a range of classes.
+	 */
+	static int hash(Class<?> [] classes, int offset, int length) {
+		int hash = 1;
+		for(int index = offset; index < offset + length; ++index)
+			hash = 31*hash + classes[index].hashCode();
+		return hash;
+	}
+	
+	/**
+	 * Hashes a range of class ids, as {@link #hash(Class[], int, int)} would
+	 * hash the classes they refer to.
+	 */
+	static int hash(int [] ids, int offset, int length, Class<?> [] byId) {
+		int hash = 1;
+		for(int index = offset; index < offset + length; ++index)
+			hash = 31*hash + byId[ids[index]].hashCode();
+		return hash;
+	}
+	
+	/**
+	 * Gets the descriptor for a range of classes.
+	 * 
+	 * @param classes  the classes
+	 * @param offset  index of the first class
+	 * @param length  number of classes
+	 * @param hash  hash of the range
+	 * 
+	 * @return the interned descriptor, or <code>null</code> if the range is
+	 *         not in the table
+	 */
+	TypeDescriptor get(Class<?> [] classes, int offset, int length, int hash) {
+		final Entry [] table = entries;
+		final int mask = table.length - 1;
+		Entry entry;
+		for(int slot = hash & mask; (entry = table[slot]) != null; slot = (slot + 1) & mask) {
+			if(entry.hash == hash && matches(entry.classes, classes, offset, length))
+				return entry.type;
+		}
+		return null;
+	}
+	
+	/**
+	 * Gets the descriptor for a range of class ids.
+	 * 
+	 * @param ids  the class ids
+	 * @param offset  index of the first id
+	 * @param length  number of ids
+	 * @param byId  classes, indexed by id
+	 * @param hash  hash of the range
+	 * 
+	 * @return the interned descriptor, or <code>null</code> if the range is
+	 *         not in the table
+	 */
+	TypeDescriptor get(int [] ids, int offset, int length, Class<?> [] byId, int hash) {
+		final Entry [] table = entries;
+		final int mask = table.length - 1;
+		Entry entry;
+		for(int slot = hash & mask; (entry = table[slot]) != null; slot = (slot + 1) & mask) {
+			if(entry.hash == hash && matches(entry.classes, ids, offset, length, byId))
+				return entry.type;
+		}
+		return null;
+	}
+	
+	/**
+	 * Adds the descriptor for a range of classes. The range is copied.
+	 * 
+	 * @param classes  the classes
+	 * @param offset  index of the first class
+	 * @param length  number of classes
+	 * @param hash  hash of the range
+	 * @param type  the interned descriptor
+	 */
+	synchronized void put(Class<?> [] classes, int offset, int length, int hash, TypeDescriptor type) {
+		if(get(classes, offset, length, hash) != null)
+			return;
+		
+		Entry [] table = entries;
+		if(size == MAXIMUM_SIZE) {
+			table = new Entry[INITIAL_CAPACITY];
+			size = 0;
+		} else if(2*(size + 1) > table.length) {
+			final Entry [] grown = new Entry[2*table.length];
+			for(Entry entry : table) {
+				if(entry != null)
+					insert(grown, entry);
+			}
+			table = grown;
+		}
+		
+		final Class<?> [] copy = new Class<?>[length];
+		System.arraycopy(classes, offset, copy, 0, length);
+		insert(table, new Entry(copy, hash, type));
+		++size;
+		entries = table; // publish
+	}
+	
+	/**
+	 * Inserts an entry into the first free slot of its probe sequence.
+	 */
+	private static void insert(Entry [] table, Entry entry) {
+		final int mask = table.length - 1;
+		int slot = entry.hash & mask;
+		while(table[slot] != null)
+			slot = (slot + 1) & mask;
+		table[slot] = entry;
+	}
+	
+	/**
+	 * Compares a stored class list to a range of classes.
+	 */
+	private static boolean matches(Class<?> [] stored, Class<?> [] classes, int offset, int length) {
+		if(stored.length != length)
+			return false;
+		
+		for(int index = 0; index < length; ++index) {
+			if(stored[index] != classes[offset + index])
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Compares a stored class list to a range of class ids.
+	 */
+	private static boolean matches(Class<?> [] stored, int [] ids, int offset, int length, Class<?> [] byId) {
+		if(stored.length != length)
+			return false;
+		
+		for(int index = 0; index < length; ++index) {
+			if(stored[index] != byId[ids[offset + index]])
+				return false;
+		}
+		return true;
+	}
+}
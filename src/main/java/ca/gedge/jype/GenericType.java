@@ -22,13 +22,18 @@
 package ca.gedge.jype;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
- * A descriptor for a generic type.
+ * A descriptor for a generic type. Instances are immutable.
  */
-public class GenericType implements TypeDescriptor {
+public final class GenericType implements TypeDescriptor {
 	/**
-	 * Convert a {@link Class} array to a {@link TypeDescriptor} array.
+	 * Convert a {@link Class} array to a {@link TypeDescriptor} array. Array
+	 * classes are described by an {@link ArrayType}.
 	 * 
 	 * @param classes  the classes
 	 * 
@@ -37,16 +42,56 @@ public class GenericType implements TypeDescriptor {
 	 */
 	private static TypeDescriptor[] classToDescriptorArray(Class<?>... classes) {
 		final TypeDescriptor[] types = new TypeDescriptor[classes.length];
-		for(int index = 0; index < classes.length; ++index)
-			types[index] = new SimpleType(classes[index]);
+		for(int index = 0; index < classes.length; ++index) {
+			final Class<?> clazz = classes[index];
+			types[index] = (clazz != null && clazz.isArray() ? ArrayType.forClass(clazz) : new SimpleType(clazz));
+		}
 		return types;
 	}
 
+	/** An empty parameter array */
+	private static final TypeDescriptor[] NO_PARAMS = new TypeDescriptor[0];
+
+	/**
+	 * Number of type parameters of each class. A count refers to no other
+	 * classes, so unlike a {@link ClassCache} it is held strongly.
+	 */
+	private static final ClassValue<Integer> numTypeParams = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(Class<?> clazz) {
+			return clazz.getTypeParameters().length;
+		}
+	};
+
 	/** The class describing this type */
-	private Class<?> clazz;
+	private final Class<?> clazz;
 
 	/** The class' generic parameters */
-	private TypeDescriptor[] params;
+	private final TypeDescriptor[] params;
+
+	/** Hash code, computed at construction */
+	private final int hash;
+
+	/** Nesting depth, computed at construction */
+	private final int depth;
+
+	/** Number of descriptors in this type, computed at construction */
+	private final int nodeCount;
+
+	/** Whether or not a primitive type appears, computed at construction */
+	private final boolean primitive;
+
+	/** String representation, computed on first use */
+	private String name;
+
+	/** Referenced classes, computed on first use */
+	private Set<Class<?>> classes;
+
+	/** Supertype index of the class, fetched on first use */
+	private SupertypeIndex supertypes;
+
+	/** Bindings of the class' type parameters, computed on first use */
+	private TypeBindings bindings;
 
 	/**
 	 * Constructs a generic type from a given {@link Class} and {@link Class}es
@@ -61,7 +106,7 @@ public class GenericType implements TypeDescriptor {
 	 * @throws NullPointerException  if any parameter is <code>null</code>
 	 */
 	public GenericType(Class<?> clazz, Class<?>... paramClasses) {
-		this(clazz, classToDescriptorArray(paramClasses));
+		this(clazz, classToDescriptorArray(paramClasses), false);
 	}
 
 	/**
@@ -77,59 +122,306 @@ public class GenericType implements TypeDescriptor {
 	 * @throws NullPointerException  if any parameter is <code>null</code>
 	 */
 	public GenericType(Class<?> clazz, TypeDescriptor... paramTypes) {
+		this(clazz, paramTypes, true);
+	}
+
+	/**
+	 * Constructs a generic type from a given {@link Class} and descriptors
+	 * for the generic parameters, optionally taking ownership of the given
+	 * parameter array instead of copying it.
+	 * 
+	 * @param clazz  the class this type will describe
+	 * @param paramTypes  the generic parameters for the given class
+	 * @param copy  whether or not to copy the parameter array. If
+	 *              <code>false</code>, the caller must not modify it afterwards.
+	 * 
+	 * @throws IllegalArgumentException  if the number of generic parameters does
+	 *               not match the length of {@link Class#getTypeParameters()}.
+	 *
+	 * @throws NullPointerException  if any parameter is <code>null</code>
+	 */
+	GenericType(Class<?> clazz, TypeDescriptor[] paramTypes, boolean copy) {
 		if(clazz == null)
 			throw new NullPointerException("Class cannot be null");
 
-		if(paramTypes.length != clazz.getTypeParameters().length)
+		final TypeDescriptor[] params = (copy ? paramTypes.clone() : paramTypes);
+		if(params.length != numTypeParameters(clazz))
 			throw new IllegalArgumentException("Number of generic parameters must match given class");
 
-		for(TypeDescriptor param : paramTypes) {
+		int depth = 0, nodeCount = 1;
+		boolean primitive = false;
+		for(int index = 0; index < params.length; ++index) {
+			final TypeDescriptor param = params[index] = LazyType.unwrap(params[index]);
 			if(param == null)
 				throw new NullPointerException("Generic parameters cannot be null");
+			depth = Math.max(depth, param.getDepth());
+			nodeCount += param.getNodeCount();
+			primitive |= param.hasPrimitive();
 		}
 
 		this.clazz = clazz;
-		this.params = paramTypes;
+		this.params = params;
+		this.hash = 13*clazz.hashCode() + 47*Arrays.hashCode(params);
+		this.depth = depth + 1;
+		this.nodeCount = nodeCount;
+		this.primitive = primitive;
+		Metrics.created(GenericType.class);
+	}
+
+	/**
+	 * Gets the number of type parameters a class declares, without the
+	 * array copy made by {@link Class#getTypeParameters()}. Counts are
+	 * cached for each class.
+	 * 
+	 * @param clazz  the class
+	 * 
+	 * @return the number of type parameters
+	 */
+	static int numTypeParameters(Class<?> clazz) {
+		return numTypeParams.get(clazz);
 	}
 
+	/**
+	 * @return the class this type describes
+	 */
+	public Class<?> getRawClass() {
+		return clazz;
+	}
+	
+	/**
+	 * @return the number of generic parameters
+	 */
+	public int getNumParameters() {
+		return params.length;
+	}
+	
+	/**
+	 * @param index  the index of the generic parameter
+	 * 
+	 * @return the generic parameter at the given index
+	 * 
+	 * @throws IndexOutOfBoundsException  if there is no parameter at the index
+	 */
+	public TypeDescriptor getParameter(int index) {
+		return params[index];
+	}
+	
+	/**
+	 * @return an unmodifiable view of the generic parameters
+	 */
+	public List<TypeDescriptor> getParameters() {
+		return Collections.unmodifiableList(Arrays.asList(params));
+	}
+	
+	/**
+	 * @return the generic parameters, which must not be modified
+	 */
+	TypeDescriptor [] parameterArray() {
+		return params;
+	}
+	
+	@Override
+	public int getDepth() {
+		return depth;
+	}
+	
+	@Override
+	public int getNodeCount() {
+		return nodeCount;
+	}
+	
+	@Override
+	public Set<Class<?>> getReferencedClasses() {
+		// Racy single-check; sets are immutable
+		Set<Class<?>> s = classes;
+		if(s == null) {
+			final Set<Class<?>> referenced = new LinkedHashSet<Class<?>>();
+			referenced.add(clazz);
+			for(TypeDescriptor param : params)
+				referenced.addAll(param.getReferencedClasses());
+			classes = s = Collections.unmodifiableSet(referenced);
+		}
+		return s;
+	}
+	
+	@Override
+	public boolean hasPrimitive() {
+		return primitive;
+	}
+	
 	@Override
 	public int hashCode() {
-		return 13*clazz.hashCode() + 47*Arrays.hashCode(params);
+		return hash;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+		if(obj instanceof LazyType)
+			obj = ((LazyType)obj).resolveQuietly();
+		
+		return (obj instanceof GenericType
+		        && hash == ((GenericType)obj).hash
+		        && clazz == ((GenericType)obj).clazz
+		        && Arrays.equals(params, ((GenericType)obj).params));
 	}
 
 	@Override
 	public String toString() {
-		final StringBuilder sb = new StringBuilder();
-		sb.append(clazz.getName());
-		sb.append('<');
-		sb.append(params[0].toString());
-		for(int index = 1; index < params.length; ++index) {
-			sb.append(',');
-			sb.append(params[index].toString());
+		// Racy single-check: threads may each build the string, but all
+		// build an equal one, and strings are safe to publish without
+		// synchronization
+		String s = name;
+		if(s == null) {
+			final StringBuilder sb = new StringBuilder();
+			sb.append(clazz.getName());
+			sb.append('<');
+			sb.append(params[0].toString());
+			for(int index = 1; index < params.length; ++index) {
+				sb.append(',');
+				sb.append(params[index].toString());
+			}
+			sb.append('>');
+			name = s = sb.toString();
 		}
-		sb.append('>');
-		return sb.toString();
+		return s;
 	}
 
+	/**
+	 * Tests whether or not a given descriptor can be assigned to this descriptor.
+	 * The given descriptor must be a generic type whose class is a subtype of
+	 * this type's class, or a simple type whose class is a non-generic
+	 * subtype, such as a class extending <code>ArrayList&lt;String&gt;</code>.
+	 * The given type's parameters are mapped onto this type's class through
+	 * the supertype declarations, so <code>Map&lt;K, V&gt;</code> is
+	 * assignable from <code>HashMap&lt;K, V&gt;</code> even for classes that
+	 * reorder or fix type parameters. As in Java, generic parameters are
+	 * invariant: each mapped parameter must be the same type as the
+	 * corresponding parameter of this type, unless that parameter is a
+	 * {@link WildcardType}, in which case it must lie within the wildcard's
+	 * bounds. So <code>List&lt;Number&gt;</code> is assignable from neither
+	 * <code>List&lt;Integer&gt;</code> nor
+	 * <code>List&lt;? extends Integer&gt;</code>, while
+	 * <code>List&lt;? extends Number&gt;</code> is assignable from both. A
+	 * wildcard is assignable if its upper bound is.
+	 * 
+	 * @param type  the type descriptor
+	 * 
+	 * @return <code>true</code> if the given descriptor can be assigned to
+	 *         this one, <code>false</code> otherwise
+	 */
 	@Override
 	public boolean isAssignableFrom(TypeDescriptor type) {
-		boolean ret = (type != null
-		               && type instanceof GenericType
-		               && clazz.isAssignableFrom( ((GenericType)type).clazz )
-		               && params.length == ((GenericType)type).params.length);
+		type = LazyType.unwrap(type);
+		final TypeMetrics metrics = Metrics.current;
+		if(metrics == null)
+			return assignableFrom(type);
 		
-		if(ret) {
-			// Check all the generic parameters
-			final TypeDescriptor[] otherParams = ((GenericType)type).params;
-			for(int index = 0; index < params.length; ++index) {
-				ret = (params[index].isAssignableFrom(otherParams[index]));
-				
-				// Break out whenever a non-assignable generic parameter is found
-				if(!ret)
-					break;
-			}
+		final long start = System.nanoTime();
+		final boolean assignable = assignableFrom(type);
+		metrics.recordSuccess(TypeMetrics.Operation.IS_ASSIGNABLE_FROM, System.nanoTime() - start);
+		return assignable;
+	}
+	
+	/**
+	 * Implements {@link #isAssignableFrom(TypeDescriptor)} without recording
+	 * metrics.
+	 */
+	boolean assignableFrom(TypeDescriptor type) {
+		if(type instanceof WildcardType)
+			type = ((WildcardType)type).getUpperBound();
+		if(type instanceof TypeVariableDescriptor)
+			type = ((TypeVariableDescriptor)type).getUpperBound();
+		
+		final TypeDescriptor[] otherParams;
+		if(type instanceof GenericType) {
+			final GenericType other = (GenericType)type;
+			if(other.clazz == clazz)
+				otherParams = other.params;
+			else
+				otherParams = other.supertypes().parametersOf(clazz, other.params);
+		} else if(type instanceof SimpleType) {
+			final Class<?> otherClass = ((SimpleType)type).getRawClass();
+			otherParams = SupertypeIndex.forClass(otherClass).parametersOf(clazz, NO_PARAMS);
+		} else {
+			return false;
 		}
 		
-		return ret;
+		if(otherParams == null)
+			return false;
+		
+		// Check all the generic parameters, breaking out whenever a
+		// non-matching generic parameter is found
+		for(int index = 0; index < params.length; ++index) {
+			if(!containsParameter(params[index], otherParams[index]))
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Tests whether or not a generic parameter contains another. A wildcard
+	 * contains the parameters within its bounds, and any other parameter
+	 * only contains the same type, that is, a type mutually assignable with
+	 * it that is not a wildcard.
+	 */
+	private static boolean containsParameter(TypeDescriptor param, TypeDescriptor other) {
+		if(param == other)
+			return true;
+		if(param instanceof WildcardType)
+			return ((WildcardType)param).assignableFrom(other);
+		return !(other instanceof WildcardType)
+		    && Metrics.isAssignable(param, other)
+		    && Metrics.isAssignable(other, param);
+	}
+	
+	/**
+	 * Gets the supertype index of this type's class.
+	 * 
+	 * @return the supertype index
+	 */
+	private SupertypeIndex supertypes() {
+		// Racy single-check; indices are immutable
+		SupertypeIndex index = supertypes;
+		if(index == null)
+			supertypes = index = SupertypeIndex.forClass(clazz);
+		return index;
+	}
+	
+	/**
+	 * Gets the bindings of this type's class' type parameters to its generic
+	 * parameters. Only to be called on interned types, so that the bindings
+	 * and their memoized substitutions are shared.
+	 * 
+	 * @return the bindings
+	 */
+	TypeBindings bindings() {
+		// Racy single-check; a thread may compute bindings that are then
+		// discarded, which only loses their memoized substitutions
+		TypeBindings b = bindings;
+		if(b == null)
+			bindings = b = TypeBindings.create(this);
+		return b;
+	}
+	
+	/**
+	 * Gets a generic type equal to this one whose generic parameters have all
+	 * been interned.
+	 * 
+	 * @return this type if all parameters were already interned, otherwise a
+	 *         new type with interned parameters
+	 */
+	GenericType withInternedParams() {
+		TypeDescriptor [] interned = null;
+		for(int index = 0; index < params.length; ++index) {
+			final TypeDescriptor param = InternPool.intern(params[index]);
+			if(param != params[index]) {
+				if(interned == null)
+					interned = params.clone();
+				interned[index] = param;
+			}
+		}
+		return (interned == null ? this : new GenericType(clazz, interned, false));
 	}
 }
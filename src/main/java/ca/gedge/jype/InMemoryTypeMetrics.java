@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link TypeMetrics} that accumulate counts, latency histograms and failure
+ * reasons in memory, for inspection with {@link #getStatistics(TypeMetrics.Operation)}.
+ * Latencies are recorded in power-of-two buckets, so percentiles are
+ * accurate to within a factor of two. Failures are counted by the class of
+ * the exception thrown.
+ * 
+ * Instances are thread-safe. Counters are {@link LongAdder}s, so threads
+ * recording concurrently do not contend on them.
+ */
+public final class InMemoryTypeMetrics implements TypeMetrics {
+	/**
+	 * Number of latency buckets. Bucket 0 holds latencies of 0ns, and bucket
+	 * <i>i</i> holds those in [2<sup><i>i</i>-1</sup>, 2<sup><i>i</i></sup>) ns.
+	 */
+	static final int NUM_BUCKETS = 64;
+	
+	/**
+	 * Gets the bucket of a latency.
+	 */
+	static int bucket(long nanos) {
+		return (nanos <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(nanos));
+	}
+	
+	/**
+	 * Measurements of one operation.
+	 */
+	private static final class Recorder {
+		final LongAdder failureCount = new LongAdder();
+		final LongAdder totalTime = new LongAdder();
+		final LongAdder [] histogram = new LongAdder[NUM_BUCKETS];
+		final ConcurrentMap<String, LongAdder> failures = new ConcurrentHashMap<String, LongAdder>();
+		
+		Recorder() {
+			for(int index = 0; index < NUM_BUCKETS; ++index)
+				histogram[index] = new LongAdder();
+		}
+		
+		void record(long nanos) {
+			totalTime.add(nanos);
+			histogram[bucket(nanos)].increment();
+		}
+	}
+	
+	/** Measurements of each operation, by ordinal */
+	private volatile Recorder [] recorders = newRecorders();
+	
+	/** Number of descriptors constructed, by kind */
+	private volatile ConcurrentMap<Class<? extends TypeDescriptor>, LongAdder> created = new ConcurrentHashMap<Class<? extends TypeDescriptor>, LongAdder>();
+	
+	public void recordSuccess(Operation operation, long nanos) {
+		recorders[operation.ordinal()].record(nanos);
+	}
+	
+	public void recordFailure(Operation operation, long nanos, Throwable cause) {
+		final Recorder recorder = recorders[operation.ordinal()];
+		recorder.record(nanos);
+		recorder.failureCount.increment();
+		counter(recorder.failures, cause.getClass().getName()).increment();
+	}
+	
+	public void recordCreated(Class<? extends TypeDescriptor> kind) {
+		counter(created, kind).increment();
+	}
+	
+	/**
+	 * Gets a snapshot of the measurements of an operation. Measurements
+	 * recorded while the snapshot is taken may be partially included.
+	 * 
+	 * @param operation  the operation
+	 * 
+	 * @return the statistics of the operation
+	 */
+	public OperationStatistics getStatistics(Operation operation) {
+		final Recorder recorder = recorders[operation.ordinal()];
+		
+		// The count is the histogram's total, saving an update per operation
+		final long [] histogram = new long[NUM_BUCKETS];
+		long count = 0;
+		for(int index = 0; index < NUM_BUCKETS; ++index)
+			count += (histogram[index] = recorder.histogram[index].sum());
+		
+		final Map<String, Long> failures = new HashMap<String, Long>();
+		for(Map.Entry<String, LongAdder> entry : recorder.failures.entrySet())
+			failures.put(entry.getKey(), Long.valueOf(entry.getValue().sum()));
+		
+		return new OperationStatistics(operation,
+		                               count,
+		                               recorder.failureCount.sum(),
+		                               recorder.totalTime.sum(),
+		                               histogram,
+		                               Collections.unmodifiableMap(failures));
+	}
+	
+	/**
+	 * Gets the number of descriptors of a kind constructed.
+	 * 
+	 * @param kind  the class of the descriptors
+	 * 
+	 * @return the number of descriptors constructed
+	 */
+	public long getCreatedCount(Class<? extends TypeDescriptor> kind) {
+		final LongAdder count = created.get(kind);
+		return (count == null ? 0 : count.sum());
+	}
+	
+	/**
+	 * Gets a snapshot of the number of descriptors constructed, by kind.
+	 * 
+	 * @return an unmodifiable map from descriptor class to count
+	 */
+	public Map<Class<? extends TypeDescriptor>, Long> getCreatedCounts() {
+		final Map<Class<? extends TypeDescriptor>, Long> counts = new HashMap<Class<? extends TypeDescriptor>, Long>();
+		for(Map.Entry<Class<? extends TypeDescriptor>, LongAdder> entry : created.entrySet())
+			counts.put(entry.getKey(), Long.valueOf(entry.getValue().sum()));
+		return Collections.unmodifiableMap(counts);
+	}
+	
+	/**
+	 * Discards all measurements. Measurements recorded concurrently may be
+	 * lost.
+	 */
+	public void reset() {
+		recorders = newRecorders();
+		created = new ConcurrentHashMap<Class<? extends TypeDescriptor>, LongAdder>();
+	}
+	
+	/**
+	 * Creates a recorder for each operation.
+	 */
+	private static Recorder [] newRecorders() {
+		final Recorder [] recorders = new Recorder[Operation.values().length];
+		for(int index = 0; index < recorders.length; ++index)
+			recorders[index] = new Recorder();
+		return recorders;
+	}
+	
+	/**
+	 * Gets the counter for a key, adding it if necessary.
+	 */
+	private static <K> LongAdder counter(ConcurrentMap<K, LongAdder> counters, K key) {
+		// Only fall back on computeIfAbsent, which may lock, for new keys
+		final LongAdder counter = counters.get(key);
+		return (counter != null ? counter : counters.computeIfAbsent(key, k -> new LongAdder()));
+	}
+}
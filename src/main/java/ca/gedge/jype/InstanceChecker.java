@@ -0,0 +1,462 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Checks objects against a type descriptor at run time. A checker is
+ * compiled once from its descriptor into a tree of checks, so checking an
+ * object involves only <code>instanceof</code>-style class checks and
+ * iteration, with no reflection.
+ * 
+ * Erasure means the generic parameters of an object can only be checked
+ * through its contents. Those of {@link Iterable}s (including collections),
+ * {@link Map}s and arrays are checked by checking their elements, keys and
+ * values; other generic types are checked only against their raw class. How
+ * many elements are checked depends on how the checker was created:
+ * <ul>
+ *   <li>{@link #shallow(TypeDescriptor)} checks no elements,</li>
+ *   <li>{@link #sampling(TypeDescriptor, int)} checks the first few
+ *       elements of each container, and</li>
+ *   <li>{@link #full(TypeDescriptor)} checks every element.</li>
+ * </ul>
+ * 
+ * As in Java, <code>null</code> is an instance of every reference type, but
+ * not of primitive types. Primitive types are checked against their
+ * wrappers. Wildcards and type variables are checked against their upper
+ * bound.
+ * 
+ * Checkers are immutable and thread-safe. They do not guard against
+ * containers being modified while they are checked.
+ */
+public final class InstanceChecker {
+	/**
+	 * A node in the tree of checks.
+	 */
+	static abstract class Check {
+		/**
+		 * @return <code>true</code> if the object passes the check
+		 */
+		abstract boolean check(Object obj);
+	}
+	
+	/**
+	 * Accepts everything.
+	 */
+	static final Check ANY = new Check() {
+		@Override
+		boolean check(Object obj) {
+			return true;
+		}
+	};
+	
+	/**
+	 * Checks an object's class.
+	 */
+	static final class ClassCheck extends Check {
+		final Class<?> clazz;
+		final boolean nullable;
+		
+		ClassCheck(Class<?> clazz, boolean nullable) {
+			this.clazz = clazz;
+			this.nullable = nullable;
+		}
+		
+		@Override
+		boolean check(Object obj) {
+			return (obj == null ? nullable : clazz.isInstance(obj));
+		}
+	}
+	
+	/**
+	 * Checks an iterable's class and elements.
+	 */
+	static final class IterableCheck extends Check {
+		final Class<?> clazz;
+		final Check element;
+		final int limit;
+		
+		IterableCheck(Class<?> clazz, Check element, int limit) {
+			this.clazz = clazz;
+			this.element = element;
+			this.limit = limit;
+		}
+		
+		@Override
+		boolean check(Object obj) {
+			if(obj == null)
+				return true;
+			if(!clazz.isInstance(obj))
+				return false;
+			
+			// Avoid allocating an iterator for random access lists
+			if(obj instanceof List && obj instanceof RandomAccess) {
+				final List<?> list = (List<?>)obj;
+				final int size = Math.min(list.size(), limit);
+				for(int index = 0; index < size; ++index) {
+					if(!element.check(list.get(index)))
+						return false;
+				}
+				return true;
+			}
+			
+			final Iterator<?> iter = ((Iterable<?>)obj).iterator();
+			for(int count = 0; count < limit && iter.hasNext(); ++count) {
+				if(!element.check(iter.next()))
+					return false;
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Checks a map's class, keys and values.
+	 */
+	static final class MapCheck extends Check {
+		final Class<?> clazz;
+		final Check key;
+		final Check value;
+		final int limit;
+		
+		MapCheck(Class<?> clazz, Check key, Check value, int limit) {
+			this.clazz = clazz;
+			this.key = key;
+			this.value = value;
+			this.limit = limit;
+		}
+		
+		@Override
+		boolean check(Object obj) {
+			if(obj == null)
+				return true;
+			if(!clazz.isInstance(obj))
+				return false;
+			
+			final Iterator<? extends Map.Entry<?, ?>> iter = ((Map<?, ?>)obj).entrySet().iterator();
+			for(int count = 0; count < limit && iter.hasNext(); ++count) {
+				final Map.Entry<?, ?> entry = iter.next();
+				if(!key.check(entry.getKey()) || !value.check(entry.getValue()))
+					return false;
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Checks an array's class and components. Only needed for arrays of
+	 * generic types, since the class of an array of other types already
+	 * constrains its components.
+	 */
+	static final class ArrayCheck extends Check {
+		final Class<?> clazz;
+		final Check component;
+		final int limit;
+		
+		ArrayCheck(Class<?> clazz, Check component, int limit) {
+			this.clazz = clazz;
+			this.component = component;
+			this.limit = limit;
+		}
+		
+		@Override
+		boolean check(Object obj) {
+			if(obj == null)
+				return true;
+			if(!clazz.isInstance(obj))
+				return false;
+			
+			final Object [] array = (Object[])obj;
+			final int length = Math.min(array.length, limit);
+			for(int index = 0; index < length; ++index) {
+				if(!component.check(array[index]))
+					return false;
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * Base class of checks generated as bytecode. This is public only so
+	 * that generated classes defined by their own class loader can extend
+	 * it. It is not part of the API.
+	 */
+	public static abstract class Generated {
+		/**
+		 * Constructs a generated check.
+		 */
+		protected Generated() {}
+		
+		/**
+		 * @param obj  the object
+		 * 
+		 * @return <code>true</code> if the object passes the check
+		 */
+		public abstract boolean check(Object obj);
+	}
+	
+	/**
+	 * Runs a generated check.
+	 */
+	private static final class GeneratedCheck extends Check {
+		private final Generated generated;
+		
+		GeneratedCheck(Generated generated) {
+			this.generated = generated;
+		}
+		
+		@Override
+		boolean check(Object obj) {
+			return generated.check(obj);
+		}
+	}
+	
+	/** The descriptor checked against */
+	private final TypeDescriptor type;
+	
+	/** The maximum number of elements to check in each container */
+	private final int limit;
+	
+	/** Root of the tree of checks */
+	private final Check root;
+	
+	/**
+	 * Compiles a checker.
+	 * 
+	 * @param type  the descriptor to check against
+	 * @param limit  the maximum number of elements to check in each container
+	 */
+	private InstanceChecker(TypeDescriptor type, int limit) {
+		if(type == null)
+			throw new NullPointerException("Type descriptor cannot be null");
+		
+		this.type = LazyType.unwrap(type);
+		this.limit = limit;
+		this.root = compile(this.type, limit);
+	}
+	
+	/**
+	 * Constructs a checker with the given checks.
+	 */
+	private InstanceChecker(TypeDescriptor type, int limit, Check root) {
+		this.type = type;
+		this.limit = limit;
+		this.root = root;
+	}
+	
+	/**
+	 * Creates a checker that only checks an object's class, and not the
+	 * contents of containers.
+	 * 
+	 * @param type  the descriptor to check against
+	 * 
+	 * @return a checker for the given descriptor
+	 * 
+	 * @throws IllegalArgumentException  if the descriptor is of an unknown kind
+	 * @throws NullPointerException  if the descriptor is <code>null</code>
+	 */
+	public static InstanceChecker shallow(TypeDescriptor type) {
+		return new InstanceChecker(type, 0);
+	}
+	
+	/**
+	 * Creates a checker that checks the first few elements of each container,
+	 * recursively.
+	 * 
+	 * @param type  the descriptor to check against
+	 * @param sampleSize  the maximum number of elements, entries or
+	 *                    components to check in each container
+	 * 
+	 * @return a checker for the given descriptor
+	 * 
+	 * @throws IllegalArgumentException  if the descriptor is of an unknown
+	 *                                   kind, or the sample size is negative
+	 * @throws NullPointerException  if the descriptor is <code>null</code>
+	 */
+	public static InstanceChecker sampling(TypeDescriptor type, int sampleSize) {
+		if(sampleSize < 0)
+			throw new IllegalArgumentException("Sample size cannot be negative");
+		return new InstanceChecker(type, sampleSize);
+	}
+	
+	/**
+	 * Creates a checker that checks every element of each container,
+	 * recursively.
+	 * 
+	 * @param type  the descriptor to check against
+	 * 
+	 * @return a checker for the given descriptor
+	 * 
+	 * @throws IllegalArgumentException  if the descriptor is of an unknown kind
+	 * @throws NullPointerException  if the descriptor is <code>null</code>
+	 */
+	public static InstanceChecker full(TypeDescriptor type) {
+		return new InstanceChecker(type, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Gets a checker equivalent to this one whose checks have been generated
+	 * as bytecode, specialized for this checker's descriptor. Generated checks
+	 * are straight-line code that the JIT compiler can optimize as a whole,
+	 * rather than a tree of virtual calls, so they are faster for large or
+	 * deeply nested containers. Generating the checks takes far longer than
+	 * compiling a checker, so this is only worthwhile for checkers that are
+	 * used many times.
+	 * 
+	 * Checkers that only check an object's class gain nothing from generated
+	 * checks. They, and checkers whose checks cannot be generated (for
+	 * example, because they refer to classes that generated code cannot
+	 * access, or a security manager forbids creating class loaders), return
+	 * themselves.
+	 * 
+	 * @return a checker with generated checks, or this checker if they
+	 *         could not be generated
+	 */
+	public InstanceChecker compile() {
+		if(root instanceof GeneratedCheck || root instanceof ClassCheck || root == ANY)
+			return this;
+		
+		try {
+			return new InstanceChecker(type, limit, new GeneratedCheck(CheckCompiler.compile(root)));
+		} catch(RuntimeException exc) {
+			return this;
+		} catch(LinkageError exc) {
+			return this;
+		}
+	}
+	
+	/**
+	 * @return the descriptor checked against
+	 */
+	public TypeDescriptor getType() {
+		return type;
+	}
+	
+	/**
+	 * Tests whether or not an object is an instance of the descriptor.
+	 * 
+	 * @param obj  the object
+	 * 
+	 * @return <code>true</code> if the object passes the checks,
+	 *         <code>false</code> otherwise
+	 */
+	public boolean isInstance(Object obj) {
+		return root.check(obj);
+	}
+	
+	/**
+	 * Checks that an object is an instance of the descriptor.
+	 * 
+	 * @param obj  the object
+	 * 
+	 * @return the object
+	 * 
+	 * @throws ClassCastException  if the object does not pass the checks
+	 */
+	public Object checkInstance(Object obj) {
+		if(!root.check(obj))
+			throw new ClassCastException((obj == null ? "null" : obj.getClass().getName()) + " is not an instance of " + type);
+		return obj;
+	}
+	
+	/**
+	 * Compiles the checks for a descriptor.
+	 */
+	private static Check compile(TypeDescriptor type, int limit) {
+		if(type instanceof WildcardType)
+			type = ((WildcardType)type).getUpperBound();
+		if(type instanceof TypeVariableDescriptor)
+			type = ((TypeVariableDescriptor)type).getUpperBound();
+		
+		if(type instanceof SimpleType) {
+			final Class<?> clazz = ((SimpleType)type).getRawClass();
+			if(clazz.isPrimitive())
+				return new ClassCheck(wrapperOf(clazz), false);
+			return (clazz == Object.class ? ANY : new ClassCheck(clazz, true));
+		} else if(type instanceof GenericType) {
+			final GenericType generic = (GenericType)type;
+			final Class<?> clazz = generic.getRawClass();
+			if(limit > 0) {
+				final SupertypeIndex supertypes = SupertypeIndex.forClass(clazz);
+				final TypeDescriptor [] params = new TypeDescriptor[generic.getNumParameters()];
+				for(int index = 0; index < params.length; ++index)
+					params[index] = generic.getParameter(index);
+				
+				final TypeDescriptor [] mapParams = parametersOf(clazz, supertypes, Map.class, params);
+				if(mapParams != null) {
+					final Check key = compile(mapParams[0], limit);
+					final Check value = compile(mapParams[1], limit);
+					if(key != ANY || value != ANY)
+						return new MapCheck(clazz, key, value, limit);
+				}
+				
+				final TypeDescriptor [] iterableParams = parametersOf(clazz, supertypes, Iterable.class, params);
+				if(iterableParams != null) {
+					final Check element = compile(iterableParams[0], limit);
+					if(element != ANY)
+						return new IterableCheck(clazz, element, limit);
+				}
+			}
+			return new ClassCheck(clazz, true);
+		} else if(type instanceof ArrayType) {
+			final ArrayType array = (ArrayType)type;
+			if(limit > 0 && array.getElementType() instanceof GenericType) {
+				final TypeDescriptor component = (array.getNumDimensions() == 1
+					? array.getElementType()
+					: new ArrayType(array.getElementType(), array.getNumDimensions() - 1));
+				final Check check = compile(component, limit);
+				if(!(check instanceof ClassCheck))
+					return new ArrayCheck(array.getArrayClass(), check, limit);
+			}
+			return new ClassCheck(array.getArrayClass(), true);
+		}
+		throw new IllegalArgumentException("Cannot check instances of descriptor type: " + type.getClass().getName());
+	}
+	
+	/**
+	 * Maps a generic type's parameters onto one of its class' supertypes.
+	 * 
+	 * @return the supertype's parameters, or <code>null</code> if it is not
+	 *         a generic supertype of the class
+	 */
+	private static TypeDescriptor [] parametersOf(Class<?> clazz, SupertypeIndex supertypes, Class<?> supertype, TypeDescriptor [] params) {
+		return (clazz == supertype ? params : supertypes.parametersOf(supertype, params));
+	}
+	
+	/**
+	 * Gets the wrapper class of a primitive class.
+	 */
+	static Class<?> wrapperOf(Class<?> clazz) {
+		if(clazz == int.class) return Integer.class;
+		if(clazz == long.class) return Long.class;
+		if(clazz == double.class) return Double.class;
+		if(clazz == float.class) return Float.class;
+		if(clazz == boolean.class) return Boolean.class;
+		if(clazz == char.class) return Character.class;
+		if(clazz == byte.class) return Byte.class;
+		if(clazz == short.class) return Short.class;
+		return Void.class;
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A canonicalizing pool of type descriptors. Trees are interned bottom-up,
+ * so two structurally equal descriptors obtained from the pool are always
+ * the same instance, and can be compared by reference.
+ * 
+ * The pool only weakly references descriptors. An interned descriptor (and
+ * hence the classes it refers to) stays in the pool only as long as
+ * something else refers to it, so class unloading is unaffected. The pool
+ * is a concurrent map, so looking up a descriptor that is already interned
+ * takes no lock.
+ */
+final class InternPool {
+	/**
+	 * A weak reference to a canonical descriptor, which is both a key and a
+	 * value of the pool. Cleared references are only equal to themselves.
+	 */
+	private static final class Entry extends WeakReference<TypeDescriptor> {
+		/** Hash code of the descriptor */
+		final int hash;
+		
+		Entry(TypeDescriptor type, ReferenceQueue<TypeDescriptor> queue) {
+			super(type, queue);
+			this.hash = type.hashCode();
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj)
+				return true;
+			
+			final TypeDescriptor type = get();
+			if(type == null)
+				return false;
+			if(obj instanceof Entry)
+				return type.equals(((Entry)obj).get());
+			if(obj instanceof Lookup)
+				return type.equals(((Lookup)obj).type);
+			return false;
+		}
+	}
+	
+	/**
+	 * A strongly referencing key used to look up a descriptor.
+	 */
+	private static final class Lookup {
+		final TypeDescriptor type;
+		
+		Lookup(TypeDescriptor type) {
+			this.type = type;
+		}
+		
+		@Override
+		public int hashCode() {
+			return type.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(obj instanceof Entry) {
+				final TypeDescriptor canonical = ((Entry)obj).get();
+				return (canonical != null && type.equals(canonical));
+			}
+			return false;
+		}
+	}
+	
+	/** Canonical descriptors, each entry mapped to itself */
+	private static final ConcurrentHashMap<Object, Entry> pool = new ConcurrentHashMap<Object, Entry>();
+	
+	/** Queue of entries whose descriptors have been collected */
+	private static final ReferenceQueue<TypeDescriptor> queue = new ReferenceQueue<TypeDescriptor>();
+	
+	private InternPool() { }
+	
+	/**
+	 * Gets the canonical instance of a descriptor, adding it to the pool if
+	 * no equal descriptor has been interned yet.
+	 * 
+	 * @param type  the type descriptor
+	 * 
+	 * @return the canonical descriptor equal to the given one
+	 * 
+	 * @throws NullPointerException  if the descriptor is <code>null</code>
+	 */
+	static TypeDescriptor intern(TypeDescriptor type) {
+		if(type == null)
+			throw new NullPointerException("Type descriptor cannot be null");
+		
+		type = LazyType.unwrap(type);
+		if(type instanceof GenericType)
+			type = ((GenericType)type).withInternedParams();
+		else if(type instanceof WildcardType)
+			type = ((WildcardType)type).withInternedBound();
+		else if(type instanceof ArrayType)
+			type = ((ArrayType)type).withInternedElementType();
+		return internShallow(type);
+	}
+	
+	/**
+	 * Gets the canonical instance of a descriptor whose nested descriptors
+	 * are already interned, as when a tree is built bottom-up from interned
+	 * descriptors. Unlike {@link #intern(TypeDescriptor)}, nested
+	 * descriptors are not visited again.
+	 * 
+	 * @param type  the type descriptor, whose nested descriptors are interned
+	 * 
+	 * @return the canonical descriptor equal to the given one
+	 */
+	static TypeDescriptor internShallow(TypeDescriptor type) {
+		final Entry found = pool.get(new Lookup(type));
+		if(found != null) {
+			final TypeDescriptor canonical = found.get();
+			if(canonical != null)
+				return canonical;
+		}
+		
+		expungeStaleEntries();
+		final Entry entry = new Entry(type, queue);
+		while(true) {
+			// A racing thread may intern an equal descriptor first, in which case
+			// its descriptor is canonical
+			final Entry existing = pool.putIfAbsent(entry, entry);
+			if(existing == null)
+				return type;
+			
+			final TypeDescriptor canonical = existing.get();
+			if(canonical != null)
+				return canonical;
+			
+			// Equal to a collected descriptor, whose entry is still queued
+			pool.remove(existing, existing);
+		}
+	}
+	
+	/**
+	 * Removes entries whose descriptors have been garbage collected.
+	 */
+	private static void expungeStaleEntries() {
+		Reference<? extends TypeDescriptor> ref;
+		while((ref = queue.poll()) != null)
+			pool.remove(ref, ref);
+	}
+	
+	/**
+	 * Gets the number of descriptors currently in the pool. Descriptors that
+	 * have been garbage collected may still be counted until the pool next
+	 * expunges stale entries.
+	 * 
+	 * @return the number of interned descriptors
+	 */
+	static int size() {
+		expungeStaleEntries();
+		return pool.size();
+	}
+}
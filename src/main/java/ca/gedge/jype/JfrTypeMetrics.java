@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * {@link TypeMetrics} that emit JDK Flight Recorder events, for profiling
+ * in production. Each operation emits a <code>ca.gedge.jype.Operation</code>
+ * event, and each descriptor construction a
+ * <code>ca.gedge.jype.DescriptorCreated</code> event. Descriptors are
+ * constructed very often, so the latter are disabled unless enabled in the
+ * recording's settings.
+ * 
+ * Events are only built while a recording has them enabled, so these
+ * metrics cost little more than {@link TypeMetrics#NONE} otherwise.
+ */
+public final class JfrTypeMetrics implements TypeMetrics {
+	/**
+	 * A measured operation.
+	 */
+	@Name("ca.gedge.jype.Operation")
+	@Label("Jype Operation")
+	@Category("Jype")
+	@Description("Parsing, conversion from a flat list of classes, or an assignability check")
+	@StackTrace(false)
+	static final class OperationEvent extends Event {
+		@Label("Operation")
+		String operation;
+		
+		@Label("Time")
+		@Timespan(Timespan.NANOSECONDS)
+		long time;
+		
+		@Label("Failure")
+		@Description("Class of the exception thrown, if the operation failed")
+		String failure;
+	}
+	
+	/**
+	 * The construction of a descriptor.
+	 */
+	@Name("ca.gedge.jype.DescriptorCreated")
+	@Label("Jype Descriptor Created")
+	@Category("Jype")
+	@Enabled(false)
+	@StackTrace(false)
+	static final class CreatedEvent extends Event {
+		@Label("Kind")
+		Class<?> kind;
+	}
+	
+	public void recordSuccess(Operation operation, long nanos) {
+		final OperationEvent event = new OperationEvent();
+		if(event.shouldCommit()) {
+			event.operation = operation.name();
+			event.time = nanos;
+			event.commit();
+		}
+	}
+	
+	public void recordFailure(Operation operation, long nanos, Throwable cause) {
+		final OperationEvent event = new OperationEvent();
+		if(event.shouldCommit()) {
+			event.operation = operation.name();
+			event.time = nanos;
+			event.failure = cause.getClass().getName();
+			event.commit();
+		}
+	}
+	
+	public void recordCreated(Class<? extends TypeDescriptor> kind) {
+		final CreatedEvent event = new CreatedEvent();
+		if(event.shouldCommit()) {
+			event.kind = kind;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.util.Set;
+
+/**
+ * A descriptor parsed from a type string whose classes are resolved on
+ * first use, which avoids loading classes that are never used (see
+ * {@link TypeFactory#parseLazily(String, ClassResolver)}). The syntax of
+ * the string is checked up front. Everything else waits for the first
+ * call to any method other than {@link #toString()},
+ * {@link #getTypeString()} and {@link #isResolved()}. That call parses the
+ * string again with its resolver, which happens once even if several
+ * threads use the descriptor at the same time, and delegates to the
+ * resulting interned descriptor from then on.
+ * 
+ * Resolution can fail after the descriptor has been handed out. A class
+ * that cannot be found surfaces as a {@link TypeNotPresentException}, and
+ * a generic parameter count that does not match its class surfaces as an
+ * {@link IllegalArgumentException}. A failure is remembered, and the same
+ * exception is thrown on every later use.
+ * 
+ * Lazy descriptors compare equal to the descriptors they resolve to, and
+ * comparing or hashing one resolves it but never throws: a descriptor that
+ * cannot be resolved is only equal to itself. Other
+ * descriptors and Jype's own classes unwrap them where they are given, so a
+ * lazy descriptor is resolved when it is nested in another descriptor,
+ * interned, encoded, or used as an argument to
+ * {@link TypeDescriptor#isAssignableFrom(TypeDescriptor)}.
+ */
+public final class LazyType implements TypeDescriptor {
+	/** The type string */
+	private final String typeString;
+	
+	/** Resolver for class names, dropped once resolved */
+	private ClassResolver resolver;
+	
+	/** The resolved descriptor, or <code>null</code> until resolved */
+	private volatile TypeDescriptor resolved;
+	
+	/**
+	 * The exception thrown by resolution, or <code>null</code> unless it
+	 * failed. Only written while holding the lock on this descriptor.
+	 */
+	private volatile RuntimeException failure;
+	
+	/** Hash code of the type string without whitespace */
+	private final int fallbackHash;
+	
+	/**
+	 * Constructs a lazy descriptor. The type string must already have been
+	 * checked with {@link TypeParser#validate()}.
+	 * 
+	 * @param typeString  the type string
+	 * @param resolver  the resolver for class names
+	 */
+	LazyType(String typeString, ClassResolver resolver) {
+		this.typeString = typeString;
+		this.resolver = resolver;
+		this.fallbackHash = hashWithoutWhitespace(typeString);
+		Metrics.created(LazyType.class);
+	}
+	
+	/**
+	 * Computes the hash code a string would have with all of its whitespace
+	 * removed, without building that string.
+	 */
+	private static int hashWithoutWhitespace(String str) {
+		int hash = 0;
+		for(int index = 0; index < str.length(); ++index) {
+			final char c = str.charAt(index);
+			if(!Character.isWhitespace(c))
+				hash = 31*hash + c;
+		}
+		return hash;
+	}
+	
+	/**
+	 * Resolves a descriptor if it is lazy.
+	 * 
+	 * @param type  the descriptor, or <code>null</code>
+	 * 
+	 * @return the resolved descriptor if the given one is lazy, otherwise
+	 *         the given descriptor
+	 */
+	static TypeDescriptor unwrap(TypeDescriptor type) {
+		return (type instanceof LazyType ? ((LazyType)type).resolve() : type);
+	}
+	
+	/**
+	 * @return the type string this descriptor was parsed from
+	 */
+	public String getTypeString() {
+		return typeString;
+	}
+	
+	/**
+	 * Tests whether or not this descriptor has been resolved. A descriptor
+	 * whose resolution failed is not resolved.
+	 * 
+	 * @return <code>true</code> if resolved, <code>false</code> otherwise
+	 */
+	public boolean isResolved() {
+		return (resolved != null);
+	}
+	
+	/**
+	 * Gets the descriptor this one resolves to, resolving it if needed.
+	 * 
+	 * @return the interned descriptor
+	 * 
+	 * @throws TypeNotPresentException  if any class in the type string is
+	 *                                  unknown
+	 * @throws IllegalArgumentException  if the number of generic parameters
+	 *                                   given does not match a class
+	 */
+	public TypeDescriptor resolve() {
+		final TypeDescriptor type = resolved;
+		return (type != null ? type : resolveSlowly());
+	}
+	
+	/**
+	 * Gets the descriptor this one resolves to, resolving it if needed, for
+	 * comparisons that must not throw.
+	 * 
+	 * @return the interned descriptor, or <code>null</code> if resolution
+	 *         failed
+	 */
+	TypeDescriptor resolveQuietly() {
+		final TypeDescriptor type = resolved;
+		if(type != null)
+			return type;
+		
+		// A failure is final, so don't rethrow it just to catch it again
+		if(failure != null)
+			return null;
+		
+		try {
+			return resolveSlowly();
+		} catch(RuntimeException exc) {
+			return null;
+		}
+	}
+	
+	private synchronized TypeDescriptor resolveSlowly() {
+		if(resolved != null)
+			return resolved;
+		if(failure != null)
+			throw failure;
+		
+		try {
+			resolved = TypeFactory.parse(typeString, resolver);
+		} catch(ClassNotFoundException exc) {
+			failure = new TypeNotPresentException(typeString, exc);
+		} catch(RuntimeException exc) {
+			failure = exc;
+		}
+		
+		resolver = null;
+		if(failure != null)
+			throw failure;
+		return resolved;
+	}
+	
+	@Override
+	public boolean isAssignableFrom(TypeDescriptor type) {
+		return resolve().isAssignableFrom(type);
+	}
+	
+	@Override
+	public int getDepth() {
+		return resolve().getDepth();
+	}
+	
+	@Override
+	public int getNodeCount() {
+		return resolve().getNodeCount();
+	}
+	
+	@Override
+	public Set<Class<?>> getReferencedClasses() {
+		return resolve().getReferencedClasses();
+	}
+	
+	@Override
+	public boolean hasPrimitive() {
+		return resolve().hasPrimitive();
+	}
+	
+	/**
+	 * Gets the hash code of the resolved descriptor. If resolution fails,
+	 * this is instead the hash code of the type string without whitespace.
+	 */
+	@Override
+	public int hashCode() {
+		final TypeDescriptor type = resolveQuietly();
+		return (type != null ? type.hashCode() : fallbackHash);
+	}
+	
+	/**
+	 * Tests whether or not the resolved descriptor is equal to an object. If
+	 * resolution fails, this descriptor is only equal to itself.
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+		
+		final TypeDescriptor type = resolveQuietly();
+		if(type == null)
+			return false;
+		if(obj instanceof LazyType)
+			obj = ((LazyType)obj).resolveQuietly();
+		return type.equals(obj);
+	}
+	
+	/**
+	 * Gets the string of the resolved descriptor if this descriptor has been
+	 * resolved, otherwise the type string it was parsed from, which does not
+	 * resolve it. The type string may differ from the string of the resolved
+	 * descriptor, for example in whitespace or short class names.
+	 */
+	@Override
+	public String toString() {
+		final TypeDescriptor type = resolved;
+		return (type != null ? type.toString() : typeString);
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Memoized descriptors for the members of a single class, so that each
+ * member's generic type is converted at most once.
+ */
+final class MemberTypeCache {
+	/** Caches for each class */
+	private static final ClassCache<MemberTypeCache> caches = new ClassCache<MemberTypeCache>() {
+		@Override
+		protected MemberTypeCache computeValue(Class<?> clazz) {
+			return new MemberTypeCache();
+		}
+	};
+	
+	/**
+	 * Gets the cache for a class, creating it if necessary.
+	 * 
+	 * @param clazz  the class declaring the members
+	 * 
+	 * @return the cache for the given class
+	 */
+	static MemberTypeCache forClass(Class<?> clazz) {
+		return caches.get(clazz);
+	}
+	
+	/** Descriptors for field types and method return types */
+	private final ConcurrentMap<Member, TypeDescriptor> types =
+		new ConcurrentHashMap<Member, TypeDescriptor>();
+	
+	/** Templates for field types and method return types */
+	private final ConcurrentMap<Member, TypeDescriptor> templates =
+		new ConcurrentHashMap<Member, TypeDescriptor>();
+	
+	/** Descriptors for method and constructor parameter types */
+	private final ConcurrentMap<Member, List<TypeDescriptor>> parameterTypes =
+		new ConcurrentHashMap<Member, List<TypeDescriptor>>();
+	
+	private MemberTypeCache() { }
+	
+	/**
+	 * @param field  a field of this cache's class
+	 * 
+	 * @return a descriptor for the field's generic type
+	 */
+	TypeDescriptor fieldType(Field field) {
+		TypeDescriptor type = types.get(field);
+		if(type == null) {
+			type = TypeFactory.fromType(field.getGenericType());
+			types.putIfAbsent(field, type);
+		}
+		return type;
+	}
+	
+	/**
+	 * @param method  a method of this cache's class
+	 * 
+	 * @return a descriptor for the method's generic return type
+	 */
+	TypeDescriptor returnType(Method method) {
+		TypeDescriptor type = types.get(method);
+		if(type == null) {
+			type = TypeFactory.fromType(method.getGenericReturnType());
+			types.putIfAbsent(method, type);
+		}
+		return type;
+	}
+	
+	/**
+	 * @param field  a field of this cache's class
+	 * 
+	 * @return a template for the field's generic type
+	 */
+	TypeDescriptor fieldTemplate(Field field) {
+		TypeDescriptor template = templates.get(field);
+		if(template == null) {
+			template = TypeFactory.templateOf(field.getGenericType());
+			templates.putIfAbsent(field, template);
+		}
+		return template;
+	}
+	
+	/**
+	 * @param method  a method of this cache's class
+	 * 
+	 * @return a template for the method's generic return type
+	 */
+	TypeDescriptor returnTemplate(Method method) {
+		TypeDescriptor template = templates.get(method);
+		if(template == null) {
+			template = TypeFactory.templateOf(method.getGenericReturnType());
+			templates.putIfAbsent(method, template);
+		}
+		return template;
+	}
+	
+	/**
+	 * @param method  a method of this cache's class
+	 * 
+	 * @return descriptors for the method's generic parameter types
+	 */
+	List<TypeDescriptor> parameterTypes(Method method) {
+		List<TypeDescriptor> params = parameterTypes.get(method);
+		if(params == null) {
+			params = fromTypes(method.getGenericParameterTypes());
+			parameterTypes.putIfAbsent(method, params);
+		}
+		return params;
+	}
+	
+	/**
+	 * @param constructor  a constructor of this cache's class
+	 * 
+	 * @return descriptors for the constructor's generic parameter types
+	 */
+	List<TypeDescriptor> parameterTypes(Constructor<?> constructor) {
+		List<TypeDescriptor> params = parameterTypes.get(constructor);
+		if(params == null) {
+			params = fromTypes(constructor.getGenericParameterTypes());
+			parameterTypes.putIfAbsent(constructor, params);
+		}
+		return params;
+	}
+	
+	/**
+	 * Converts an array of reflected types to an unmodifiable list of descriptors.
+	 */
+	private static List<TypeDescriptor> fromTypes(Type [] types) {
+		final TypeDescriptor [] descriptors = new TypeDescriptor[types.length];
+		for(int index = 0; index < types.length; ++index)
+			descriptors[index] = TypeFactory.fromType(types[index]);
+		return Collections.unmodifiableList(Arrays.asList(descriptors));
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+/**
+ * Holds the installed {@link TypeMetrics}.
+ */
+final class Metrics {
+	/** The installed metrics, or <code>null</code> if metrics are disabled */
+	static volatile TypeMetrics current;
+	
+	private Metrics() {}
+	
+	/**
+	 * Records the construction of a descriptor, if metrics are enabled.
+	 * 
+	 * @param kind  the class of the descriptor
+	 */
+	static void created(Class<? extends TypeDescriptor> kind) {
+		final TypeMetrics metrics = current;
+		if(metrics != null)
+			metrics.recordCreated(kind);
+	}
+	
+	/**
+	 * Tests assignability without recording metrics, so that checks nested
+	 * within a check are not recorded separately.
+	 * 
+	 * @param target  the descriptor being assigned to
+	 * @param source  the descriptor being assigned from
+	 * 
+	 * @return <code>target.isAssignableFrom(source)</code>
+	 */
+	static boolean isAssignable(TypeDescriptor target, TypeDescriptor source) {
+		if(target instanceof SimpleType)
+			return ((SimpleType)target).assignableFrom(source);
+		if(target instanceof GenericType)
+			return ((GenericType)target).assignableFrom(source);
+		if(target instanceof WildcardType)
+			return ((WildcardType)target).assignableFrom(source);
+		if(target instanceof ArrayType)
+			return ((ArrayType)target).assignableFrom(source);
+		if(target instanceof TypeVariableDescriptor)
+			return ((TypeVariableDescriptor)target).assignableFrom(source);
+		return target.isAssignableFrom(source);
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the measurements of one operation, taken by
+ * {@link InMemoryTypeMetrics#getStatistics(TypeMetrics.Operation)}.
+ */
+public final class OperationStatistics {
+	/** The operation measured */
+	private final TypeMetrics.Operation operation;
+	
+	/** Number of operations, including failures */
+	private final long count;
+	
+	/** Number of operations that threw an exception */
+	private final long failureCount;
+	
+	/** Total time spent in the operation, in nanoseconds */
+	private final long totalTime;
+	
+	/** Number of operations in each latency bucket */
+	private final long [] histogram;
+	
+	/** Number of failures, by exception class name */
+	private final Map<String, Long> failures;
+	
+	/**
+	 * Constructs a statistics snapshot, taking ownership of the histogram
+	 * and failure map.
+	 */
+	OperationStatistics(TypeMetrics.Operation operation, long count, long failureCount, long totalTime, long [] histogram, Map<String, Long> failures) {
+		this.operation = operation;
+		this.count = count;
+		this.failureCount = failureCount;
+		this.totalTime = totalTime;
+		this.histogram = histogram;
+		this.failures = failures;
+	}
+	
+	/**
+	 * @return the operation measured
+	 */
+	public TypeMetrics.Operation getOperation() {
+		return operation;
+	}
+	
+	/**
+	 * @return the number of operations, including failures
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * @return the number of operations that threw an exception
+	 */
+	public long getFailureCount() {
+		return failureCount;
+	}
+	
+	/**
+	 * @return the total time spent in the operation, in nanoseconds
+	 */
+	public long getTotalTime() {
+		return totalTime;
+	}
+	
+	/**
+	 * @return the average time of an operation, in nanoseconds, or 0 if
+	 *         there have been no operations
+	 */
+	public double getAverageTime() {
+		return (count == 0 ? 0.0 : (double)totalTime / count);
+	}
+	
+	/**
+	 * Gets an upper bound on a percentile of the operation's latency. The
+	 * bound is at most twice the true percentile.
+	 * 
+	 * @param percentile  the percentile, between 0 and 100
+	 * 
+	 * @return an upper bound on the percentile, in nanoseconds, or 0 if there
+	 *         have been no operations
+	 * 
+	 * @throws IllegalArgumentException  if the percentile is out of range
+	 */
+	public long getPercentile(double percentile) {
+		if(!(percentile >= 0 && percentile <= 100))
+			throw new IllegalArgumentException("Percentile must be between 0 and 100");
+		
+		final long rank = (long)Math.ceil(count * percentile / 100.0);
+		long seen = 0;
+		for(int bucket = 0; bucket < histogram.length; ++bucket) {
+			seen += histogram[bucket];
+			if(seen >= rank && seen > 0)
+				return (1L << bucket) - 1;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Gets the latency histogram. Bucket 0 counts operations taking 0ns, and
+	 * bucket <i>i</i> those taking [2<sup><i>i</i>-1</sup>, 2<sup><i>i</i></sup>) ns.
+	 * 
+	 * @return a copy of the histogram
+	 */
+	public long [] getHistogram() {
+		return histogram.clone();
+	}
+	
+	/**
+	 * @return an unmodifiable map from exception class name to the number of
+	 *         failures that threw it
+	 */
+	public Map<String, Long> getFailureCounts() {
+		return failures;
+	}
+	
+	@Override
+	public String toString() {
+		return "OperationStatistics[" + operation
+		       + ",count=" + count
+		       + ",failures=" + failureCount
+		       + ",time=" + totalTime + "ns"
+		       + ",p50=" + getPercentile(50) + "ns"
+		       + ",p99=" + getPercentile(99) + "ns]";
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe cache in front of {@link TypeFactory#parse(String, ClassResolver)},
+ * keyed by the raw type string. Each cache resolves classes with a single
+ * {@link ClassResolver}, so applications with several class loaders should
+ * use one cache per loader.
+ * 
+ * Cached descriptors are read without locking. When full, an entry that
+ * has not been used recently is evicted, using the second-chance (clock)
+ * approximation of least recently used, as in {@link AssignabilityCache}.
+ * Strings that fail to parse are never cached.
+ */
+public class ParseCache {
+	/** Default maximum number of entries */
+	public static final int DEFAULT_MAXIMUM_SIZE = 4096;
+	
+	/**
+	 * A cached descriptor.
+	 */
+	private static final class Entry {
+		/** The type string */
+		final String typeString;
+		
+		/** The parsed descriptor */
+		final TypeDescriptor type;
+		
+		/**
+		 * Whether or not this entry has been used since the clock hand last
+		 * passed it. Racy, since a lost update only affects which entry is
+		 * evicted.
+		 */
+		boolean referenced;
+		
+		Entry(String typeString, TypeDescriptor type) {
+			this.typeString = typeString;
+			this.type = type;
+		}
+	}
+	
+	/** The resolver for class names */
+	private final ClassResolver resolver;
+	
+	/** Maximum number of entries */
+	private final int maximumSize;
+	
+	/** Cached entries, keyed by type string */
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	
+	/**
+	 * Entries in the order the clock hand visits them, guarded by this
+	 * queue. Changes to the entries map are also made holding this lock.
+	 */
+	private final ArrayDeque<Entry> clock = new ArrayDeque<Entry>();
+	
+	/** Statistics */
+	private final LongAdder hitCount = new LongAdder(), missCount = new LongAdder(),
+	                        evictionCount = new LongAdder(), totalLoadTime = new LongAdder();
+	
+	/**
+	 * Constructs a cache with the default maximum size that resolves classes
+	 * in the same way as {@link TypeFactory#parse(String)}.
+	 */
+	public ParseCache() {
+		this(DEFAULT_MAXIMUM_SIZE);
+	}
+	
+	/**
+	 * Constructs a cache holding at most the given number of entries that
+	 * resolves classes in the same way as {@link TypeFactory#parse(String)}.
+	 * 
+	 * @param maximumSize  the maximum number of entries
+	 * 
+	 * @throws IllegalArgumentException  if maximumSize is non-positive
+	 */
+	public ParseCache(int maximumSize) {
+		this(TypeFactory.getDefaultClassResolver(), maximumSize);
+	}
+	
+	/**
+	 * Constructs a cache holding at most the given number of entries that
+	 * resolves classes with the given class loader.
+	 * 
+	 * @param loader  the class loader to load classes from, or <code>null</code>
+	 *                for the bootstrap class loader
+	 * @param maximumSize  the maximum number of entries
+	 * 
+	 * @throws IllegalArgumentException  if maximumSize is non-positive
+	 */
+	public ParseCache(ClassLoader loader, int maximumSize) {
+		this(new DefaultClassResolver(loader), maximumSize);
+	}
+	
+	/**
+	 * Constructs a cache holding at most the given number of entries that
+	 * resolves class names with the given resolver.
+	 * 
+	 * @param resolver  the resolver for class names
+	 * @param maximumSize  the maximum number of entries
+	 * 
+	 * @throws NullPointerException  if the resolver is <code>null</code>
+	 * @throws IllegalArgumentException  if maximumSize is non-positive
+	 */
+	public ParseCache(ClassResolver resolver, int maximumSize) {
+		if(resolver == null)
+			throw new NullPointerException("Class resolver cannot be null");
+		if(maximumSize < 1)
+			throw new IllegalArgumentException("Maximum size must be at least 1");
+		
+		this.resolver = resolver;
+		this.maximumSize = maximumSize;
+	}
+	
+	/**
+	 * Parse a {@link String} representation of a type, returning a previously
+	 * parsed descriptor if the same string has been parsed before. See
+	 * {@link TypeFactory#parse(String)} for the format.
+	 * 
+	 * @param typeString  string specification of a type to parse
+	 * 
+	 * @returns an applicable type descriptor
+	 * 
+	 * @throws IllegalArgumentException  if the given string is formatted incorrectly
+	 * @throws ClassNotFoundException  if any class in the given string is unknown
+	 */
+	public TypeDescriptor parse(String typeString) throws ClassNotFoundException {
+		if(typeString == null)
+			throw new NullPointerException("Type string cannot be null");
+		
+		final Entry cached = entries.get(typeString);
+		if(cached != null) {
+			if(!cached.referenced)
+				cached.referenced = true;
+			hitCount.increment();
+			return cached.type;
+		}
+		missCount.increment();
+		
+		// Parse outside the lock, since loading classes can be slow. Racing
+		// threads get the same interned descriptor, so it doesn't matter which
+		// one ends up in the cache.
+		final long start = System.nanoTime();
+		try {
+			final TypeDescriptor type = TypeFactory.parse(typeString, resolver);
+			final Entry entry = new Entry(typeString, type);
+			synchronized(clock) {
+				// Evict before adding, so the new entry is not the victim
+				if(!entries.containsKey(typeString)) {
+					while(clock.size() >= maximumSize)
+						evict();
+					entries.put(typeString, entry);
+					clock.addLast(entry);
+				}
+			}
+			return type;
+		} finally {
+			totalLoadTime.add(System.nanoTime() - start);
+		}
+	}
+	
+	/**
+	 * Evicts the first entry from the clock queue that has not been used
+	 * since it was last visited, giving used entries a second chance. Must be
+	 * called while holding the lock on the clock queue.
+	 */
+	private void evict() {
+		while(true) {
+			final Entry entry = clock.pollFirst();
+			if(entry.referenced) {
+				entry.referenced = false;
+				clock.addLast(entry);
+			} else {
+				entries.remove(entry.typeString, entry);
+				evictionCount.increment();
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * @return the resolver this cache resolves class names with
+	 */
+	public ClassResolver getClassResolver() {
+		return resolver;
+	}
+	
+	/**
+	 * @return the maximum number of entries this cache will hold
+	 */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+	
+	/**
+	 * @return the number of entries currently in the cache
+	 */
+	public int size() {
+		synchronized(clock) {
+			return clock.size();
+		}
+	}
+	
+	/**
+	 * Removes all entries from the cache. Statistics are not reset.
+	 */
+	public void clear() {
+		synchronized(clock) {
+			entries.clear();
+			clock.clear();
+		}
+	}
+	
+	/**
+	 * Gets a snapshot of this cache's statistics. Counters are read one at a
+	 * time, so the snapshot may not reflect a single instant under
+	 * concurrent use.
+	 * 
+	 * @return the cache statistics
+	 */
+	public CacheStatistics getStatistics() {
+		return new CacheStatistics(hitCount.sum(), missCount.sum(), evictionCount.sum(), totalLoadTime.sum());
+	}
+}
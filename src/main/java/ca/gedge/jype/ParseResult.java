@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+/**
+ * The outcome of parsing one type string in a batch (see {@link BatchParser}).
+ */
+public final class ParseResult {
+	/** Position of the type string in the batch */
+	private final int index;
+	
+	/** The type string that was parsed */
+	private final String typeString;
+	
+	/** The parsed type, or <code>null</code> if parsing failed */
+	private final TypeDescriptor type;
+	
+	/** The reason parsing failed, or <code>null</code> if it succeeded */
+	private final Throwable error;
+	
+	/**
+	 * Constructs a result.
+	 * 
+	 * @param index  position of the type string in the batch
+	 * @param typeString  the type string that was parsed
+	 * @param type  the parsed type, or <code>null</code> if parsing failed
+	 * @param error  the reason parsing failed, or <code>null</code> if it succeeded
+	 */
+	ParseResult(int index, String typeString, TypeDescriptor type, Throwable error) {
+		this.index = index;
+		this.typeString = typeString;
+		this.type = type;
+		this.error = error;
+	}
+	
+	/**
+	 * Gets the position of the type string in the batch. For batches read
+	 * from a {@link java.io.Reader}, this is the zero-based line number.
+	 * 
+	 * @return the position of the type string
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	/**
+	 * @return the type string that was parsed
+	 */
+	public String getTypeString() {
+		return typeString;
+	}
+	
+	/**
+	 * @return <code>true</code> if the type string was parsed successfully,
+	 *         <code>false</code> otherwise
+	 */
+	public boolean isSuccess() {
+		return (error == null);
+	}
+	
+	/**
+	 * Gets the parsed type.
+	 * 
+	 * @return the parsed type
+	 * 
+	 * @throws IllegalStateException  if parsing failed
+	 */
+	public TypeDescriptor getType() {
+		if(error != null)
+			throw new IllegalStateException("Failed to parse \"" + typeString + "\"", error);
+		return type;
+	}
+	
+	/**
+	 * Gets the reason parsing failed. This is usually a
+	 * {@link ClassNotFoundException} or {@link IllegalArgumentException}, as
+	 * thrown by {@link TypeFactory#parse(String)}.
+	 * 
+	 * @return the reason parsing failed, or <code>null</code> if it succeeded
+	 */
+	public Throwable getError() {
+		return error;
+	}
+	
+	@Override
+	public String toString() {
+		return index + ": " + typeString + " -> " + (error == null ? type : error);
+	}
+}
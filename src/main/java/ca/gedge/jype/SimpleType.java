@@ -21,12 +21,26 @@
  */
 package ca.gedge.jype;
 
+import java.util.Collections;
+import java.util.Set;
+
 /**
- * A descriptor for a simple {@link Class}.
+ * A descriptor for a simple {@link Class}. Instances are immutable.
  */
-public class SimpleType implements TypeDescriptor {
+public final class SimpleType implements TypeDescriptor {
+	/** Interned simple types, mapped from their classes */
+	private static final ClassCache<SimpleType> byClass = new ClassCache<SimpleType>() {
+		@Override
+		protected SimpleType computeValue(Class<?> clazz) {
+			return (SimpleType)InternPool.intern(new SimpleType(clazz));
+		}
+	};
+	
 	/** The class describing this type */
-	private Class<?> clazz;
+	private final Class<?> clazz;
+	
+	/** Referenced classes, computed on first use */
+	private Set<Class<?>> classes;
 	
 	/**
 	 * Constructs a simple type from a given {@link Class}.
@@ -39,6 +53,52 @@ public class SimpleType implements TypeDescriptor {
 		if(clazz == null)
 			throw new NullPointerException("Class cannot be null");
 		this.clazz = clazz;
+		Metrics.created(SimpleType.class);
+	}
+	
+	/**
+	 * Gets the interned simple type describing a class. Results are cached
+	 * for each class.
+	 * 
+	 * @param clazz  the class
+	 * 
+	 * @return the interned simple type describing the given class
+	 * 
+	 * @throws NullPointerException  if the class is <code>null</code>
+	 */
+	static SimpleType forClass(Class<?> clazz) {
+		return byClass.get(clazz);
+	}
+	
+	/**
+	 * @return the class this type describes
+	 */
+	public Class<?> getRawClass() {
+		return clazz;
+	}
+	
+	@Override
+	public int getDepth() {
+		return 1;
+	}
+	
+	@Override
+	public int getNodeCount() {
+		return 1;
+	}
+	
+	@Override
+	public Set<Class<?>> getReferencedClasses() {
+		// Racy single-check, as in GenericType
+		Set<Class<?>> s = classes;
+		if(s == null)
+			classes = s = Collections.<Class<?>>singleton(clazz);
+		return s;
+	}
+	
+	@Override
+	public boolean hasPrimitive() {
+		return clazz.isPrimitive();
 	}
 	
 	@Override
@@ -46,15 +106,63 @@ public class SimpleType implements TypeDescriptor {
 		return clazz.hashCode();
 	}
 	
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+		if(obj instanceof LazyType)
+			obj = ((LazyType)obj).resolveQuietly();
+		
+		return (obj instanceof SimpleType
+		        && clazz == ((SimpleType)obj).clazz);
+	}
+	
 	@Override
 	public String toString() {
 		return clazz.getName();
 	}
 	
+	/**
+	 * Tests whether or not a given descriptor can be assigned to this descriptor.
+	 * Simple types and generic types are assignable if their class is a
+	 * subtype of this type's class, the latter through raw conversion.
+	 * Array types are assignable if the array class they erase to is, so
+	 * every array is assignable to Object, Cloneable and Serializable.
+	 * Wildcards and type variables are assignable if their upper bound is.
+	 * 
+	 * @param type  the type descriptor
+	 * 
+	 * @return <code>true</code> if the given descriptor can be assigned to
+	 *         this one, <code>false</code> otherwise
+	 */
 	@Override
 	public boolean isAssignableFrom(TypeDescriptor type) {
-		return (type != null
-		        && type instanceof SimpleType
-		        && clazz.isAssignableFrom( ((SimpleType)type).clazz ));
+		type = LazyType.unwrap(type);
+		final TypeMetrics metrics = Metrics.current;
+		if(metrics == null)
+			return assignableFrom(type);
+		
+		final long start = System.nanoTime();
+		final boolean assignable = assignableFrom(type);
+		metrics.recordSuccess(TypeMetrics.Operation.IS_ASSIGNABLE_FROM, System.nanoTime() - start);
+		return assignable;
+	}
+	
+	/**
+	 * Implements {@link #isAssignableFrom(TypeDescriptor)} without recording
+	 * metrics.
+	 */
+	boolean assignableFrom(TypeDescriptor type) {
+		if(type instanceof SimpleType)
+			return clazz.isAssignableFrom(((SimpleType)type).clazz);
+		if(type instanceof GenericType)
+			return clazz.isAssignableFrom(((GenericType)type).getRawClass());
+		if(type instanceof ArrayType)
+			return clazz.isAssignableFrom(((ArrayType)type).getArrayClass());
+		if(type instanceof WildcardType)
+			return assignableFrom(((WildcardType)type).getUpperBound());
+		if(type instanceof TypeVariableDescriptor)
+			return assignableFrom(((TypeVariableDescriptor)type).getUpperBound());
+		return false;
 	}
 }
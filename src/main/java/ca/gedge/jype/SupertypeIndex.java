@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the generic supertypes of a class, recording how each
+ * supertype's type parameters are bound in terms of the class' own type
+ * parameters. For example, the index for <code>HashMap&lt;K, V&gt;</code>
+ * maps <code>Map</code> to <code>[K, V]</code>, and the index for a class
+ * <code>StringMap&lt;V&gt; implements Map&lt;String, V&gt;</code> maps
+ * <code>Map</code> to <code>[String, V]</code>.
+ * 
+ * Bindings are stored as descriptor templates in which the class' type
+ * parameters appear as {@link TypeVariableDescriptor}s, and are substituted
+ * by position. Supertypes that are only inherited raw have no bindings.
+ */
+final class SupertypeIndex {
+	/** Indices for each class */
+	private static final ClassCache<SupertypeIndex> indices = new ClassCache<SupertypeIndex>() {
+		@Override
+		protected SupertypeIndex computeValue(Class<?> clazz) {
+			return new SupertypeIndex(clazz);
+		}
+	};
+	
+	/** All supertypes of each class, including itself and {@link Object} */
+	private static final ClassCache<Class<?>[]> allSupertypes = new ClassCache<Class<?>[]>() {
+		@Override
+		protected Class<?>[] computeValue(Class<?> clazz) {
+			final Set<Class<?>> classes = new LinkedHashSet<Class<?>>();
+			addSupertypes(clazz, classes);
+			if(!clazz.isPrimitive())
+				classes.add(Object.class);
+			return classes.toArray(new Class<?>[classes.size()]);
+		}
+		
+		private void addSupertypes(Class<?> clazz, Set<Class<?>> classes) {
+			if(clazz == null || !classes.add(clazz))
+				return;
+			addSupertypes(clazz.getSuperclass(), classes);
+			for(Class<?> iface : clazz.getInterfaces())
+				addSupertypes(iface, classes);
+		}
+	};
+	
+	/** Marker for supertypes that are only inherited raw */
+	private static final Binding RAW = new Binding(null, 0);
+	
+	/**
+	 * Gets the index for a class, computing it if necessary.
+	 * 
+	 * @param clazz  the class
+	 * 
+	 * @return the supertype index of the given class
+	 */
+	static SupertypeIndex forClass(Class<?> clazz) {
+		return indices.get(clazz);
+	}
+	
+	/**
+	 * Gets all supertypes of a class, generic or not: the class itself, its
+	 * superclasses and all interfaces it implements, and Object (unless the
+	 * class is primitive). Results are cached for each class.
+	 * 
+	 * @param clazz  the class
+	 * 
+	 * @return the supertypes, which must not be modified
+	 */
+	static Class<?> [] allSupertypes(Class<?> clazz) {
+		return allSupertypes.get(clazz);
+	}
+	
+	/**
+	 * How a supertype's type parameters are bound.
+	 */
+	private static final class Binding {
+		/** Templates for each of the supertype's type parameters */
+		final TypeDescriptor [] templates;
+		
+		/** Whether the templates are exactly the class' own type parameters, in order */
+		final boolean identity;
+		
+		/** Whether the templates refer to none of the class' type parameters */
+		final boolean fixed;
+		
+		Binding(TypeDescriptor [] templates, int numParams) {
+			this.templates = templates;
+			
+			boolean identity = (templates != null && templates.length == numParams);
+			boolean fixed = (templates != null);
+			if(templates != null) {
+				for(int index = 0; index < templates.length; ++index) {
+					final TypeDescriptor template = templates[index];
+					identity &= (template instanceof TypeVariableDescriptor && ((TypeVariableDescriptor)template).getIndex() == index);
+					fixed &= !containsRefs(template);
+				}
+			}
+			this.identity = identity;
+			this.fixed = fixed;
+		}
+	}
+	
+	/** Number of type parameters of the indexed class */
+	private final int numParams;
+	
+	/** Bindings for each generic supertype */
+	private final Map<Class<?>, Binding> bindings;
+	
+	/**
+	 * Builds the index of a class.
+	 */
+	private SupertypeIndex(Class<?> clazz) {
+		final TypeVariable<?> [] vars = clazz.getTypeParameters();
+		this.numParams = vars.length;
+		this.bindings = new HashMap<Class<?>, Binding>();
+		
+		final Type superclass = clazz.getGenericSuperclass();
+		if(superclass != null)
+			addSupertype(superclass, vars);
+		for(Type iface : clazz.getGenericInterfaces())
+			addSupertype(iface, vars);
+	}
+	
+	/**
+	 * Adds a direct supertype, along with its own supertypes.
+	 */
+	private void addSupertype(Type supertype, TypeVariable<?> [] vars) {
+		final Class<?> raw;
+		final Binding binding;
+		if(supertype instanceof ParameterizedType) {
+			final ParameterizedType parameterized = (ParameterizedType)supertype;
+			final Type [] args = parameterized.getActualTypeArguments();
+			final TypeDescriptor [] templates = new TypeDescriptor[args.length];
+			for(int index = 0; index < args.length; ++index)
+				templates[index] = toTemplate(args[index], vars);
+			
+			raw = (Class<?>)parameterized.getRawType();
+			binding = new Binding(templates, vars.length);
+		} else {
+			raw = (Class<?>)supertype;
+			binding = (raw.getTypeParameters().length == 0 ? new Binding(new TypeDescriptor[0], vars.length) : RAW);
+		}
+		
+		bind(raw, binding);
+		
+		// Bindings of the supertype's supertypes are in terms of the
+		// supertype's parameters, so substitute this binding into them
+		for(Map.Entry<Class<?>, Binding> entry : forClass(raw).bindings.entrySet()) {
+			final Binding inherited = entry.getValue();
+			if(binding == RAW || inherited == RAW) {
+				bind(entry.getKey(), RAW);
+			} else {
+				final TypeDescriptor [] templates = new TypeDescriptor[inherited.templates.length];
+				for(int index = 0; index < templates.length; ++index)
+					templates[index] = substitute(inherited.templates[index], binding.templates);
+				bind(entry.getKey(), new Binding(templates, vars.length));
+			}
+		}
+	}
+	
+	/**
+	 * Records a binding, preferring a parameterized binding over a raw one
+	 * when a supertype is reachable along several paths.
+	 */
+	private void bind(Class<?> supertype, Binding binding) {
+		final Binding existing = bindings.get(supertype);
+		if(existing == null || existing == RAW)
+			bindings.put(supertype, binding);
+	}
+	
+	/**
+	 * Converts a supertype's type argument to a template.
+	 */
+	private static TypeDescriptor toTemplate(Type type, TypeVariable<?> [] vars) {
+		if(type instanceof TypeVariable) {
+			for(int index = 0; index < vars.length; ++index) {
+				if(vars[index].equals(type))
+					return new TypeVariableDescriptor(vars[index]);
+			}
+		} else if(type instanceof ParameterizedType) {
+			final ParameterizedType parameterized = (ParameterizedType)type;
+			final Type [] args = parameterized.getActualTypeArguments();
+			final TypeDescriptor [] params = new TypeDescriptor[args.length];
+			for(int index = 0; index < args.length; ++index)
+				params[index] = toTemplate(args[index], vars);
+			return new GenericType((Class<?>)parameterized.getRawType(), params, false);
+		} else if(type instanceof java.lang.reflect.WildcardType) {
+			final java.lang.reflect.WildcardType wildcard = (java.lang.reflect.WildcardType)type;
+			final Type [] lowerBounds = wildcard.getLowerBounds();
+			if(lowerBounds.length > 0)
+				return WildcardType.withLowerBound(toTemplate(lowerBounds[0], vars));
+			return WildcardType.withUpperBound(toTemplate(wildcard.getUpperBounds()[0], vars));
+		} else if(type instanceof GenericArrayType) {
+			return ArrayType.arrayOf(toTemplate(((GenericArrayType)type).getGenericComponentType(), vars));
+		}
+		
+		// Type variables of enclosing classes and anything else we cannot
+		// represent are erased
+		return TypeFactory.fromType(type);
+	}
+	
+	/**
+	 * Tests whether or not a template refers to any type parameters.
+	 */
+	private static boolean containsRefs(TypeDescriptor template) {
+		if(template instanceof TypeVariableDescriptor)
+			return true;
+		
+		if(template instanceof WildcardType) {
+			final WildcardType wildcard = (WildcardType)template;
+			final TypeDescriptor lowerBound = wildcard.getLowerBound();
+			return containsRefs(lowerBound != null ? lowerBound : wildcard.getUpperBound());
+		}
+		
+		if(template instanceof ArrayType)
+			return containsRefs(((ArrayType)template).getElementType());
+		
+		if(template instanceof GenericType) {
+			final GenericType generic = (GenericType)template;
+			for(int index = 0; index < generic.getNumParameters(); ++index) {
+				if(containsRefs(generic.getParameter(index)))
+					return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Substitutes actual parameters for the type parameters in a template,
+	 * each of which is replaced by the actual parameter at its index. Subtrees
+	 * without type parameters are shared, not copied.
+	 * 
+	 * @param template  the template
+	 * @param args  the actual parameters
+	 * 
+	 * @return the substituted descriptor
+	 */
+	static TypeDescriptor substitute(TypeDescriptor template, TypeDescriptor [] args) {
+		if(template instanceof TypeVariableDescriptor)
+			return args[((TypeVariableDescriptor)template).getIndex()];
+		
+		if(template instanceof WildcardType) {
+			final WildcardType wildcard = (WildcardType)template;
+			final TypeDescriptor lowerBound = wildcard.getLowerBound();
+			return wildcard.withBound(substitute(lowerBound != null ? lowerBound : wildcard.getUpperBound(), args));
+		}
+		
+		if(template instanceof ArrayType) {
+			final ArrayType array = (ArrayType)template;
+			return array.withElementType(substitute(array.getElementType(), args));
+		}
+		
+		if(template instanceof GenericType) {
+			final GenericType generic = (GenericType)template;
+			TypeDescriptor [] params = null;
+			for(int index = 0; index < generic.getNumParameters(); ++index) {
+				final TypeDescriptor param = generic.getParameter(index);
+				final TypeDescriptor substituted = substitute(param, args);
+				if(substituted != param) {
+					if(params == null) {
+						params = new TypeDescriptor[generic.getNumParameters()];
+						for(int prev = 0; prev < index; ++prev)
+							params[prev] = generic.getParameter(prev);
+					}
+				}
+				if(params != null)
+					params[index] = substituted;
+			}
+			if(params != null)
+				return new GenericType(generic.getRawClass(), params, false);
+		}
+		return template;
+	}
+	
+	/**
+	 * Gets the actual type parameters of a supertype, given the actual type
+	 * parameters of the indexed class.
+	 * 
+	 * @param supertype  a supertype of the indexed class
+	 * @param args  the actual parameters of the indexed class
+	 * 
+	 * @return the actual parameters of the supertype, or <code>null</code>
+	 *         if the given class is not a generic supertype of the indexed
+	 *         class, or is only inherited raw. The returned array must not
+	 *         be modified.
+	 */
+	TypeDescriptor [] parametersOf(Class<?> supertype, TypeDescriptor [] args) {
+		final Binding binding = bindings.get(supertype);
+		if(binding == null || binding == RAW || args.length != numParams)
+			return null;
+		
+		if(binding.identity)
+			return args;
+		else if(binding.fixed)
+			return binding.templates;
+		
+		final TypeDescriptor [] params = new TypeDescriptor[binding.templates.length];
+		for(int index = 0; index < params.length; ++index)
+			params[index] = substitute(binding.templates[index], args);
+		return params;
+	}
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.TypeVariable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable set of bindings of type variables to actual types, used to
+ * resolve templates obtained from
+ * {@link TypeFactory#templateOf(java.lang.reflect.Type)}. For example, the
+ * bindings for <code>Repo&lt;String&gt;</code> bind the <code>T</code> of a
+ * class <code>Repo&lt;T&gt;</code> to <code>String</code>, and so resolve the
+ * return type <code>List&lt;T&gt;</code> of one of its methods to
+ * <code>List&lt;String&gt;</code>.
+ * 
+ * Substitution shares every subtree of a template that refers to no bound
+ * variable, and results are memoized per template, so resolving the members
+ * of a class graph converts each distinct template once. Bindings obtained
+ * from {@link #forType(TypeDescriptor)} and {@link #forSupertype(Class)} are
+ * themselves cached, so their memoized results are shared by all callers.
+ * 
+ * Bindings are thread-safe.
+ */
+public final class TypeBindings {
+	/** Maximum number of memoized substitutions per bindings */
+	private static final int MAX_MEMOIZED = 4096;
+	
+	/** Empty parameter list */
+	private static final TypeDescriptor [] NO_PARAMS = new TypeDescriptor[0];
+	
+	/** Bindings for non-generic and raw classes, mapped from the classes */
+	private static final ClassCache<TypeBindings> byClass = new ClassCache<TypeBindings>() {
+		@Override
+		protected TypeBindings computeValue(Class<?> clazz) {
+			return new TypeBindings(clazz, NO_PARAMS, Collections.<TypeVariableDescriptor, TypeDescriptor>emptyMap());
+		}
+	};
+	
+	/** The class whose type parameters are bound, or <code>null</code> */
+	private final Class<?> clazz;
+	
+	/** The actual parameters of the class, if any */
+	private final TypeDescriptor [] args;
+	
+	/** The interned actual type bound to each variable */
+	private final Map<TypeVariableDescriptor, TypeDescriptor> bindings;
+	
+	/** Memoized substitutions, keyed by template */
+	private final ConcurrentMap<TypeDescriptor, TypeDescriptor> substituted =
+		new ConcurrentHashMap<TypeDescriptor, TypeDescriptor>();
+	
+	/** Cached bindings for supertypes of the class */
+	private final ConcurrentMap<Class<?>, TypeBindings> supertypes =
+		new ConcurrentHashMap<Class<?>, TypeBindings>();
+	
+	/**
+	 * Constructs bindings.
+	 * 
+	 * @param clazz  the class whose type parameters are bound, or
+	 *               <code>null</code> if the bindings are not for a class
+	 * @param args  the actual parameters of the class
+	 * @param bindings  the interned actual type bound to each variable
+	 */
+	private TypeBindings(Class<?> clazz, TypeDescriptor [] args, Map<TypeVariableDescriptor, TypeDescriptor> bindings) {
+		this.clazz = clazz;
+		this.args = args;
+		this.bindings = bindings;
+	}
+	
+	/**
+	 * Gets bindings from explicitly given variables to actual types. Since
+	 * these bindings are not for a particular type, they cannot be used to
+	 * resolve members.
+	 * 
+	 * @param bindings  the actual type bound to each variable
+	 * 
+	 * @return bindings of the given variables
+	 * 
+	 * @throws NullPointerException  if any variable or type is <code>null</code>
+	 */
+	public static TypeBindings of(Map<TypeVariableDescriptor, ? extends TypeDescriptor> bindings) {
+		final Map<TypeVariableDescriptor, TypeDescriptor> copy = new HashMap<TypeVariableDescriptor, TypeDescriptor>();
+		for(Map.Entry<TypeVariableDescriptor, ? extends TypeDescriptor> entry : bindings.entrySet()) {
+			if(entry.getKey() == null)
+				throw new NullPointerException("Type variable cannot be null");
+			copy.put(entry.getKey(), InternPool.intern(entry.getValue()));
+		}
+		return new TypeBindings(null, NO_PARAMS, copy);
+	}
+	
+	/**
+	 * Gets the bindings of a type's class' type parameters to the type's
+	 * generic parameters. A {@link SimpleType} binds nothing; if its class is
+	 * generic (a raw type), its type variables are left unbound. Results are
+	 * cached for each type.
+	 * 
+	 * @param type  a simple or generic type
+	 * 
+	 * @return the bindings for the given type
+	 * 
+	 * @throws IllegalArgumentException  if the type is neither a simple nor
+	 *                                   a generic type
+	 * @throws NullPointerException  if the type is <code>null</code>
+	 */
+	public static TypeBindings forType(TypeDescriptor type) {
+		if(type == null)
+			throw new NullPointerException("Type cannot be null");
+		
+		type = LazyType.unwrap(type);
+		if(type instanceof GenericType)
+			return ((GenericType)InternPool.intern(type)).bindings();
+		if(type instanceof SimpleType)
+			return byClass.get(((SimpleType)type).getRawClass());
+		throw new IllegalArgumentException("Type must be a simple or generic type: " + type);
+	}
+	
+	/**
+	 * Creates the bindings for an interned generic type. Only to be called
+	 * by {@link GenericType}, which caches the result.
+	 */
+	static TypeBindings create(GenericType type) {
+		return create(type.getRawClass(), type.parameterArray());
+	}
+	
+	/**
+	 * Creates the bindings of a class' type parameters to interned actual
+	 * parameters.
+	 */
+	private static TypeBindings create(Class<?> clazz, TypeDescriptor [] args) {
+		final TypeVariable<?> [] vars = clazz.getTypeParameters();
+		final Map<TypeVariableDescriptor, TypeDescriptor> bindings = new HashMap<TypeVariableDescriptor, TypeDescriptor>();
+		for(int index = 0; index < vars.length; ++index)
+			bindings.put(new TypeVariableDescriptor(vars[index]), args[index]);
+		return new TypeBindings(clazz, args, bindings);
+	}
+	
+	/**
+	 * Gets the bindings of a supertype's type parameters, as inherited by the
+	 * type these bindings are for. For example, the bindings for
+	 * <code>ArrayList&lt;String&gt;</code> give bindings for
+	 * <code>List</code> binding its <code>E</code> to <code>String</code>.
+	 * A supertype that is only inherited raw binds nothing. Results are
+	 * cached.
+	 * 
+	 * @param supertype  the class or a superclass or superinterface of it
+	 * 
+	 * @return the bindings for the supertype
+	 * 
+	 * @throws IllegalArgumentException  if these bindings are not for a type,
+	 *                                   or the class is not a supertype of it
+	 */
+	public TypeBindings forSupertype(Class<?> supertype) {
+		if(supertype == clazz)
+			return this;
+		
+		TypeBindings inherited = supertypes.get(supertype);
+		if(inherited == null) {
+			if(clazz == null)
+				throw new IllegalArgumentException("Bindings are not for a type");
+			if(!supertype.isAssignableFrom(clazz))
+				throw new IllegalArgumentException(supertype.getName() + " is not a supertype of " + clazz.getName());
+			
+			final TypeDescriptor [] params = SupertypeIndex.forClass(clazz).parametersOf(supertype, args);
+			inherited = (params == null ? byClass.get(supertype) : create(supertype, params));
+			final TypeBindings existing = supertypes.putIfAbsent(supertype, inherited);
+			if(existing != null)
+				inherited = existing;
+		}
+		return inherited;
+	}
+	
+	/**
+	 * Gets the actual type bound to a type variable.
+	 * 
+	 * @param variable  the type variable
+	 * 
+	 * @return the interned actual type, or <code>null</code> if the variable
+	 *         is not bound
+	 */
+	public TypeDescriptor get(TypeVariableDescriptor variable) {
+		return bindings.get(variable);
+	}
+	
+	/**
+	 * @return <code>true</code> if no variables are bound, <code>false</code>
+	 *         otherwise
+	 */
+	public boolean isEmpty() {
+		return bindings.isEmpty();
+	}
+	
+	/**
+	 * Substitutes the bound actual types for the type variables in a
+	 * template. Unbound variables are left in place, and subtrees of the
+	 * template without bound variables are shared, not copied. Results are
+	 * memoized, so substituting into the same template again is a lookup.
+	 * 
+	 * A wildcard is not a type by itself, so a variable at the root of the
+	 * template that is bound to a wildcard is replaced by the wildcard's upper
+	 * bound, as array elements are (see {@link ArrayType}). For example, the
+	 * return type <code>E</code> of <code>List.get</code> resolves to
+	 * <code>Number</code> for <code>List&lt;? extends Number&gt;</code>, and to
+	 * <code>Object</code> for <code>List&lt;? super Integer&gt;</code>.
+	 * 
+	 * @param template  the template
+	 * 
+	 * @return the interned substituted descriptor
+	 * 
+	 * @throws NullPointerException  if the template is <code>null</code>
+	 */
+	public TypeDescriptor substitute(TypeDescriptor template) {
+		if(template == null)
+			throw new NullPointerException("Template cannot be null");
+		
+		template = LazyType.unwrap(template);
+		TypeDescriptor result = substituted.get(template);
+		if(result == null) {
+			result = apply(InternPool.intern(template));
+			if(result instanceof WildcardType && !(template instanceof WildcardType))
+				result = InternPool.intern(((WildcardType)result).getUpperBound());
+			if(substituted.size() >= MAX_MEMOIZED)
+				substituted.clear();
+			substituted.put(template, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Resolves the generic type of a field of the type these bindings are
+	 * for, or of one of its supertypes.
+	 * 
+	 * @param field  the field
+	 * 
+	 * @return an interned descriptor for the field's type
+	 * 
+	 * @throws IllegalArgumentException  if the field is not declared by a
+	 *                                   supertype of the type
+	 */
+	public TypeDescriptor resolveFieldType(Field field) {
+		final Class<?> declaringClass = field.getDeclaringClass();
+		return forSupertype(declaringClass).substitute(MemberTypeCache.forClass(declaringClass).fieldTemplate(field));
+	}
+	
+	/**
+	 * Resolves the generic return type of a method of the type these bindings
+	 * are for, or of one of its supertypes.
+	 * 
+	 * @param method  the method
+	 * 
+	 * @return an interned descriptor for the method's return type
+	 * 
+	 * @throws IllegalArgumentException  if the method is not declared by a
+	 *                                   supertype of the type
+	 */
+	public TypeDescriptor resolveReturnType(Method method) {
+		final Class<?> declaringClass = method.getDeclaringClass();
+		return forSupertype(declaringClass).substitute(MemberTypeCache.forClass(declaringClass).returnTemplate(method));
+	}
+	
+	/**
+	 * Substitutes into an interned template, interning new nodes as they
+	 * are built, since their children are already interned.
+	 */
+	private TypeDescriptor apply(TypeDescriptor template) {
+		if(template instanceof TypeVariableDescriptor) {
+			final TypeDescriptor bound = bindings.get(template);
+			return (bound == null ? template : bound);
+		}
+		
+		if(template instanceof WildcardType) {
+			final WildcardType wildcard = (WildcardType)template;
+			final TypeDescriptor lowerBound = wildcard.getLowerBound();
+			final WildcardType result = wildcard.withBound(apply(lowerBound != null ? lowerBound : wildcard.getUpperBound()));
+			return (result == wildcard ? wildcard : InternPool.internShallow(result));
+		}
+		
+		if(template instanceof ArrayType) {
+			final ArrayType array = (ArrayType)template;
+			final ArrayType result = array.withElementType(apply(array.getElementType()));
+			
+			// Flattening an array class element creates a new element type
+			return (result == array ? array : InternPool.intern(result));
+		}
+		
+		if(template instanceof GenericType) {
+			final GenericType generic = (GenericType)template;
+			final int numParams = generic.getNumParameters();
+			TypeDescriptor [] params = null;
+			for(int index = 0; index < numParams; ++index) {
+				final TypeDescriptor param = generic.getParameter(index);
+				final TypeDescriptor result = apply(param);
+				if(result != param && params == null) {
+					params = new TypeDescriptor[numParams];
+					for(int prev = 0; prev < index; ++prev)
+						params[prev] = generic.getParameter(prev);
+				}
+				if(params != null)
+					params[index] = result;
+			}
+			if(params != null)
+				return InternPool.internShallow(new GenericType(generic.getRawClass(), params, false));
+		}
+		return template;
+	}
+	
+	@Override
+	public String toString() {
+		return bindings.toString();
+	}
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.util.Arrays;
+
+/**
+ * A reusable builder for type descriptors, which builds a type in the order
+ * it is written. For example, <code>Map&lt;String, List&lt;? extends
+ * Number&gt;[]&gt;</code> is built with
+ * <pre>
+ *   builder.beginGeneric(Map.class)
+ *          .add(String.class)
+ *          .beginGeneric(List.class)
+ *              .add(Number.class).wildcardExtends()
+ *          .end().array(1)
+ *          .end()
+ *          .build();
+ * </pre>
+ * 
+ * Descriptors being built are kept on a stack that is reused from one
+ * build to the next, so the only arrays allocated are the parameter arrays
+ * of the generic types built. Generic parameter counts are checked as
+ * parameters are added, against counts cached for each class, rather than
+ * calling {@link Class#getTypeParameters()}. Each descriptor is interned as
+ * it is completed, when its nested descriptors are already interned, so
+ * unlike {@link TypeFactory#intern(TypeDescriptor)} on a finished tree,
+ * interning never copies a descriptor to replace its children.
+ * 
+ * A method that throws an exception leaves the builder unchanged. Builders
+ * are not thread-safe.
+ */
+public final class TypeBuilder {
+	/** Completed descriptors: the root, and parameters of open generics */
+	private TypeDescriptor [] values = new TypeDescriptor[16];
+	
+	/** The number of completed descriptors */
+	private int numValues;
+	
+	/** Raw classes of the open generics, innermost last */
+	private Class<?> [] classes = new Class<?>[8];
+	
+	/** Number of type parameters of each open generic */
+	private int [] arities = new int[8];
+	
+	/** Index into {@link #values} of each open generic's first parameter */
+	private int [] starts = new int[8];
+	
+	/** The number of open generics */
+	private int depth;
+	
+	/**
+	 * Starts a generic type. Its parameters are the descriptors added until
+	 * the matching {@link #end()}.
+	 * 
+	 * @param clazz  the raw class of the generic type
+	 * 
+	 * @return this builder
+	 * 
+	 * @throws NullPointerException  if the class is <code>null</code>
+	 * @throws IllegalArgumentException  if the class is not generic, or the
+	 *                                   innermost open generic already has
+	 *                                   all its parameters
+	 * @throws IllegalStateException  if a complete type was already added
+	 */
+	public TypeBuilder beginGeneric(Class<?> clazz) {
+		final int arity = GenericType.numTypeParameters(clazz);
+		if(arity == 0)
+			throw new IllegalArgumentException("Class is not generic: " + clazz.getName());
+		checkRoom();
+		
+		if(depth == classes.length) {
+			classes = Arrays.copyOf(classes, 2*depth);
+			arities = Arrays.copyOf(arities, 2*depth);
+			starts = Arrays.copyOf(starts, 2*depth);
+		}
+		classes[depth] = clazz;
+		arities[depth] = arity;
+		starts[depth] = numValues;
+		++depth;
+		return this;
+	}
+	
+	/**
+	 * Adds a simple type, or the array type of an array class. A generic
+	 * class added this way is described raw, by a {@link SimpleType}.
+	 * 
+	 * @param clazz  the class
+	 * 
+	 * @return this builder
+	 * 
+	 * @throws NullPointerException  if the class is <code>null</code>
+	 * @throws IllegalStateException  if a complete type was already added
+	 * @throws IllegalArgumentException  if the innermost open generic
+	 *                                   already has all its parameters
+	 */
+	public TypeBuilder add(Class<?> clazz) {
+		checkRoom();
+		push(clazz.isArray() ? ArrayType.forClass(clazz) : SimpleType.forClass(clazz));
+		return this;
+	}
+	
+	/**
+	 * Adds an existing descriptor.
+	 * 
+	 * @param type  the descriptor
+	 * 
+	 * @return this builder
+	 * 
+	 * @throws NullPointerException  if the descriptor is <code>null</code>
+	 * @throws IllegalStateException  if a complete type was already added,
+	 *                                or the descriptor is a wildcard and no
+	 *                                generic type is open
+	 * @throws IllegalArgumentException  if the innermost open generic
+	 *                                   already has all its parameters
+	 */
+	public TypeBuilder add(TypeDescriptor type) {
+		if(type == null)
+			throw new NullPointerException("Type descriptor cannot be null");
+		if(type instanceof WildcardType && depth == 0)
+			throw new IllegalStateException("Wildcards can only be generic parameters");
+		checkRoom();
+		push(InternPool.intern(type));
+		return this;
+	}
+	
+	/**
+	 * Adds the unbounded wildcard, <code>?</code>.
+	 * 
+	 * @return this builder
+	 * 
+	 * @throws IllegalStateException  if no generic type is open
+	 * @throws IllegalArgumentException  if the innermost open generic
+	 *                                   already has all its parameters
+	 */
+	public TypeBuilder addWildcard() {
+		return add(WildcardType.unbounded());
+	}
+	
+	/**
+	 * Ends the innermost open generic type, which becomes the last
+	 * descriptor added.
+	 * 
+	 * @return this builder
+	 * 
+	 * @throws IllegalStateException  if no generic type is open
+	 * @throws IllegalArgumentException  if too few parameters were added
+	 */
+	public TypeBuilder end() {
+		if(depth == 0)
+			throw new IllegalStateException("No generic type to end");
+		
+		final int start = starts[depth - 1];
+		if(numValues - start != arities[depth - 1])
+			throw new IllegalArgumentException("Number of generic parameters must match given class");
+		
+		final TypeDescriptor [] params = new TypeDescriptor[numValues - start];
+		System.arraycopy(values, start, params, 0, params.length);
+		final TypeDescriptor generic = InternPool.internShallow(new GenericType(classes[depth - 1], params, false));
+		--depth;
+		Arrays.fill(values, start, numValues, null);
+		classes[depth] = null;
+		numValues = start;
+		push(generic);
+		return this;
+	}
+	
+	/**
+	 * Replaces the last descriptor added with an array of it.
+	 * 
+	 * @param numDims  the number of dimensions
+	 * 
+	 * @return this builder
+	 * 
+	 * @throws IllegalStateException  if nothing was added since the
+	 *                                innermost open generic began
+	 * @throws IllegalArgumentException  if numDims is non-positive, or the
+	 *                                   last descriptor is a wildcard or void
+	 */
+	public TypeBuilder array(int numDims) {
+		final int index = last();
+		values[index] = InternPool.intern(new ArrayType(values[index], numDims));
+		return this;
+	}
+	
+	/**
+	 * Replaces the last descriptor added with a wildcard whose upper bound
+	 * it is, <code>? extends type</code>.
+	 * 
+	 * @return this builder
+	 * 
+	 * @throws IllegalStateException  if no generic type is open, or nothing
+	 *                                was added since the innermost one began
+	 * @throws IllegalArgumentException  if the last descriptor is a wildcard
+	 */
+	public TypeBuilder wildcardExtends() {
+		if(depth == 0)
+			throw new IllegalStateException("Wildcards can only be generic parameters");
+		final int index = last();
+		values[index] = InternPool.internShallow(WildcardType.withUpperBound(values[index]));
+		return this;
+	}
+	
+	/**
+	 * Replaces the last descriptor added with a wildcard whose lower bound
+	 * it is, <code>? super type</code>.
+	 * 
+	 * @return this builder
+	 * 
+	 * @throws IllegalStateException  if no generic type is open, or nothing
+	 *                                was added since the innermost one began
+	 * @throws IllegalArgumentException  if the last descriptor is a wildcard
+	 */
+	public TypeBuilder wildcardSuper() {
+		if(depth == 0)
+			throw new IllegalStateException("Wildcards can only be generic parameters");
+		final int index = last();
+		values[index] = InternPool.internShallow(WildcardType.withLowerBound(values[index]));
+		return this;
+	}
+	
+	/**
+	 * Gets the interned descriptor built, and resets this builder so it can
+	 * build another.
+	 * 
+	 * @return the interned descriptor
+	 * 
+	 * @throws IllegalStateException  if a generic type is still open, or
+	 *                                nothing was added
+	 */
+	public TypeDescriptor build() {
+		if(depth != 0)
+			throw new IllegalStateException("Generic type was not ended: " + classes[depth - 1].getName());
+		if(numValues == 0)
+			throw new IllegalStateException("No type was added");
+		
+		final TypeDescriptor type = values[0];
+		values[0] = null;
+		numValues = 0;
+		return type;
+	}
+	
+	/**
+	 * Discards everything added since the last build.
+	 * 
+	 * @return this builder
+	 */
+	public TypeBuilder reset() {
+		Arrays.fill(values, 0, numValues, null);
+		Arrays.fill(classes, 0, depth, null);
+		numValues = 0;
+		depth = 0;
+		return this;
+	}
+	
+	/**
+	 * Checks that another descriptor can be added, either as the root or as
+	 * a parameter of the innermost open generic.
+	 */
+	private void checkRoom() {
+		if(depth == 0) {
+			if(numValues != 0)
+				throw new IllegalStateException("A type was already built; call build() or reset()");
+		} else if(numValues - starts[depth - 1] == arities[depth - 1]) {
+			throw new IllegalArgumentException("Number of generic parameters must match given class");
+		}
+	}
+	
+	/**
+	 * Pushes a completed descriptor.
+	 */
+	private void push(TypeDescriptor type) {
+		if(numValues == values.length)
+			values = Arrays.copyOf(values, 2*numValues);
+		values[numValues++] = type;
+	}
+	
+	/**
+	 * Gets the index of the last descriptor added in the innermost open
+	 * generic, or at the top level.
+	 */
+	private int last() {
+		if(numValues == (depth == 0 ? 0 : starts[depth - 1]))
+			throw new IllegalStateException("No type to modify");
+		return numValues - 1;
+	}
+}
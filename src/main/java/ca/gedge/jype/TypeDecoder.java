@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads type descriptors written by a {@link TypeEncoder}. See that class for
+ * a description of the format. Decoded descriptors are interned (see
+ * {@link TypeFactory#intern(TypeDescriptor)}).
+ * 
+ * Since the string table spans calls, a decoder must read the same sequence
+ * of descriptors its encoder wrote. Decoders are not thread-safe.
+ */
+public class TypeDecoder {
+	/** Maximum length of an encoded class name, in bytes */
+	private static final int MAX_NAME_LENGTH = 0xFFFF;
+	
+	/**
+	 * Source of encoded bytes.
+	 */
+	private static abstract class Source {
+		abstract int read() throws IOException;
+		abstract void read(byte [] bytes) throws IOException;
+		
+		/**
+		 * Reads an unsigned varint of at most 32 bits.
+		 */
+		final int readVarint() throws IOException {
+			int value = 0;
+			for(int shift = 0; shift < 32; shift += 7) {
+				final int b = read();
+				value |= (b & 0x7F) << shift;
+				if((b & 0x80) == 0)
+					return value;
+			}
+			throw new IllegalArgumentException("Malformed type encoding: varint too long");
+		}
+	}
+	
+	/**
+	 * A source backed by a {@link DataInput}.
+	 */
+	private static final class DataInputSource extends Source {
+		final DataInput in;
+		
+		DataInputSource(DataInput in) {
+			this.in = in;
+		}
+		
+		@Override
+		int read() throws IOException {
+			return in.readUnsignedByte();
+		}
+		
+		@Override
+		void read(byte [] bytes) throws IOException {
+			in.readFully(bytes);
+		}
+	}
+	
+	/**
+	 * A source backed by a {@link ByteBuffer}.
+	 */
+	private static final class BufferSource extends Source {
+		final ByteBuffer buffer;
+		
+		BufferSource(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		
+		@Override
+		int read() {
+			return buffer.get() & 0xFF;
+		}
+		
+		@Override
+		void read(byte [] bytes) {
+			buffer.get(bytes);
+		}
+	}
+	
+	/** Resolver for class names in the string table */
+	private final ClassResolver resolver;
+	
+	/** The string table, resolved to classes */
+	private final List<Class<?>> classes = new ArrayList<Class<?>>();
+	
+	/** Size of the string table at the start of the current call */
+	private int committedSize;
+	
+	/**
+	 * Constructs a decoder that resolves class names in the same way as
+	 * {@link TypeFactory#parse(String)}.
+	 */
+	public TypeDecoder() {
+		this(TypeFactory.getDefaultClassResolver());
+	}
+	
+	/**
+	 * Constructs a decoder that resolves class names with the given resolver.
+	 * 
+	 * @param resolver  the resolver for class names
+	 * 
+	 * @throws NullPointerException  if the resolver is <code>null</code>
+	 */
+	public TypeDecoder(ClassResolver resolver) {
+		if(resolver == null)
+			throw new NullPointerException("Class resolver cannot be null");
+		this.resolver = resolver;
+	}
+	
+	/**
+	 * Reads a descriptor from a {@link DataInput}. If reading fails, the
+	 * input may have been partially consumed, and both this decoder and the
+	 * encoder that wrote the input must be reset.
+	 * 
+	 * @param in  the input to read from
+	 * 
+	 * @return the decoded descriptor
+	 * 
+	 * @throws IOException  if reading from the input fails
+	 * @throws IllegalArgumentException  if the input is malformed
+	 * @throws ClassNotFoundException  if any class in the input is unknown
+	 */
+	public TypeDescriptor decode(DataInput in) throws IOException, ClassNotFoundException {
+		boolean success = false;
+		try {
+			final TypeDescriptor type = TypeFactory.intern(read(new DataInputSource(in)));
+			success = true;
+			return type;
+		} finally {
+			finish(success);
+		}
+	}
+	
+	/**
+	 * Reads a descriptor from a {@link ByteBuffer}, starting at its current
+	 * position. If reading fails, the buffer's position and this decoder are
+	 * left unchanged, so a truncated descriptor can be read again once more
+	 * input is available.
+	 * 
+	 * @param buffer  the buffer to read from
+	 * 
+	 * @return the decoded descriptor
+	 * 
+	 * @throws java.nio.BufferUnderflowException  if the buffer holds only part
+	 *                                            of a descriptor
+	 * @throws IllegalArgumentException  if the input is malformed
+	 * @throws ClassNotFoundException  if any class in the input is unknown
+	 */
+	public TypeDescriptor decode(ByteBuffer buffer) throws ClassNotFoundException {
+		final int start = buffer.position();
+		boolean success = false;
+		try {
+			final TypeDescriptor type = TypeFactory.intern(read(new BufferSource(buffer)));
+			success = true;
+			return type;
+		} catch(IOException exc) {
+			throw new IllegalStateException("Buffer sources never throw IOException", exc);
+		} finally {
+			if(!success)
+				buffer.position(start);
+			finish(success);
+		}
+	}
+	
+	/**
+	 * Clears the string table. The encoder that wrote this decoder's input
+	 * must be reset at the same point in the stream.
+	 */
+	public void reset() {
+		classes.clear();
+		committedSize = 0;
+	}
+	
+	/**
+	 * Completes a call, removing classes it added to the string table if it
+	 * was unsuccessful.
+	 */
+	private void finish(boolean success) {
+		if(!success) {
+			while(classes.size() > committedSize)
+				classes.remove(classes.size() - 1);
+		}
+		committedSize = classes.size();
+	}
+	
+	/**
+	 * Reads a descriptor in pre-order.
+	 */
+	private TypeDescriptor read(Source source) throws IOException, ClassNotFoundException {
+		final int header = source.readVarint();
+		final int kind = header & TypeEncoder.KIND_MASK;
+		final int id = header >>> TypeEncoder.KIND_BITS;
+		if(kind == TypeEncoder.KIND_WILDCARD)
+			return readWildcard(id, source);
+		
+		final Class<?> clazz;
+		if(id == 0) {
+			final int length = source.readVarint();
+			if(length < 0 || length > MAX_NAME_LENGTH)
+				throw new IllegalArgumentException("Malformed type encoding: class name too long");
+			
+			final byte [] name = new byte[length];
+			source.read(name);
+			clazz = resolver.resolve(new String(name, TypeEncoder.UTF8));
+			classes.add(clazz);
+		} else if(id <= classes.size()) {
+			clazz = classes.get(id - 1);
+		} else {
+			throw new IllegalArgumentException("Malformed type encoding: unknown class id " + id);
+		}
+		
+		switch(kind) {
+		case TypeEncoder.KIND_SIMPLE:
+			return new SimpleType(clazz);
+		case TypeEncoder.KIND_GENERIC:
+			return readGeneric(clazz, source);
+		case TypeEncoder.KIND_ARRAY: {
+			final int dims = source.readVarint();
+			if((dims & 1) != 0)
+				return new ArrayType(readGeneric(clazz, source), dims >>> 1);
+			return new ArrayType(clazz, dims >>> 1);
+		}
+		default:
+			throw new IllegalArgumentException("Malformed type encoding: unknown node kind " + kind);
+		}
+	}
+	
+	/**
+	 * Reads the parameters of a generic type.
+	 */
+	private GenericType readGeneric(Class<?> clazz, Source source) throws IOException, ClassNotFoundException {
+		final int numParams = source.readVarint();
+		if(numParams != GenericType.numTypeParameters(clazz))
+			throw new IllegalArgumentException("Number of generic parameters must match given class");
+		
+		final TypeDescriptor [] params = new TypeDescriptor[numParams];
+		for(int index = 0; index < numParams; ++index)
+			params[index] = read(source);
+		return new GenericType(clazz, params, false);
+	}
+	
+	/**
+	 * Reads the rest of a wildcard node, given the bits of its header after
+	 * the kind.
+	 */
+	private TypeDescriptor readWildcard(int bounds, Source source) throws IOException, ClassNotFoundException {
+		switch(bounds) {
+		case TypeEncoder.WILDCARD_UNBOUNDED:
+			return WildcardType.unbounded();
+		case TypeEncoder.WILDCARD_EXTENDS:
+		case TypeEncoder.WILDCARD_SUPER: {
+			final TypeDescriptor bound = read(source);
+			if(bound instanceof WildcardType)
+				throw new IllegalArgumentException("Malformed type encoding: wildcard bound is a wildcard");
+			return (bounds == TypeEncoder.WILDCARD_EXTENDS ? WildcardType.withUpperBound(bound) : WildcardType.withLowerBound(bound));
+		}
+		default:
+			throw new IllegalArgumentException("Malformed type encoding: unknown wildcard bounds " + bounds);
+		}
+	}
+}
@@ -21,10 +21,15 @@
  */
 package ca.gedge.jype;
 
+import java.util.Set;
+
 /**
- * Interface for any class that describes a Java type.
+ * Interface for any class that describes a Java type. The interface is
+ * sealed: Jype's descriptors are the only implementations, and all of them
+ * are final and immutable, so descriptors can be shared freely between
+ * threads and code handling descriptors can rely on knowing every kind.
  */
-public interface TypeDescriptor {
+public sealed interface TypeDescriptor permits SimpleType, GenericType, ArrayType, WildcardType, TypeVariableDescriptor, LazyType {
 	/**
 	 * Tests whether or not a given descriptor can be assigned to this descriptor. 
 	 * 
@@ -34,4 +39,48 @@ public interface TypeDescriptor {
 	 *         this one, <code>false</code> otherwise
 	 */
 	public boolean isAssignableFrom(TypeDescriptor type);
+	
+	/**
+	 * Gets the nesting depth of this descriptor: 1 for a descriptor without
+	 * nested descriptors, and otherwise one more than the greatest depth of
+	 * its generic parameters, element type or wildcard bound. For example,
+	 * <code>String</code> has depth 1, <code>List&lt;String&gt;</code> and
+	 * <code>String[]</code> have depth 2, and
+	 * <code>Map&lt;String, List&lt;Integer&gt;&gt;</code> has depth 3. This
+	 * is computed at construction.
+	 * 
+	 * @return the nesting depth
+	 */
+	public int getDepth();
+	
+	/**
+	 * Gets the number of descriptors in the tree rooted at this descriptor,
+	 * including itself. For example,
+	 * <code>Map&lt;String, List&lt;Integer&gt;&gt;</code> has 4. This is
+	 * computed at construction.
+	 * 
+	 * @return the number of descriptors
+	 */
+	public int getNodeCount();
+	
+	/**
+	 * Gets the classes this descriptor refers to: the raw classes of it and
+	 * its nested descriptors, in the order they appear in its string
+	 * representation, without duplicates. Array types refer to their element
+	 * classes rather than array classes, and an unbounded wildcard refers to
+	 * no classes. The set is computed on first use.
+	 * 
+	 * @return an unmodifiable set of classes
+	 */
+	public Set<Class<?>> getReferencedClasses();
+	
+	/**
+	 * Tests whether or not a primitive type appears anywhere in this
+	 * descriptor, including as the element type of an array. This is
+	 * computed at construction.
+	 * 
+	 * @return <code>true</code> if a primitive type appears,
+	 *         <code>false</code> otherwise
+	 */
+	public boolean hasPrimitive();
 }
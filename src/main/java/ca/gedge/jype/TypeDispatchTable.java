@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A table mapping type descriptors to values, which looks up the value of
+ * the most specific descriptor that a query descriptor can be assigned to.
+ * This is useful for routing objects to handlers by their declared type.
+ * 
+ * Registered descriptors are indexed by raw class and, for array types, by
+ * number of dimensions, so a lookup only tests the descriptors registered
+ * for the query's supertypes. Lookup results are also cached per query
+ * descriptor until the next registration.
+ * 
+ * Lookups never block and always see a consistent snapshot of the table.
+ * Registrations copy the table, so they are relatively expensive and are
+ * best done up front.
+ * 
+ * @param <V>  the type of value
+ */
+public class TypeDispatchTable<V> {
+	/** Maximum number of cached lookups per snapshot */
+	private static final int MAX_CACHED_LOOKUPS = 4096;
+	
+	/** Cached result for lookups that match nothing */
+	private static final Object NO_MATCH = new Object();
+	
+	/** Classes every array is assignable to */
+	private static final Class<?> [] ARRAY_SUPERTYPES = { Object.class, Cloneable.class, Serializable.class };
+	
+	/**
+	 * A registered descriptor and its value.
+	 */
+	private static final class Entry<V> {
+		final TypeDescriptor type;
+		final V value;
+		
+		/** Registration order, used to break ties */
+		final long order;
+		
+		Entry(TypeDescriptor type, V value, long order) {
+			this.type = type;
+			this.value = value;
+			this.order = order;
+		}
+	}
+	
+	/**
+	 * Index key: a raw class, and the number of array dimensions (zero for
+	 * simple and generic types).
+	 */
+	static final class Key {
+		final Class<?> clazz;
+		final int numDims;
+		
+		Key(Class<?> clazz, int numDims) {
+			this.clazz = clazz;
+			this.numDims = numDims;
+		}
+		
+		@Override
+		public int hashCode() {
+			return clazz.hashCode() + numDims;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof Key
+			        && clazz == ((Key)obj).clazz
+			        && numDims == ((Key)obj).numDims);
+		}
+	}
+	
+	/**
+	 * An immutable view of the table.
+	 */
+	private static final class Snapshot<V> {
+		/** All entries, keyed by descriptor */
+		final Map<TypeDescriptor, Entry<V>> entries;
+		
+		/** Entries indexed by raw class and dimensions */
+		final Map<Key, List<Entry<V>>> index;
+		
+		/** Entries that cannot be indexed, and must always be tested */
+		final List<Entry<V>> unindexed;
+		
+		/** Cached lookup results */
+		final ConcurrentMap<TypeDescriptor, Object> lookups = new ConcurrentHashMap<TypeDescriptor, Object>();
+		
+		Snapshot(Map<TypeDescriptor, Entry<V>> entries) {
+			this.entries = entries;
+			this.index = new HashMap<Key, List<Entry<V>>>();
+			this.unindexed = new ArrayList<Entry<V>>();
+			
+			for(Entry<V> entry : entries.values()) {
+				final Key key = keyOf(entry.type);
+				if(key == null) {
+					unindexed.add(entry);
+				} else {
+					List<Entry<V>> bucket = index.get(key);
+					if(bucket == null)
+						index.put(key, bucket = new ArrayList<Entry<V>>(1));
+					bucket.add(entry);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the index key for a registered descriptor.
+	 * 
+	 * @return the key, or <code>null</code> if the descriptor must always be tested
+	 */
+	private static Key keyOf(TypeDescriptor type) {
+		if(type instanceof GenericType) {
+			return new Key(((GenericType)type).getRawClass(), 0);
+		} else if(type instanceof SimpleType) {
+			// Array classes are assignable from arrays of their component's
+			// subtypes, which are not found by walking supertypes
+			final Class<?> clazz = ((SimpleType)type).getRawClass();
+			return (clazz.isArray() ? null : new Key(clazz, 0));
+		} else if(type instanceof ArrayType) {
+			final ArrayType array = (ArrayType)type;
+			return new Key(array.getElementClass(), array.getNumDimensions());
+		}
+		return null;
+	}
+	
+	/** The current snapshot */
+	private volatile Snapshot<V> snapshot = new Snapshot<V>(Collections.<TypeDescriptor, Entry<V>>emptyMap());
+	
+	/** Registration counter, guarded by this table */
+	private long registrations;
+	
+	/**
+	 * Registers a value for a descriptor, replacing any value already
+	 * registered for an equal descriptor.
+	 * 
+	 * @param type  the descriptor
+	 * @param value  the value
+	 * 
+	 * @return the value previously registered for the descriptor, or
+	 *         <code>null</code> if there was none
+	 * 
+	 * @throws NullPointerException  if either argument is <code>null</code>
+	 */
+	public synchronized V register(TypeDescriptor type, V value) {
+		if(type == null)
+			throw new NullPointerException("Type descriptor cannot be null");
+		if(value == null)
+			throw new NullPointerException("Value cannot be null");
+		
+		type = LazyType.unwrap(type);
+		final Map<TypeDescriptor, Entry<V>> entries = new HashMap<TypeDescriptor, Entry<V>>(snapshot.entries);
+		final Entry<V> previous = entries.put(type, new Entry<V>(type, value, registrations++));
+		snapshot = new Snapshot<V>(entries);
+		return (previous == null ? null : previous.value);
+	}
+	
+	/**
+	 * Removes the value registered for a descriptor.
+	 * 
+	 * @param type  the descriptor
+	 * 
+	 * @return the value that was registered for the descriptor, or
+	 *         <code>null</code> if there was none
+	 */
+	public synchronized V unregister(TypeDescriptor type) {
+		if(!snapshot.entries.containsKey(type))
+			return null;
+		
+		final Map<TypeDescriptor, Entry<V>> entries = new HashMap<TypeDescriptor, Entry<V>>(snapshot.entries);
+		final Entry<V> previous = entries.remove(type);
+		snapshot = new Snapshot<V>(entries);
+		return previous.value;
+	}
+	
+	/**
+	 * Gets the value registered for exactly the given descriptor.
+	 * 
+	 * @param type  the descriptor
+	 * 
+	 * @return the registered value, or <code>null</code> if there is none
+	 */
+	public V get(TypeDescriptor type) {
+		final Entry<V> entry = snapshot.entries.get(type);
+		return (entry == null ? null : entry.value);
+	}
+	
+	/**
+	 * Looks up the value of the most specific registered descriptor that the
+	 * given descriptor can be assigned to. A registered descriptor is more
+	 * specific than another if it can be assigned to the other. If several
+	 * matching descriptors are equally specific, the one registered first
+	 * wins.
+	 * 
+	 * @param type  the query descriptor
+	 * 
+	 * @return the value of the most specific matching descriptor, or
+	 *         <code>null</code> if no registered descriptor matches
+	 */
+	@SuppressWarnings("unchecked")
+	public V lookup(TypeDescriptor type) {
+		if(type == null)
+			return null;
+		
+		type = LazyType.unwrap(type);
+		final Snapshot<V> current = snapshot;
+		final Object cached = current.lookups.get(type);
+		if(cached != null)
+			return (cached == NO_MATCH ? null : (V)cached);
+		
+		final Entry<V> best = findMostSpecific(current, type);
+		if(current.lookups.size() >= MAX_CACHED_LOOKUPS)
+			current.lookups.clear();
+		current.lookups.put(type, (best == null ? NO_MATCH : best.value));
+		return (best == null ? null : best.value);
+	}
+	
+	/**
+	 * @return the number of registered descriptors
+	 */
+	public int size() {
+		return snapshot.entries.size();
+	}
+	
+	/**
+	 * Finds the most specific entry matching a query.
+	 */
+	private static <V> Entry<V> findMostSpecific(Snapshot<V> snapshot, TypeDescriptor type) {
+		final List<Entry<V>> matches = new ArrayList<Entry<V>>();
+		
+		if(type instanceof SimpleType || type instanceof GenericType || type instanceof ArrayType) {
+			final Class<?> clazz;
+			final int numDims;
+			if(type instanceof ArrayType) {
+				clazz = ((ArrayType)type).getElementClass();
+				numDims = ((ArrayType)type).getNumDimensions();
+			} else if(type instanceof SimpleType && ((SimpleType)type).getRawClass().isArray()) {
+				final ArrayType array = ArrayType.forClass(((SimpleType)type).getRawClass());
+				clazz = array.getElementClass();
+				numDims = array.getNumDimensions();
+			} else {
+				clazz = (type instanceof SimpleType ? ((SimpleType)type).getRawClass() : ((GenericType)type).getRawClass());
+				numDims = 0;
+			}
+			
+			for(Class<?> supertype : SupertypeIndex.allSupertypes(clazz))
+				addMatches(snapshot.index.get(new Key(supertype, numDims)), type, matches);
+			
+			// Arrays are also assignable to arrays of fewer dimensions whose
+			// elements are supertypes of all arrays
+			for(int dims = 0; dims < numDims; ++dims) {
+				for(Class<?> supertype : ARRAY_SUPERTYPES)
+					addMatches(snapshot.index.get(new Key(supertype, dims)), type, matches);
+			}
+			addMatches(snapshot.unindexed, type, matches);
+		} else {
+			// Unknown kinds of descriptors could match anything
+			addMatches(snapshot.entries.values(), type, matches);
+		}
+		
+		// Of the matches not strictly wider than another match, pick the one
+		// registered first
+		Entry<V> best = null;
+		for(Entry<V> candidate : matches) {
+			if((best == null || candidate.order < best.order) && !isWiderThanAny(candidate, matches))
+				best = candidate;
+		}
+		return best;
+	}
+	
+	/**
+	 * Adds the entries that a query can be assigned to.
+	 */
+	private static <V> void addMatches(Iterable<Entry<V>> entries, TypeDescriptor type, List<Entry<V>> matches) {
+		if(entries == null)
+			return;
+		
+		for(Entry<V> entry : entries) {
+			if(entry.type.isAssignableFrom(type))
+				matches.add(entry);
+		}
+	}
+	
+	/**
+	 * Tests whether an entry is strictly wider than any of the given entries.
+	 */
+	private static <V> boolean isWiderThanAny(Entry<V> entry, List<Entry<V>> others) {
+		for(Entry<V> other : others) {
+			if(other != entry
+			   && entry.type.isAssignableFrom(other.type)
+			   && !other.type.isAssignableFrom(entry.type))
+				return true;
+		}
+		return false;
+	}
+}
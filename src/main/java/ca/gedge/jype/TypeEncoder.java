@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes type descriptors in a compact binary format, read back with a
+ * {@link TypeDecoder}.
+ * 
+ * A descriptor is written in pre-order. Each node starts with a varint whose
+ * low two bits give the kind of node and whose remaining bits give a class id.
+ * Class ids refer to a string table shared by the encoder and decoder: the
+ * first time a class is written its id is zero and its name follows, after
+ * which it is referred to by its position in the table. Generic types are
+ * followed by their parameter count and parameters. Array types give the
+ * class of their elements, and are followed by their dimension count shifted
+ * left by one, with the low bit set if the elements are generic, in which
+ * case the elements' parameter count and parameters follow. Wildcards have
+ * no class, so the remaining bits of their header instead say whether they
+ * have no bound, an upper bound or a lower bound, and any bound follows.
+ * 
+ * Since the string table spans calls, an encoder and the decoder reading its
+ * output must see the same sequence of descriptors. Encoders are not
+ * thread-safe.
+ */
+public class TypeEncoder {
+	/** Node kind for a {@link SimpleType} */
+	static final int KIND_SIMPLE = 0;
+	
+	/** Node kind for a {@link GenericType} */
+	static final int KIND_GENERIC = 1;
+	
+	/** Node kind for an {@link ArrayType} */
+	static final int KIND_ARRAY = 2;
+	
+	/** Node kind for a {@link WildcardType} */
+	static final int KIND_WILDCARD = 3;
+	
+	/** Wildcard header bits for an unbounded wildcard */
+	static final int WILDCARD_UNBOUNDED = 0;
+	
+	/** Wildcard header bits for a wildcard with an upper bound */
+	static final int WILDCARD_EXTENDS = 1;
+	
+	/** Wildcard header bits for a wildcard with a lower bound */
+	static final int WILDCARD_SUPER = 2;
+	
+	/** Number of low bits of a node header that hold the kind */
+	static final int KIND_BITS = 2;
+	
+	/** Mask for the kind in a node header */
+	static final int KIND_MASK = (1 << KIND_BITS) - 1;
+	
+	/** Encoding of class names */
+	static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	/**
+	 * Destination for encoded bytes.
+	 */
+	private static abstract class Sink {
+		abstract void write(int b) throws IOException;
+		abstract void write(byte [] bytes) throws IOException;
+		
+		/**
+		 * Writes an unsigned varint.
+		 */
+		final void writeVarint(int value) throws IOException {
+			while((value & ~0x7F) != 0) {
+				write((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			write(value);
+		}
+	}
+	
+	/**
+	 * A sink backed by a {@link DataOutput}.
+	 */
+	private static final class DataOutputSink extends Sink {
+		final DataOutput out;
+		
+		DataOutputSink(DataOutput out) {
+			this.out = out;
+		}
+		
+		@Override
+		void write(int b) throws IOException {
+			out.write(b);
+		}
+		
+		@Override
+		void write(byte [] bytes) throws IOException {
+			out.write(bytes);
+		}
+	}
+	
+	/**
+	 * A sink backed by a {@link ByteBuffer}.
+	 */
+	private static final class BufferSink extends Sink {
+		final ByteBuffer buffer;
+		
+		BufferSink(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+		
+		@Override
+		void write(int b) {
+			buffer.put((byte)b);
+		}
+		
+		@Override
+		void write(byte [] bytes) {
+			buffer.put(bytes);
+		}
+	}
+	
+	/** Ids of the classes in the string table, starting from 1 */
+	private final Map<Class<?>, Integer> classIds = new HashMap<Class<?>, Integer>();
+	
+	/** Classes added to the string table by the current call */
+	private final List<Class<?>> added = new ArrayList<Class<?>>();
+	
+	/**
+	 * Writes a descriptor to a {@link DataOutput}. If writing fails, the
+	 * output may hold part of the encoding, and both this encoder and the
+	 * decoder reading the output must be reset.
+	 * 
+	 * @param type  the descriptor to write
+	 * @param out  the output to write to
+	 * 
+	 * @throws IOException  if writing to the output fails
+	 * @throws IllegalArgumentException  if the descriptor (or any descriptor
+	 *                                   within it) is of an unsupported type
+	 */
+	public void encode(TypeDescriptor type, DataOutput out) throws IOException {
+		boolean success = false;
+		try {
+			write(type, new DataOutputSink(out));
+			success = true;
+		} finally {
+			finish(success);
+		}
+	}
+	
+	/**
+	 * Writes a descriptor to a {@link ByteBuffer}, starting at its current
+	 * position. If the buffer overflows, its position and this encoder are
+	 * left unchanged, so the descriptor can be written again once space is
+	 * available.
+	 * 
+	 * @param type  the descriptor to write
+	 * @param buffer  the buffer to write to
+	 * 
+	 * @throws java.nio.BufferOverflowException  if the buffer has too little space
+	 * @throws IllegalArgumentException  if the descriptor (or any descriptor
+	 *                                   within it) is of an unsupported type
+	 */
+	public void encode(TypeDescriptor type, ByteBuffer buffer) {
+		final int start = buffer.position();
+		boolean success = false;
+		try {
+			write(type, new BufferSink(buffer));
+			success = true;
+		} catch(IOException exc) {
+			throw new IllegalStateException("Buffer sinks never throw IOException", exc);
+		} finally {
+			if(!success)
+				buffer.position(start);
+			finish(success);
+		}
+	}
+	
+	/**
+	 * Clears the string table. The decoder reading this encoder's output must
+	 * be reset at the same point in the stream.
+	 */
+	public void reset() {
+		classIds.clear();
+		added.clear();
+	}
+	
+	/**
+	 * Completes a call, removing classes it added to the string table if it
+	 * was unsuccessful.
+	 */
+	private void finish(boolean success) {
+		if(!success) {
+			for(Class<?> clazz : added)
+				classIds.remove(clazz);
+		}
+		added.clear();
+	}
+	
+	/**
+	 * Writes a descriptor in pre-order.
+	 */
+	private void write(TypeDescriptor type, Sink sink) throws IOException {
+		type = LazyType.unwrap(type);
+		if(type instanceof SimpleType) {
+			writeHeader(KIND_SIMPLE, ((SimpleType)type).getRawClass(), sink);
+		} else if(type instanceof GenericType) {
+			final GenericType generic = (GenericType)type;
+			writeHeader(KIND_GENERIC, generic.getRawClass(), sink);
+			
+			final int numParams = generic.getNumParameters();
+			sink.writeVarint(numParams);
+			for(int index = 0; index < numParams; ++index)
+				write(generic.getParameter(index), sink);
+		} else if(type instanceof ArrayType) {
+			final ArrayType array = (ArrayType)type;
+			final TypeDescriptor element = array.getElementType();
+			if(!(element instanceof SimpleType || element instanceof GenericType))
+				throw new IllegalArgumentException("Cannot encode descriptor type: " + element.getClass().getName());
+			writeHeader(KIND_ARRAY, array.getElementClass(), sink);
+			
+			if(element instanceof GenericType) {
+				final GenericType generic = (GenericType)element;
+				sink.writeVarint((array.getNumDimensions() << 1) | 1);
+				
+				final int numParams = generic.getNumParameters();
+				sink.writeVarint(numParams);
+				for(int index = 0; index < numParams; ++index)
+					write(generic.getParameter(index), sink);
+			} else {
+				sink.writeVarint(array.getNumDimensions() << 1);
+			}
+		} else if(type instanceof WildcardType) {
+			final WildcardType wildcard = (WildcardType)type;
+			if(wildcard.getLowerBound() != null) {
+				sink.writeVarint((WILDCARD_SUPER << KIND_BITS) | KIND_WILDCARD);
+				write(wildcard.getLowerBound(), sink);
+			} else if(wildcard != WildcardType.unbounded()) {
+				sink.writeVarint((WILDCARD_EXTENDS << KIND_BITS) | KIND_WILDCARD);
+				write(wildcard.getUpperBound(), sink);
+			} else {
+				sink.writeVarint((WILDCARD_UNBOUNDED << KIND_BITS) | KIND_WILDCARD);
+			}
+		} else if(type == null) {
+			throw new NullPointerException("Type descriptor cannot be null");
+		} else {
+			throw new IllegalArgumentException("Cannot encode descriptor type: " + type.getClass().getName());
+		}
+	}
+	
+	/**
+	 * Writes a node header, adding the class to the string table if necessary.
+	 */
+	private void writeHeader(int kind, Class<?> clazz, Sink sink) throws IOException {
+		final Integer id = classIds.get(clazz);
+		if(id != null) {
+			sink.writeVarint((id.intValue() << KIND_BITS) | kind);
+		} else {
+			final byte [] name = clazz.getName().getBytes(UTF8);
+			sink.writeVarint(kind);
+			sink.writeVarint(name.length);
+			sink.write(name);
+			
+			classIds.put(clazz, Integer.valueOf(classIds.size() + 1));
+			added.add(clazz);
+		}
+	}
+}
@@ -22,14 +22,14 @@
 package ca.gedge.jype;
 
 import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Hashtable;
-import java.util.Iterator;
-import java.util.NoSuchElementException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.List;
 
 /**
  * Factory methods for Jype.
@@ -41,7 +41,8 @@ public class TypeFactory {
 	 * For example <code>fromList(List.class, String.class)</code> will return
 	 * a type representing <code>List&lt;String&gt;</code> and
 	 * <code>fromList(Map.class, String.class, List.class, Number.class)</code>
-	 * will return a type representing <code>Map&lt;String, List&lt;Number&gt;&gt;</code>
+	 * will return a type representing <code>Map&lt;String, List&lt;Number&gt;&gt;</code>.
+	 * The returned descriptor is interned (see {@link #intern(TypeDescriptor)}).
 	 * 
 	 * @param classes  the flat list of classes
 	 * 
@@ -51,73 +52,351 @@ public class TypeFactory {
 	 *                                   converted to a valid type
 	 */
 	public static TypeDescriptor fromList(Class<?>... classes) {
+		return fromList(classes, 0, classes.length);
+	}
+	
+	/**
+	 * Convert a range of a flat list of classes to an appropriate generic or
+	 * simple type, as {@link #fromList(Class...)} does. Converting a range
+	 * that has been converted before does not allocate.
+	 * 
+	 * @param classes  the flat list of classes
+	 * @param offset  the index of the first class in the range
+	 * @param length  the number of classes in the range
+	 * 
+	 * @return an applicable type descriptor
+	 * 
+	 * @throws IllegalArgumentException  if the given range of classes cannot
+	 *                                   be converted to a valid type
+	 * @throws IndexOutOfBoundsException  if the range lies outside the array
+	 * @throws NullPointerException  if any class in the range is <code>null</code>
+	 */
+	public static TypeDescriptor fromList(Class<?> [] classes, int offset, int length) {
+		final TypeMetrics metrics = Metrics.current;
+		if(metrics == null)
+			return fromListUnmeasured(classes, offset, length);
+		
+		final long start = System.nanoTime();
 		try {
-			final Iterator<Class<?>> iter = Arrays.asList(classes).iterator();
-			final TypeDescriptor descriptor = fromIterator(iter);
-			if(iter.hasNext())
-				throw new IllegalArgumentException("Class list is too large");
+			final TypeDescriptor type = fromListUnmeasured(classes, offset, length);
+			metrics.recordSuccess(TypeMetrics.Operation.FROM_LIST, System.nanoTime() - start);
+			return type;
+		} catch(RuntimeException exc) {
+			metrics.recordFailure(TypeMetrics.Operation.FROM_LIST, System.nanoTime() - start, exc);
+			throw exc;
+		}
+	}
+	
+	/**
+	 * Implements {@link #fromList(Class[], int, int)}.
+	 */
+	private static TypeDescriptor fromListUnmeasured(Class<?> [] classes, int offset, int length) {
+		checkRange(classes.length, offset, length);
+		for(int index = offset; index < offset + length; ++index) {
+			if(classes[index] == null)
+				throw new NullPointerException("Class cannot be null");
+		}
+		
+		final FlatTypeTable table = FlatTypeTable.forClass(classes[offset]);
+		final int hash = FlatTypeTable.hash(classes, offset, length);
+		TypeDescriptor type = table.get(classes, offset, length, hash);
+		if(type == null) {
+			type = intern(fromRange(classes, offset, length));
+			table.put(classes, offset, length, hash, type);
+		}
+		return type;
+	}
+	
+	/**
+	 * Convert a range of a flat list of class ids to an appropriate generic
+	 * or simple type, as {@link #fromList(Class...)} does for the classes the
+	 * ids are registered to. Converting a range that has been converted
+	 * before does not allocate.
+	 * 
+	 * @param registry  the registry the ids refer to
+	 * @param ids  the flat list of class ids
+	 * @param offset  the index of the first id in the range
+	 * @param length  the number of ids in the range
+	 * 
+	 * @return an applicable type descriptor
+	 * 
+	 * @throws IllegalArgumentException  if any id is not registered, or the
+	 *                                   given range cannot be converted to a
+	 *                                   valid type
+	 * @throws IndexOutOfBoundsException  if the range lies outside the array
+	 */
+	public static TypeDescriptor fromList(ClassRegistry registry, int [] ids, int offset, int length) {
+		final TypeMetrics metrics = Metrics.current;
+		if(metrics == null)
+			return fromListUnmeasured(registry, ids, offset, length);
+		
+		final long start = System.nanoTime();
+		try {
+			final TypeDescriptor type = fromListUnmeasured(registry, ids, offset, length);
+			metrics.recordSuccess(TypeMetrics.Operation.FROM_LIST, System.nanoTime() - start);
+			return type;
+		} catch(RuntimeException exc) {
+			metrics.recordFailure(TypeMetrics.Operation.FROM_LIST, System.nanoTime() - start, exc);
+			throw exc;
+		}
+	}
+	
+	/**
+	 * Implements {@link #fromList(ClassRegistry, int[], int, int)}.
+	 */
+	private static TypeDescriptor fromListUnmeasured(ClassRegistry registry, int [] ids, int offset, int length) {
+		checkRange(ids.length, offset, length);
+		
+		final Class<?> [] byId = registry.classes();
+		for(int index = offset; index < offset + length; ++index) {
+			final int id = ids[index];
+			if(id < 0 || id >= byId.length || byId[id] == null)
+				throw new IllegalArgumentException("Class id is not registered: " + id);
+		}
+		
+		final FlatTypeTable table = FlatTypeTable.forClass(byId[ids[offset]]);
+		final int hash = FlatTypeTable.hash(ids, offset, length, byId);
+		TypeDescriptor type = table.get(ids, offset, length, byId, hash);
+		if(type == null) {
+			final Class<?> [] classes = new Class<?>[length];
+			for(int index = 0; index < length; ++index)
+				classes[index] = byId[ids[offset + index]];
 			
-			return descriptor; // class list is juuuuuuust right
-		} catch(NoSuchElementException exc) {
-			throw new IllegalArgumentException("Class list is too small");
+			type = intern(fromRange(classes, 0, length));
+			table.put(classes, 0, length, hash, type);
 		}
+		return type;
 	}
 	
 	/**
-	 * Convert a flat list of classes (represented by an iterator) into a generic type.
+	 * Checks that a range lies within an array and is not empty.
 	 * 
-	 * @param iterator  an iterator over class instances
+	 * @throws IllegalArgumentException  if the range is empty
+	 * @throws IndexOutOfBoundsException  if the range lies outside the array
+	 */
+	private static void checkRange(int arrayLength, int offset, int length) {
+		if(offset < 0 || length < 0 || offset > arrayLength - length)
+			throw new IndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length + ") out of bounds for length " + arrayLength);
+		if(length == 0)
+			throw new IllegalArgumentException("Class list is too small");
+	}
+	
+	/**
+	 * Convert a range of a flat list of classes into a (non-interned) type.
+	 * The range is first validated by counting the generic parameters still
+	 * to be filled, then built right to left on a stack, so that neither pass
+	 * needs to recover from running off the end of the range.
+	 * 
+	 * @param classes  the flat list of classes
+	 * @param offset  the index of the first class in the range
+	 * @param length  the (positive) number of classes in the range
 	 * 
 	 * @return an applicable type descriptor
 	 * 
-	 * @throws NoSuchElementException  if the iterator runs out of elements before the given
-	 *                                 list of classes can be converted to a valid type
-	 */
-	private static TypeDescriptor fromIterator(Iterator<Class<?>> iterator) {
-		final Class<?> clazz = iterator.next();
-		final TypeVariable<?> [] params = clazz.getTypeParameters();
-		if(params.length == 0) {
-			if(clazz.isArray()) {
-				// Find the number of dimensions and non-array component type
-				int numDims = 0;
-				Class<?> arrayClass = clazz;
-				while(arrayClass.isArray()) {
-					++numDims;
-					arrayClass = arrayClass.getComponentType();
-				}
-				
-				return new ArrayType(arrayClass, numDims);
+	 * @throws IllegalArgumentException  if the given range of classes cannot
+	 *                                   be converted to a valid type
+	 */
+	private static TypeDescriptor fromRange(Class<?> [] classes, int offset, int length) {
+		final int end = offset + length;
+		
+		int pending = 1;
+		for(int index = offset; index < end; ++index) {
+			if(pending == 0)
+				throw new IllegalArgumentException("Class list is too large");
+			pending += GenericType.numTypeParameters(classes[index]) - 1;
+		}
+		if(pending != 0)
+			throw new IllegalArgumentException("Class list is too small");
+		
+		final TypeDescriptor [] stack = new TypeDescriptor[length];
+		int top = 0;
+		for(int index = end - 1; index >= offset; --index) {
+			final Class<?> clazz = classes[index];
+			final int numParams = GenericType.numTypeParameters(clazz);
+			if(numParams == 0) {
+				stack[top++] = (clazz.isArray() ? ArrayType.forClass(clazz) : new SimpleType(clazz));
 			} else {
-				return new SimpleType(clazz);
+				// Parameters were pushed last-to-first, so the first is on top
+				final TypeDescriptor [] paramTypes = new TypeDescriptor[numParams];
+				for(int param = 0; param < numParams; ++param)
+					paramTypes[param] = stack[--top];
+				stack[top++] = new GenericType(clazz, paramTypes, false);
 			}
 		}
-		
-		final TypeDescriptor [] paramTypes = new TypeDescriptor[params.length];
-		for(int index = 0; index < paramTypes.length; ++index)
-			paramTypes[index] = fromIterator(iterator);
-		
-		return new GenericType(clazz, paramTypes);
+		return stack[0];
+	}
+	
+	/**
+	 * Convert a reflected type to a type descriptor. The conversion is exact
+	 * for classes, parameterized types, wildcards and arrays of these. Type
+	 * variables are approximated by the erasure of their first bound; use
+	 * {@link #templateOf(Type)} to keep them. A raw reference to a generic
+	 * class is described by a {@link SimpleType}.
+	 * 
+	 * The returned descriptor is interned (see {@link #intern(TypeDescriptor)}).
+	 * 
+	 * @param type  the reflected type
+	 * 
+	 * @return an applicable type descriptor
+	 * 
+	 * @throws IllegalArgumentException  if the type is of an unknown kind
+	 */
+	public static TypeDescriptor fromType(Type type) {
+		// Array types of array classes are cached already interned
+		if(type instanceof Class && ((Class<?>)type).isArray())
+			return ArrayType.forClass((Class<?>)type);
+		return intern(fromReflectedType(type, false));
+	}
+	
+	/**
+	 * Convert a reflected type to a template, a type descriptor in which type
+	 * variables are described by {@link TypeVariableDescriptor}s rather than
+	 * erased. Actual types can be substituted for the variables with
+	 * {@link TypeBindings#substitute(TypeDescriptor)}. Otherwise, the
+	 * conversion is the same as {@link #fromType(Type)}.
+	 * 
+	 * The returned descriptor is interned (see {@link #intern(TypeDescriptor)}).
+	 * 
+	 * @param type  the reflected type
+	 * 
+	 * @return an applicable type descriptor
+	 * 
+	 * @throws IllegalArgumentException  if the type is of an unknown kind
+	 */
+	public static TypeDescriptor templateOf(Type type) {
+		if(type instanceof Class && ((Class<?>)type).isArray())
+			return ArrayType.forClass((Class<?>)type);
+		return intern(fromReflectedType(type, true));
 	}
 	
-	/** Non qualified types we will allow in {@link #parse(String)} */
-	private final static Hashtable<String, Class<?>> nonQualifiedTypes;
-	static {
-		nonQualifiedTypes = new Hashtable<String, Class<?>>();
-		nonQualifiedTypes.put("char", char.class);
-		nonQualifiedTypes.put("byte", byte.class);
-		nonQualifiedTypes.put("short", short.class);
-		nonQualifiedTypes.put("int", int.class);
-		nonQualifiedTypes.put("long", long.class);
-		nonQualifiedTypes.put("float", float.class);
-		nonQualifiedTypes.put("double", double.class);
-		nonQualifiedTypes.put("boolean", boolean.class);
-		nonQualifiedTypes.put("void", void.class);
-		nonQualifiedTypes.put("String", String.class);
-		nonQualifiedTypes.put("Object", Object.class);
+	/**
+	 * Convert a reflected type to a (non-interned) type descriptor.
+	 * 
+	 * @param type  the reflected type
+	 * @param keepVariables  whether type variables are kept, or erased
+	 * 
+	 * @see #fromType(Type)
+	 * @see #templateOf(Type)
+	 */
+	private static TypeDescriptor fromReflectedType(Type type, boolean keepVariables) {
+		if(type instanceof Class) {
+			final Class<?> clazz = (Class<?>)type;
+			return (clazz.isArray() ? ArrayType.forClass(clazz) : new SimpleType(clazz));
+		} else if(type instanceof ParameterizedType) {
+			final ParameterizedType parameterized = (ParameterizedType)type;
+			final Type [] args = parameterized.getActualTypeArguments();
+			final TypeDescriptor [] params = new TypeDescriptor[args.length];
+			for(int index = 0; index < args.length; ++index)
+				params[index] = fromReflectedType(args[index], keepVariables);
+			return new GenericType((Class<?>)parameterized.getRawType(), params, false);
+		} else if(type instanceof GenericArrayType) {
+			return ArrayType.arrayOf(fromReflectedType(((GenericArrayType)type).getGenericComponentType(), keepVariables));
+		} else if(type instanceof java.lang.reflect.WildcardType) {
+			final java.lang.reflect.WildcardType wildcard = (java.lang.reflect.WildcardType)type;
+			final Type [] lowerBounds = wildcard.getLowerBounds();
+			if(lowerBounds.length > 0)
+				return WildcardType.withLowerBound(fromReflectedType(lowerBounds[0], keepVariables));
+			return WildcardType.withUpperBound(fromReflectedType(wildcard.getUpperBounds()[0], keepVariables));
+		} else if(type instanceof TypeVariable) {
+			if(keepVariables)
+				return new TypeVariableDescriptor((TypeVariable<?>)type);
+			
+			// Erase to the first bound, which also avoids recursing forever on
+			// bounds like T extends Comparable<T>
+			return fromReflectedType(erasure(((TypeVariable<?>)type).getBounds()[0]), false);
+		} else if(type == null) {
+			throw new NullPointerException("Type cannot be null");
+		}
+		throw new IllegalArgumentException("Unknown kind of type: " + type);
 	}
 	
-	/** Pattern to match stringified types */
-	private static final Pattern p = Pattern.compile("([a-zA-Z][a-zA-Z0-9.]+)(?:(?:<(.+)>)|((?:\\[\\])+))?");
+	/**
+	 * Gets the erasure of a reflected type.
+	 */
+	static Class<?> erasure(Type type) {
+		if(type instanceof Class)
+			return (Class<?>)type;
+		else if(type instanceof ParameterizedType)
+			return (Class<?>)((ParameterizedType)type).getRawType();
+		else if(type instanceof GenericArrayType)
+			return Array.newInstance(erasure(((GenericArrayType)type).getGenericComponentType()), 0).getClass();
+		else if(type instanceof java.lang.reflect.WildcardType)
+			return erasure(((java.lang.reflect.WildcardType)type).getUpperBounds()[0]);
+		else if(type instanceof TypeVariable)
+			return erasure(((TypeVariable<?>)type).getBounds()[0]);
+		throw new IllegalArgumentException("Unknown kind of type: " + type);
+	}
+	
+	/**
+	 * Gets a descriptor for the generic type of a field. Results are cached
+	 * for each declaring class, so repeated calls are cheap.
+	 * 
+	 * @param field  the field
+	 * 
+	 * @return an interned descriptor for the field's type
+	 * 
+	 * @see #fromType(Type)
+	 */
+	public static TypeDescriptor fromField(Field field) {
+		return MemberTypeCache.forClass(field.getDeclaringClass()).fieldType(field);
+	}
+	
+	/**
+	 * Gets a descriptor for the generic return type of a method. Results are
+	 * cached for each declaring class, so repeated calls are cheap.
+	 * 
+	 * @param method  the method
+	 * 
+	 * @return an interned descriptor for the method's return type
+	 * 
+	 * @see #fromType(Type)
+	 */
+	public static TypeDescriptor fromReturnType(Method method) {
+		return MemberTypeCache.forClass(method.getDeclaringClass()).returnType(method);
+	}
+	
+	/**
+	 * Gets descriptors for the generic parameter types of a method. Results
+	 * are cached for each declaring class, so repeated calls are cheap.
+	 * 
+	 * @param method  the method
+	 * 
+	 * @return an unmodifiable list of interned descriptors for the method's
+	 *         parameter types
+	 * 
+	 * @see #fromType(Type)
+	 */
+	public static List<TypeDescriptor> fromParameterTypes(Method method) {
+		return MemberTypeCache.forClass(method.getDeclaringClass()).parameterTypes(method);
+	}
+	
+	/**
+	 * Gets descriptors for the generic parameter types of a constructor.
+	 * Results are cached for each declaring class, so repeated calls are cheap.
+	 * 
+	 * @param constructor  the constructor
+	 * 
+	 * @return an unmodifiable list of interned descriptors for the
+	 *         constructor's parameter types
+	 * 
+	 * @see #fromType(Type)
+	 */
+	public static List<TypeDescriptor> fromParameterTypes(Constructor<?> constructor) {
+		return MemberTypeCache.forClass(constructor.getDeclaringClass()).parameterTypes(constructor);
+	}
+	
+	/** The resolver used by {@link #parse(String)} */
+	private static final DefaultClassResolver defaultResolver = new DefaultClassResolver();
+	
+	/**
+	 * Gets the class resolver used by {@link #parse(String)}. Aliases and
+	 * imports added to it apply to all subsequent calls of that method.
+	 * 
+	 * @return the default class resolver
+	 */
+	public static DefaultClassResolver getDefaultClassResolver() {
+		return defaultResolver;
+	}
 	
 	/**
 	 * Parse a {@link String} representation of a type. Similar to {@link Class#forName(String)},
@@ -128,9 +407,19 @@ public class TypeFactory {
 	 *   <li>java.lang.Number[]</li>
 	 *   <li>java.util.List&lt;java.lang.String&gt;</li>
 	 *   <li>java.util.List&lt;?&gt;</li>
+	 *   <li>java.util.List&lt;? extends java.lang.Number&gt;</li>
+	 *   <li>java.util.Comparator&lt;? super java.lang.Integer&gt;</li>
 	 *   <li>java.util.Map&lt;java.lang.Integer, java.util.TreeSet&lt;java.lang.Integer&gt;&gt;</li>
 	 * </ul>
 	 * 
+	 * Class names are resolved with the default class resolver (see
+	 * {@link #getDefaultClassResolver()}), so primitive types and classes in
+	 * <code>java.lang</code> may be given by their short names.
+	 * 
+	 * The string is parsed in a single pass, so the cost is linear in its length
+	 * regardless of how deeply the generic parameters are nested. The returned
+	 * descriptor is interned (see {@link #intern(TypeDescriptor)}).
+	 * 
 	 * @param typeString  string specification of a type to parse
 	 * 
 	 * @returns an applicable type descriptor
@@ -139,31 +428,135 @@ public class TypeFactory {
 	 * @throws ClassNotFoundException  if any class in the given string is unknown
 	 */
 	public static TypeDescriptor parse(String typeString) throws ClassNotFoundException {
-		Matcher m = p.matcher(typeString.replaceAll("\\s", ""));
-		if(m.matches()) {
-			// Get the base type
-			Class<?> clazz = null;
-			if(nonQualifiedTypes.containsKey(m.group(1))) {
-				clazz = nonQualifiedTypes.get(m.group(1));
-			} else {
-				clazz = Class.forName(m.group(1));
-			}
-
-			// Parse based on whether or not this is an array, generic type, or neither 
-			if(m.group(2) != null) {
-				final String [] paramStrings = m.group(2).split(",");
-				final TypeDescriptor [] params = new TypeDescriptor[paramStrings.length]; 
-				for(int index = 0; index < params.length; ++index)
-					params[index] = parse(paramStrings[index]);
-				
-				return new GenericType(clazz, params);
-			} else if(m.group(3) != null) {
-				return new ArrayType(clazz, m.group(3).length() / 2);
-			} else {
-				return new SimpleType(clazz);
-			}
+		return parse(typeString, defaultResolver);
+	}
+	
+	/**
+	 * Parse a {@link String} representation of a type, loading classes from
+	 * the given class loader. See {@link #parse(String)} for the format.
+	 * 
+	 * Class lookups are not cached between calls of this method. To parse
+	 * many strings against the same class loader, use a single
+	 * {@link DefaultClassResolver} with {@link #parse(String, ClassResolver)}.
+	 * 
+	 * @param typeString  string specification of a type to parse
+	 * @param loader  the class loader to load classes from, or <code>null</code>
+	 *                for the bootstrap class loader
+	 * 
+	 * @returns an applicable type descriptor
+	 * 
+	 * @throws IllegalArgumentException  if the given string is formatted incorrectly
+	 * @throws ClassNotFoundException  if any class in the given string is unknown
+	 */
+	public static TypeDescriptor parse(String typeString, ClassLoader loader) throws ClassNotFoundException {
+		return parse(typeString, new DefaultClassResolver(loader));
+	}
+	
+	/**
+	 * Parse a {@link String} representation of a type, resolving class names
+	 * with the given resolver. See {@link #parse(String)} for the format.
+	 * 
+	 * @param typeString  string specification of a type to parse
+	 * @param resolver  the resolver for class names
+	 * 
+	 * @returns an applicable type descriptor
+	 * 
+	 * @throws IllegalArgumentException  if the given string is formatted incorrectly
+	 * @throws ClassNotFoundException  if any class in the given string is unknown
+	 */
+	public static TypeDescriptor parse(String typeString, ClassResolver resolver) throws ClassNotFoundException {
+		if(resolver == null)
+			throw new NullPointerException("Class resolver cannot be null");
+		
+		final TypeMetrics metrics = Metrics.current;
+		if(metrics == null)
+			return intern(new TypeParser(typeString, resolver).parse());
+		
+		final long start = System.nanoTime();
+		try {
+			final TypeDescriptor type = intern(new TypeParser(typeString, resolver).parse());
+			metrics.recordSuccess(TypeMetrics.Operation.PARSE, System.nanoTime() - start);
+			return type;
+		} catch(ClassNotFoundException exc) {
+			metrics.recordFailure(TypeMetrics.Operation.PARSE, System.nanoTime() - start, exc);
+			throw exc;
+		} catch(RuntimeException exc) {
+			metrics.recordFailure(TypeMetrics.Operation.PARSE, System.nanoTime() - start, exc);
+			throw exc;
 		}
-
-		throw new IllegalArgumentException("Type string was in an illegal format: " + typeString);
+	}
+	
+	/**
+	 * Parse a {@link String} representation of a type without resolving its
+	 * class names yet. See {@link #parse(String)} for the format. The
+	 * syntax is checked immediately, but classes are only resolved, with
+	 * the default class resolver, when the returned descriptor is first
+	 * used (see {@link LazyType}). This avoids loading classes for types
+	 * that are declared but never used.
+	 * 
+	 * @param typeString  string specification of a type to parse
+	 * 
+	 * @returns a descriptor that resolves the type on first use
+	 * 
+	 * @throws IllegalArgumentException  if the given string is formatted incorrectly
+	 */
+	public static LazyType parseLazily(String typeString) {
+		return parseLazily(typeString, defaultResolver);
+	}
+	
+	/**
+	 * Parse a {@link String} representation of a type without resolving its
+	 * class names yet, resolving them with the given resolver when the
+	 * returned descriptor is first used. See {@link #parseLazily(String)}.
+	 * 
+	 * @param typeString  string specification of a type to parse
+	 * @param resolver  the resolver for class names
+	 * 
+	 * @returns a descriptor that resolves the type on first use
+	 * 
+	 * @throws IllegalArgumentException  if the given string is formatted incorrectly
+	 */
+	public static LazyType parseLazily(String typeString, ClassResolver resolver) {
+		if(resolver == null)
+			throw new NullPointerException("Class resolver cannot be null");
+		
+		new TypeParser(typeString, resolver).validate();
+		return new LazyType(typeString, resolver);
+	}
+	
+	/**
+	 * Installs metrics to receive measurements of parsing, conversion from
+	 * flat lists, assignability checks and descriptor construction.
+	 * 
+	 * @param metrics  the metrics, or <code>null</code> or {@link TypeMetrics#NONE}
+	 *                 to disable metrics
+	 */
+	public static void setMetrics(TypeMetrics metrics) {
+		Metrics.current = (metrics == TypeMetrics.NONE ? null : metrics);
+	}
+	
+	/**
+	 * @return the installed metrics, or {@link TypeMetrics#NONE} if metrics
+	 *         are disabled
+	 */
+	public static TypeMetrics getMetrics() {
+		final TypeMetrics metrics = Metrics.current;
+		return (metrics == null ? TypeMetrics.NONE : metrics);
+	}
+	
+	/**
+	 * Gets the canonical instance of a type descriptor. Structurally equal
+	 * descriptors are interned to the same instance, so interned descriptors
+	 * can be compared with <code>==</code>. Interned descriptors do not
+	 * prevent their classes from being unloaded.
+	 * 
+	 * @param type  the type descriptor
+	 * 
+	 * @return the canonical descriptor equal to the given one
+	 * 
+	 * @throws NullPointerException  if the descriptor is <code>null</code>
+	 */
+	public static TypeDescriptor intern(TypeDescriptor type) {
+		return InternPool.intern(type);
 	}
 }
@@ -0,0 +1,786 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collector;
+
+import ca.gedge.jype.TypeDispatchTable.Key;
+
+/**
+ * Lattice operations on type descriptors: least upper bounds (the most
+ * specific common supertype), greatest lower bounds (the most general common
+ * subtype) and unification of templates with types.
+ * 
+ * The least upper bound follows the Java language's, so the bound of
+ * <code>List&lt;Integer&gt;</code> and <code>List&lt;Long&gt;</code> is
+ * <code>List&lt;? extends Number&gt;</code>. Descriptors cannot describe
+ * intersection types, so where Java's bound is an intersection (for
+ * example, <code>Number &amp; Comparable&lt;...&gt;</code> for
+ * <code>Integer</code> and <code>Long</code>), the member of the
+ * intersection with the most supertypes of its own is used, here
+ * <code>Number</code>. If several members have equally many, the nearest
+ * common superclass is used, so the bound of <code>String</code> and
+ * <code>Integer</code> is <code>Object</code>. Primitive types are boxed
+ * when combined with other types.
+ * 
+ * Many descriptors are best reduced with {@link #toLub()}, which tracks every
+ * common supertype until the end and so is associative and commutative, and
+ * can be used on parallel streams. Folding {@link #lub(TypeDescriptor, TypeDescriptor)}
+ * over pairs picks a single supertype at each step, so it can lose
+ * information that a later step needs.
+ */
+public final class TypeLattice {
+	/** Marker for supertypes inherited raw by at least one type */
+	private static final Arg [] RAW = new Arg[0];
+	
+	/** Arguments of non-generic supertypes */
+	private static final Arg [] NO_ARGS = new Arg[0];
+	
+	/** Empty parameter list */
+	private static final TypeDescriptor [] NO_PARAMS = new TypeDescriptor[0];
+	
+	private TypeLattice() { }
+	
+	/**
+	 * Gets the least upper bound of two descriptors, the most specific
+	 * descriptor both can be assigned to.
+	 * 
+	 * @param a  a type descriptor
+	 * @param b  another type descriptor
+	 * 
+	 * @return the interned least upper bound
+	 * 
+	 * @throws IllegalArgumentException  if the descriptors have no common
+	 *                                   supertype, as for void
+	 * @throws NullPointerException  if either descriptor is <code>null</code>
+	 */
+	public static TypeDescriptor lub(TypeDescriptor a, TypeDescriptor b) {
+		final Upper upper = new Upper();
+		upper.add(a);
+		upper.add(b);
+		return upper.toDescriptor();
+	}
+	
+	/**
+	 * Gets the least upper bound of several descriptors, the most specific
+	 * descriptor all can be assigned to.
+	 * 
+	 * @param types  the type descriptors
+	 * 
+	 * @return the interned least upper bound
+	 * 
+	 * @throws IllegalArgumentException  if no descriptors are given, or they
+	 *                                   have no common supertype
+	 * @throws NullPointerException  if any descriptor is <code>null</code>
+	 */
+	public static TypeDescriptor lub(Iterable<? extends TypeDescriptor> types) {
+		final Upper upper = new Upper();
+		for(TypeDescriptor type : types)
+			upper.add(type);
+		
+		final TypeDescriptor lub = upper.toDescriptor();
+		if(lub == null)
+			throw new IllegalArgumentException("No type descriptors given");
+		return lub;
+	}
+	
+	/**
+	 * Gets a collector computing the least upper bound of a stream of
+	 * descriptors, as {@link #lub(Iterable)} does. The collector is
+	 * unordered and its partial results combine exactly, so it can reduce
+	 * parallel streams. It collects an empty stream to <code>null</code>.
+	 * 
+	 * @return a collector of the interned least upper bound
+	 */
+	public static Collector<TypeDescriptor, ?, TypeDescriptor> toLub() {
+		return Collector.of(Upper::new, Upper::add, Upper::merge, Upper::toDescriptor, Collector.Characteristics.UNORDERED);
+	}
+	
+	/**
+	 * Gets the greatest lower bound of two descriptors, the most general
+	 * descriptor that can be assigned to both. If one descriptor can be
+	 * assigned to the other, it is the bound. Otherwise, the bound of two
+	 * generic types of the same class intersects the ranges of their
+	 * parameters, so the bound of <code>Map&lt;? extends Number, ?&gt;</code>
+	 * and <code>Map&lt;?, String&gt;</code> is
+	 * <code>Map&lt;? extends Number, String&gt;</code>, and the bound of two
+	 * array types is the array of the bound of their elements.
+	 * 
+	 * @param a  a type descriptor
+	 * @param b  another type descriptor
+	 * 
+	 * @return the interned greatest lower bound, or <code>null</code> if it
+	 *         cannot be described, such as the intersection of two unrelated
+	 *         interfaces
+	 * 
+	 * @throws NullPointerException  if either descriptor is <code>null</code>
+	 */
+	public static TypeDescriptor glb(TypeDescriptor a, TypeDescriptor b) {
+		if(a == null || b == null)
+			throw new NullPointerException("Type descriptors cannot be null");
+		
+		final TypeDescriptor glb = meet(normalize(a), normalize(b));
+		return (glb == null ? null : InternPool.intern(glb));
+	}
+	
+	/**
+	 * Gets the greatest lower bound of several descriptors, as
+	 * {@link #glb(TypeDescriptor, TypeDescriptor)} does.
+	 * 
+	 * @param types  the type descriptors
+	 * 
+	 * @return the interned greatest lower bound, or <code>null</code> if it
+	 *         cannot be described
+	 * 
+	 * @throws IllegalArgumentException  if no descriptors are given
+	 * @throws NullPointerException  if any descriptor is <code>null</code>
+	 */
+	public static TypeDescriptor glb(Iterable<? extends TypeDescriptor> types) {
+		final Iterator<? extends TypeDescriptor> iter = types.iterator();
+		if(!iter.hasNext())
+			throw new IllegalArgumentException("No type descriptors given");
+		
+		TypeDescriptor glb = iter.next();
+		if(glb == null)
+			throw new NullPointerException("Type descriptors cannot be null");
+		glb = normalize(glb);
+		while(iter.hasNext()) {
+			final TypeDescriptor type = iter.next();
+			if(type == null)
+				throw new NullPointerException("Type descriptors cannot be null");
+			if((glb = meet(glb, normalize(type))) == null)
+				return null;
+		}
+		return InternPool.intern(glb);
+	}
+	
+	/**
+	 * Unifies a template with a type, finding bindings of the template's type
+	 * variables under which the substituted template can be assigned from the
+	 * type. Nested type parameters must match exactly, but the type itself
+	 * may be a subtype, so <code>List&lt;T&gt;</code> unifies with
+	 * <code>ArrayList&lt;String&gt;</code> by binding <code>T</code> to
+	 * <code>String</code>. A variable must be bound to a type within its
+	 * bound, and to the same type wherever it appears, and a variable array
+	 * element binds to the type's remaining dimensions, so <code>T[]</code>
+	 * unifies with <code>int[][]</code> by binding <code>T</code> to
+	 * <code>int[]</code>.
+	 * 
+	 * @param template  the template, from
+	 *                  {@link TypeFactory#templateOf(java.lang.reflect.Type)}
+	 * @param type  the type
+	 * 
+	 * @return the bindings, or <code>null</code> if the template and type do
+	 *         not unify
+	 * 
+	 * @throws NullPointerException  if either descriptor is <code>null</code>
+	 */
+	public static TypeBindings unify(TypeDescriptor template, TypeDescriptor type) {
+		if(template == null || type == null)
+			throw new NullPointerException("Type descriptors cannot be null");
+		
+		final Map<TypeVariableDescriptor, TypeDescriptor> bindings = new HashMap<TypeVariableDescriptor, TypeDescriptor>();
+		if(!unify(LazyType.unwrap(template), LazyType.unwrap(type), bindings, true))
+			return null;
+		return TypeBindings.of(bindings);
+	}
+	
+	/**
+	 * Unifies a template with a type, adding to the given bindings.
+	 * 
+	 * @param subtype  whether the type may be a subtype of the template
+	 */
+	private static boolean unify(TypeDescriptor template, TypeDescriptor type, Map<TypeVariableDescriptor, TypeDescriptor> bindings, boolean subtype) {
+		type = arrayOf(type);
+		if(template instanceof TypeVariableDescriptor) {
+			final TypeVariableDescriptor variable = (TypeVariableDescriptor)template;
+			final TypeDescriptor bound = bindings.get(variable);
+			if(bound != null)
+				return bound.equals(type);
+			if(type instanceof WildcardType || !Metrics.isAssignable(variable.getUpperBound(), type))
+				return false;
+			
+			bindings.put(variable, type);
+			return true;
+		}
+		
+		if(template instanceof WildcardType) {
+			if(!(type instanceof WildcardType))
+				return false;
+			
+			final WildcardType wildcard = (WildcardType)template;
+			final WildcardType other = (WildcardType)type;
+			if(wildcard.getLowerBound() != null)
+				return (other.getLowerBound() != null && unify(wildcard.getLowerBound(), other.getLowerBound(), bindings, false));
+			return (other.getLowerBound() == null && unify(wildcard.getUpperBound(), other.getUpperBound(), bindings, false));
+		}
+		
+		if(template instanceof GenericType) {
+			final GenericType generic = (GenericType)template;
+			final TypeDescriptor [] params;
+			if(type instanceof GenericType && ((GenericType)type).getRawClass() == generic.getRawClass())
+				params = ((GenericType)type).parameterArray();
+			else if(subtype && type instanceof GenericType)
+				params = SupertypeIndex.forClass(((GenericType)type).getRawClass()).parametersOf(generic.getRawClass(), ((GenericType)type).parameterArray());
+			else if(subtype && type instanceof SimpleType)
+				params = SupertypeIndex.forClass(((SimpleType)type).getRawClass()).parametersOf(generic.getRawClass(), NO_PARAMS);
+			else
+				return false;
+			
+			if(params == null)
+				return false;
+			for(int index = 0; index < params.length; ++index) {
+				if(!unify(generic.getParameter(index), params[index], bindings, false))
+					return false;
+			}
+			return true;
+		}
+		
+		if(template instanceof ArrayType) {
+			if(!(type instanceof ArrayType))
+				return false;
+			
+			final ArrayType array = (ArrayType)template;
+			final ArrayType other = (ArrayType)type;
+			final int extraDims = other.getNumDimensions() - array.getNumDimensions();
+			if(extraDims == 0)
+				return unify(array.getElementType(), other.getElementType(), bindings, false);
+			if(extraDims > 0 && array.getElementType() instanceof TypeVariableDescriptor)
+				return unify(array.getElementType(), new ArrayType(other.getElementType(), extraDims), bindings, false);
+			return false;
+		}
+		
+		return (subtype ? Metrics.isAssignable(template, type) : template.equals(type));
+	}
+	
+	/**
+	 * Computes the greatest lower bound of two normalized descriptors.
+	 */
+	private static TypeDescriptor meet(TypeDescriptor a, TypeDescriptor b) {
+		if(Metrics.isAssignable(b, a))
+			return a;
+		if(Metrics.isAssignable(a, b))
+			return b;
+		
+		if(a instanceof GenericType && b instanceof GenericType) {
+			final GenericType ga = (GenericType)a;
+			final GenericType gb = (GenericType)b;
+			if(ga.getRawClass() != gb.getRawClass())
+				return null;
+			
+			final TypeDescriptor [] params = new TypeDescriptor[ga.getNumParameters()];
+			for(int index = 0; index < params.length; ++index) {
+				if((params[index] = intersect(ga.getParameter(index), gb.getParameter(index))) == null)
+					return null;
+			}
+			return new GenericType(ga.getRawClass(), params, false);
+		}
+		
+		if(a instanceof ArrayType && b instanceof ArrayType) {
+			final ArrayType aa = (ArrayType)a;
+			final ArrayType ab = (ArrayType)b;
+			if(aa.getNumDimensions() != ab.getNumDimensions())
+				return null;
+			
+			final TypeDescriptor element = meet(aa.getElementType(), ab.getElementType());
+			return (element == null ? null : new ArrayType(element, aa.getNumDimensions()));
+		}
+		return null;
+	}
+	
+	/**
+	 * Intersects the ranges of types described by two generic parameters.
+	 * 
+	 * @return a parameter describing the intersection, or <code>null</code>
+	 *         if it cannot be described
+	 */
+	private static TypeDescriptor intersect(TypeDescriptor a, TypeDescriptor b) {
+		if(a.equals(b))
+			return a;
+		if(a instanceof WildcardType && ((WildcardType)a).assignableFrom(b))
+			return b;
+		if(b instanceof WildcardType && ((WildcardType)b).assignableFrom(a))
+			return a;
+		if(!(a instanceof WildcardType && b instanceof WildcardType))
+			return null;
+		
+		final TypeDescriptor lowerA = ((WildcardType)a).getLowerBound();
+		final TypeDescriptor lowerB = ((WildcardType)b).getLowerBound();
+		if(lowerA != null && lowerB != null)
+			return WildcardType.withLowerBound(lub(lowerA, lowerB));
+		if(lowerA != null || lowerB != null)
+			return null;
+		
+		final TypeDescriptor upper = meet(((WildcardType)a).getUpperBound(), ((WildcardType)b).getUpperBound());
+		return (upper == null ? null : WildcardType.withUpperBound(upper));
+	}
+	
+	/**
+	 * Gets the descriptor a type is combined as: lazy types are resolved,
+	 * wildcards and type variables are replaced by their upper bounds, and
+	 * array classes are described by array types.
+	 */
+	private static TypeDescriptor normalize(TypeDescriptor type) {
+		type = LazyType.unwrap(type);
+		if(type instanceof WildcardType)
+			type = ((WildcardType)type).getUpperBound();
+		if(type instanceof TypeVariableDescriptor)
+			type = ((TypeVariableDescriptor)type).getUpperBound();
+		return arrayOf(type);
+	}
+	
+	/**
+	 * Describes an array class by an array type, leaving other types as they are.
+	 */
+	private static TypeDescriptor arrayOf(TypeDescriptor type) {
+		if(type instanceof SimpleType && ((SimpleType)type).getRawClass().isArray())
+			return ArrayType.forClass(((SimpleType)type).getRawClass());
+		return type;
+	}
+	
+	/**
+	 * Tests whether or not a class is a primitive type with a wrapper, which
+	 * is every primitive type but void.
+	 */
+	private static boolean isBoxable(Class<?> clazz) {
+		return (clazz.isPrimitive() && clazz != void.class);
+	}
+	
+	/**
+	 * Tests whether or not a class is a supertype of all arrays.
+	 */
+	private static boolean isArraySupertype(Class<?> clazz) {
+		return (clazz == Object.class || clazz == Cloneable.class || clazz == Serializable.class);
+	}
+	
+	/**
+	 * Tests whether or not an erased type is a proper subtype of another.
+	 */
+	private static boolean isBelow(Key a, Key b) {
+		if(a.numDims == b.numDims)
+			return (a.clazz != b.clazz && b.clazz.isAssignableFrom(a.clazz));
+		return (a.numDims > b.numDims && isArraySupertype(b.clazz));
+	}
+	
+	/**
+	 * The common supertypes of the types added so far. Until two different
+	 * types are added, only the first is kept; after that, each erased
+	 * supertype that all the types share is kept along with the combined
+	 * arguments of its type parameters. Intersecting supertype sets is
+	 * associative and commutative, so the order of adding and merging does
+	 * not matter.
+	 */
+	private static final class Upper {
+		/** The first type added, or <code>null</code> if none were */
+		private TypeDescriptor first;
+		
+		/** Shared supertypes, or <code>null</code> while all types are equal */
+		private Map<Key, Arg[]> candidates;
+		
+		/**
+		 * The distinct types added, once there are several. Adding a type
+		 * again changes nothing, so it is skipped.
+		 */
+		private Set<TypeDescriptor> seen;
+		
+		/** The greatest depth of the types added */
+		private int maxDepth;
+		
+		/**
+		 * Adds a type.
+		 * 
+		 * @param type  the type descriptor
+		 */
+		void add(TypeDescriptor type) {
+			if(type == null)
+				throw new NullPointerException("Type descriptors cannot be null");
+			
+			type = normalize(type);
+			maxDepth = Math.max(maxDepth, type.getDepth());
+			if(candidates == null) {
+				if(first == null) {
+					first = type;
+					return;
+				}
+				if(first.equals(type))
+					return;
+				candidates = supertypesOf(first);
+				seen = new HashSet<TypeDescriptor>();
+				seen.add(first);
+			}
+			if(seen.add(type))
+				retain(type);
+		}
+		
+		/**
+		 * Adds all types added to another instance, which must not be used
+		 * afterwards.
+		 * 
+		 * @param other  the other instance
+		 * 
+		 * @return this instance
+		 */
+		Upper merge(Upper other) {
+			maxDepth = Math.max(maxDepth, other.maxDepth);
+			if(other.candidates == null) {
+				if(other.first != null)
+					add(other.first);
+			} else if(candidates == null) {
+				final TypeDescriptor type = first;
+				first = other.first;
+				candidates = other.candidates;
+				seen = other.seen;
+				if(type != null && seen.add(type))
+					retain(type);
+			} else {
+				seen.addAll(other.seen);
+				final Iterator<Map.Entry<Key, Arg[]>> iter = candidates.entrySet().iterator();
+				while(iter.hasNext()) {
+					final Map.Entry<Key, Arg[]> entry = iter.next();
+					final Arg [] otherArgs = other.candidates.get(entry.getKey());
+					if(otherArgs == null) {
+						iter.remove();
+					} else if(otherArgs == RAW) {
+						entry.setValue(RAW);
+					} else {
+						final Arg [] args = entry.getValue();
+						for(int index = 0; index < args.length; ++index)
+							args[index].merge(otherArgs[index]);
+					}
+				}
+			}
+			return this;
+		}
+		
+		/**
+		 * Keeps only the candidates that are supertypes of a type, combining
+		 * the type's arguments for them.
+		 */
+		private void retain(TypeDescriptor type) {
+			final Class<?> clazz = erasureOf(type);
+			final Class<?> boxed = (isBoxable(clazz) && !(type instanceof ArrayType) ? InstanceChecker.wrapperOf(clazz) : clazz);
+			final int numDims = (type instanceof ArrayType ? ((ArrayType)type).getNumDimensions() : 0);
+			final TypeDescriptor [] params = paramsOf(type);
+			
+			final Iterator<Map.Entry<Key, Arg[]>> iter = candidates.entrySet().iterator();
+			while(iter.hasNext()) {
+				final Map.Entry<Key, Arg[]> entry = iter.next();
+				final Key key = entry.getKey();
+				if(key.numDims < numDims) {
+					if(!isArraySupertype(key.clazz))
+						iter.remove();
+				} else if(key.numDims > numDims || !(key.clazz.isAssignableFrom(clazz) || key.clazz.isAssignableFrom(boxed))) {
+					iter.remove();
+				} else {
+					final Arg [] args = entry.getValue();
+					if(args.length > 0) {
+						final TypeDescriptor [] keyParams = parametersOf(boxed, params, key.clazz);
+						if(keyParams == null) {
+							entry.setValue(RAW);
+						} else {
+							for(int index = 0; index < args.length; ++index)
+								args[index].add(keyParams[index]);
+						}
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Gets all erased supertypes of a type, with its arguments for each.
+		 */
+		private static Map<Key, Arg[]> supertypesOf(TypeDescriptor type) {
+			final Map<Key, Arg[]> supertypes = new LinkedHashMap<Key, Arg[]>();
+			final Class<?> clazz = erasureOf(type);
+			final int numDims = (type instanceof ArrayType ? ((ArrayType)type).getNumDimensions() : 0);
+			final TypeDescriptor [] params = paramsOf(type);
+			
+			addSupertypes(clazz, numDims, params, supertypes);
+			if(isBoxable(clazz) && numDims == 0)
+				addSupertypes(InstanceChecker.wrapperOf(clazz), 0, NO_PARAMS, supertypes);
+			for(int dims = 0; dims < numDims; ++dims) {
+				supertypes.put(new Key(Object.class, dims), NO_ARGS);
+				supertypes.put(new Key(Cloneable.class, dims), NO_ARGS);
+				supertypes.put(new Key(Serializable.class, dims), NO_ARGS);
+			}
+			return supertypes;
+		}
+		
+		/**
+		 * Adds the supertypes of a class at a given number of dimensions.
+		 */
+		private static void addSupertypes(Class<?> clazz, int numDims, TypeDescriptor [] params, Map<Key, Arg[]> supertypes) {
+			for(Class<?> supertype : SupertypeIndex.allSupertypes(clazz)) {
+				Arg [] args = NO_ARGS;
+				if(GenericType.numTypeParameters(supertype) > 0) {
+					final TypeDescriptor [] superParams = parametersOf(clazz, params, supertype);
+					if(superParams == null) {
+						args = RAW;
+					} else {
+						args = new Arg[superParams.length];
+						for(int index = 0; index < args.length; ++index)
+							(args[index] = new Arg()).add(superParams[index]);
+					}
+				}
+				supertypes.put(new Key(supertype, numDims), args);
+			}
+		}
+		
+		/**
+		 * Gets the parameters of a generic supertype of a class.
+		 * 
+		 * @return the parameters, or <code>null</code> if the class or the
+		 *         supertype is raw
+		 */
+		private static TypeDescriptor [] parametersOf(Class<?> clazz, TypeDescriptor [] params, Class<?> supertype) {
+			if(clazz == supertype)
+				return (params.length == 0 ? null : params);
+			return SupertypeIndex.forClass(clazz).parametersOf(supertype, params);
+		}
+		
+		/**
+		 * Gets the erased (element) class of a normalized type.
+		 */
+		private static Class<?> erasureOf(TypeDescriptor type) {
+			if(type instanceof SimpleType)
+				return ((SimpleType)type).getRawClass();
+			if(type instanceof GenericType)
+				return ((GenericType)type).getRawClass();
+			if(type instanceof ArrayType)
+				return ((ArrayType)type).getElementClass();
+			throw new IllegalArgumentException("Unsupported type descriptor: " + type);
+		}
+		
+		/**
+		 * Gets the generic parameters of a normalized type, or of its elements.
+		 */
+		private static TypeDescriptor [] paramsOf(TypeDescriptor type) {
+			if(type instanceof ArrayType)
+				type = ((ArrayType)type).getElementType();
+			return (type instanceof GenericType ? ((GenericType)type).parameterArray() : NO_PARAMS);
+		}
+		
+		/**
+		 * Gets the least upper bound of the types added.
+		 * 
+		 * @return the interned least upper bound, or <code>null</code> if no
+		 *         types were added
+		 * 
+		 * @throws IllegalArgumentException  if the types have no common
+		 *                                   supertype
+		 */
+		TypeDescriptor toDescriptor() {
+			return (first == null ? null : InternPool.intern(toDescriptor(maxDepth)));
+		}
+		
+		/**
+		 * Gets the least upper bound of the types added, with nested bounds
+		 * computed only to a given depth. Without a limit, the bound of
+		 * recursive types such as enums, whose bound is
+		 * <code>Enum&lt;? extends Enum&lt;? extends ...&gt;&gt;</code>,
+		 * would never finish; the limit is the greatest depth of the types
+		 * themselves.
+		 * 
+		 * @param depth  the depth to compute nested bounds to
+		 * 
+		 * @return the least upper bound
+		 */
+		private TypeDescriptor toDescriptor(int depth) {
+			if(candidates == null)
+				return first;
+			
+			// The minimal candidates form an intersection, approximated by
+			// the member with the most supertypes, or the nearest common
+			// superclass if that is ambiguous
+			Key best = null;
+			Key superclass = null;
+			int mostSupertypes = -1;
+			boolean ambiguous = false;
+			for(Key key : candidates.keySet()) {
+				if(!key.clazz.isInterface() && (superclass == null || isBelow(key, superclass)))
+					superclass = key;
+				if(isMinimal(key)) {
+					final int numSupertypes = SupertypeIndex.allSupertypes(key.clazz).length;
+					ambiguous = (numSupertypes == mostSupertypes || (ambiguous && numSupertypes < mostSupertypes));
+					if(numSupertypes > mostSupertypes) {
+						best = key;
+						mostSupertypes = numSupertypes;
+					}
+				}
+			}
+			if(best == null)
+				throw new IllegalArgumentException("Types have no common supertype: " + first + " and others");
+			
+			final Key key = (ambiguous && superclass != null ? superclass : best);
+			final Arg [] args = candidates.get(key);
+			TypeDescriptor type = SimpleType.forClass(key.clazz);
+			if(args.length > 0) {
+				final TypeDescriptor [] params = new TypeDescriptor[args.length];
+				for(int index = 0; index < params.length; ++index)
+					params[index] = args[index].toDescriptor(depth - 1);
+				type = new GenericType(key.clazz, params, false);
+			}
+			if(key.numDims > 0)
+				type = new ArrayType(type, key.numDims);
+			return type;
+		}
+		
+		/**
+		 * Tests whether or not no other candidate is below a candidate.
+		 */
+		private boolean isMinimal(Key key) {
+			for(Key other : candidates.keySet()) {
+				if(isBelow(other, key))
+					return false;
+			}
+			return true;
+		}
+	}
+	
+	/**
+	 * The combined arguments of a type parameter. Arguments equal to each
+	 * other combine to themselves. Otherwise, following Java, arguments
+	 * combine to a wildcard: <code>? extends</code> the least upper bound of
+	 * the exact arguments and upper bounds, <code>? super</code> the most
+	 * specific of the exact arguments and lower bounds if there are no
+	 * upper bounds, or <code>?</code> if neither applies.
+	 */
+	private static final class Arg {
+		/** The argument, while all arguments are equal and exact */
+		private TypeDescriptor exact;
+		
+		/** Whether arguments differ, or any is a wildcard */
+		private boolean inexact;
+		
+		/** Whether any argument is an upper-bounded wildcard */
+		private boolean hasUpper;
+		
+		/** Whether any argument is a lower-bounded wildcard */
+		private boolean hasLower;
+		
+		/**
+		 * The distinct exact arguments and upper bounds, created on first
+		 * use. Their bound is only computed when needed, since computing
+		 * bounds eagerly would never finish for recursive types.
+		 */
+		private Set<TypeDescriptor> uppers;
+		
+		/** The most specific exact argument or lower bound, if any */
+		private TypeDescriptor lower;
+		
+		/** Whether the exact arguments and lower bounds have no most specific one */
+		private boolean noLower;
+		
+		/**
+		 * Adds an argument.
+		 */
+		void add(TypeDescriptor arg) {
+			if(arg instanceof WildcardType) {
+				final WildcardType wildcard = (WildcardType)arg;
+				inexact = true;
+				if(wildcard.getLowerBound() != null) {
+					hasLower = true;
+					addLower(wildcard.getLowerBound());
+				} else {
+					hasUpper = true;
+					uppers().add(wildcard.getUpperBound());
+				}
+			} else {
+				if(exact == null && !inexact)
+					exact = arg;
+				else if(!inexact && !exact.equals(arg))
+					inexact = true;
+				uppers().add(arg);
+				addLower(arg);
+			}
+		}
+		
+		/**
+		 * Adds all arguments added to another instance, which must not be
+		 * used afterwards.
+		 */
+		void merge(Arg other) {
+			if(other.inexact || (exact != null && !exact.equals(other.exact)))
+				inexact = true;
+			else if(exact == null && !inexact)
+				exact = other.exact;
+			hasUpper |= other.hasUpper;
+			hasLower |= other.hasLower;
+			
+			if(other.uppers != null) {
+				if(uppers == null)
+					uppers = other.uppers;
+				else
+					uppers.addAll(other.uppers);
+			}
+			if(other.noLower)
+				noLower = true;
+			else if(other.lower != null)
+				addLower(other.lower);
+		}
+		
+		private Set<TypeDescriptor> uppers() {
+			if(uppers == null)
+				uppers = new HashSet<TypeDescriptor>();
+			return uppers;
+		}
+		
+		/**
+		 * Keeps the more specific of an argument and the current most
+		 * specific one, if they are comparable.
+		 */
+		private void addLower(TypeDescriptor arg) {
+			if(noLower || arg.equals(lower) || (lower != null && Metrics.isAssignable(arg, lower)))
+				return;
+			if(lower == null || Metrics.isAssignable(lower, arg))
+				lower = arg;
+			else
+				noLower = true;
+		}
+		
+		/**
+		 * @param depth  the depth to compute an upper bound to
+		 * 
+		 * @return the combined argument
+		 */
+		TypeDescriptor toDescriptor(int depth) {
+			if(!inexact)
+				return exact;
+			if(hasLower)
+				return (hasUpper || noLower ? WildcardType.unbounded() : WildcardType.withLowerBound(lower));
+			if(depth <= 0)
+				return WildcardType.unbounded();
+			
+			final Upper upper = new Upper();
+			for(TypeDescriptor type : uppers)
+				upper.add(type);
+			return WildcardType.withUpperBound(upper.toDescriptor(depth));
+		}
+	}
+}
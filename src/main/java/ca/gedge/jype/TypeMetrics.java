@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+/**
+ * Receives measurements of Jype's operations, for monitoring how much time
+ * is spent parsing, converting and comparing descriptors. Metrics are
+ * disabled by default; install an implementation, such as
+ * {@link InMemoryTypeMetrics} or {@link JfrTypeMetrics}, with
+ * {@link TypeFactory#setMetrics(TypeMetrics)}.
+ * While disabled, each operation costs one extra volatile read.
+ * 
+ * Implementations are called on the threads performing the operations, so
+ * they must be thread-safe, and should be fast. They must not call back
+ * into the operations they measure.
+ */
+public interface TypeMetrics {
+	/**
+	 * The measured operations.
+	 */
+	enum Operation {
+		/** {@link TypeFactory#parse(String, ClassResolver)} and the methods that call it */
+		PARSE,
+		
+		/** The <code>TypeFactory.fromList</code> methods */
+		FROM_LIST,
+		
+		/**
+		 * {@link TypeDescriptor#isAssignableFrom(TypeDescriptor)} of Jype's
+		 * descriptors. Checks of generic parameters, wildcard bounds and array
+		 * elements are part of the check of their enclosing descriptor, and
+		 * are not recorded separately.
+		 */
+		IS_ASSIGNABLE_FROM
+	}
+	
+	/**
+	 * Metrics that record nothing. Installing these disables metrics.
+	 */
+	TypeMetrics NONE = new TypeMetrics() {
+		public void recordSuccess(Operation operation, long nanos) {}
+		public void recordFailure(Operation operation, long nanos, Throwable cause) {}
+		public void recordCreated(Class<? extends TypeDescriptor> kind) {}
+	};
+	
+	/**
+	 * Records an operation that completed normally.
+	 * 
+	 * @param operation  the operation
+	 * @param nanos  the time the operation took, in nanoseconds
+	 */
+	void recordSuccess(Operation operation, long nanos);
+	
+	/**
+	 * Records an operation that threw an exception.
+	 * 
+	 * @param operation  the operation
+	 * @param nanos  the time the operation took, in nanoseconds
+	 * @param cause  the exception thrown
+	 */
+	void recordFailure(Operation operation, long nanos, Throwable cause);
+	
+	/**
+	 * Records the construction of a descriptor, including descriptors that
+	 * are subsequently discarded in favour of an interned one.
+	 * 
+	 * @param kind  the class of the descriptor
+	 */
+	void recordCreated(Class<? extends TypeDescriptor> kind);
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+/**
+ * A recursive-descent parser for stringified types. The input is consumed in
+ * a single left-to-right pass with one cursor, so the only strings created
+ * are the class names handed off for resolution.
+ *
+ * The accepted grammar is:
+ * <pre>
+ *   type   := name [ '&lt;' arg { ',' arg } '&gt;' ] [ dims ]
+ *   arg    := type | '?' [ ( 'extends' | 'super' ) type ]
+ *   dims   := '[' ']' { '[' ']' }
+ *   name   := identifier { '.' identifier }
+ * </pre>
+ * Whitespace is permitted between any two tokens.
+ */
+final class TypeParser {
+	/** The text being parsed */
+	private final CharSequence input;
+
+	/** One past the last index of the input */
+	private final int end;
+
+	/** Resolver for class names */
+	private final ClassResolver resolver;
+
+	/** Index of the next character to consume */
+	private int pos;
+
+	/**
+	 * Constructs a parser over the given text.
+	 *
+	 * @param input  the text to parse
+	 * @param resolver  the resolver for class names
+	 *
+	 * @throws NullPointerException  if the input is <code>null</code>
+	 */
+	TypeParser(CharSequence input, ClassResolver resolver) {
+		if(input == null)
+			throw new NullPointerException("Type string cannot be null");
+
+		this.input = input;
+		this.resolver = resolver;
+		this.end = input.length();
+		this.pos = 0;
+	}
+
+	/**
+	 * Parses the entire input as a single type.
+	 *
+	 * @return an applicable type descriptor
+	 *
+	 * @throws IllegalArgumentException  if the input is formatted incorrectly
+	 * @throws ClassNotFoundException  if any class in the input is unknown
+	 */
+	TypeDescriptor parse() throws ClassNotFoundException {
+		final TypeDescriptor type = parseType();
+		skipWhitespace();
+		if(pos != end)
+			throw illegalFormat();
+		return type;
+	}
+
+	/**
+	 * Checks that the entire input is a single, well-formed type without
+	 * resolving any class names. Generic parameter counts cannot be checked
+	 * without the classes, so they are left to {@link #parse()}.
+	 *
+	 * @throws IllegalArgumentException  if the input is formatted incorrectly
+	 */
+	void validate() {
+		skipType();
+		skipWhitespace();
+		if(pos != end)
+			throw illegalFormat();
+	}
+
+	/**
+	 * Consumes a single type at the cursor, as {@link #parseType()} would,
+	 * without resolving its class names.
+	 */
+	private void skipType() {
+		parseName();
+
+		skipWhitespace();
+		if(pos < end && input.charAt(pos) == '<') {
+			++pos; // consume '<'
+			while(true) {
+				skipWhitespace();
+				if(pos < end && input.charAt(pos) == '?') {
+					++pos; // consume '?'
+					skipWhitespace();
+					if(parseKeyword("extends") || parseKeyword("super"))
+						skipType();
+				} else {
+					skipType();
+				}
+
+				skipWhitespace();
+				if(pos == end)
+					throw illegalFormat();
+
+				final char c = input.charAt(pos++);
+				if(c == '>')
+					break;
+				else if(c != ',')
+					throw illegalFormat();
+			}
+			skipWhitespace();
+		}
+
+		if(pos < end && input.charAt(pos) == '[')
+			parseDimensions();
+	}
+
+	/**
+	 * Parses a single (possibly generic and/or array) type at the cursor.
+	 */
+	private TypeDescriptor parseType() throws ClassNotFoundException {
+		final Class<?> clazz = resolver.resolve(parseName());
+
+		skipWhitespace();
+		if(pos < end && input.charAt(pos) == '<') {
+			final TypeDescriptor generic = parseGeneric(clazz);
+			skipWhitespace();
+			if(pos < end && input.charAt(pos) == '[')
+				return new ArrayType(generic, parseDimensions());
+			return generic;
+		} else if(pos < end && input.charAt(pos) == '[') {
+			if(clazz == void.class)
+				throw illegalFormat();
+			return new ArrayType(clazz, parseDimensions());
+		}
+
+		return new SimpleType(clazz);
+	}
+
+	/**
+	 * Parses the generic parameter list of the given class. The cursor must
+	 * be positioned at the opening '&lt;'.
+	 */
+	private TypeDescriptor parseGeneric(Class<?> clazz) throws ClassNotFoundException {
+		final int numParams = GenericType.numTypeParameters(clazz);
+		if(numParams == 0)
+			throw new IllegalArgumentException("Number of generic parameters must match given class");
+
+		final TypeDescriptor [] params = new TypeDescriptor[numParams];
+		int index = 0;
+
+		++pos; // consume '<'
+		while(true) {
+			if(index == numParams)
+				throw new IllegalArgumentException("Number of generic parameters must match given class");
+
+			params[index++] = parseArgument();
+
+			skipWhitespace();
+			if(pos == end)
+				throw illegalFormat();
+
+			final char c = input.charAt(pos++);
+			if(c == '>')
+				break;
+			else if(c != ',')
+				throw illegalFormat();
+		}
+
+		if(index != numParams)
+			throw new IllegalArgumentException("Number of generic parameters must match given class");
+
+		return new GenericType(clazz, params, false);
+	}
+
+	/**
+	 * Parses a generic parameter, which may be a wildcard, at the cursor.
+	 */
+	private TypeDescriptor parseArgument() throws ClassNotFoundException {
+		skipWhitespace();
+		if(pos == end || input.charAt(pos) != '?')
+			return parseType();
+
+		++pos; // consume '?'
+		skipWhitespace();
+		if(parseKeyword("extends"))
+			return WildcardType.withUpperBound(parseType());
+		else if(parseKeyword("super"))
+			return WildcardType.withLowerBound(parseType());
+		return WildcardType.unbounded();
+	}
+
+	/**
+	 * Consumes a keyword at the cursor, if it is there.
+	 *
+	 * @return <code>true</code> if the keyword was consumed
+	 */
+	private boolean parseKeyword(String keyword) {
+		final int length = keyword.length();
+		if(end - pos < length)
+			return false;
+
+		for(int index = 0; index < length; ++index) {
+			if(input.charAt(pos + index) != keyword.charAt(index))
+				return false;
+		}
+
+		// The keyword must not just be the start of a longer identifier
+		if(pos + length < end && Character.isJavaIdentifierPart(input.charAt(pos + length)))
+			return false;
+
+		pos += length;
+		return true;
+	}
+
+	/**
+	 * Parses a sequence of '[]' pairs. The cursor must be positioned at the
+	 * first '['.
+	 *
+	 * @return the number of dimensions parsed
+	 */
+	private int parseDimensions() {
+		int numDims = 0;
+		do {
+			++pos; // consume '['
+			skipWhitespace();
+			if(pos == end || input.charAt(pos) != ']')
+				throw illegalFormat();
+
+			++pos;
+			++numDims;
+			skipWhitespace();
+		} while(pos < end && input.charAt(pos) == '[');
+
+		return numDims;
+	}
+
+	/**
+	 * Parses a (possibly qualified) class name at the cursor. Whitespace
+	 * around each '.' is dropped from the name.
+	 */
+	private String parseName() {
+		skipWhitespace();
+
+		// Only built when whitespace splits the name, which is rare
+		StringBuilder name = null;
+
+		final int start = pos;
+		while(true) {
+			if(pos == end || !Character.isJavaIdentifierStart(input.charAt(pos)))
+				throw illegalFormat();
+
+			final int from = pos++;
+			while(pos < end && Character.isJavaIdentifierPart(input.charAt(pos)))
+				++pos;
+			if(name != null)
+				name.append(input, from, pos);
+
+			final int to = pos;
+			skipWhitespace();
+			if(pos == end || input.charAt(pos) != '.') {
+				pos = to;
+				break;
+			}
+			if(name == null && pos != to)
+				name = new StringBuilder().append(input, start, to);
+
+			++pos; // consume '.'
+			if(name != null)
+				name.append('.');
+
+			final int dot = pos;
+			skipWhitespace();
+			if(name == null && pos != dot)
+				name = new StringBuilder().append(input, start, dot);
+		}
+
+		return (name != null ? name.toString() : input.subSequence(start, pos).toString());
+	}
+
+	/**
+	 * Advances the cursor past any whitespace.
+	 */
+	private void skipWhitespace() {
+		while(pos < end && Character.isWhitespace(input.charAt(pos)))
+			++pos;
+	}
+
+	/**
+	 * Constructs the exception thrown for malformed input.
+	 */
+	private IllegalArgumentException illegalFormat() {
+		return new IllegalArgumentException("Type string was in an illegal format: " + input + " (at index " + pos + ")");
+	}
+}
@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+/**
+ * A heterogeneous container mapping type descriptors to values of the
+ * described types, such as attributes keyed by <code>List&lt;Order&gt;</code>
+ * and <code>List&lt;Refund&gt;</code>. Values are stored through a
+ * {@link Key}, which checks them against the erasure of its descriptor.
+ * 
+ * Entries are kept in a single open-addressing array of alternating keys and
+ * values. Keys are interned descriptors, so a lookup with a key, or with any
+ * interned descriptor, usually costs one probe and a reference comparison.
+ * Lookups with descriptors that are not interned fall back to
+ * {@link Object#equals(Object)}.
+ * 
+ * This map is not thread-safe; see {@link ConcurrentTypeSafeMap} for a map
+ * that can be shared between threads.
+ */
+public final class TypeSafeMap {
+	/** Initial number of entries, a power of two */
+	static final int INITIAL_CAPACITY = 8;
+	
+	/**
+	 * A typed key for a {@link TypeSafeMap}. Keys hold an interned
+	 * descriptor, so they are cheap to look up and are best created once and
+	 * reused. Instances are immutable.
+	 * 
+	 * @param <T>  the type of value stored under this key
+	 */
+	public static final class Key<T> {
+		/** The interned descriptor */
+		final TypeDescriptor type;
+		
+		/** The spread hash of the descriptor */
+		final int hash;
+		
+		/** Checks values against the descriptor's erasure */
+		private final InstanceChecker checker;
+		
+		private Key(TypeDescriptor type) {
+			this.type = TypeFactory.intern(type);
+			this.hash = spread(this.type.hashCode());
+			this.checker = InstanceChecker.shallow(this.type);
+		}
+		
+		/**
+		 * Gets a key for values of a class. Array classes are described by
+		 * an {@link ArrayType}, as parsed type strings are, so both give the
+		 * same key.
+		 * 
+		 * @param clazz  the class
+		 * 
+		 * @return a key describing the class
+		 * 
+		 * @throws NullPointerException  if the class is <code>null</code>
+		 */
+		public static <T> Key<T> of(Class<T> clazz) {
+			return new Key<T>(clazz.isArray() ? ArrayType.forClass(clazz) : SimpleType.forClass(clazz));
+		}
+		
+		/**
+		 * Gets a key for values of a described type. The type parameter
+		 * cannot be related to the descriptor at compile time, so values are
+		 * only checked against the descriptor's erasure, as by
+		 * {@link InstanceChecker#shallow(TypeDescriptor)}. Callers must make
+		 * sure the two agree.
+		 * 
+		 * @param type  the descriptor
+		 * 
+		 * @return a key describing the type
+		 * 
+		 * @throws NullPointerException  if the descriptor is <code>null</code>
+		 * @throws IllegalArgumentException  if instances of the descriptor
+		 *                                   cannot be checked
+		 */
+		public static <T> Key<T> of(TypeDescriptor type) {
+			return new Key<T>(type);
+		}
+		
+		/**
+		 * @return the interned descriptor of this key
+		 */
+		public TypeDescriptor getType() {
+			return type;
+		}
+		
+		/**
+		 * Checks a value against this key's descriptor.
+		 * 
+		 * @throws NullPointerException  if the value is <code>null</code>
+		 * @throws ClassCastException  if the value is not an instance of the
+		 *                             descriptor's erasure
+		 */
+		void check(Object value) {
+			if(value == null)
+				throw new NullPointerException("Value cannot be null");
+			checker.checkInstance(value);
+		}
+		
+		@Override
+		public int hashCode() {
+			return type.hashCode();
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof Key && type == ((Key<?>)obj).type);
+		}
+		
+		@Override
+		public String toString() {
+			return type.toString();
+		}
+	}
+	
+	/** Keys at even indices, each followed by its value */
+	private Object [] table = new Object[2*INITIAL_CAPACITY];
+	
+	/** The number of entries */
+	private int size;
+	
+	/**
+	 * Gets the value stored under a key.
+	 * 
+	 * @param key  the key
+	 * 
+	 * @return the value, or <code>null</code> if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(Key<T> key) {
+		return (T)lookup(table, key.type, key.hash);
+	}
+	
+	/**
+	 * Gets the value stored under a descriptor.
+	 * 
+	 * @param type  the descriptor
+	 * 
+	 * @return the value, or <code>null</code> if there is none
+	 */
+	public Object get(TypeDescriptor type) {
+		return (type == null ? null : lookup(table, type, spread(type.hashCode())));
+	}
+	
+	/**
+	 * Tests whether or not a value is stored under a descriptor.
+	 * 
+	 * @param type  the descriptor
+	 * 
+	 * @return <code>true</code> if there is a value, <code>false</code> otherwise
+	 */
+	public boolean containsKey(TypeDescriptor type) {
+		return (get(type) != null);
+	}
+	
+	/**
+	 * Stores a value under a key, replacing any value already stored under
+	 * its descriptor.
+	 * 
+	 * @param key  the key
+	 * @param value  the value
+	 * 
+	 * @return the previous value, or <code>null</code> if there was none
+	 * 
+	 * @throws NullPointerException  if the value is <code>null</code>
+	 * @throws ClassCastException  if the value is not an instance of the
+	 *                             erasure of the key's descriptor
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T put(Key<T> key, T value) {
+		key.check(value);
+		return (T)store(key, value, false);
+	}
+	
+	/**
+	 * Stores a value under a key if no value is stored under its descriptor.
+	 * 
+	 * @param key  the key
+	 * @param value  the value
+	 * 
+	 * @return the existing value, or <code>null</code> if the given value
+	 *         was stored
+	 * 
+	 * @throws NullPointerException  if the value is <code>null</code>
+	 * @throws ClassCastException  if the value is not an instance of the
+	 *                             erasure of the key's descriptor
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T putIfAbsent(Key<T> key, T value) {
+		key.check(value);
+		return (T)store(key, value, true);
+	}
+	
+	/**
+	 * Stores a value, growing the table if needed.
+	 */
+	private Object store(Key<?> key, Object value, boolean onlyIfAbsent) {
+		final int index = indexOf(table, key.type, key.hash);
+		if(index >= 0) {
+			final Object previous = table[index + 1];
+			if(!onlyIfAbsent)
+				table[index + 1] = value;
+			return previous;
+		}
+		
+		if(2*(size + 1) > table.length/2) {
+			table = resize(table, 2*table.length);
+			insert(table, key.type, key.hash, value);
+		} else {
+			table[-index - 1] = key.type;
+			table[-index] = value;
+		}
+		++size;
+		return null;
+	}
+	
+	/**
+	 * Removes the value stored under a descriptor.
+	 * 
+	 * @param type  the descriptor
+	 * 
+	 * @return the removed value, or <code>null</code> if there was none
+	 */
+	public Object remove(TypeDescriptor type) {
+		if(type == null)
+			return null;
+		
+		final int index = indexOf(table, type, spread(type.hashCode()));
+		if(index < 0)
+			return null;
+		
+		final Object previous = table[index + 1];
+		delete(table, index);
+		--size;
+		return previous;
+	}
+	
+	/**
+	 * Removes the value stored under a key.
+	 * 
+	 * @param key  the key
+	 * 
+	 * @return the removed value, or <code>null</code> if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T remove(Key<T> key) {
+		return (T)remove(key.type);
+	}
+	
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return <code>true</code> if there are no entries, <code>false</code> otherwise
+	 */
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+	
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		table = new Object[2*INITIAL_CAPACITY];
+		size = 0;
+	}
+	
+	@Override
+	public String toString() {
+		return toString(table);
+	}
+	
+	// Table operations, shared with ConcurrentTypeSafeMap. A table has a
+	// power of two number of entries and is kept at most half full, so probe
+	// sequences stay short and always end at an empty slot.
+	
+	/**
+	 * Spreads the bits of a descriptor's hash code. Many descriptor hashes
+	 * differ only in their high bits (identity hashes of classes) or are
+	 * small multiples of 31, so both are mixed into the low bits used to
+	 * pick a slot.
+	 */
+	static int spread(int h) {
+		h ^= (h >>> 16);
+		h *= 0x85EBCA6B;
+		return h ^ (h >>> 13);
+	}
+	
+	/**
+	 * Gets the value stored under a descriptor.
+	 * 
+	 * @return the value, or <code>null</code> if there is none
+	 */
+	static Object lookup(Object [] table, TypeDescriptor type, int hash) {
+		final int mask = table.length - 2;
+		for(int index = (hash << 1) & mask; ; index = (index + 2) & mask) {
+			final Object key = table[index];
+			if(key == type)
+				return table[index + 1];
+			if(key == null)
+				return null;
+			if(key.equals(type))
+				return table[index + 1];
+		}
+	}
+	
+	/**
+	 * Finds the slot of a descriptor.
+	 * 
+	 * @return the index of the descriptor's key, or if it is absent,
+	 *         <code>-(i + 1)</code> where <code>i</code> is the index of the
+	 *         empty slot where it belongs
+	 */
+	static int indexOf(Object [] table, TypeDescriptor type, int hash) {
+		final int mask = table.length - 2;
+		for(int index = (hash << 1) & mask; ; index = (index + 2) & mask) {
+			final Object key = table[index];
+			if(key == type)
+				return index;
+			if(key == null)
+				return -index - 1;
+			if(key.equals(type))
+				return index;
+		}
+	}
+	
+	/**
+	 * Inserts an entry for a descriptor known to be absent.
+	 */
+	static void insert(Object [] table, TypeDescriptor type, int hash, Object value) {
+		final int mask = table.length - 2;
+		int index = (hash << 1) & mask;
+		while(table[index] != null)
+			index = (index + 2) & mask;
+		table[index] = type;
+		table[index + 1] = value;
+	}
+	
+	/**
+	 * Copies a table into a new one with a given length, which must be
+	 * large enough to keep it at most half full.
+	 */
+	static Object [] resize(Object [] table, int newLength) {
+		final Object [] newTable = new Object[newLength];
+		for(int index = 0; index < table.length; index += 2) {
+			final Object key = table[index];
+			if(key != null)
+				insert(newTable, (TypeDescriptor)key, spread(key.hashCode()), table[index + 1]);
+		}
+		return newTable;
+	}
+	
+	/**
+	 * Deletes the entry at an index. Later entries in the same probe
+	 * sequence are shifted back into the gap, so no tombstones are needed.
+	 */
+	static void delete(Object [] table, int index) {
+		final int mask = table.length - 2;
+		int gap = index;
+		for(int next = (gap + 2) & mask; table[next] != null; next = (next + 2) & mask) {
+			// An entry can fill the gap if its home slot does not lie
+			// (cyclically) between the gap and its current slot
+			final int home = (spread(table[next].hashCode()) << 1) & mask;
+			if(((next - home) & mask) >= ((next - gap) & mask)) {
+				table[gap] = table[next];
+				table[gap + 1] = table[next + 1];
+				gap = next;
+			}
+		}
+		table[gap] = null;
+		table[gap + 1] = null;
+	}
+	
+	/**
+	 * Formats the entries of a table, like {@link java.util.AbstractMap#toString()}.
+	 */
+	static String toString(Object [] table) {
+		final StringBuilder sb = new StringBuilder("{");
+		for(int index = 0; index < table.length; index += 2) {
+			if(table[index] != null) {
+				if(sb.length() > 1)
+					sb.append(", ");
+				sb.append(table[index]).append('=').append(table[index + 1]);
+			}
+		}
+		return sb.append('}').toString();
+	}
+}
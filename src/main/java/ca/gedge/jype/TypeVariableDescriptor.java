@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.lang.reflect.GenericDeclaration;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A descriptor for a type variable, such as the <code>T</code> of a class
+ * <code>Repo&lt;T&gt;</code>. Type variables appear in templates, such as
+ * the return type <code>List&lt;T&gt;</code> of a method of
+ * <code>Repo</code>, obtained from {@link TypeFactory#templateOf(Type)}, and
+ * are replaced by actual types with {@link TypeBindings}. Instances are
+ * immutable.
+ * 
+ * Two descriptors are equal if they describe the same variable of the same
+ * generic declaration. A type variable is assignable only from itself, and
+ * from variables bounded by it. Other descriptors treat a type variable as
+ * its upper bound.
+ */
+public final class TypeVariableDescriptor implements TypeDescriptor {
+	/** The type variable */
+	private final TypeVariable<?> variable;
+	
+	/** Hash code, computed at construction */
+	private final int hash;
+	
+	/** The erased upper bound, computed on first use */
+	private TypeDescriptor upperBound;
+	
+	/** Index among the declaration's type parameters, computed on first use */
+	private int index = -1;
+	
+	/**
+	 * Constructs a descriptor for a type variable.
+	 * 
+	 * @param variable  the type variable
+	 * 
+	 * @throws NullPointerException  if the type variable is <code>null</code>
+	 */
+	public TypeVariableDescriptor(TypeVariable<?> variable) {
+		if(variable == null)
+			throw new NullPointerException("Type variable cannot be null");
+		this.variable = variable;
+		this.hash = variable.hashCode();
+		Metrics.created(TypeVariableDescriptor.class);
+	}
+	
+	/**
+	 * Gets a descriptor for a type variable declared by a class, method or
+	 * constructor.
+	 * 
+	 * @param declaration  the declaration of the type variable
+	 * @param name  the name of the type variable
+	 * 
+	 * @return a descriptor for the type variable
+	 * 
+	 * @throws NullPointerException  if either argument is <code>null</code>
+	 * @throws IllegalArgumentException  if no such type variable is declared
+	 */
+	public static TypeVariableDescriptor of(GenericDeclaration declaration, String name) {
+		if(name == null)
+			throw new NullPointerException("Name cannot be null");
+		for(TypeVariable<?> variable : declaration.getTypeParameters()) {
+			if(name.equals(variable.getName()))
+				return new TypeVariableDescriptor(variable);
+		}
+		throw new IllegalArgumentException("No type variable named " + name + " declared by " + declaration);
+	}
+	
+	/**
+	 * @return the type variable this descriptor describes
+	 */
+	public TypeVariable<?> getTypeVariable() {
+		return variable;
+	}
+	
+	/**
+	 * @return the name of the type variable
+	 */
+	public String getName() {
+		return variable.getName();
+	}
+	
+	/**
+	 * @return the class, method or constructor declaring the type variable
+	 */
+	public GenericDeclaration getGenericDeclaration() {
+		return variable.getGenericDeclaration();
+	}
+	
+	/**
+	 * Gets a descriptor for the first bound of the type variable, with type
+	 * variables in the bound erased as by {@link TypeFactory#fromType(Type)}.
+	 * Erasing avoids recursing forever on bounds such as
+	 * <code>T extends Comparable&lt;T&gt;</code>. The bound is computed once
+	 * per instance.
+	 * 
+	 * @return the interned upper bound
+	 */
+	public TypeDescriptor getUpperBound() {
+		// Racy single-check; all threads compute the same interned bound
+		TypeDescriptor bound = upperBound;
+		if(bound == null)
+			upperBound = bound = TypeFactory.fromType(variable.getBounds()[0]);
+		return bound;
+	}
+	
+	/**
+	 * @return the index of the type variable among the type parameters of its
+	 *         declaration
+	 */
+	int getIndex() {
+		// Racy single-check; all threads compute the same index
+		int index = this.index;
+		if(index < 0) {
+			final TypeVariable<?> [] vars = variable.getGenericDeclaration().getTypeParameters();
+			for(index = 0; !vars[index].equals(variable); ++index)
+				;
+			this.index = index;
+		}
+		return index;
+	}
+	
+	/**
+	 * @return the class the type variable erases to
+	 */
+	Class<?> getErasure() {
+		return TypeFactory.erasure(variable);
+	}
+	
+	@Override
+	public int getDepth() {
+		return 1;
+	}
+	
+	@Override
+	public int getNodeCount() {
+		return 1;
+	}
+	
+	@Override
+	public Set<Class<?>> getReferencedClasses() {
+		return Collections.emptySet();
+	}
+	
+	@Override
+	public boolean hasPrimitive() {
+		return false;
+	}
+	
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+		if(obj instanceof LazyType)
+			obj = ((LazyType)obj).resolveQuietly();
+		
+		return (obj instanceof TypeVariableDescriptor
+		        && variable.equals(((TypeVariableDescriptor)obj).variable));
+	}
+	
+	@Override
+	public String toString() {
+		return variable.getName();
+	}
+	
+	/**
+	 * Tests whether or not a given descriptor can be assigned to this
+	 * descriptor. Only this type variable, type variables bounded by it
+	 * (directly or through other type variables), and wildcards whose upper
+	 * bound is one of these are assignable.
+	 * 
+	 * @param type  the type descriptor
+	 * 
+	 * @return <code>true</code> if the given descriptor can be assigned to
+	 *         this one, <code>false</code> otherwise
+	 */
+	@Override
+	public boolean isAssignableFrom(TypeDescriptor type) {
+		type = LazyType.unwrap(type);
+		final TypeMetrics metrics = Metrics.current;
+		if(metrics == null)
+			return assignableFrom(type);
+		
+		final long start = System.nanoTime();
+		final boolean assignable = assignableFrom(type);
+		metrics.recordSuccess(TypeMetrics.Operation.IS_ASSIGNABLE_FROM, System.nanoTime() - start);
+		return assignable;
+	}
+	
+	/**
+	 * Implements {@link #isAssignableFrom(TypeDescriptor)} without recording
+	 * metrics.
+	 */
+	boolean assignableFrom(TypeDescriptor type) {
+		if(type instanceof WildcardType)
+			type = ((WildcardType)type).getUpperBound();
+		return (type instanceof TypeVariableDescriptor && isBoundedBy(((TypeVariableDescriptor)type).variable));
+	}
+	
+	/**
+	 * Tests whether or not a type variable is this one, or is bounded by it.
+	 */
+	private boolean isBoundedBy(TypeVariable<?> other) {
+		if(variable.equals(other))
+			return true;
+		for(Type bound : other.getBounds()) {
+			if(bound instanceof TypeVariable && isBoundedBy((TypeVariable<?>)bound))
+				return true;
+		}
+		return false;
+	}
+}
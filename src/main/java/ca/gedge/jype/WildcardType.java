@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * A descriptor for a wildcard generic parameter: <code>?</code>,
+ * <code>? extends T</code> or <code>? super T</code>. Instances are immutable.
+ * 
+ * A wildcard describes a range of types, and is assignable from (contains)
+ * any type within that range, or any wildcard whose range lies within it.
+ * Only a wildcard generic parameter is checked by containment. As in Java,
+ * any other generic parameter only contains the same type, so neither a
+ * <code>List&lt;Integer&gt;</code> nor a
+ * <code>List&lt;? extends Integer&gt;</code> can be assigned to a
+ * <code>List&lt;Number&gt;</code>, while both can be assigned to a
+ * <code>List&lt;? extends Number&gt;</code>. Other descriptors treat a
+ * wildcard as its upper bound.
+ */
+public final class WildcardType implements TypeDescriptor {
+	/** Descriptor for the implicit upper bound */
+	private static final TypeDescriptor OBJECT = new SimpleType(Object.class);
+	
+	/** The unbounded wildcard */
+	private static final WildcardType UNBOUNDED = new WildcardType(null, null);
+	
+	/** The upper bound, or <code>null</code> if it is Object */
+	private final TypeDescriptor upperBound;
+	
+	/** The lower bound, or <code>null</code> if there is none */
+	private final TypeDescriptor lowerBound;
+	
+	/** Hash code, computed at construction */
+	private final int hash;
+	
+	/** String representation, computed on first use */
+	private String name;
+	
+	/**
+	 * Constructs a wildcard. At most one bound may be given.
+	 * 
+	 * @param upperBound  the upper bound, or <code>null</code> if it is Object
+	 * @param lowerBound  the lower bound, or <code>null</code> if there is none
+	 */
+	private WildcardType(TypeDescriptor upperBound, TypeDescriptor lowerBound) {
+		this.upperBound = upperBound;
+		this.lowerBound = lowerBound;
+		this.hash = 17*(upperBound == null ? 0 : upperBound.hashCode()) + 31*(lowerBound == null ? 0 : lowerBound.hashCode());
+		Metrics.created(WildcardType.class);
+	}
+	
+	/**
+	 * Gets the unbounded wildcard, <code>?</code>.
+	 * 
+	 * @return the unbounded wildcard
+	 */
+	public static WildcardType unbounded() {
+		return UNBOUNDED;
+	}
+	
+	/**
+	 * Gets an upper-bounded wildcard, <code>? extends bound</code>. A bound
+	 * of Object gives the unbounded wildcard.
+	 * 
+	 * @param bound  the upper bound
+	 * 
+	 * @return a wildcard with the given upper bound
+	 * 
+	 * @throws IllegalArgumentException  if the bound is a wildcard
+	 * @throws NullPointerException  if the bound is <code>null</code>
+	 */
+	public static WildcardType withUpperBound(TypeDescriptor bound) {
+		bound = LazyType.unwrap(bound);
+		checkBound(bound);
+		return (OBJECT.equals(bound) ? UNBOUNDED : new WildcardType(bound, null));
+	}
+	
+	/**
+	 * Gets a lower-bounded wildcard, <code>? super bound</code>.
+	 * 
+	 * @param bound  the lower bound
+	 * 
+	 * @return a wildcard with the given lower bound
+	 * 
+	 * @throws IllegalArgumentException  if the bound is a wildcard
+	 * @throws NullPointerException  if the bound is <code>null</code>
+	 */
+	public static WildcardType withLowerBound(TypeDescriptor bound) {
+		bound = LazyType.unwrap(bound);
+		checkBound(bound);
+		return new WildcardType(null, bound);
+	}
+	
+	/**
+	 * Checks that a descriptor can be used as a bound.
+	 */
+	private static void checkBound(TypeDescriptor bound) {
+		if(bound == null)
+			throw new NullPointerException("Bound cannot be null");
+		if(bound instanceof WildcardType)
+			throw new IllegalArgumentException("Bound cannot be a wildcard");
+	}
+	
+	/**
+	 * @return the upper bound, which is Object if the wildcard has none
+	 */
+	public TypeDescriptor getUpperBound() {
+		return (upperBound == null ? OBJECT : upperBound);
+	}
+	
+	/**
+	 * @return the lower bound, or <code>null</code> if there is none
+	 */
+	public TypeDescriptor getLowerBound() {
+		return lowerBound;
+	}
+	
+	@Override
+	public int getDepth() {
+		final TypeDescriptor bound = getBound();
+		return (bound == null ? 1 : bound.getDepth() + 1);
+	}
+	
+	@Override
+	public int getNodeCount() {
+		final TypeDescriptor bound = getBound();
+		return (bound == null ? 1 : bound.getNodeCount() + 1);
+	}
+	
+	@Override
+	public Set<Class<?>> getReferencedClasses() {
+		final TypeDescriptor bound = getBound();
+		return (bound == null ? Collections.<Class<?>>emptySet() : bound.getReferencedClasses());
+	}
+	
+	@Override
+	public boolean hasPrimitive() {
+		final TypeDescriptor bound = getBound();
+		return (bound != null && bound.hasPrimitive());
+	}
+	
+	/**
+	 * @return the explicit bound, or <code>null</code> if there is none
+	 */
+	private TypeDescriptor getBound() {
+		return (upperBound != null ? upperBound : lowerBound);
+	}
+	
+	/**
+	 * Gets a wildcard of the same kind with a different bound, sharing this
+	 * wildcard if the bound is unchanged. Since a bound may be substituted
+	 * by a wildcard, a wildcard bound is replaced by its own bound of the
+	 * same kind, or dropped if it has none.
+	 * 
+	 * @param bound  the new bound, ignored for the unbounded wildcard
+	 * 
+	 * @return a wildcard with the given bound
+	 */
+	WildcardType withBound(TypeDescriptor bound) {
+		if(upperBound != null) {
+			if(bound == upperBound)
+				return this;
+			if(bound instanceof WildcardType)
+				bound = ((WildcardType)bound).upperBound;
+			return (bound == null || OBJECT.equals(bound) ? UNBOUNDED : new WildcardType(bound, null));
+		}
+		if(lowerBound != null) {
+			if(bound == lowerBound)
+				return this;
+			if(bound instanceof WildcardType)
+				bound = ((WildcardType)bound).lowerBound;
+			return (bound == null ? UNBOUNDED : new WildcardType(null, bound));
+		}
+		return this;
+	}
+	
+	/**
+	 * Gets a wildcard equal to this one whose bound has been interned.
+	 * 
+	 * @return this wildcard if its bound was already interned, otherwise a
+	 *         new wildcard with an interned bound
+	 */
+	WildcardType withInternedBound() {
+		final TypeDescriptor bound = getBound();
+		return (bound == null ? this : withBound(InternPool.intern(bound)));
+	}
+	
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj)
+			return true;
+		if(obj instanceof LazyType)
+			obj = ((LazyType)obj).resolveQuietly();
+		if(!(obj instanceof WildcardType))
+			return false;
+		
+		final WildcardType other = (WildcardType)obj;
+		return hash == other.hash
+		    && (upperBound == null ? other.upperBound == null : upperBound.equals(other.upperBound))
+		    && (lowerBound == null ? other.lowerBound == null : lowerBound.equals(other.lowerBound));
+	}
+	
+	@Override
+	public String toString() {
+		// Racy single-check, as in GenericType
+		String s = name;
+		if(s == null) {
+			if(upperBound != null)
+				s = "? extends " + upperBound;
+			else if(lowerBound != null)
+				s = "? super " + lowerBound;
+			else
+				s = "?";
+			name = s;
+		}
+		return s;
+	}
+	
+	/**
+	 * Tests whether or not this wildcard contains a given descriptor. A
+	 * wildcard contains a type that lies within its bounds, and a wildcard
+	 * whose bounds lie within its own. For example, <code>? extends Number</code>
+	 * contains <code>Integer</code> and <code>? extends Integer</code>, and
+	 * <code>? super Integer</code> contains <code>Number</code> and
+	 * <code>? super Number</code>.
+	 * 
+	 * @param type  the type descriptor
+	 * 
+	 * @return <code>true</code> if this wildcard contains the given
+	 *         descriptor, <code>false</code> otherwise
+	 */
+	@Override
+	public boolean isAssignableFrom(TypeDescriptor type) {
+		type = LazyType.unwrap(type);
+		final TypeMetrics metrics = Metrics.current;
+		if(metrics == null)
+			return assignableFrom(type);
+		
+		final long start = System.nanoTime();
+		final boolean assignable = assignableFrom(type);
+		metrics.recordSuccess(TypeMetrics.Operation.IS_ASSIGNABLE_FROM, System.nanoTime() - start);
+		return assignable;
+	}
+	
+	/**
+	 * Implements {@link #isAssignableFrom(TypeDescriptor)} without recording
+	 * metrics.
+	 */
+	boolean assignableFrom(TypeDescriptor type) {
+		if(type == null)
+			return false;
+		
+		final TypeDescriptor otherUpper;
+		final TypeDescriptor otherLower;
+		if(type instanceof WildcardType) {
+			otherUpper = ((WildcardType)type).upperBound;
+			otherLower = ((WildcardType)type).lowerBound;
+		} else {
+			otherUpper = otherLower = type;
+		}
+		
+		// An unbounded range from above (or below) contains any range
+		if(upperBound != null && (otherUpper == null || !Metrics.isAssignable(upperBound, otherUpper)))
+			return false;
+		if(lowerBound != null && (otherLower == null || !Metrics.isAssignable(otherLower, lowerBound)))
+			return false;
+		return true;
+	}
+}
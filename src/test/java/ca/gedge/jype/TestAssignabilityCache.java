@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test AssignabilityCache.
+ */
+public class TestAssignabilityCache {
+	@Test
+	public void testResultsAndStatistics() {
+		final AssignabilityCache cache = new AssignabilityCache();
+		final TypeDescriptor l_n = TypeFactory.intern(new GenericType(List.class, WildcardType.withUpperBound(new SimpleType(Number.class))));
+		final TypeDescriptor a_i = TypeFactory.intern(new GenericType(ArrayList.class, Integer.class));
+		
+		assertTrue(cache.isAssignableFrom(l_n, a_i));
+		assertFalse(cache.isAssignableFrom(a_i, l_n));
+		assertTrue(cache.isAssignableFrom(l_n, a_i));
+		assertFalse(cache.isAssignableFrom(a_i, l_n));
+		assertFalse(cache.isAssignableFrom(l_n, null));
+		
+		final CacheStatistics stats = cache.getStatistics();
+		assertEquals(2, stats.getHitCount());
+		assertEquals(2, stats.getMissCount());
+		assertEquals(0, stats.getEvictionCount());
+		assertEquals(2, cache.size());
+	}
+	
+	@Test
+	public void testEviction() {
+		final AssignabilityCache cache = new AssignabilityCache(2);
+		final TypeDescriptor n = new SimpleType(Number.class);
+		final TypeDescriptor i = new SimpleType(Integer.class);
+		final TypeDescriptor d = new SimpleType(Double.class);
+		
+		assertTrue(cache.isAssignableFrom(n, i));
+		assertTrue(cache.isAssignableFrom(n, d));
+		assertTrue(cache.isAssignableFrom(n, i)); // n <- i is now most recently used
+		assertFalse(cache.isAssignableFrom(i, d)); // evicts n <- d
+		assertTrue(cache.isAssignableFrom(n, i));
+		assertTrue(cache.isAssignableFrom(n, d));
+		
+		final CacheStatistics stats = cache.getStatistics();
+		assertEquals(2, stats.getHitCount());
+		assertEquals(4, stats.getMissCount());
+		assertEquals(2, stats.getEvictionCount());
+		assertEquals(2, cache.size());
+	}
+	
+	@Test
+	public void testSingleEntry() {
+		final AssignabilityCache cache = new AssignabilityCache(1);
+		final TypeDescriptor n = new SimpleType(Number.class);
+		final TypeDescriptor i = new SimpleType(Integer.class);
+		final TypeDescriptor d = new SimpleType(Double.class);
+		
+		assertTrue(cache.isAssignableFrom(n, i));
+		assertTrue(cache.isAssignableFrom(n, i));
+		assertTrue(cache.isAssignableFrom(n, d)); // evicts n <- i, despite its use
+		assertTrue(cache.isAssignableFrom(n, d));
+		
+		final CacheStatistics stats = cache.getStatistics();
+		assertEquals(2, stats.getHitCount());
+		assertEquals(2, stats.getMissCount());
+		assertEquals(1, stats.getEvictionCount());
+		assertEquals(1, cache.size());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testIllegalSize() {
+		new AssignabilityCache(0);
+	}
+}
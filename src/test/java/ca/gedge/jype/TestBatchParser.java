@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+/**
+ * Test BatchParser.
+ */
+public class TestBatchParser {
+	@Test
+	public void testParseAll() throws ClassNotFoundException, InterruptedException {
+		final List<ParseResult> results = new BatchParser().parseAll(Arrays.asList(
+			"java.util.List<String>",
+			"com.example.Missing",
+			"java.util.List<",
+			"java.util.List<String>"
+		));
+		
+		assertEquals(4, results.size());
+		for(int index = 0; index < results.size(); ++index)
+			assertEquals(index, results.get(index).getIndex());
+		
+		assertTrue(results.get(0).isSuccess());
+		assertSame(TypeFactory.parse("java.util.List<String>"), results.get(0).getType());
+		assertSame(results.get(0).getType(), results.get(3).getType());
+		
+		assertFalse(results.get(1).isSuccess());
+		assertTrue(results.get(1).getError() instanceof ClassNotFoundException);
+		
+		assertFalse(results.get(2).isSuccess());
+		assertTrue(results.get(2).getError() instanceof IllegalArgumentException);
+	}
+	
+	@Test(expected=IllegalStateException.class)
+	public void testFailedResult() throws InterruptedException {
+		new BatchParser().parseAll(Arrays.asList("com.example.Missing")).get(0).getType();
+	}
+	
+	@Test
+	public void testReader() throws IOException, InterruptedException {
+		final List<ParseResult> results = new BatchParser().parseAll(new StringReader(
+			"int\n\n  java.util.Map<String, Integer>  \r\nlong[]\n"
+		));
+		
+		assertEquals(3, results.size());
+		assertEquals(0, results.get(0).getIndex());
+		assertEquals(2, results.get(1).getIndex());
+		assertEquals("java.util.Map<String, Integer>", results.get(1).getTypeString());
+		assertEquals(3, results.get(2).getIndex());
+		for(ParseResult result : results)
+			assertTrue(result.isSuccess());
+	}
+	
+	@Test
+	public void testStream() throws InterruptedException {
+		final List<ParseResult> results = new BatchParser().parseAll(Stream.of("int", "com.example.Missing", "long[]", "int"));
+		
+		assertEquals(4, results.size());
+		for(int index = 0; index < results.size(); ++index)
+			assertEquals(index, results.get(index).getIndex());
+		assertFalse(results.get(1).isSuccess());
+		assertEquals("long[]", results.get(2).getTypeString());
+		assertSame(results.get(0).getType(), results.get(3).getType());
+	}
+	
+	@Test
+	public void testExecutor() throws ClassNotFoundException, InterruptedException {
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			checkLargeBatch(new BatchParser(TypeFactory.getDefaultClassResolver(), executor));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testCommonPool() throws ClassNotFoundException, InterruptedException {
+		checkLargeBatch(new BatchParser());
+	}
+	
+	/**
+	 * Parses a batch large enough to be split across tasks, and checks the
+	 * results.
+	 */
+	private static void checkLargeBatch(BatchParser parser) throws ClassNotFoundException, InterruptedException {
+		final List<String> typeStrings = new ArrayList<String>();
+		final StringBuilder padding = new StringBuilder();
+		for(int index = 0; index < 1000; ++index) {
+			// Distinct strings, so the batch is actually split across tasks
+			padding.append(' ');
+			typeStrings.add((index % 7 == 0 ? "com.example.Missing" : "java.util.List") + padding + "<Integer>");
+			typeStrings.add("int" + padding + "[]");
+		}
+		
+		final List<ParseResult> results = parser.parseAll(typeStrings);
+		assertEquals(typeStrings.size(), results.size());
+		for(int index = 0; index < results.size(); ++index) {
+			final ParseResult result = results.get(index);
+			assertEquals(index, result.getIndex());
+			assertEquals(typeStrings.get(index), result.getTypeString());
+			if(index % 14 == 0)
+				assertFalse(result.isSuccess());
+			else
+				assertSame(TypeFactory.parse(typeStrings.get(index)), result.getType());
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test DefaultClassResolver.
+ */
+public class TestDefaultClassResolver {
+	@Test
+	public void testDefaults() throws ClassNotFoundException {
+		final DefaultClassResolver resolver = new DefaultClassResolver();
+		assertSame(int.class, resolver.resolve("int"));
+		assertSame(void.class, resolver.resolve("void"));
+		assertSame(String.class, resolver.resolve("String"));
+		assertSame(Integer.class, resolver.resolve("Integer"));
+		assertSame(List.class, resolver.resolve("java.util.List"));
+	}
+	
+	@Test
+	public void testImportsAndAliases() throws ClassNotFoundException {
+		final DefaultClassResolver resolver = new DefaultClassResolver();
+		try {
+			resolver.resolve("List");
+			fail("expected ClassNotFoundException");
+		} catch(ClassNotFoundException exc) {
+			// expected
+		}
+		
+		resolver.importPackage("java.util").addAlias("Strings", String[].class);
+		assertSame(List.class, resolver.resolve("List"));
+		assertSame(String[].class, resolver.resolve("Strings"));
+		assertEquals(
+		    "java.util.Map<java.lang.String,java.util.List<java.lang.Integer>>",
+		    TypeFactory.parse("Map<String, List<Integer>>", resolver).toString()
+		);
+	}
+	
+	@Test(expected=IllegalStateException.class)
+	public void testConflictingAlias() {
+		new DefaultClassResolver().addAlias("int", long.class);
+	}
+	
+	@Test
+	public void testFailuresCached() {
+		final int [] loads = { 0 };
+		final ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {
+			@Override
+			protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+				if(name.equals("com.example.Missing"))
+					++loads[0];
+				return super.loadClass(name, resolve);
+			}
+		};
+		
+		// Failures are only looked up once, but each caller gets a new exception
+		final DefaultClassResolver resolver = new DefaultClassResolver(loader);
+		ClassNotFoundException first = null;
+		for(int attempt = 0; attempt < 2; ++attempt) {
+			try {
+				resolver.resolve("com.example.Missing");
+				fail("expected ClassNotFoundException");
+			} catch(ClassNotFoundException exc) {
+				assertEquals("com.example.Missing", exc.getMessage());
+				if(first == null)
+					first = exc;
+				else
+					assertNotSame(first, exc);
+			}
+		}
+		assertEquals(1, loads[0]);
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test InstanceChecker.
+ */
+public class TestInstanceChecker {
+	/** A list whose second element is of the wrong type */
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private static List<Object> badList() {
+		final List list = new ArrayList();
+		list.add(Integer.valueOf(1));
+		list.add("two");
+		return list;
+	}
+	
+	@Test
+	public void testSimpleTypes() throws ClassNotFoundException {
+		final InstanceChecker number = InstanceChecker.full(TypeFactory.parse("Number"));
+		assertTrue (number.isInstance(Integer.valueOf(1)));
+		assertFalse(number.isInstance("1"));
+		assertTrue (number.isInstance(null));
+		
+		final InstanceChecker primitive = InstanceChecker.full(TypeFactory.parse("int"));
+		assertTrue (primitive.isInstance(Integer.valueOf(1)));
+		assertFalse(primitive.isInstance(Long.valueOf(1)));
+		assertFalse(primitive.isInstance(null));
+	}
+	
+	@Test
+	public void testModes() throws ClassNotFoundException {
+		final TypeDescriptor type = TypeFactory.parse("java.util.List<Integer>");
+		final List<Object> list = badList();
+		
+		assertTrue (InstanceChecker.shallow(type).isInstance(list));
+		assertTrue (InstanceChecker.sampling(type, 1).isInstance(list));
+		assertFalse(InstanceChecker.sampling(type, 2).isInstance(list));
+		assertFalse(InstanceChecker.full(type).isInstance(list));
+		assertFalse(InstanceChecker.full(type).isInstance(new LinkedList<Object>(list)));
+		assertFalse(InstanceChecker.shallow(type).isInstance(Collections.singleton(1)));
+	}
+	
+	@Test
+	public void testNested() throws ClassNotFoundException {
+		final InstanceChecker checker = InstanceChecker.full(TypeFactory.parse("java.util.Map<String, java.util.List<Integer>>"));
+		
+		final Map<Object, Object> map = new HashMap<Object, Object>();
+		map.put("a", Arrays.asList(1, 2, 3));
+		map.put("b", null);
+		assertTrue(checker.isInstance(map));
+		
+		map.put("c", badList());
+		assertFalse(checker.isInstance(map));
+		
+		map.remove("c");
+		map.put(Integer.valueOf(4), Arrays.asList(4));
+		assertFalse(checker.isInstance(map));
+	}
+	
+	@Test
+	public void testSupertypes() throws ClassNotFoundException {
+		// Parameters are mapped onto Iterable and Map through supertypes
+		final List<Object> list = badList();
+		assertFalse(InstanceChecker.full(TypeFactory.parse("java.util.Collection<Integer>")).isInstance(list));
+		assertFalse(InstanceChecker.full(TypeFactory.parse("Iterable<Integer>")).isInstance(list));
+		assertTrue (InstanceChecker.full(TypeFactory.parse("Iterable<? super Integer>")).isInstance(list));
+		assertFalse(InstanceChecker.full(TypeFactory.parse("Iterable<? extends Number>")).isInstance(list));
+		
+		// Other generic types are only checked against their raw class
+		assertTrue(InstanceChecker.full(TypeFactory.parse("Comparable<String>")).isInstance(Integer.valueOf(1)));
+	}
+	
+	@Test
+	public void testArrays() throws ClassNotFoundException {
+		assertTrue (InstanceChecker.full(TypeFactory.parse("Number[]")).isInstance(new Integer[0]));
+		assertFalse(InstanceChecker.full(TypeFactory.parse("Integer[]")).isInstance(new Number[0]));
+		assertTrue (InstanceChecker.full(TypeFactory.parse("Object[]")).isInstance(new int[0][]));
+		assertFalse(InstanceChecker.full(TypeFactory.parse("long[]")).isInstance(new int[0]));
+		
+		final InstanceChecker lists = InstanceChecker.full(TypeFactory.parse("java.util.List<Integer>[][]"));
+		assertTrue (lists.isInstance(new List<?>[][] { { Arrays.asList(1) }, null }));
+		assertFalse(lists.isInstance(new List<?>[][] { { Arrays.asList(1) }, { badList() } }));
+		assertTrue (InstanceChecker.shallow(lists.getType()).isInstance(new List<?>[][] { { badList() } }));
+	}
+	
+	@Test(expected=ClassCastException.class)
+	public void testCheckInstance() throws ClassNotFoundException {
+		final InstanceChecker checker = InstanceChecker.full(TypeFactory.parse("java.util.List<String>"));
+		assertSame(Collections.emptyList(), checker.checkInstance(Collections.emptyList()));
+		checker.checkInstance(badList());
+	}
+	
+	@Test
+	public void testCompiled() throws ClassNotFoundException {
+		final Map<Object, Object> map = new HashMap<Object, Object>();
+		map.put("a", Arrays.asList(1, 2, 3));
+		map.put("b", new LinkedList<Integer>(Arrays.asList(4, 5)));
+		map.put("c", null);
+		final Map<Object, Object> badMap = new HashMap<Object, Object>(map);
+		badMap.put("d", badList());
+		
+		final Object [] objects = new Object[] {
+			null, "x", Integer.valueOf(1), map, badMap, badList(), new LinkedList<Object>(badList()),
+			Arrays.asList(1, null), new List<?>[][] { { Arrays.asList(1) }, null },
+			new List<?>[][] { { Arrays.asList(1) }, { badList() } }, Collections.emptyMap()
+		};
+		final String [] types = new String[] {
+			"java.util.Map<String, java.util.List<Integer>>",
+			"java.util.Map<?, ? extends java.util.Collection<? extends Number>>",
+			"java.util.List<Integer>",
+			"java.util.List<Integer>[][]",
+			"Iterable<java.util.List<Integer>>"
+		};
+		for(String typeString : types) {
+			final TypeDescriptor type = TypeFactory.parse(typeString);
+			final InstanceChecker [] checkers = new InstanceChecker[] {
+				InstanceChecker.sampling(type, 1), InstanceChecker.sampling(type, 2), InstanceChecker.full(type)
+			};
+			for(InstanceChecker checker : checkers) {
+				final InstanceChecker compiled = checker.compile();
+				assertNotSame(checker, compiled);
+				assertSame(compiled, compiled.compile());
+				assertSame(type, compiled.getType());
+				for(Object obj : objects)
+					assertEquals(typeString + " " + obj, checker.isInstance(obj), compiled.isInstance(obj));
+			}
+		}
+		
+		// Checks of a single class are not worth generating
+		final InstanceChecker shallow = InstanceChecker.shallow(TypeFactory.parse(types[0]));
+		assertSame(shallow, shallow.compile());
+	}
+	
+	@Test
+	public void testCompiledFallback() {
+		// Generated code cannot access the package-private class, so the
+		// checker is kept
+		final List<Object> list = Collections.unmodifiableList(badList());
+		final InstanceChecker checker = InstanceChecker.full(new GenericType(list.getClass(), Integer.class));
+		assertSame(checker, checker.compile());
+		assertFalse(checker.isInstance(list));
+	}
+}
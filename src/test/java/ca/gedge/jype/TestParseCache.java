@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Test ParseCache.
+ */
+public class TestParseCache {
+	@Test
+	public void testParse() throws ClassNotFoundException {
+		final ParseCache cache = new ParseCache();
+		final String typeString = "java.util.Map<String, java.util.List<java.lang.Integer>>";
+		
+		final TypeDescriptor type = cache.parse(typeString);
+		assertSame(TypeFactory.parse(typeString), type);
+		assertSame(type, cache.parse(typeString));
+		assertSame(type, cache.parse(typeString));
+		
+		final CacheStatistics stats = cache.getStatistics();
+		assertEquals(2, stats.getHitCount());
+		assertEquals(1, stats.getMissCount());
+		assertEquals(0, stats.getEvictionCount());
+		assertTrue(stats.getTotalLoadTime() > 0);
+		assertEquals(1, cache.size());
+	}
+	
+	@Test
+	public void testEviction() throws ClassNotFoundException {
+		final ParseCache cache = new ParseCache(1);
+		
+		cache.parse("int");
+		cache.parse("int");
+		cache.parse("long");
+		cache.parse("int");
+		
+		final CacheStatistics stats = cache.getStatistics();
+		assertEquals(1, stats.getHitCount());
+		assertEquals(3, stats.getMissCount());
+		assertEquals(2, stats.getEvictionCount());
+		assertEquals(1, cache.size());
+	}
+	
+	@Test
+	public void testFailuresNotCached() {
+		final ParseCache cache = new ParseCache();
+		for(int attempt = 0; attempt < 2; ++attempt) {
+			try {
+				cache.parse("List<java.lang.String>");
+				fail("expected ClassNotFoundException");
+			} catch(ClassNotFoundException exc) {
+				// expected
+			}
+		}
+		
+		assertEquals(0, cache.size());
+		assertEquals(2, cache.getStatistics().getMissCount());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testIllegalFormat() throws ClassNotFoundException {
+		new ParseCache().parse("java.util.List(java.lang.String)");
+	}
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test TypeVariableDescriptor and TypeBindings.
+ */
+public class TestTypeBindings {
+	static class Repo<T> {
+		List<T> items;
+		List<T> findAll() { return items; }
+		Map<String, T[]> byName() { return null; }
+		T[] toArray() { return null; }
+		List<? extends T> view() { return items; }
+		List<String> names() { return null; }
+		<U> U convert() { return null; }
+	}
+	
+	static class StringRepo extends Repo<String> { }
+	
+	static class Pair<A, B extends A, N extends Number> { }
+	
+	@After
+	public void tearDown() {
+		TypeFactory.setMetrics(null);
+	}
+	
+	@Test
+	public void testTemplates() throws Exception {
+		final TypeDescriptor t = TypeVariableDescriptor.of(Repo.class, "T");
+		assertEquals("T", t.toString());
+		assertEquals(Repo.class, ((TypeVariableDescriptor)t).getGenericDeclaration());
+		assertEquals(1, t.getDepth());
+		assertTrue(t.getReferencedClasses().isEmpty());
+		
+		final TypeDescriptor template = TypeFactory.templateOf(Repo.class.getDeclaredMethod("findAll").getGenericReturnType());
+		assertEquals(new GenericType(List.class, t), template);
+		assertSame(template, TypeFactory.intern(new GenericType(List.class, t)));
+		
+		// Variables are still erased by fromType
+		assertEquals(TypeFactory.parse("java.util.List<Object>"), TypeFactory.fromReturnType(Repo.class.getDeclaredMethod("findAll")));
+		final GenericType byName = (GenericType)TypeFactory.templateOf(Repo.class.getDeclaredMethod("byName").getGenericReturnType());
+		assertEquals(new ArrayType(t, 1), byName.getParameter(1));
+		assertEquals(Object[].class, new ArrayType(t, 1).getArrayClass());
+		
+		try {
+			TypeVariableDescriptor.of(Repo.class, "U");
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException exc) { }
+	}
+	
+	@Test
+	public void testSubstitute() throws Exception {
+		final TypeVariableDescriptor t = TypeVariableDescriptor.of(Repo.class, "T");
+		final TypeBindings bindings = TypeBindings.forType(TypeFactory.parse("ca.gedge.jype.TestTypeBindings$Repo<Integer>"));
+		assertSame(TypeFactory.parse("Integer"), bindings.get(t));
+		
+		assertSame(TypeFactory.parse("java.util.List<Integer>"), bindings.substitute(new GenericType(List.class, t)));
+		assertSame(TypeFactory.parse("java.util.Map<String, Integer[]>"),
+		           bindings.substitute(TypeFactory.templateOf(Repo.class.getDeclaredMethod("byName").getGenericReturnType())));
+		assertSame(TypeFactory.parse("java.util.List<? extends Integer>"), bindings.substitute(new GenericType(List.class, WildcardType.withUpperBound(t))));
+		assertSame(TypeFactory.parse("Integer"), bindings.substitute(t));
+		
+		// Subtrees without bound variables are shared
+		final TypeDescriptor fixed = TypeFactory.parse("java.util.Map<String, java.util.List<Number>>");
+		assertSame(fixed, bindings.substitute(fixed));
+		final GenericType mixed = (GenericType)TypeFactory.intern(new GenericType(Map.class, fixed, t));
+		assertSame(fixed, ((GenericType)bindings.substitute(mixed)).getParameter(0));
+		
+		// Unbound variables are left in place
+		final TypeDescriptor u = TypeFactory.templateOf(Repo.class.getDeclaredMethod("convert").getGenericReturnType());
+		assertSame(u, bindings.substitute(u));
+		
+		// Arrays and wildcards bound to variables
+		final Map<TypeVariableDescriptor, TypeDescriptor> map = Collections.<TypeVariableDescriptor, TypeDescriptor>singletonMap(t, new SimpleType(String[].class));
+		assertSame(TypeFactory.parse("String[][]"), TypeBindings.of(map).substitute(new ArrayType(t, 1)));
+		final TypeBindings wildcard = TypeBindings.of(Collections.singletonMap(t, WildcardType.withLowerBound(new SimpleType(Integer.class))));
+		assertSame(TypeFactory.parse("java.util.List<?>"), wildcard.substitute(new GenericType(List.class, WildcardType.withUpperBound(t))));
+		assertSame(TypeFactory.parse("java.util.List<? super Integer>"), wildcard.substitute(new GenericType(List.class, t)));
+		
+		// Memoized results create no new descriptors
+		final TypeDescriptor template = TypeFactory.parse("java.util.Map<String, java.util.List<Number>>");
+		final GenericType nested = new GenericType(Map.class, template, new GenericType(List.class, new ArrayType(t, 2)));
+		final TypeDescriptor result = bindings.substitute(nested);
+		final InMemoryTypeMetrics metrics = new InMemoryTypeMetrics();
+		TypeFactory.setMetrics(metrics);
+		assertSame(result, bindings.substitute(nested));
+		assertTrue(metrics.getCreatedCounts().isEmpty());
+	}
+	
+	@Test
+	public void testResolveMembers() throws Exception {
+		final TypeBindings strings = TypeBindings.forType(new SimpleType(StringRepo.class));
+		assertSame(TypeFactory.parse("java.util.List<String>"), strings.resolveReturnType(Repo.class.getDeclaredMethod("findAll")));
+		assertSame(TypeFactory.parse("java.util.List<String>"), strings.resolveFieldType(Repo.class.getDeclaredField("items")));
+		assertSame(TypeFactory.parse("java.util.List<String>"), strings.resolveReturnType(Repo.class.getDeclaredMethod("names")));
+		assertSame(strings.forSupertype(Repo.class), strings.forSupertype(Repo.class));
+		
+		final TypeBindings integers = TypeBindings.forType(TypeFactory.parse("java.util.ArrayList<Integer>"));
+		assertSame(integers, TypeBindings.forType(TypeFactory.parse("java.util.ArrayList<Integer>")));
+		assertSame(TypeFactory.parse("Integer"), integers.resolveReturnType(List.class.getMethod("get", int.class)));
+		assertSame(TypeFactory.parse("java.util.Iterator<Integer>"), integers.resolveReturnType(Iterable.class.getMethod("iterator")));
+		assertSame(TypeFactory.parse("java.util.List<Integer>"), integers.resolveReturnType(ArrayList.class.getMethod("subList", int.class, int.class)));
+		
+		// Wildcards bound to variables at the root are captured as their upper bound
+		final TypeBindings numbers = TypeBindings.forType(TypeFactory.parse("java.util.List<? extends Number>"));
+		assertSame(TypeFactory.parse("Number"), numbers.resolveReturnType(List.class.getMethod("get", int.class)));
+		assertSame(TypeFactory.parse("java.util.Iterator<? extends Number>"), numbers.resolveReturnType(List.class.getMethod("iterator")));
+		final TypeBindings supers = TypeBindings.forType(TypeFactory.parse("java.util.List<? super Integer>"));
+		assertSame(TypeFactory.parse("Object"), supers.resolveReturnType(List.class.getMethod("get", int.class)));
+		final TypeBindings repos = TypeBindings.forType(TypeFactory.parse("ca.gedge.jype.TestTypeBindings$Repo<? extends Number>"));
+		assertSame(TypeFactory.parse("Number[]"), repos.resolveReturnType(Repo.class.getDeclaredMethod("toArray")));
+		assertSame(TypeFactory.parse("Object[]"),
+		           TypeBindings.forType(TypeFactory.parse("ca.gedge.jype.TestTypeBindings$Repo<?>")).resolveReturnType(Repo.class.getDeclaredMethod("toArray")));
+		
+		// Raw types bind nothing
+		final TypeDescriptor t = TypeVariableDescriptor.of(Repo.class, "T");
+		final TypeBindings raw = TypeBindings.forType(new SimpleType(Repo.class));
+		assertTrue(raw.isEmpty());
+		assertEquals(new GenericType(List.class, t), raw.resolveReturnType(Repo.class.getDeclaredMethod("findAll")));
+		
+		try {
+			strings.resolveReturnType(List.class.getMethod("size"));
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException exc) { }
+		try {
+			TypeBindings.of(Collections.<TypeVariableDescriptor, TypeDescriptor>emptyMap()).forSupertype(Object.class);
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException exc) { }
+		try {
+			TypeBindings.forType(new ArrayType(String.class));
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException exc) { }
+	}
+	
+	@Test
+	public void testVariableAssignability() {
+		final TypeDescriptor a = TypeVariableDescriptor.of(Pair.class, "A");
+		final TypeDescriptor b = TypeVariableDescriptor.of(Pair.class, "B");
+		final TypeDescriptor n = TypeVariableDescriptor.of(Pair.class, "N");
+		
+		assertTrue(a.isAssignableFrom(a));
+		assertTrue(a.isAssignableFrom(b));
+		assertFalse(b.isAssignableFrom(a));
+		assertTrue(a.isAssignableFrom(WildcardType.withUpperBound(b)));
+		assertFalse(n.isAssignableFrom(new SimpleType(Integer.class)));
+		
+		// Other descriptors treat variables as their upper bound
+		assertTrue(new SimpleType(Number.class).isAssignableFrom(n));
+		assertFalse(new SimpleType(Integer.class).isAssignableFrom(n));
+		assertTrue(new GenericType(List.class, WildcardType.withUpperBound(new SimpleType(Number.class))).isAssignableFrom(new GenericType(List.class, n)));
+		assertTrue(new ArrayType(Number.class, 1).isAssignableFrom(new ArrayType(n, 1)));
+		assertTrue(InstanceChecker.full(n).isInstance(Integer.valueOf(1)));
+		assertFalse(InstanceChecker.full(n).isInstance("1"));
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import static org.junit.Assert.*;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test TypeBuilder.
+ */
+public class TestTypeBuilder {
+	@Test
+	public void testBuild() throws ClassNotFoundException {
+		final TypeBuilder builder = new TypeBuilder();
+		
+		assertSame(TypeFactory.parse("java.util.Map<String, java.util.List<? extends Number>[]>"),
+		           builder.beginGeneric(Map.class)
+		                  .add(String.class)
+		                  .beginGeneric(List.class)
+		                      .add(Number.class).wildcardExtends()
+		                  .end().array(1)
+		                  .end()
+		                  .build());
+		
+		// Builders are reusable
+		assertSame(TypeFactory.parse("int[][]"), builder.add(int[][].class).build());
+		assertSame(TypeFactory.parse("int[][]"), builder.add(int.class).array(2).build());
+		assertSame(TypeFactory.parse("java.util.List<String>[]"),
+		           builder.beginGeneric(List.class).add(String.class).end().array(1).build());
+		assertSame(TypeFactory.parse("java.util.Comparator<? super Integer>"),
+		           builder.beginGeneric(Comparator.class).add(Integer.class).wildcardSuper().end().build());
+		assertSame(TypeFactory.parse("java.util.Map<?, java.util.List<String>>"),
+		           builder.beginGeneric(Map.class)
+		                  .addWildcard()
+		                  .add(TypeFactory.parse("java.util.List<String>"))
+		                  .end()
+		                  .build());
+		
+		// Deep nesting grows the stacks
+		for(int index = 0; index < 20; ++index)
+			builder.beginGeneric(List.class);
+		builder.add(String.class);
+		for(int index = 0; index < 20; ++index)
+			builder.end();
+		assertEquals(21, builder.build().getDepth());
+	}
+	
+	@Test
+	public void testErrorsLeaveBuilderUnchanged() throws ClassNotFoundException {
+		final TypeBuilder builder = new TypeBuilder();
+		builder.beginGeneric(Map.class).add(String.class);
+		
+		try {
+			builder.end();
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException exc) { }
+		
+		try {
+			builder.build();
+			fail("Expected IllegalStateException");
+		} catch(IllegalStateException exc) { }
+		
+		try {
+			builder.beginGeneric(String.class);
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException exc) { }
+		
+		builder.add(Integer.class);
+		try {
+			builder.add(Integer.class);
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException exc) { }
+		
+		assertSame(TypeFactory.parse("java.util.Map<String, Integer>"), builder.end().build());
+	}
+	
+	@Test
+	public void testMisuse() {
+		final TypeBuilder builder = new TypeBuilder();
+		
+		try {
+			builder.end();
+			fail("Expected IllegalStateException");
+		} catch(IllegalStateException exc) { }
+		
+		try {
+			builder.build();
+			fail("Expected IllegalStateException");
+		} catch(IllegalStateException exc) { }
+		
+		try {
+			builder.array(1);
+			fail("Expected IllegalStateException");
+		} catch(IllegalStateException exc) { }
+		
+		try {
+			builder.addWildcard();
+			fail("Expected IllegalStateException");
+		} catch(IllegalStateException exc) { }
+		
+		try {
+			builder.add(Number.class).wildcardExtends();
+			fail("Expected IllegalStateException");
+		} catch(IllegalStateException exc) { }
+		
+		try {
+			builder.add(String.class);
+			fail("Expected IllegalStateException");
+		} catch(IllegalStateException exc) { }
+		
+		try {
+			builder.reset().beginGeneric(List.class).addWildcard().array(1);
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException exc) { }
+		
+		builder.reset();
+		assertEquals(new SimpleType(String.class), builder.add(String.class).build());
+	}
+}
@@ -30,6 +30,28 @@ import static org.junit.Assert.*;
  * Tests all type descriptors.
  */
 public class TestTypeDescriptor {
+	/** A map that fixes its key type */
+	@SuppressWarnings("serial")
+	private static class StringMap<V> extends HashMap<String, V> { }
+	
+	/** A map whose type parameters are in the opposite order */
+	@SuppressWarnings("serial")
+	private static class Flipped<A, B> extends HashMap<B, A> { }
+	
+	/** A non-generic list */
+	@SuppressWarnings("serial")
+	private static class Names extends ArrayList<String> { }
+	
+	/** A raw list */
+	@SuppressWarnings({"serial", "rawtypes"})
+	private static class RawList extends ArrayList { }
+	
+	/** A comparable whose type argument is a wildcard over its type parameter */
+	private static abstract class Bounded<T> implements Comparable<List<? extends T>> { }
+	
+	/** A comparable whose type argument is an array of its type parameter */
+	private static abstract class Elements<T> implements Comparable<T[]> { }
+	
 	@Test
 	public void testSimpleType() {
 		final SimpleType stringType = new SimpleType(String.class);
@@ -85,8 +107,10 @@ public class TestTypeDescriptor {
 		final GenericType l_n = new GenericType(List.class, Number.class);
 		final GenericType a_i = new GenericType(ArrayList.class, Integer.class);
 		
-		assertTrue(l_n.isAssignableFrom(a_i));
+		// Generic parameters are invariant, as in Java
+		assertFalse(l_n.isAssignableFrom(a_i));
 		assertFalse(a_i.isAssignableFrom(l_n));
+		assertTrue (l_n.isAssignableFrom(new GenericType(ArrayList.class, Number.class)));
 		assertEquals("java.util.List<java.lang.Number>", l_n.toString());
 		assertEquals("java.util.ArrayList<java.lang.Integer>", a_i.toString());
 		
@@ -96,9 +120,9 @@ public class TestTypeDescriptor {
 		final GenericType a_ai = new GenericType(ArrayList.class, a_i);
 		
 		assertTrue (l_ln.isAssignableFrom(l_ln));
-		assertTrue (l_ln.isAssignableFrom(l_ai));
+		assertFalse(l_ln.isAssignableFrom(l_ai));
 		assertTrue (l_ln.isAssignableFrom(a_ln));
-		assertTrue (l_ln.isAssignableFrom(a_ai));
+		assertFalse(l_ln.isAssignableFrom(a_ai));
 		
 		assertFalse(l_ai.isAssignableFrom(l_ln));
 		assertTrue (l_ai.isAssignableFrom(l_ai));
@@ -108,7 +132,7 @@ public class TestTypeDescriptor {
 		assertFalse(a_ln.isAssignableFrom(l_ln));
 		assertFalse(a_ln.isAssignableFrom(l_ai));
 		assertTrue (a_ln.isAssignableFrom(a_ln));
-		assertTrue (a_ln.isAssignableFrom(a_ai));
+		assertFalse(a_ln.isAssignableFrom(a_ai));
 		
 		assertFalse(a_ai.isAssignableFrom(l_ln));
 		assertFalse(a_ai.isAssignableFrom(l_ai));
@@ -121,6 +145,19 @@ public class TestTypeDescriptor {
 		assertEquals("java.util.ArrayList<java.util.ArrayList<java.lang.Integer>>", a_ai.toString());
 	}
 	
+	@Test
+	public void testGenericTypeArrayParams() throws ClassNotFoundException {
+		final GenericType l_i = new GenericType(List.class, int[].class);
+		final GenericType m_s = new GenericType(Map.class, String[][].class, Number[].class);
+		
+		assertEquals(TypeFactory.parse("java.util.List<int[]>"), l_i);
+		assertEquals(TypeFactory.parse("java.util.Map<String[][], Number[]>"), m_s);
+		assertEquals("java.util.List<int[]>", l_i.toString());
+		assertEquals("java.util.Map<java.lang.String[][],java.lang.Number[]>", m_s.toString());
+		assertTrue(m_s.isAssignableFrom(new GenericType(HashMap.class, String[][].class, Number[].class)));
+		assertFalse(m_s.isAssignableFrom(new GenericType(HashMap.class, String[].class, Number[].class)));
+	}
+	
 	@Test
 	public void testGenericTypeMultipleParams() {
 		final GenericType l_n = new GenericType(List.class, Number.class);
@@ -129,8 +166,9 @@ public class TestTypeDescriptor {
 		final GenericType m_n_s = new GenericType(Map.class, Number.class, String.class);
 		final GenericType m_i_s = new GenericType(Map.class, Integer.class, String.class);
 		
-		assertTrue(m_n_s.isAssignableFrom(m_i_s));
+		assertFalse(m_n_s.isAssignableFrom(m_i_s));
 		assertFalse(m_i_s.isAssignableFrom(m_n_s));
+		assertTrue (m_n_s.isAssignableFrom(new GenericType(HashMap.class, Number.class, String.class)));
 		
 		assertEquals("java.util.Map<java.lang.Number,java.lang.String>", m_n_s.toString());
 		assertEquals("java.util.Map<java.lang.Integer,java.lang.String>", m_i_s.toString());
@@ -139,15 +177,278 @@ public class TestTypeDescriptor {
 		final GenericType m_n_ai = new GenericType(Map.class, new SimpleType(Number.class), a_i);
 		final GenericType tm_i_ai = new GenericType(TreeMap.class, new SimpleType(Integer.class), a_i);
 		
-		assertTrue(m_n_ln.isAssignableFrom(m_n_ai));
-		assertTrue(m_n_ln.isAssignableFrom(tm_i_ai));
-		assertTrue(m_n_ai.isAssignableFrom(tm_i_ai));
+		assertFalse(m_n_ln.isAssignableFrom(m_n_ai));
+		assertFalse(m_n_ln.isAssignableFrom(tm_i_ai));
+		assertFalse(m_n_ai.isAssignableFrom(tm_i_ai));
+		assertTrue (m_n_ai.isAssignableFrom(new GenericType(TreeMap.class, new SimpleType(Number.class), a_i)));
 		
 		assertEquals("java.util.Map<java.lang.Number,java.util.List<java.lang.Number>>", m_n_ln.toString());
 		assertEquals("java.util.Map<java.lang.Number,java.util.ArrayList<java.lang.Integer>>", m_n_ai.toString());
 		assertEquals("java.util.TreeMap<java.lang.Integer,java.util.ArrayList<java.lang.Integer>>", tm_i_ai.toString());
 	}
 	
+	@Test
+	public void testArrayTypeSupertypes() {
+		final TypeDescriptor object = new SimpleType(Object.class);
+		final TypeDescriptor objects = new ArrayType(Object.class);
+		final TypeDescriptor strings2 = new ArrayType(String.class, 2);
+		final TypeDescriptor ints2 = new ArrayType(int.class, 2);
+		
+		assertTrue (objects.isAssignableFrom(strings2));
+		assertTrue (objects.isAssignableFrom(ints2));
+		assertFalse(objects.isAssignableFrom(new ArrayType(int.class)));
+		assertFalse(new ArrayType(long.class).isAssignableFrom(new ArrayType(int.class)));
+		assertTrue (new ArrayType(Cloneable.class).isAssignableFrom(ints2));
+		assertTrue (new ArrayType(java.io.Serializable.class, 2).isAssignableFrom(new ArrayType(String.class, 3)));
+		assertFalse(new ArrayType(Number.class).isAssignableFrom(strings2));
+		assertFalse(strings2.isAssignableFrom(objects));
+		
+		assertTrue (object.isAssignableFrom(ints2));
+		assertTrue (new SimpleType(Cloneable.class).isAssignableFrom(strings2));
+		assertTrue (new SimpleType(Object[].class).isAssignableFrom(strings2));
+		assertFalse(new SimpleType(Number.class).isAssignableFrom(strings2));
+		assertTrue (objects.isAssignableFrom(new SimpleType(String[].class)));
+		
+		// Generic elements
+		final TypeDescriptor l_n = new ArrayType(new GenericType(List.class, Number.class), 1);
+		assertTrue (l_n.isAssignableFrom(new ArrayType(new GenericType(ArrayList.class, Number.class), 1)));
+		assertFalse(l_n.isAssignableFrom(new ArrayType(new GenericType(ArrayList.class, Integer.class), 1)));
+		assertFalse(l_n.isAssignableFrom(new ArrayType(new GenericType(ArrayList.class, String.class), 1)));
+		assertTrue (objects.isAssignableFrom(l_n));
+		assertEquals("java.util.List<java.lang.Number>[]", l_n.toString());
+		assertSame(List[].class, ((ArrayType)l_n).getArrayClass());
+		assertSame(int[][].class, ((ArrayType)ints2).getArrayClass());
+	}
+	
+	@Test
+	public void testWildcardType() {
+		final TypeDescriptor integer = new SimpleType(Integer.class);
+		final TypeDescriptor number = new SimpleType(Number.class);
+		final WildcardType any = WildcardType.unbounded();
+		final WildcardType e_n = WildcardType.withUpperBound(number);
+		final WildcardType e_i = WildcardType.withUpperBound(integer);
+		final WildcardType s_n = WildcardType.withLowerBound(number);
+		final WildcardType s_i = WildcardType.withLowerBound(integer);
+		
+		assertSame(any, WildcardType.withUpperBound(new SimpleType(Object.class)));
+		assertEquals("?", any.toString());
+		assertEquals("? extends java.lang.Number", e_n.toString());
+		assertEquals("? super java.lang.Integer", s_i.toString());
+		
+		// Containment of types
+		assertTrue (any.isAssignableFrom(new SimpleType(String.class)));
+		assertTrue (any.isAssignableFrom(new GenericType(List.class, String.class)));
+		assertTrue (e_n.isAssignableFrom(integer));
+		assertFalse(e_i.isAssignableFrom(number));
+		assertTrue (s_i.isAssignableFrom(number));
+		assertTrue (s_i.isAssignableFrom(new SimpleType(Object.class)));
+		assertFalse(s_n.isAssignableFrom(integer));
+		
+		// Containment of wildcards
+		assertTrue (any.isAssignableFrom(s_i));
+		assertTrue (e_n.isAssignableFrom(e_i));
+		assertFalse(e_i.isAssignableFrom(e_n));
+		assertFalse(e_n.isAssignableFrom(any));
+		assertFalse(e_n.isAssignableFrom(s_i));
+		assertTrue (s_i.isAssignableFrom(s_n));
+		assertFalse(s_n.isAssignableFrom(s_i));
+		assertFalse(s_i.isAssignableFrom(any));
+		
+		// Wildcards as generic parameters
+		final GenericType l_en = new GenericType(List.class, e_n);
+		final GenericType c_si = new GenericType(Collection.class, s_i);
+		assertTrue (l_en.isAssignableFrom(new GenericType(ArrayList.class, Integer.class)));
+		assertTrue (l_en.isAssignableFrom(new GenericType(List.class, e_i)));
+		assertFalse(l_en.isAssignableFrom(new GenericType(List.class, String.class)));
+		assertTrue (c_si.isAssignableFrom(new GenericType(List.class, Number.class)));
+		assertTrue (c_si.isAssignableFrom(new GenericType(Set.class, s_n)));
+		assertFalse(c_si.isAssignableFrom(new GenericType(List.class, Double.class)));
+		
+		// Concrete parameters only contain the same type, as in Java
+		final GenericType l_n = new GenericType(List.class, Number.class);
+		assertFalse(l_n.isAssignableFrom(new GenericType(List.class, Integer.class)));
+		assertFalse(l_n.isAssignableFrom(new GenericType(List.class, e_i)));
+		assertFalse(l_n.isAssignableFrom(new GenericType(List.class, e_n)));
+		assertFalse(l_n.isAssignableFrom(new GenericType(List.class, s_i)));
+		assertFalse(new GenericType(List.class, Integer.class).isAssignableFrom(new GenericType(List.class, e_i)));
+		assertTrue (l_n.isAssignableFrom(new GenericType(ArrayList.class, Number.class)));
+		assertTrue (new GenericType(List.class, any).isAssignableFrom(new GenericType(List.class, s_i)));
+		
+		// Raw bounds contain parameterized types
+		assertTrue (WildcardType.withUpperBound(new SimpleType(Iterable.class)).isAssignableFrom(new GenericType(List.class, String.class)));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testWildcardBound() {
+		WildcardType.withUpperBound(WildcardType.unbounded());
+	}
+	
+	@Test
+	public void testEquals() {
+		final TypeDescriptor [] a = new TypeDescriptor[] {
+			new SimpleType(String.class),
+			new ArrayType(Integer.class, 2),
+			new GenericType(Map.class, new SimpleType(String.class), new GenericType(List.class, Integer.class))
+		};
+		final TypeDescriptor [] b = new TypeDescriptor[] {
+			new SimpleType(String.class),
+			new ArrayType(Integer.class, 2),
+			new GenericType(Map.class, new SimpleType(String.class), new GenericType(List.class, Integer.class))
+		};
+		
+		for(int i = 0; i < a.length; ++i) {
+			for(int j = 0; j < b.length; ++j) {
+				if(i == j) {
+					assertEquals(a[i], b[j]);
+					assertEquals(a[i].hashCode(), b[j].hashCode());
+				} else {
+					assertFalse(a[i].equals(b[j]));
+				}
+			}
+		}
+		
+		assertFalse(new ArrayType(Integer.class, 2).equals(new ArrayType(Integer.class, 3)));
+		assertFalse(new GenericType(List.class, Integer.class).equals(new GenericType(List.class, Number.class)));
+	}
+	
+	@Test
+	public void testEqualsContract() {
+		final TypeDescriptor [] types = new TypeDescriptor[] {
+			new SimpleType(Integer.class),
+			new SimpleType(Integer[].class),
+			new ArrayType(Integer.class),
+			new ArrayType(Integer.class, 2),
+			new GenericType(List.class, Integer.class),
+			new GenericType(List.class, new ArrayType(Integer.class)),
+			new GenericType(Map.class, new SimpleType(Integer.class), new GenericType(List.class, Integer.class)),
+			WildcardType.unbounded(),
+			WildcardType.withUpperBound(new SimpleType(Integer.class)),
+			WildcardType.withLowerBound(new SimpleType(Integer.class)),
+			new GenericType(List.class, WildcardType.withUpperBound(new SimpleType(Integer.class))),
+			new ArrayType(new GenericType(List.class, Integer.class), 2)
+		};
+		
+		for(TypeDescriptor a : types) {
+			assertTrue(a.equals(a));
+			assertFalse(a.equals(null));
+			assertEquals(a.hashCode(), a.hashCode());
+			assertSame(a.toString(), a.toString());
+			
+			for(TypeDescriptor b : types) {
+				assertEquals(a.equals(b), b.equals(a));
+				assertEquals(a == b, a.equals(b));
+			}
+		}
+	}
+	
+	@Test
+	public void testImmutable() {
+		final TypeDescriptor [] params = new TypeDescriptor[] {
+			new SimpleType(String.class),
+			new SimpleType(Integer.class)
+		};
+		final GenericType type = new GenericType(Map.class, params);
+		final GenericType copy = new GenericType(Map.class, params.clone());
+		final int hash = type.hashCode();
+		
+		params[1] = new SimpleType(Number.class);
+		assertEquals("java.util.Map<java.lang.String,java.lang.Integer>", type.toString());
+		assertEquals(hash, type.hashCode());
+		assertEquals(copy, type);
+	}
+	
+	@Test
+	public void testAccessors() {
+		final GenericType type = new GenericType(Map.class, new SimpleType(String.class), new ArrayType(int.class, 2));
+		assertSame(Map.class, type.getRawClass());
+		assertEquals(2, type.getNumParameters());
+		assertEquals(Arrays.asList(new SimpleType(String.class), new ArrayType(int.class, 2)), type.getParameters());
+		
+		final ArrayType array = (ArrayType)type.getParameter(1);
+		assertEquals(new SimpleType(int.class), array.getElementType());
+		assertEquals(2, array.getNumDimensions());
+		assertSame(int[][].class, array.getArrayClass());
+		
+		final WildcardType wildcard = WildcardType.withLowerBound(type);
+		assertEquals(new SimpleType(Object.class), wildcard.getUpperBound());
+		assertSame(type, wildcard.getLowerBound());
+		assertNull(WildcardType.unbounded().getLowerBound());
+		
+		try {
+			type.getParameters().set(0, new SimpleType(Integer.class));
+			fail("expected UnsupportedOperationException");
+		} catch(UnsupportedOperationException exc) {}
+		assertEquals(new SimpleType(String.class), type.getParameter(0));
+	}
+	
+	@Test
+	public void testMetadata() {
+		final TypeDescriptor string = new SimpleType(String.class);
+		assertEquals(1, string.getDepth());
+		assertEquals(1, string.getNodeCount());
+		assertEquals(Collections.singleton(String.class), string.getReferencedClasses());
+		assertFalse(string.hasPrimitive());
+		assertTrue(new SimpleType(int.class).hasPrimitive());
+		
+		// Map<String, List<? extends Map<String, int[]>>>
+		final TypeDescriptor inner = new GenericType(Map.class, string, new ArrayType(int.class));
+		final TypeDescriptor type = new GenericType(Map.class, string, new GenericType(List.class, WildcardType.withUpperBound(inner)));
+		assertEquals(6, type.getDepth());
+		assertEquals(8, type.getNodeCount());
+		assertEquals(Arrays.asList(Map.class, String.class, List.class, int.class), new ArrayList<Class<?>>(type.getReferencedClasses()));
+		assertSame(type.getReferencedClasses(), type.getReferencedClasses());
+		assertTrue(type.hasPrimitive());
+		assertFalse(new GenericType(List.class, WildcardType.withUpperBound(string)).hasPrimitive());
+		
+		assertEquals(1, WildcardType.unbounded().getDepth());
+		assertTrue(WildcardType.unbounded().getReferencedClasses().isEmpty());
+		assertEquals(2, new ArrayType(String.class, 3).getDepth());
+		
+		try {
+			type.getReferencedClasses().add(Integer.class);
+			fail("expected UnsupportedOperationException");
+		} catch(UnsupportedOperationException exc) {}
+	}
+	
+	@Test
+	public void testGenericTypeSupertypes() {
+		final GenericType m_s_i = new GenericType(Map.class, String.class, Integer.class);
+		final GenericType m_i_s = new GenericType(Map.class, Integer.class, String.class);
+		final GenericType m_s_n = new GenericType(Map.class, String.class, Number.class);
+		
+		assertTrue (m_s_i.isAssignableFrom(new GenericType(LinkedHashMap.class, String.class, Integer.class)));
+		assertFalse(m_s_i.isAssignableFrom(new GenericType(LinkedHashMap.class, Integer.class, String.class)));
+		assertFalse(m_s_n.isAssignableFrom(new GenericType(LinkedHashMap.class, String.class, Integer.class)));
+		
+		assertTrue (m_s_i.isAssignableFrom(new GenericType(StringMap.class, Integer.class)));
+		assertTrue (m_s_n.isAssignableFrom(new GenericType(StringMap.class, Number.class)));
+		assertFalse(m_s_n.isAssignableFrom(new GenericType(StringMap.class, Integer.class)));
+		assertFalse(m_i_s.isAssignableFrom(new GenericType(StringMap.class, Integer.class)));
+		
+		assertTrue (m_s_i.isAssignableFrom(new GenericType(Flipped.class, Integer.class, String.class)));
+		assertFalse(m_s_i.isAssignableFrom(new GenericType(Flipped.class, String.class, Integer.class)));
+		
+		final GenericType l_s = new GenericType(List.class, String.class);
+		final GenericType c_s = new GenericType(Collection.class, String.class);
+		assertTrue (l_s.isAssignableFrom(new SimpleType(Names.class)));
+		assertTrue (c_s.isAssignableFrom(new SimpleType(Names.class)));
+		assertFalse(new GenericType(Collection.class, Object.class).isAssignableFrom(new SimpleType(Names.class)));
+		assertFalse(new GenericType(List.class, Integer.class).isAssignableFrom(new SimpleType(Names.class)));
+		assertFalse(l_s.isAssignableFrom(new SimpleType(RawList.class)));
+		assertFalse(l_s.isAssignableFrom(new SimpleType(ArrayList.class)));
+		assertFalse(l_s.isAssignableFrom(new GenericType(TreeMap.class, String.class, String.class)));
+		
+		final TypeDescriptor l_en = new GenericType(List.class, WildcardType.withUpperBound(new SimpleType(Number.class)));
+		assertTrue (new GenericType(Comparable.class, l_en).isAssignableFrom(new GenericType(Bounded.class, Number.class)));
+		assertFalse(new GenericType(Comparable.class, l_en).isAssignableFrom(new GenericType(Bounded.class, Integer.class)));
+		assertFalse(new GenericType(Comparable.class, l_en).isAssignableFrom(new GenericType(Bounded.class, String.class)));
+		
+		final TypeDescriptor c_ln = new GenericType(Comparable.class, new ArrayType(new GenericType(List.class, Number.class), 1));
+		assertTrue (c_ln.isAssignableFrom(new GenericType(Elements.class, new GenericType(List.class, Number.class))));
+		assertFalse(c_ln.isAssignableFrom(new GenericType(Elements.class, new GenericType(ArrayList.class, Integer.class))));
+		assertFalse(c_ln.isAssignableFrom(new GenericType(Elements.class, Integer.class)));
+	}
+	
 	@Test(expected=IllegalArgumentException.class)
 	public void testWrongNumberGenericParams() {
 		new GenericType(Map.class, String.class, List.class, Number.class);
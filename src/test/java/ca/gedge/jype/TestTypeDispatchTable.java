@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import static org.junit.Assert.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Test TypeDispatchTable.
+ */
+public class TestTypeDispatchTable {
+	@Test
+	public void testMostSpecific() throws ClassNotFoundException {
+		final TypeDispatchTable<String> table = new TypeDispatchTable<String>();
+		table.register(new SimpleType(Object.class), "object");
+		table.register(new SimpleType(Number.class), "number");
+		table.register(new GenericType(Collection.class, WildcardType.unbounded()), "collection");
+		table.register(new GenericType(List.class, WildcardType.withUpperBound(new SimpleType(Number.class))), "numbers");
+		table.register(new GenericType(List.class, Integer.class), "integers");
+		table.register(new ArrayType(Number.class), "number[]");
+		table.register(new ArrayType(Object.class, 2), "object[][]");
+		
+		assertEquals(7, table.size());
+		assertEquals("number", table.lookup(new SimpleType(Integer.class)));
+		assertEquals("object", table.lookup(new SimpleType(String.class)));
+		assertEquals("object", table.lookup(new SimpleType(Serializable.class)));
+		assertEquals("integers", table.lookup(TypeFactory.parse("java.util.ArrayList<java.lang.Integer>")));
+		assertEquals("numbers", table.lookup(TypeFactory.parse("java.util.ArrayList<java.lang.Double>")));
+		assertEquals("collection", table.lookup(TypeFactory.parse("java.util.ArrayList<String>")));
+		assertEquals("number[]", table.lookup(new ArrayType(Integer.class)));
+		assertEquals("object[][]", table.lookup(new ArrayType(String.class, 2)));
+		assertEquals("object[][]", table.lookup(new ArrayType(int.class, 3)));
+		assertEquals("object[][]", table.lookup(new SimpleType(String[][][].class)));
+		assertEquals("object", table.lookup(new ArrayType(String.class)));
+		assertEquals("object", table.lookup(new GenericType(TreeMap.class, String.class, String.class)));
+		
+		// Cached results
+		assertEquals("number", table.lookup(new SimpleType(Integer.class)));
+		assertEquals("object", table.lookup(new ArrayType(String.class)));
+	}
+	
+	@Test
+	public void testRegistrationInvalidatesLookups() {
+		final TypeDispatchTable<String> table = new TypeDispatchTable<String>();
+		final TypeDescriptor list = new GenericType(ArrayList.class, Integer.class);
+		
+		assertNull(table.lookup(list));
+		
+		table.register(new GenericType(List.class, Integer.class), "list");
+		assertEquals("list", table.lookup(list));
+		
+		assertNull(table.register(new GenericType(ArrayList.class, Integer.class), "arraylist"));
+		assertEquals("arraylist", table.lookup(list));
+		
+		assertEquals("arraylist", table.register(new GenericType(ArrayList.class, Integer.class), "replaced"));
+		assertEquals("replaced", table.lookup(list));
+		assertEquals("replaced", table.get(new GenericType(ArrayList.class, Integer.class)));
+		
+		assertEquals("replaced", table.unregister(new GenericType(ArrayList.class, Integer.class)));
+		assertEquals("list", table.lookup(list));
+		assertNull(table.unregister(new GenericType(ArrayList.class, Integer.class)));
+	}
+	
+	@Test
+	public void testTiesGoToFirstRegistered() {
+		final TypeDispatchTable<String> table = new TypeDispatchTable<String>();
+		table.register(new GenericType(Map.class, WildcardType.unbounded(), new SimpleType(Integer.class)), "values");
+		table.register(new GenericType(Map.class, new SimpleType(String.class), WildcardType.unbounded()), "keys");
+		
+		assertEquals("values", table.lookup(new GenericType(TreeMap.class, String.class, Integer.class)));
+	}
+}
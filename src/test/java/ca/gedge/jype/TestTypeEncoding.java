@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Test TypeEncoder and TypeDecoder.
+ */
+public class TestTypeEncoding {
+	/** Descriptors to round trip */
+	private static final TypeDescriptor [] types = new TypeDescriptor[] {
+		new SimpleType(int.class),
+		new SimpleType(String.class),
+		new SimpleType(String[].class),
+		new ArrayType(char.class, 3),
+		new GenericType(List.class, String.class),
+		new GenericType(Map.class, new SimpleType(String.class), new GenericType(Map.class, new SimpleType(Integer.class), new GenericType(List.class, String.class))),
+		new GenericType(ArrayList.class, new ArrayType(Long.class, 2)),
+		new GenericType(Map.class, WildcardType.unbounded(), WildcardType.withUpperBound(new GenericType(List.class, Integer.class))),
+		new GenericType(Comparable.class, WildcardType.withLowerBound(new SimpleType(Integer.class))),
+		new ArrayType(new GenericType(Map.class, new SimpleType(String.class), new ArrayType(new GenericType(List.class, Integer.class), 1)), 2)
+	};
+	
+	@Test
+	public void testByteBufferRoundTrip() throws ClassNotFoundException {
+		final TypeEncoder encoder = new TypeEncoder();
+		final ByteBuffer buffer = ByteBuffer.allocate(1024);
+		for(TypeDescriptor type : types)
+			encoder.encode(type, buffer);
+		
+		// Repeated descriptors only refer to the string table
+		final int position = buffer.position();
+		encoder.encode(types[5], buffer);
+		assertEquals(9, buffer.position() - position);
+		
+		buffer.flip();
+		final TypeDecoder decoder = new TypeDecoder();
+		for(TypeDescriptor type : types)
+			assertSame(TypeFactory.intern(type), decoder.decode(buffer));
+		assertSame(TypeFactory.intern(types[5]), decoder.decode(buffer));
+		assertFalse(buffer.hasRemaining());
+	}
+	
+	@Test
+	public void testDataStreamRoundTrip() throws IOException, ClassNotFoundException {
+		final TypeEncoder encoder = new TypeEncoder();
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		for(TypeDescriptor type : types)
+			encoder.encode(type, out);
+		out.flush();
+		
+		final TypeDecoder decoder = new TypeDecoder();
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		for(TypeDescriptor type : types)
+			assertEquals(type, decoder.decode(in));
+		assertEquals(0, in.available());
+	}
+	
+	@Test
+	public void testPartialBuffers() throws ClassNotFoundException {
+		final TypeEncoder encoder = new TypeEncoder();
+		final ByteBuffer small = ByteBuffer.allocate(8);
+		try {
+			encoder.encode(types[5], small);
+			fail("expected BufferOverflowException");
+		} catch(BufferOverflowException exc) {
+			assertEquals(0, small.position());
+		}
+		
+		final ByteBuffer buffer = ByteBuffer.allocate(1024);
+		encoder.encode(types[5], buffer);
+		buffer.flip();
+		
+		// A truncated buffer leaves the decoder usable
+		final TypeDecoder decoder = new TypeDecoder();
+		final ByteBuffer truncated = buffer.duplicate();
+		truncated.limit(buffer.limit() - 1);
+		try {
+			decoder.decode(truncated);
+			fail("expected BufferUnderflowException");
+		} catch(BufferUnderflowException exc) {
+			assertEquals(0, truncated.position());
+		}
+		
+		assertEquals(types[5], decoder.decode(buffer));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnknownClassId() throws ClassNotFoundException {
+		new TypeDecoder().decode(ByteBuffer.wrap(new byte[] { 1 << 2 }));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnsupportedDescriptor() {
+		// Type variables only appear in templates, and cannot be encoded
+		new TypeEncoder().encode(TypeVariableDescriptor.of(Comparable.class, "T"), ByteBuffer.allocate(16));
+	}
+	
+	@Test
+	public void testTypeVariables() {
+		// Arrays of type variables cannot be encoded either, rather than being
+		// erased silently
+		final TypeDescriptor variable = TypeVariableDescriptor.of(Comparable.class, "T");
+		final TypeDescriptor [] types = { new ArrayType(variable, 1), new GenericType(List.class, new ArrayType(variable, 2)) };
+		for(TypeDescriptor type : types) {
+			final ByteBuffer buffer = ByteBuffer.allocate(64);
+			try {
+				new TypeEncoder().encode(type, buffer);
+				fail("Expected IllegalArgumentException");
+			} catch(IllegalArgumentException exc) { }
+		}
+	}
+}
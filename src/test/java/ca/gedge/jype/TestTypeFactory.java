@@ -27,8 +27,18 @@ package ca.gedge.jype;
 import static org.junit.Assert.*;
 
 import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
@@ -36,6 +46,24 @@ import org.junit.Test;
  * Test TypeFactory.
  */
 public class TestTypeFactory {
+	/**
+	 * Members to reflect on in {@link #testFromType()}.
+	 */
+	@SuppressWarnings("unused")
+	private static class Members<T extends Comparable<T>> {
+		private int primitive;
+		private String[][] array;
+		private Map<String, List<Integer>> generic;
+		private List<? extends Number> wildcard;
+		private List<T> variable;
+		private List<String>[] genericArray;
+		private T[] variableArray;
+		
+		Members(List<String> list, int[] ints) { }
+		
+		Map<String, T> method(List<Map<String, Integer>> list) { return null; }
+	}
+	
 	@Test
 	public void testFromList() {
 		try {
@@ -85,6 +113,56 @@ public class TestTypeFactory {
 		TypeFactory.fromList(Map.class, String.class, Number.class, Integer.class);
 	}
 	
+	@Test
+	public void testFromListRange() {
+		final Class<?> [] classes = { Integer.class, Map.class, String.class, List.class, Number.class, Integer.class };
+		
+		final TypeDescriptor type = TypeFactory.fromList(classes, 1, 4);
+		assertSame(TypeFactory.fromList(Map.class, String.class, List.class, Number.class), type);
+		assertSame(type, TypeFactory.fromList(classes, 1, 4));
+		assertSame(TypeFactory.fromList(Integer.class), TypeFactory.fromList(classes, 5, 1));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testFromListRangeTooFew() {
+		TypeFactory.fromList(new Class<?>[] { Map.class, String.class, List.class, Number.class }, 0, 3);
+	}
+	
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testFromListRangeOutOfBounds() {
+		TypeFactory.fromList(new Class<?>[] { List.class, String.class }, 1, 2);
+	}
+	
+	@Test
+	public void testFromListIds() {
+		final ClassRegistry registry = new ClassRegistry();
+		final int mapId = registry.register(Map.class);
+		final int stringId = registry.register(String.class);
+		final int listId = registry.register(List.class);
+		assertEquals(stringId, registry.register(String.class));
+		assertEquals(3, registry.size());
+		assertSame(List.class, registry.getRegisteredClass(listId));
+		assertNull(registry.getRegisteredClass(3));
+		assertEquals(-1, registry.getId(Integer.class));
+		
+		final int [] ids = { mapId, stringId, listId, stringId, listId };
+		final TypeDescriptor type = TypeFactory.fromList(registry, ids, 0, 4);
+		assertSame(TypeFactory.fromList(Map.class, String.class, List.class, String.class), type);
+		assertSame(type, TypeFactory.fromList(registry, ids, 0, 4));
+		
+		try {
+			TypeFactory.fromList(registry, ids, 0, 5);
+			fail("Class list should be too large");
+		} catch(IllegalArgumentException exc) {
+		}
+		
+		try {
+			TypeFactory.fromList(registry, new int[] { listId, 7 }, 0, 2);
+			fail("Class id should not be registered");
+		} catch(IllegalArgumentException exc) {
+		}
+	}
+	
 	@Test
 	public void testParse() {
 		final String [] tests = new String[] {
@@ -115,6 +193,97 @@ public class TestTypeFactory {
 		}
 	}
 	
+	@Test
+	public void testParseNested() {
+		final String [] tests = new String[] {
+			"java.util.Map<java.util.Map<java.lang.String,java.lang.Integer>,java.lang.String>",
+			"java.util.Map<java.lang.String,java.util.Map<java.lang.Integer,java.util.List<java.lang.String>>>",
+			"java.util.List<java.util.Map<java.lang.String[],java.util.List<int[][]>>>"
+		};
+		
+		for(String test : tests) {
+			try {
+				assertEquals(test, TypeFactory.parse(test).toString());
+			} catch(Exception exc) {
+				fail("failed to parse \"" + test + "\"");
+			}
+		}
+	}
+	
+	@Test
+	public void testParseWhitespace() {
+		try {
+			assertEquals(
+			    "java.util.Map<java.lang.String,java.util.List<int[]>>",
+			    TypeFactory.parse("  java.util.Map < String ,\tjava.util.List<int [ ] > >\n").toString()
+			);
+			assertEquals(
+			    "java.util.List<java.lang.String>",
+			    TypeFactory.parse("java . util.List<java.lang. String>").toString()
+			);
+			assertEquals(
+			    "java.util.List<java.lang.String>",
+			    TypeFactory.parseLazily("java.util .\nList<java.lang .String>").resolve().toString()
+			);
+		} catch(Exception exc) {
+			fail("failed to parse type string with whitespace");
+		}
+	}
+	
+	@Test
+	public void testParseArrays() throws ClassNotFoundException {
+		final String [] tests = new String[] {
+			"int[]",
+			"java.lang.Object[][][]",
+			"java.util.List<java.lang.String>[]",
+			"java.util.Map<java.lang.String,java.util.List<int[]>[][]>[]",
+			"java.util.List<? extends java.lang.Number[]>[][]"
+		};
+		
+		for(String test : tests) {
+			final TypeDescriptor type = TypeFactory.parse(test);
+			assertEquals(test, type.toString());
+			assertSame(type, TypeFactory.parse(type.toString()));
+		}
+		
+		assertSame(TypeFactory.parse("int[][]"), TypeFactory.intern(new ArrayType(int[].class)));
+		assertSame(TypeFactory.parse("java.util.List<String>[][]"), TypeFactory.intern(new ArrayType(TypeFactory.parse("java.util.List<String>[]"), 1)));
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testParseVoidArray() throws ClassNotFoundException {
+		TypeFactory.parse("void[]");
+	}
+	
+	@Test
+	public void testParseWildcards() throws ClassNotFoundException {
+		final String [] tests = new String[] {
+			"java.util.List<?>",
+			"java.util.List<? extends java.lang.Number>",
+			"java.util.Comparator<? super java.lang.Integer>",
+			"java.util.Map<?,? extends java.util.List<? super int[]>>"
+		};
+		
+		for(String test : tests)
+			assertEquals(test, TypeFactory.parse(test).toString());
+		
+		assertSame(TypeFactory.parse("java.util.List<?>"), TypeFactory.parse("java.util.List< ? extends Object >"));
+		assertSame(
+			TypeFactory.parse("java.util.Map<String, ? extends java.util.List<Integer>>"),
+			TypeFactory.parse("java.util.Map<String,?extends java.util.List<Integer>>")
+		);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testParseTopLevelWildcard() throws ClassNotFoundException {
+		TypeFactory.parse("? extends java.lang.Number");
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testParseWildcardMissingKeyword() throws ClassNotFoundException {
+		TypeFactory.parse("java.util.List<? extendsNumber>");
+	}
+	
 	@Test(expected=ClassNotFoundException.class)
 	public void testParseUnknownClass() throws ClassNotFoundException {
 		TypeFactory.parse("List<java.lang.String>");
@@ -127,11 +296,185 @@ public class TestTypeFactory {
 	
 	@Test(expected=IllegalArgumentException.class)
 	public void testParseIncorrectFormat2() throws ClassNotFoundException {
-		TypeFactory.parse("java.util.List<java.lang.String>[]");
+		TypeFactory.parse("java.util.List<java.lang.String>[");
 	}
 	
 	@Test(expected=IllegalArgumentException.class)
 	public void testParseIncorrectFormat3() throws ClassNotFoundException {
 		TypeFactory.parse("int<java.lang.String>");
 	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testParseIncorrectFormat4() throws ClassNotFoundException {
+		TypeFactory.parse("java.util.Map<java.lang.String,java.lang.Integer");
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testParseIncorrectFormat5() throws ClassNotFoundException {
+		TypeFactory.parse("java.util.Map<java.lang.String>");
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testParseIncorrectFormat6() throws ClassNotFoundException {
+		TypeFactory.parse("java.lang.String[");
+	}
+	
+	@Test
+	public void testIntern() throws ClassNotFoundException {
+		final TypeDescriptor parsed = TypeFactory.parse("java.util.Map<String, java.util.List<java.lang.Integer>>");
+		final TypeDescriptor listed = TypeFactory.fromList(Map.class, String.class, List.class, Integer.class);
+		final TypeDescriptor built = new GenericType(Map.class, new SimpleType(String.class), new GenericType(List.class, Integer.class));
+		
+		assertSame(parsed, listed);
+		assertNotSame(parsed, built);
+		assertSame(parsed, TypeFactory.intern(built));
+		assertSame(TypeFactory.parse("java.util.List<java.lang.Integer>"), TypeFactory.intern(new GenericType(List.class, Integer.class)));
+		assertSame(TypeFactory.parse("int[][]"), TypeFactory.intern(new ArrayType(int.class, 2)));
+	}
+	
+	@Test
+	public void testConcurrentIntern() throws Exception {
+		// Threads racing to intern equal descriptors must agree on one of them
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for(int round = 0; round < 100; ++round) {
+				final List<Future<TypeDescriptor>> futures = new ArrayList<Future<TypeDescriptor>>();
+				final int depth = round;
+				for(int thread = 0; thread < 4; ++thread) {
+					futures.add(executor.submit(new Callable<TypeDescriptor>() {
+						@Override
+						public TypeDescriptor call() {
+							return TypeFactory.intern(new GenericType(Map.class, new SimpleType(Thread.State.class), new ArrayType(Thread.State.class, depth + 1)));
+						}
+					}));
+				}
+				
+				final TypeDescriptor canonical = futures.get(0).get();
+				for(Future<TypeDescriptor> future : futures)
+					assertSame(canonical, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testParseLazily() throws ClassNotFoundException {
+		final DefaultClassResolver defaultResolver = new DefaultClassResolver();
+		final List<String> resolved = new ArrayList<String>();
+		final ClassResolver resolver = new ClassResolver() {
+			@Override
+			public Class<?> resolve(String name) throws ClassNotFoundException {
+				resolved.add(name);
+				return defaultResolver.resolve(name);
+			}
+		};
+		
+		final String typeString = "java.util.Map<String, java.util.List<? extends Number>>[]";
+		final LazyType lazy = TypeFactory.parseLazily(typeString, resolver);
+		assertFalse(lazy.isResolved());
+		assertEquals(typeString, lazy.toString());
+		assertTrue(resolved.isEmpty());
+		
+		// Resolves once, to the interned descriptor
+		final TypeDescriptor type = TypeFactory.parse(typeString);
+		assertTrue(lazy.isAssignableFrom(type));
+		assertTrue(lazy.isResolved());
+		assertSame(type, lazy.resolve());
+		assertEquals(4, resolved.size());
+		assertEquals(5, lazy.getDepth());
+		assertEquals(4, resolved.size());
+		
+		// Lazy descriptors are unwrapped wherever they are given
+		assertEquals(type, lazy);
+		assertEquals(lazy, type);
+		assertEquals(type.hashCode(), lazy.hashCode());
+		assertEquals(type.toString(), lazy.toString());
+		assertEquals(typeString, lazy.getTypeString());
+		assertSame(type, TypeFactory.intern(lazy));
+		assertTrue(type.isAssignableFrom(lazy));
+		assertEquals(new ArrayType(type, 1), new ArrayType(lazy, 1));
+		assertEquals(new GenericType(List.class, type), new GenericType(List.class, lazy));
+		assertTrue(InstanceChecker.shallow(TypeFactory.parseLazily("java.util.List<String>")).isInstance(Arrays.asList("a")));
+	}
+	
+	@Test
+	public void testParseLazilyFailures() {
+		// Syntax is checked up front
+		try {
+			TypeFactory.parseLazily("java.util.List<java.lang.String>[");
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException exc) { }
+		
+		final LazyType missing = TypeFactory.parseLazily("java.util.List<not.a.Class>");
+		try {
+			missing.getDepth();
+			fail("Expected TypeNotPresentException");
+		} catch(TypeNotPresentException exc) {
+			assertTrue(exc.getCause() instanceof ClassNotFoundException);
+			try {
+				missing.resolve();
+				fail("Expected TypeNotPresentException");
+			} catch(TypeNotPresentException again) {
+				assertSame(exc, again);
+			}
+		}
+		assertFalse(missing.isResolved());
+		
+		// Comparing and hashing never throw; unresolvable descriptors are only equal to themselves
+		final LazyType unknown = TypeFactory.parseLazily("com.nope.Missing");
+		assertFalse(unknown.equals(new SimpleType(String.class)));
+		assertFalse(new SimpleType(String.class).equals(unknown));
+		assertFalse(unknown.equals(TypeFactory.parseLazily("com.nope.Missing")));
+		assertTrue(unknown.equals(unknown));
+		assertEquals(TypeFactory.parseLazily("com.nope.Missing").hashCode(), unknown.hashCode());
+		assertEquals("java.util.List<com.nope.Missing>".hashCode(),
+		             TypeFactory.parseLazily("java.util.List < com.nope.Missing >").hashCode());
+		assertEquals("com.nope.Missing", unknown.toString());
+		final Map<TypeDescriptor, String> map = new HashMap<TypeDescriptor, String>();
+		map.put(unknown, "unknown");
+		map.put(new SimpleType(String.class), "string");
+		assertEquals("unknown", map.get(unknown));
+		assertEquals("string", map.get(new SimpleType(String.class)));
+		
+		final LazyType arity = TypeFactory.parseLazily("java.util.Map<String>");
+		try {
+			arity.resolve();
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException exc) { }
+	}
+	
+	@Test
+	public void testFromType() throws Exception {
+		final String [][] expected = new String[][] {
+			{ "primitive", "int" },
+			{ "array", "java.lang.String[][]" },
+			{ "generic", "java.util.Map<java.lang.String,java.util.List<java.lang.Integer>>" },
+			{ "wildcard", "java.util.List<? extends java.lang.Number>" },
+			{ "variable", "java.util.List<java.lang.Comparable>" },
+			{ "genericArray", "java.util.List<java.lang.String>[]" },
+			{ "variableArray", "java.lang.Comparable[]" }
+		};
+		
+		for(String [] test : expected) {
+			final Field field = Members.class.getDeclaredField(test[0]);
+			final TypeDescriptor type = TypeFactory.fromField(field);
+			assertEquals(test[1], type.toString());
+			assertSame(type, TypeFactory.fromType(field.getGenericType()));
+			assertSame(type, TypeFactory.fromField(field));
+		}
+		
+		final Method method = Members.class.getDeclaredMethod("method", List.class);
+		assertEquals("java.util.Map<java.lang.String,java.lang.Comparable>", TypeFactory.fromReturnType(method).toString());
+		assertEquals(
+		    Arrays.asList(TypeFactory.parse("java.util.List<java.util.Map<String,java.lang.Integer>>")),
+		    TypeFactory.fromParameterTypes(method)
+		);
+		
+		final Constructor<?> constructor = Members.class.getDeclaredConstructor(List.class, int[].class);
+		assertEquals(
+		    Arrays.asList(TypeFactory.parse("java.util.List<String>"), TypeFactory.parse("int[]")),
+		    TypeFactory.fromParameterTypes(constructor)
+		);
+	}
 }
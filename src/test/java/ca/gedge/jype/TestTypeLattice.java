@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Test TypeLattice.
+ */
+public class TestTypeLattice {
+	private static TypeDescriptor parse(String typeString) throws ClassNotFoundException {
+		return TypeFactory.parse(typeString);
+	}
+	
+	private static TypeDescriptor lub(String... typeStrings) throws ClassNotFoundException {
+		final List<TypeDescriptor> types = new ArrayList<TypeDescriptor>();
+		for(String typeString : typeStrings)
+			types.add(parse(typeString));
+		return TypeLattice.lub(types);
+	}
+	
+	@Test
+	public void testLub() throws ClassNotFoundException {
+		assertSame(parse("java.util.List<? extends Number>"), lub("java.util.List<Integer>", "java.util.List<Long>"));
+		assertSame(parse("java.util.AbstractList<Integer>"), lub("java.util.ArrayList<Integer>", "java.util.LinkedList<Integer>"));
+		assertSame(parse("java.util.List<Integer>"), lub("java.util.ArrayList<Integer>", "java.util.concurrent.CopyOnWriteArrayList<Integer>"));
+		assertSame(parse("java.util.Collection<String>"), lub("java.util.List<String>", "java.util.Set<String>"));
+		assertSame(parse("java.util.List<? extends Number>"), lub("java.util.ArrayList<Integer>", "java.util.List<? extends Number>"));
+		assertSame(parse("java.util.Map<String, ? extends java.util.List<? extends Number>>"),
+		           lub("java.util.Map<String, java.util.ArrayList<Integer>>", "java.util.SortedMap<String, java.util.concurrent.CopyOnWriteArrayList<Double>>"));
+		assertSame(parse("java.util.Comparator<? extends Number>"), lub("java.util.Comparator<Number>", "java.util.Comparator<Integer>"));
+		assertSame(parse("java.util.Comparator<? super Integer>"), lub("java.util.Comparator<Number>", "java.util.Comparator<? super Integer>"));
+		assertSame(parse("java.util.Comparator<?>"), lub("java.util.Comparator<Number>", "java.util.Comparator<Thread>"));
+		
+		// Supertypes absorb their subtypes, and equal types combine to themselves
+		assertSame(parse("Number"), lub("Integer", "Number", "Long"));
+		assertSame(parse("java.util.List<String>"), lub("java.util.List<String>", "java.util.List<String>"));
+		assertSame(parse("int"), lub("int", "int"));
+		
+		// Intersections are approximated by their most specific member, if there is one
+		assertSame(parse("Number"), lub("Integer", "Long"));
+		assertSame(parse("Object"), lub("String", "Thread"));
+		assertSame(parse("Object"), lub("String", "Integer"));
+		assertSame(parse("java.util.List"), lub("java.util.List", "java.util.List<String>"));
+		assertSame(parse("Enum<?>"), TypeLattice.lub(new SimpleType(TimeUnit.class), new SimpleType(Thread.State.class)));
+		
+		// Primitives are boxed, and arrays are covariant
+		assertSame(parse("Number"), lub("int", "double"));
+		assertSame(parse("Integer"), lub("int", "Integer"));
+		assertSame(parse("Number[]"), lub("Integer[]", "Long[]"));
+		assertSame(parse("java.util.List<? extends Number>[]"), lub("java.util.List<Integer>[]", "java.util.List<Long>[]"));
+		assertSame(parse("Object[]"), lub("String[][]", "Thread[]"));
+		assertSame(parse("Object"), lub("int[]", "long[]"));
+		assertSame(parse("java.io.Serializable"), lub("String[]", "Integer"));
+		
+		try {
+			TypeLattice.lub(Collections.<TypeDescriptor>emptyList());
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException exc) { }
+		try {
+			lub("void", "String");
+			fail("Expected IllegalArgumentException");
+		} catch(IllegalArgumentException exc) { }
+	}
+	
+	@Test
+	public void testLubCollector() throws ClassNotFoundException {
+		final List<TypeDescriptor> types = new ArrayList<TypeDescriptor>();
+		for(Class<?> clazz : Arrays.asList(Integer.class, Long.class, Short.class, Double.class, Byte.class)) {
+			for(int index = 0; index < 1000; ++index)
+				types.add(new GenericType(Map.class, new SimpleType(String.class), new GenericType(List.class, clazz)));
+		}
+		
+		final TypeDescriptor expected = parse("java.util.Map<String, ? extends java.util.List<? extends Number>>");
+		assertSame(expected, TypeLattice.lub(types));
+		assertSame(expected, types.stream().collect(TypeLattice.toLub()));
+		assertSame(expected, types.parallelStream().collect(TypeLattice.toLub()));
+		Collections.reverse(types);
+		assertSame(expected, types.parallelStream().collect(TypeLattice.toLub()));
+		
+		// The order of combining does not matter
+		final List<TypeDescriptor> comparators = Arrays.asList(parse("java.util.Comparator<Integer>"), parse("java.util.Comparator<Long>"), parse("java.util.Comparator<? super Integer>"));
+		assertSame(parse("java.util.Comparator<?>"), comparators.stream().collect(TypeLattice.toLub()));
+		assertSame(parse("java.util.Comparator<?>"), TypeLattice.lub(comparators.get(0), TypeLattice.lub(comparators.get(1), comparators.get(2))));
+		assertNull(Collections.<TypeDescriptor>emptyList().stream().collect(TypeLattice.toLub()));
+	}
+	
+	@Test
+	public void testGlb() throws ClassNotFoundException {
+		assertSame(parse("Integer"), TypeLattice.glb(parse("Number"), parse("Integer")));
+		assertSame(parse("java.util.ArrayList<String>"), TypeLattice.glb(parse("java.util.Collection<String>"), parse("java.util.ArrayList<String>")));
+		assertSame(parse("java.util.Map<? extends Number, String>"), TypeLattice.glb(parse("java.util.Map<? extends Number, ?>"), parse("java.util.Map<?, String>")));
+		assertSame(parse("java.util.List<? super Number>"), TypeLattice.glb(parse("java.util.List<? super Integer>"), parse("java.util.List<? super Number>")));
+		assertSame(parse("java.util.List<? extends Integer>[]"), TypeLattice.glb(parse("java.util.List<? extends Number>[]"), parse("java.util.List<? extends Integer>[]")));
+		assertSame(parse("Integer"), TypeLattice.glb(Arrays.asList(parse("Object"), parse("Number"), parse("Integer"))));
+		
+		assertNull(TypeLattice.glb(parse("Runnable"), parse("CharSequence")));
+		assertNull(TypeLattice.glb(parse("java.util.List<String>"), parse("java.util.List<Integer>")));
+		assertNull(TypeLattice.glb(parse("java.util.List<? extends Number>"), parse("java.util.List<? super Integer>")));
+	}
+	
+	static class Repo<T extends Number> {
+		<U> Map<String, List<U>> index() { return null; }
+	}
+	
+	@Test
+	public void testUnify() throws Exception {
+		final TypeVariableDescriptor t = TypeVariableDescriptor.of(Repo.class, "T");
+		final TypeDescriptor u = TypeVariableDescriptor.of(Repo.class.getDeclaredMethod("index"), "U");
+		
+		TypeBindings bindings = TypeLattice.unify(new GenericType(List.class, t), parse("java.util.ArrayList<Integer>"));
+		assertSame(parse("Integer"), bindings.get(t));
+		
+		final TypeDescriptor template = TypeFactory.templateOf(Repo.class.getDeclaredMethod("index").getGenericReturnType());
+		final TypeDescriptor type = parse("java.util.HashMap<String, java.util.List<int[]>>");
+		bindings = TypeLattice.unify(template, type);
+		assertSame(parse("int[]"), bindings.get((TypeVariableDescriptor)u));
+		assertSame(parse("java.util.Map<String, java.util.List<int[]>>"), bindings.substitute(template));
+		
+		final GenericType pair = new GenericType(Map.class, t, WildcardType.withUpperBound(t));
+		assertSame(parse("Long"), TypeLattice.unify(pair, parse("java.util.Map<Long, ? extends Long>")).get(t));
+		assertSame(parse("Long[]"), TypeLattice.unify(new ArrayType(u, 1), parse("Long[][]")).get((TypeVariableDescriptor)u));
+		assertTrue(TypeLattice.unify(parse("java.util.List<String>"), parse("java.util.ArrayList<String>")).isEmpty());
+		
+		// Variables bind consistently and within their bounds
+		assertNull(TypeLattice.unify(pair, parse("java.util.Map<Long, ? extends Integer>")));
+		assertNull(TypeLattice.unify(new GenericType(List.class, t), parse("java.util.List<String>")));
+		assertNull(TypeLattice.unify(new GenericType(List.class, u), parse("java.util.List<? extends String>")));
+		assertNull(TypeLattice.unify(new GenericType(List.class, u), parse("java.util.Set<String>")));
+		assertNull(TypeLattice.unify(new GenericType(List.class, new GenericType(List.class, u)), parse("java.util.List<java.util.ArrayList<String>>")));
+	}
+}
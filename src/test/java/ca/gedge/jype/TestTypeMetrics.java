@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.After;
+import org.junit.Test;
+
+import ca.gedge.jype.TypeMetrics.Operation;
+
+/**
+ * Test TypeMetrics and InMemoryTypeMetrics.
+ */
+public class TestTypeMetrics {
+	@After
+	public void tearDown() {
+		TypeFactory.setMetrics(null);
+	}
+	
+	@Test
+	public void testDisabledByDefault() {
+		assertSame(TypeMetrics.NONE, TypeFactory.getMetrics());
+		
+		final InMemoryTypeMetrics metrics = new InMemoryTypeMetrics();
+		TypeFactory.setMetrics(metrics);
+		assertSame(metrics, TypeFactory.getMetrics());
+		
+		TypeFactory.setMetrics(TypeMetrics.NONE);
+		new SimpleType(String.class);
+		assertEquals(0, metrics.getCreatedCount(SimpleType.class));
+	}
+	
+	@Test
+	public void testParse() throws ClassNotFoundException {
+		final InMemoryTypeMetrics metrics = new InMemoryTypeMetrics();
+		TypeFactory.setMetrics(metrics);
+		
+		TypeFactory.parse("java.util.List<String>");
+		TypeFactory.parse("java.util.List<String>");
+		try {
+			TypeFactory.parse("java.util.List<");
+			fail("expected IllegalArgumentException");
+		} catch(IllegalArgumentException exc) {}
+		try {
+			TypeFactory.parse("NoSuchClass");
+			fail("expected ClassNotFoundException");
+		} catch(ClassNotFoundException exc) {}
+		
+		final OperationStatistics stats = metrics.getStatistics(Operation.PARSE);
+		assertSame(Operation.PARSE, stats.getOperation());
+		assertEquals(4, stats.getCount());
+		assertEquals(2, stats.getFailureCount());
+		assertEquals(Long.valueOf(1), stats.getFailureCounts().get(IllegalArgumentException.class.getName()));
+		assertEquals(Long.valueOf(1), stats.getFailureCounts().get(ClassNotFoundException.class.getName()));
+		
+		long total = 0;
+		for(long count : stats.getHistogram())
+			total += count;
+		assertEquals(4, total);
+		assertTrue(stats.getPercentile(100) >= stats.getPercentile(50));
+		
+		// Each parse constructs at least a generic type and its parameter
+		assertTrue(metrics.getCreatedCount(GenericType.class) >= 2);
+		assertTrue(metrics.getCreatedCount(SimpleType.class) >= 2);
+		assertEquals(0, metrics.getStatistics(Operation.FROM_LIST).getCount());
+	}
+	
+	@Test
+	public void testFromListAndAssignability() {
+		final InMemoryTypeMetrics metrics = new InMemoryTypeMetrics();
+		TypeFactory.setMetrics(metrics);
+		
+		final TypeDescriptor type = TypeFactory.fromList(Map.class, String.class, List.class, Integer.class);
+		try {
+			TypeFactory.fromList(Map.class, String.class);
+			fail("expected IllegalArgumentException");
+		} catch(IllegalArgumentException exc) {}
+		assertEquals(2, metrics.getStatistics(Operation.FROM_LIST).getCount());
+		assertEquals(1, metrics.getStatistics(Operation.FROM_LIST).getFailureCount());
+		
+		// Checks of the parameters are part of the outer check
+		assertTrue(type.isAssignableFrom(type));
+		assertFalse(type.isAssignableFrom(new SimpleType(String.class)));
+		assertEquals(2, metrics.getStatistics(Operation.IS_ASSIGNABLE_FROM).getCount());
+		
+		metrics.reset();
+		assertEquals(0, metrics.getStatistics(Operation.IS_ASSIGNABLE_FROM).getCount());
+		assertTrue(metrics.getCreatedCounts().isEmpty());
+	}
+	
+	@Test
+	public void testPercentiles() {
+		final InMemoryTypeMetrics metrics = new InMemoryTypeMetrics();
+		assertEquals(0, metrics.getStatistics(Operation.PARSE).getPercentile(50));
+		
+		for(int index = 0; index < 99; ++index)
+			metrics.recordSuccess(Operation.PARSE, 100);
+		metrics.recordSuccess(Operation.PARSE, 5000);
+		
+		final OperationStatistics stats = metrics.getStatistics(Operation.PARSE);
+		assertEquals(127, stats.getPercentile(50));
+		assertEquals(127, stats.getPercentile(99));
+		assertEquals(8191, stats.getPercentile(100));
+		assertEquals(149.0, stats.getAverageTime(), 1e-9);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testPercentileOutOfRange() {
+		new InMemoryTypeMetrics().getStatistics(Operation.PARSE).getPercentile(101);
+	}
+	
+	@Test
+	public void testJfrEvents() throws ClassNotFoundException, IOException {
+		TypeFactory.setMetrics(new JfrTypeMetrics());
+		
+		final File file = File.createTempFile("jype", ".jfr");
+		try {
+			final Recording recording = new Recording();
+			try {
+				recording.enable("ca.gedge.jype.Operation");
+				recording.start();
+				TypeFactory.parse("java.util.List<String>");
+				try {
+					TypeFactory.parse("NoSuchClass");
+				} catch(ClassNotFoundException exc) {}
+				recording.stop();
+				recording.dump(file.toPath());
+			} finally {
+				recording.close();
+			}
+			
+			int successes = 0, failures = 0;
+			for(RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+				if(!"PARSE".equals(event.getString("operation")))
+					continue;
+				if(event.getString("failure") == null)
+					++successes;
+				else if(event.getString("failure").equals(ClassNotFoundException.class.getName()))
+					++failures;
+			}
+			assertEquals(1, successes);
+			assertEquals(1, failures);
+		} finally {
+			file.delete();
+		}
+	}
+}
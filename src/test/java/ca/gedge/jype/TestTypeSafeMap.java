@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2013 Jason Gedge <http://www.gedge.ca>
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies
+ * of the Software, and to permit persons to whom the Software is furnished to do
+ * so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package ca.gedge.jype;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import ca.gedge.jype.TypeSafeMap.Key;
+
+/**
+ * Test TypeSafeMap and ConcurrentTypeSafeMap.
+ */
+public class TestTypeSafeMap {
+	@Test
+	public void testTypedKeys() throws ClassNotFoundException {
+		final Key<List<Integer>> integers = Key.of(new GenericType(List.class, Integer.class));
+		final Key<List<String>> strings = Key.of(TypeFactory.parse("java.util.List<String>"));
+		final Key<String> name = Key.of(String.class);
+		
+		final TypeSafeMap map = new TypeSafeMap();
+		assertTrue(map.isEmpty());
+		assertNull(map.put(integers, Arrays.asList(1, 2)));
+		assertNull(map.put(strings, Arrays.asList("a")));
+		assertNull(map.put(name, "jype"));
+		assertEquals(3, map.size());
+		
+		assertEquals(Arrays.asList(1, 2), map.get(integers));
+		assertEquals(Arrays.asList("a"), map.get(strings));
+		assertEquals("jype", map.get(name));
+		
+		// Descriptors need not be interned
+		assertEquals("jype", map.get(new SimpleType(String.class)));
+		assertEquals(Arrays.asList("a"), map.get(new GenericType(List.class, String.class)));
+		assertTrue(map.containsKey(new GenericType(List.class, Integer.class)));
+		assertFalse(map.containsKey(new GenericType(List.class, Long.class)));
+		assertNull(map.get((TypeDescriptor)null));
+		
+		assertEquals("jype", map.put(name, "types"));
+		assertEquals("types", map.putIfAbsent(name, "ignored"));
+		assertEquals("types", map.get(name));
+		assertEquals(Key.of(String.class), name);
+		
+		assertEquals("types", map.remove(name));
+		assertNull(map.remove(name));
+		assertEquals(2, map.size());
+		
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertNull(map.get(integers));
+	}
+	
+	@Test
+	public void testArrayClassKeys() throws ClassNotFoundException {
+		final Key<String[]> byClass = Key.of(String[].class);
+		final Key<String[]> parsed = Key.of(TypeFactory.parse("java.lang.String[]"));
+		assertEquals(parsed, byClass);
+		assertSame(parsed.getType(), byClass.getType());
+		
+		final TypeSafeMap map = new TypeSafeMap();
+		final String [] value = { "jype" };
+		map.put(byClass, value);
+		assertSame(value, map.get(parsed));
+		assertEquals(1, map.size());
+		
+		map.put(parsed, new String[0]);
+		assertEquals(1, map.size());
+		assertEquals(0, map.get(byClass).length);
+	}
+	
+	@Test
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void testValuesAreChecked() {
+		final Key key = Key.of(new GenericType(List.class, Integer.class));
+		final TypeSafeMap map = new TypeSafeMap();
+		final ConcurrentTypeSafeMap concurrent = new ConcurrentTypeSafeMap();
+		
+		try {
+			map.put(key, "not a list");
+			fail("Expected ClassCastException");
+		} catch(ClassCastException exc) { }
+		
+		try {
+			concurrent.put(key, new HashMap());
+			fail("Expected ClassCastException");
+		} catch(ClassCastException exc) { }
+		
+		try {
+			map.put(key, null);
+			fail("Expected NullPointerException");
+		} catch(NullPointerException exc) { }
+		
+		// Primitive keys take wrappers
+		final Key<Integer> primitive = Key.of(int.class);
+		map.put(primitive, 5);
+		assertEquals(Integer.valueOf(5), map.get(primitive));
+		assertEquals(1, map.size());
+	}
+	
+	@Test
+	public void testGrowAndRemove() {
+		// Compare against a HashMap over many colliding descriptors, removing
+		// entries as well, to exercise probing and backward-shift deletion
+		final List<Key<Object>> keys = new ArrayList<Key<Object>>();
+		final Class<?> [] classes = { Object.class, String.class, Integer.class, Long.class, Double.class, Number.class };
+		for(Class<?> outer : classes) {
+			for(Class<?> inner : classes)
+				keys.add(Key.<Object>of(new GenericType(Map.class, outer, inner)));
+			for(int numDims = 1; numDims <= 3; ++numDims)
+				keys.add(Key.<Object>of(new ArrayType(new GenericType(List.class, outer), numDims)));
+		}
+		
+		final TypeSafeMap map = new TypeSafeMap();
+		final ConcurrentTypeSafeMap concurrent = new ConcurrentTypeSafeMap();
+		final Map<TypeDescriptor, Object> expected = new HashMap<TypeDescriptor, Object>();
+		final Random random = new Random(42);
+		for(int round = 0; round < 5000; ++round) {
+			final Key<Object> key = keys.get(random.nextInt(keys.size()));
+			if(random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key.getType()), map.remove(key));
+				concurrent.remove(key.getType());
+			} else {
+				final Object value = (key.getType() instanceof ArrayType
+					? Array.newInstance(((ArrayType)key.getType()).getArrayClass().getComponentType(), 0)
+					: new HashMap<Object, Object>());
+				assertEquals(expected.put(key.getType(), value), map.put(key, value));
+				concurrent.put(key, value);
+			}
+			
+			assertEquals(expected.size(), map.size());
+			assertEquals(expected.size(), concurrent.size());
+			for(Key<Object> k : keys) {
+				assertSame(expected.get(k.getType()), map.get(k));
+				assertSame(expected.get(k.getType()), concurrent.get(k));
+			}
+		}
+	}
+	
+	@Test
+	public void testConcurrentPutIfAbsent() throws Exception {
+		final List<Key<String>> keys = new ArrayList<Key<String>>();
+		for(Class<?> clazz : new Class<?>[] { String.class, Integer.class, Long.class, Double.class })
+			keys.add(Key.<String>of(new GenericType(Comparable.class, clazz)));
+		
+		final ConcurrentTypeSafeMap map = new ConcurrentTypeSafeMap();
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<?>> futures = new ArrayList<Future<?>>();
+			for(int thread = 0; thread < 4; ++thread) {
+				final String value = "thread" + thread;
+				futures.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						for(int round = 0; round < 1000; ++round) {
+							for(Key<String> key : keys) {
+								final String existing = map.putIfAbsent(key, value);
+								assertNotNull(existing == null ? map.get(key) : existing);
+							}
+						}
+					}
+				}));
+			}
+			for(Future<?> future : futures)
+				future.get();
+		} finally {
+			executor.shutdown();
+		}
+		
+		assertEquals(keys.size(), map.size());
+		for(Key<String> key : keys)
+			assertTrue(map.get(key).startsWith("thread"));
+	}
+}